@@ -0,0 +1,106 @@
+package com.sample.city.springboot.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sample.city.springboot.component.BatchedRequests;
+import com.sample.city.springboot.factory.GraphQlSchemaFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.http.HttpHeaders;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operations of a client posted one per request, and posted together as a batch executed by {@link
+ * BatchedRequests}. Each operation queries users with their friends, so separate requests invoke
+ * the batched {@code friends} resolver once per operation while a batch invokes it once. Friends
+ * are queried with no latency, and with the latency of a round trip to a nearby database. Both
+ * encode their responses to JSON; HTTP round trips saved by batching are not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BatchedRequestsBenchmark {
+
+    private static final URI URL = URI.create("http://localhost/graphql");
+    private static final Map<String, Object> BODY =
+            Map.of("query", "{ users { id name friends { id name } } }");
+
+    @Param({"5", "20"})
+    public int operations;
+
+    @Param({"0", "5"})
+    public long queryLatencyMillis;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private AnnotationConfigApplicationContext context;
+    private WebGraphQlHandler graphQlHandler;
+    private BatchedRequests batchedRequests;
+    private List<Map<String, Object>> bodies;
+
+    @Setup
+    public void setUp() throws Exception {
+        context = DemoGraphQl.context(Duration.ofMillis(queryLatencyMillis));
+        graphQlHandler =
+                WebGraphQlHandler.builder(DemoGraphQl.service(new GraphQlSchemaFactory(context)))
+                        .build();
+        batchedRequests = new BatchedRequests(graphQlHandler, objectMapper, operations);
+        bodies = Collections.nCopies(operations, BODY);
+        final var separate = separate();
+        final var batched = batched();
+        if (separate.stream().anyMatch(response -> response.contains("errors"))
+                || !batched.equals("[" + String.join(",", separate) + "]")) {
+            throw new IllegalStateException("Unexpected responses " + separate + ", " + batched);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<String> separate() throws Exception {
+        final var responses = new ArrayList<String>(operations);
+        for (int index = 0; index < operations; index++) {
+            final var response =
+                    graphQlHandler.handleRequest(request(index, bodies.get(index))).block();
+            responses.add(objectMapper.writeValueAsString(response.toMap()));
+        }
+        return responses;
+    }
+
+    @Benchmark
+    public String batched() {
+        return String.join(
+                "", batchedRequests.execute(bodies, this::request).collectList().block());
+    }
+
+    private WebGraphQlRequest request(int index, Map<String, Object> body) {
+        return new WebGraphQlRequest(
+                URL, new HttpHeaders(), null, null, Map.of(), body, "1-" + index, Locale.ENGLISH);
+    }
+}
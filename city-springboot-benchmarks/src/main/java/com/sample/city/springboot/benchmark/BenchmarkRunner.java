@@ -0,0 +1,30 @@
+package com.sample.city.springboot.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the usual JMH command line options, writing results as JSON by default,
+ * so that results of releases can be compared, e.g. with {@code jmh.morethan.se} or a script.
+ *
+ * <p>{@code mvn -P benchmark verify -Dbenchmark.options="ExecutionBenchmark -f 1"} runs selected
+ * benchmarks, results are written to {@code target/jmh-result.json} unless {@code
+ * -Dbenchmark.result} says otherwise.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        final var commandLine = new CommandLineOptions(args);
+        final var options = new OptionsBuilder().parent(commandLine);
+        if (commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(commandLine.getResultFormat().get());
+        } else {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,60 @@
+package com.sample.city.springboot.benchmark;
+
+import com.sample.city.springboot.service.CounterBlockAllocator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of sequence values handed out by concurrent threads, reserving one value per Mongo
+ * write when blocks are capped at a single value and whole blocks grown to the consumption rate
+ * otherwise.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Threads(8)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CounterBlockAllocatorBenchmark {
+
+    private static final String SEQUENCE_ID = "sequence";
+
+    @Param({"1", "1000000"})
+    public long maxBlockSize;
+
+    @Param({"200"})
+    public long writeLatencyMicros;
+
+    private CounterBlockAllocator allocator;
+
+    @Setup
+    public void setUp() {
+        final var counters =
+                new InMemoryCounters(
+                        List.of(SEQUENCE_ID), Duration.ofNanos(writeLatencyMicros * 1000));
+        allocator =
+                new CounterBlockAllocator(
+                        counters.mongoTemplate(), 100, 1, maxBlockSize, Duration.ofSeconds(1));
+    }
+
+    @Benchmark
+    public long next() {
+        return allocator.next(SEQUENCE_ID);
+    }
+}
@@ -0,0 +1,64 @@
+package com.sample.city.springboot.benchmark;
+
+import com.sample.city.springboot.service.CounterShards;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of increments of one hot counter by concurrent threads, kept in a single document and
+ * sharded into up to 16 documents grown under contention. Increments of one document are serialized
+ * by the in-memory stand-in of Mongo, so a single document caps throughput at one increment per
+ * write latency regardless of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Threads(8)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CounterContentionBenchmark {
+
+    private static final String COUNTER_ID = "hot";
+
+    @Param({"1", "16"})
+    public int maxShards;
+
+    @Param({"200"})
+    public long writeLatencyMicros;
+
+    private CounterShards counterShards;
+
+    @Setup
+    public void setUp() {
+        // shard growth is logged on info
+        LoggingSystem.get(CounterContentionBenchmark.class.getClassLoader())
+                .setLogLevel(LoggingSystem.ROOT_LOGGER_NAME, LogLevel.WARN);
+        final var counters =
+                new InMemoryCounters(
+                        List.of(COUNTER_ID), Duration.ofNanos(writeLatencyMicros * 1000));
+        counterShards = new CounterShards(counters.mongoTemplate(), 1, maxShards, 0.1, 1000);
+    }
+
+    @Benchmark
+    public long increment() {
+        return counterShards.incrementAndGet(COUNTER_ID);
+    }
+}
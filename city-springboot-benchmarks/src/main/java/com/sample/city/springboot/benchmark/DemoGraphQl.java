@@ -0,0 +1,152 @@
+package com.sample.city.springboot.benchmark;
+
+import com.sample.city.springboot.component.BatchedResolverRegistrar;
+import com.sample.city.springboot.component.CachingDocumentProvider;
+import com.sample.city.springboot.component.QueryCostInstrumentation;
+import com.sample.city.springboot.component.ResolverLatencyInstrumentation;
+import com.sample.city.springboot.component.SubscriptionHub;
+import com.sample.city.springboot.configuration.GraphQlServerProperties;
+import com.sample.city.springboot.configuration.UserProperties;
+import com.sample.city.springboot.controller.GraphQlDemoServerController;
+import com.sample.city.springboot.controller.UserController;
+import com.sample.city.springboot.factory.GraphQlSchemaFactory;
+import com.sample.city.springboot.factory.GraphQlSourceFactory;
+import com.sample.city.springboot.model.User;
+import com.sample.city.springboot.repository.ReactiveUserRepository;
+import com.sample.city.springboot.repository.UserRepository;
+import com.sample.city.springboot.service.ChangeStreamService;
+import com.sample.city.springboot.service.ReactiveUserService;
+import com.sample.city.springboot.service.UserService;
+
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.graphql.ExecutionGraphQlResponse;
+import org.springframework.graphql.execution.DefaultExecutionGraphQlService;
+import org.springframework.graphql.support.DefaultExecutionGraphQlRequest;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+/**
+ * Demo application GraphQL API wired as the GraphQL server configuration does by default, with
+ * users kept in memory instead of Mongo
+ */
+public final class DemoGraphQl {
+
+    /** Number of users of the in-memory repositories, each having three friends */
+    public static final int USERS = 50;
+
+    private DemoGraphQl() {}
+
+    /**
+     * Application context of the demo resolvers and the given additional {@code @GraphQLApi} beans,
+     * with in-memory user repositories
+     *
+     * @param additionalApis additional {@code @GraphQLApi} bean types
+     * @return refreshed application context
+     */
+    public static AnnotationConfigApplicationContext context(Class<?>... additionalApis) {
+        return context(Duration.ZERO, additionalApis);
+    }
+
+    /**
+     * Application context of the demo resolvers and the given additional {@code @GraphQLApi} beans,
+     * with in-memory user repositories answering queries by id after the given latency
+     *
+     * @param queryLatency latency of user queries by id
+     * @param additionalApis additional {@code @GraphQLApi} bean types
+     * @return refreshed application context
+     */
+    public static AnnotationConfigApplicationContext context(
+            Duration queryLatency, Class<?>... additionalApis) {
+        // unconfigured logback logs debug messages of every execution
+        LoggingSystem.get(DemoGraphQl.class.getClassLoader())
+                .setLogLevel(LoggingSystem.ROOT_LOGGER_NAME, LogLevel.WARN);
+        final var repositories =
+                new InMemoryUserRepositories(
+                        LongStream.range(0, USERS)
+                                .mapToObj(
+                                        id ->
+                                                new User(
+                                                        id,
+                                                        "user" + id,
+                                                        List.of(
+                                                                (id + 1) % USERS,
+                                                                (id + 2) % USERS,
+                                                                (id + 3) % USERS)))
+                                .toList(),
+                        queryLatency);
+        final var context = new AnnotationConfigApplicationContext();
+        context.registerBean(UserRepository.class, repositories::userRepository);
+        context.registerBean(ReactiveUserRepository.class, repositories::reactiveUserRepository);
+        context.registerBean(ReactiveMongoOperations.class, repositories::reactiveMongoOperations);
+        context.registerBean(
+                SubscriptionHub.class,
+                () -> new SubscriptionHub(256, SubscriptionHub.Overflow.DROP_OLDEST));
+        context.register(
+                UserProperties.class,
+                UserService.class,
+                ReactiveUserService.class,
+                ChangeStreamService.class,
+                GraphQlDemoServerController.class,
+                UserController.class);
+        if (additionalApis.length > 0) {
+            context.register(additionalApis);
+        }
+        context.refresh();
+        return context;
+    }
+
+    /**
+     * Execution service with the document cache, cost analysis, latency recording and batch loaders
+     * of the default GraphQL server configuration
+     *
+     * @param schemaFactory schema factory of the application context
+     * @return configured instance of {@link DefaultExecutionGraphQlService}
+     */
+    public static DefaultExecutionGraphQlService service(GraphQlSchemaFactory schemaFactory) {
+        final var properties = new GraphQlServerProperties();
+        final var cost = properties.getCost();
+        final var latency = properties.getLatency();
+        final var service =
+                new DefaultExecutionGraphQlService(
+                        new GraphQlSourceFactory(
+                                        schemaFactory::getObject,
+                                        new CachingDocumentProvider(
+                                                properties.getDocumentCache().getMaximumWeight(),
+                                                properties.getDocumentCache().isPersistedQueries()),
+                                        List.of(
+                                                new QueryCostInstrumentation(
+                                                        cost.getMaxDepth(),
+                                                        cost.getMaxCost(),
+                                                        cost.getDefaultFieldCost(),
+                                                        cost.getClientCapacity(),
+                                                        cost.getClientRefillPerSecond()),
+                                                new ResolverLatencyInstrumentation(
+                                                        latency.getTrivialSampleRate(),
+                                                        latency.getMaxOperations())))
+                                .getObject());
+        service.addDataLoaderRegistrar(new BatchedResolverRegistrar(schemaFactory));
+        return service;
+    }
+
+    /**
+     * Executes the query
+     *
+     * @param service execution service
+     * @param query GraphQL document
+     * @return response of the execution
+     */
+    public static ExecutionGraphQlResponse execute(
+            DefaultExecutionGraphQlService service, String query) {
+        return service.execute(
+                        new DefaultExecutionGraphQlRequest(
+                                query, null, Map.of(), Map.of(), "1", Locale.ENGLISH))
+                .block();
+    }
+}
@@ -0,0 +1,91 @@
+package com.sample.city.springboot.benchmark;
+
+import com.sample.city.springboot.component.GraphQlExceptionResolver;
+import com.sample.city.springboot.exception.CityException;
+import com.sample.city.springboot.factory.GraphQlSchemaFactory;
+
+import io.leangen.graphql.annotations.GraphQLQuery;
+import io.leangen.graphql.spqr.spring.annotations.GraphQLApi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.graphql.ExecutionGraphQlResponse;
+import org.springframework.graphql.execution.DefaultExecutionGraphQlService;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of operations failing in their resolver, by the kind of exception thrown: an exception
+ * capturing its stack trace, same as before expected business errors were introduced, and an
+ * expected {@link CityException} without one. Stack traces logged by {@link
+ * GraphQlExceptionResolver} are not printed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ErrorPathBenchmark {
+
+    @Param({"nullPointer", "cityException", "expected"})
+    private String error;
+
+    private AnnotationConfigApplicationContext context;
+    private DefaultExecutionGraphQlService service;
+    private String query;
+
+    @Setup
+    public void setUp() {
+        context = DemoGraphQl.context(ErrorApi.class);
+        LoggingSystem.get(getClass().getClassLoader())
+                .setLogLevel(GraphQlExceptionResolver.class.getName(), LogLevel.OFF);
+        service = DemoGraphQl.service(new GraphQlSchemaFactory(context));
+        query = "{ %s }".formatted(error);
+        if (execute().getErrors().size() != 1) {
+            throw new IllegalStateException("Operation " + error + " did not fail");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ExecutionGraphQlResponse execute() {
+        return DemoGraphQl.execute(service, query);
+    }
+
+    @GraphQLApi
+    public static class ErrorApi {
+
+        @GraphQLQuery(name = "nullPointer")
+        public String nullPointer() {
+            throw new NullPointerException();
+        }
+
+        @GraphQLQuery(name = "cityException")
+        public String cityException() {
+            throw new CityException("Counter '{}' not found", "visits");
+        }
+
+        @GraphQLQuery(name = "expected")
+        public String expected() {
+            throw CityException.expected("Counter '{}' not found", "visits");
+        }
+    }
+}
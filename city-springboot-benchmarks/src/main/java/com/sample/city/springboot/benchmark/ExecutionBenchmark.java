@@ -0,0 +1,78 @@
+package com.sample.city.springboot.benchmark;
+
+import com.sample.city.springboot.factory.GraphQlSchemaFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.graphql.ExecutionGraphQlResponse;
+import org.springframework.graphql.execution.DefaultExecutionGraphQlService;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end execution of the demo operations through {@link DefaultExecutionGraphQlService},
+ * including the exception path of {@code throwingNPE} resolved by the data fetcher exception
+ * resolver of {@link com.sample.city.springboot.factory.GraphQlSourceFactory}.
+ *
+ * <p>{@code saveUser}, {@code saveUserR} and {@code saveUserRC} delay their response by seconds on
+ * purpose, so {@code saveUserT} stands for saving users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExecutionBenchmark {
+
+    private static final Map<String, String> QUERIES =
+            Map.of(
+                    "getSquare", "{ getSquare(input: 12) }",
+                    "getSquareMono", "{ getSquareMono(input: 12) }",
+                    "throwingNPE", "{ throwingNPE(input: 12) }",
+                    "saveUserT",
+                            "{ saveUserT(user: {id: 7, name: \"user7\", friendIds: [1, 2]}) { id"
+                                    + " name friendIds } }",
+                    "users", "{ users { id name friends { id name } } }");
+
+    @Param({"getSquare", "getSquareMono", "throwingNPE", "saveUserT", "users"})
+    public String operation;
+
+    private AnnotationConfigApplicationContext context;
+    private DefaultExecutionGraphQlService service;
+    private String query;
+
+    @Setup
+    public void setUp() {
+        context = DemoGraphQl.context();
+        service = DemoGraphQl.service(new GraphQlSchemaFactory(context));
+        query = QUERIES.get(operation);
+        final var response = execute();
+        if (response.getErrors().isEmpty() == operation.equals("throwingNPE")) {
+            throw new IllegalStateException(
+                    "Unexpected response of " + operation + ": " + response.toMap());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ExecutionGraphQlResponse execute() {
+        return DemoGraphQl.execute(service, query);
+    }
+}
@@ -0,0 +1,113 @@
+package com.sample.city.springboot.benchmark;
+
+import com.sample.city.springboot.DemoApp;
+
+import io.leangen.graphql.annotations.GraphQLQuery;
+import io.leangen.graphql.spqr.spring.annotations.GraphQLApi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a Reactor-returning resolver served over HTTP by Spring MVC and by Spring WebFlux,
+ * with a fixed number of requests in flight. MVC holds a servlet thread per request until the
+ * resolver completes, while WebFlux serves all of them on its event loop threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GraphQlTransportBenchmark {
+
+    private static final int CONCURRENCY = 200;
+    private static final Duration RESOLVER_LATENCY = Duration.ofMillis(10);
+    private static final Map<String, Object> BODY = Map.of("query", "{ delayed }");
+
+    @Param({"servlet", "reactive"})
+    public String webApplicationType;
+
+    private ConfigurableApplicationContext context;
+    private WebClient client;
+
+    @Setup
+    public void setUp() {
+        context =
+                new SpringApplicationBuilder(DemoApp.class, TransportApi.class)
+                        .run(
+                                "--spring.main.web-application-type=" + webApplicationType,
+                                "--server.port=0",
+                                "--logging.level.root=WARN",
+                                "--logging.level.reactor=WARN",
+                                "--logging.level.org.springframework.web.reactive=WARN",
+                                "--spring.graphql.graphiql.enabled=false");
+        client =
+                WebClient.builder()
+                        .baseUrl(
+                                "http://localhost:"
+                                        + context.getEnvironment().getProperty("local.server.port")
+                                        + "/graphql")
+                        .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(1 << 20))
+                        .build();
+        if (requests().stream().anyMatch(response -> !response.containsKey("data"))) {
+            throw new IllegalStateException("Queries over " + webApplicationType + " failed");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENCY)
+    @SuppressWarnings("rawtypes")
+    public List<Map> requests() {
+        return Flux.range(0, CONCURRENCY)
+                .flatMap(
+                        i ->
+                                client.post()
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .accept(MediaType.APPLICATION_JSON)
+                                        .bodyValue(BODY)
+                                        .retrieve()
+                                        .bodyToMono(Map.class),
+                        CONCURRENCY)
+                .collectList()
+                .block();
+    }
+
+    /** Resolver waiting for a downstream without holding a thread, independent of Mongo */
+    @GraphQLApi
+    public static class TransportApi {
+
+        @GraphQLQuery(name = "delayed")
+        public Mono<String> delayed() {
+            return Mono.delay(RESOLVER_LATENCY).thenReturn("delayed");
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.sample.city.springboot.benchmark;
+
+import com.sample.city.springboot.model.Counter;
+
+import org.bson.Document;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoExceptionTranslator;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import javax.annotation.Nullable;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Stand-in of the Mongo counters collection, and of the collection of counter shards, keeping
+ * counts in memory. Increments of one document are serialized and each takes the write latency,
+ * like concurrent updates of a single Mongo document do. Only increments by id and queries of ids
+ * used by the counter services are supported.
+ */
+public class InMemoryCounters {
+
+    private final Map<String, Map<String, AtomicLong>> collections = new ConcurrentHashMap<>();
+    private final Duration writeLatency;
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Creates counters of the given ids starting at zero
+     *
+     * @param ids counter ids
+     * @param writeLatency time one increment holds its document
+     */
+    public InMemoryCounters(List<String> ids, Duration writeLatency) {
+        this.writeLatency = writeLatency;
+        this.mongoTemplate = template();
+        final var counts = collection(mongoTemplate.getCollectionName(Counter.class));
+        ids.forEach(id -> counts.put(id, new AtomicLong()));
+    }
+
+    /**
+     * @return Mongo template incrementing and querying the counters in memory
+     */
+    public MongoTemplate mongoTemplate() {
+        return mongoTemplate;
+    }
+
+    private Map<String, AtomicLong> collection(String collectionName) {
+        return collections.computeIfAbsent(collectionName, key -> new ConcurrentHashMap<>());
+    }
+
+    private MongoTemplate template() {
+        return new MongoTemplate(databaseFactory()) {
+            @Override
+            public <T> T findAndModify(
+                    Query query,
+                    UpdateDefinition update,
+                    FindAndModifyOptions options,
+                    Class<T> entityClass,
+                    String collectionName) {
+                final var counts = collection(collectionName);
+                final var id = query.getQueryObject().getString("id");
+                final var inc =
+                        update.getUpdateObject()
+                                .get("$inc", Document.class)
+                                .get("count", Number.class);
+                final var count =
+                        options.isUpsert()
+                                ? counts.computeIfAbsent(id, key -> new AtomicLong())
+                                : counts.get(id);
+                if (count == null) {
+                    return null;
+                }
+                synchronized (count) {
+                    LockSupport.parkNanos(writeLatency.toNanos());
+                    return entityClass.cast(new Counter(id, id, count.addAndGet(inc.longValue())));
+                }
+            }
+
+            @Override
+            @Nullable
+            public <T> T findOne(Query query, Class<T> entityClass, String collectionName) {
+                final var id = query.getQueryObject().getString("id");
+                final var count = collection(collectionName).get(id);
+                return count == null ? null : entityClass.cast(new Counter(id, id, count.get()));
+            }
+
+            @Override
+            public <T> List<T> find(Query query, Class<T> entityClass, String collectionName) {
+                final var counts = collection(collectionName);
+                final var ids =
+                        (Collection<?>) query.getQueryObject().get("id", Document.class).get("$in");
+                return ids.stream()
+                        .filter(counts::containsKey)
+                        .map(id -> new Counter((String) id, (String) id, counts.get(id).get()))
+                        .map(entityClass::cast)
+                        .toList();
+            }
+        };
+    }
+
+    /** Factory of no database, the template only needs its exception translator */
+    private static MongoDatabaseFactory databaseFactory() {
+        return (MongoDatabaseFactory)
+                Proxy.newProxyInstance(
+                        MongoDatabaseFactory.class.getClassLoader(),
+                        new Class<?>[] {MongoDatabaseFactory.class},
+                        (proxy, method, args) ->
+                                switch (method.getName()) {
+                                    case "getExceptionTranslator" -> new MongoExceptionTranslator();
+                                    case "hashCode" -> System.identityHashCode(proxy);
+                                    case "equals" -> proxy == args[0];
+                                    case "toString" -> "InMemoryMongoDatabaseFactory";
+                                    default -> throw new UnsupportedOperationException(
+                                            "Operation '"
+                                                    + method.getName()
+                                                    + "' is not supported in memory");
+                                });
+    }
+}
@@ -0,0 +1,220 @@
+package com.sample.city.springboot.benchmark;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.sample.city.springboot.model.User;
+import com.sample.city.springboot.repository.ReactiveUserRepository;
+import com.sample.city.springboot.repository.UserRepository;
+
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.StreamSupport;
+
+/**
+ * Stand-ins of the Mongo user repositories keeping users in memory, so that benchmarks measure the
+ * GraphQL server rather than the database. Only operations used by the user services are supported.
+ */
+public class InMemoryUserRepositories {
+
+    private final Map<Long, User> users = new ConcurrentHashMap<>();
+    private final Duration queryLatency;
+    private final Duration saveLatency;
+
+    /**
+     * Creates repositories holding the given users
+     *
+     * @param users initial users
+     */
+    public InMemoryUserRepositories(List<User> users) {
+        this(users, Duration.ZERO);
+    }
+
+    /**
+     * Creates repositories holding the given users, blocking queries by id and delaying bulk writes
+     * for the given latency like a round trip to the database would
+     *
+     * @param users initial users
+     * @param queryLatency latency of queries by id and bulk writes
+     */
+    public InMemoryUserRepositories(List<User> users, Duration queryLatency) {
+        this(users, queryLatency, Duration.ZERO);
+    }
+
+    /**
+     * Creates repositories holding the given users, delaying saves as well, blocking the caller of
+     * the blocking repository and completing after the latency without blocking in the reactive one
+     *
+     * @param users initial users
+     * @param queryLatency latency of queries by id and bulk writes
+     * @param saveLatency latency of saves of single users
+     */
+    public InMemoryUserRepositories(List<User> users, Duration queryLatency, Duration saveLatency) {
+        users.forEach(user -> this.users.put(user.id(), user));
+        this.queryLatency = queryLatency;
+        this.saveLatency = saveLatency;
+    }
+
+    /**
+     * @return blocking repository of the users
+     */
+    public UserRepository userRepository() {
+        return (UserRepository)
+                Proxy.newProxyInstance(
+                        UserRepository.class.getClassLoader(),
+                        new Class<?>[] {UserRepository.class},
+                        (proxy, method, args) ->
+                                switch (method.getName()) {
+                                    case "save" -> {
+                                        if (!saveLatency.isZero()) {
+                                            Thread.sleep(saveLatency.toMillis());
+                                        }
+                                        yield save((User) args[0]);
+                                    }
+                                    case "findAll" -> {
+                                        if (method.getParameterCount() != 0) {
+                                            throw unsupported(method.getName());
+                                        }
+                                        yield List.copyOf(users.values());
+                                    }
+                                    case "findAllById" -> findAllById((Iterable<?>) args[0]);
+                                    case "findById" -> findById(args[0]);
+                                    case "count" -> (long) users.size();
+                                    case "hashCode" -> System.identityHashCode(proxy);
+                                    case "equals" -> proxy == args[0];
+                                    case "toString" -> "InMemoryUserRepository";
+                                    default -> throw unsupported(method.getName());
+                                });
+    }
+
+    /**
+     * @return reactive repository of the users
+     */
+    public ReactiveUserRepository reactiveUserRepository() {
+        return (ReactiveUserRepository)
+                Proxy.newProxyInstance(
+                        ReactiveUserRepository.class.getClassLoader(),
+                        new Class<?>[] {ReactiveUserRepository.class},
+                        (proxy, method, args) ->
+                                switch (method.getName()) {
+                                    case "save" -> {
+                                        if (!(args[0] instanceof User user)) {
+                                            throw unsupported(method.getName());
+                                        }
+                                        yield saveLatency.isZero()
+                                                ? Mono.fromSupplier(() -> save(user))
+                                                : Mono.delay(saveLatency).map(tick -> save(user));
+                                    }
+                                    case "hashCode" -> System.identityHashCode(proxy);
+                                    case "equals" -> proxy == args[0];
+                                    case "toString" -> "InMemoryReactiveUserRepository";
+                                    default -> throw unsupported(method.getName());
+                                });
+    }
+
+    /**
+     * @return Mongo operations streaming no changes, subscriptions are not benchmarked, and
+     *     inserting users by bulk writes completing after the query latency without blocking
+     */
+    public ReactiveMongoOperations reactiveMongoOperations() {
+        return (ReactiveMongoOperations)
+                Proxy.newProxyInstance(
+                        ReactiveMongoOperations.class.getClassLoader(),
+                        new Class<?>[] {ReactiveMongoOperations.class},
+                        (proxy, method, args) ->
+                                switch (method.getName()) {
+                                    case "getCollectionName" -> ((Class<?>) args[0])
+                                            .getSimpleName()
+                                            .toLowerCase(Locale.ROOT);
+                                    case "changeStream" -> Flux.never();
+                                    case "bulkOps" -> {
+                                        if (args.length != 2 || args[1] != User.class) {
+                                            throw unsupported(method.getName());
+                                        }
+                                        yield bulkOperations();
+                                    }
+                                    case "hashCode" -> System.identityHashCode(proxy);
+                                    case "equals" -> proxy == args[0];
+                                    case "toString" -> "InMemoryReactiveMongoOperations";
+                                    default -> throw unsupported(method.getName());
+                                });
+    }
+
+    /** Bulk operations inserting users, replacing existing ones of the same id */
+    private ReactiveBulkOperations bulkOperations() {
+        final List<User> inserts = new ArrayList<>();
+        return (ReactiveBulkOperations)
+                Proxy.newProxyInstance(
+                        ReactiveBulkOperations.class.getClassLoader(),
+                        new Class<?>[] {ReactiveBulkOperations.class},
+                        (proxy, method, args) ->
+                                switch (method.getName()) {
+                                    case "insert" -> {
+                                        if (args[0] instanceof List<?> users) {
+                                            users.forEach(user -> inserts.add((User) user));
+                                        } else {
+                                            inserts.add((User) args[0]);
+                                        }
+                                        yield proxy;
+                                    }
+                                    case "execute" -> (queryLatency.isZero()
+                                                    ? Mono.just(0L)
+                                                    : Mono.delay(queryLatency))
+                                            .map(
+                                                    tick -> {
+                                                        inserts.forEach(this::save);
+                                                        return BulkWriteResult.acknowledged(
+                                                                inserts.size(),
+                                                                0,
+                                                                0,
+                                                                0,
+                                                                List.of(),
+                                                                List.of());
+                                                    });
+                                    case "hashCode" -> System.identityHashCode(proxy);
+                                    case "equals" -> proxy == args[0];
+                                    case "toString" -> "InMemoryReactiveBulkOperations";
+                                    default -> throw unsupported(method.getName());
+                                });
+    }
+
+    private User save(User user) {
+        users.put(user.id(), user);
+        return user;
+    }
+
+    private Optional<User> findById(Object id) throws InterruptedException {
+        awaitQuery();
+        return Optional.ofNullable(users.get(id));
+    }
+
+    private List<User> findAllById(Iterable<?> ids) throws InterruptedException {
+        awaitQuery();
+        return StreamSupport.stream(ids.spliterator(), false)
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private void awaitQuery() throws InterruptedException {
+        if (!queryLatency.isZero()) {
+            Thread.sleep(queryLatency.toMillis());
+        }
+    }
+
+    private static UnsupportedOperationException unsupported(String method) {
+        return new UnsupportedOperationException(
+                "Operation '" + method + "' is not supported in memory");
+    }
+}
@@ -0,0 +1,118 @@
+package com.sample.city.springboot.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sample.city.springboot.component.IncrementalDelivery;
+import com.sample.city.springboot.factory.GraphQlSchemaFactory;
+
+import io.leangen.graphql.annotations.GraphQLQuery;
+import io.leangen.graphql.spqr.spring.annotations.GraphQLApi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.http.HttpHeaders;
+
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time until a client receives the fast fields of an operation with a slow one, as the single JSON
+ * response waiting for the slow field and as the first part of the {@code multipart/mixed} response
+ * of {@link IncrementalDelivery}, where the slow field is deferred. Encoding of the parts is
+ * measured, HTTP transport is not.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class IncrementalDeliveryBenchmark {
+
+    private static final URI URL = URI.create("http://localhost/graphql");
+    private static final Map<String, Object> SINGLE_BODY = Map.of("query", "{ fast slow }");
+    private static final Map<String, Object> DEFERRED_BODY =
+            Map.of("query", "{ fast ... @defer { slow } }");
+
+    private static Duration slowLatency;
+
+    @Param({"20"})
+    public long slowLatencyMillis;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private AnnotationConfigApplicationContext context;
+    private WebGraphQlHandler graphQlHandler;
+    private IncrementalDelivery incrementalDelivery;
+
+    @Setup
+    public void setUp() {
+        slowLatency = Duration.ofMillis(slowLatencyMillis);
+        context = DemoGraphQl.context(SlowApi.class);
+        graphQlHandler =
+                WebGraphQlHandler.builder(DemoGraphQl.service(new GraphQlSchemaFactory(context)))
+                        .build();
+        incrementalDelivery = new IncrementalDelivery(graphQlHandler, objectMapper);
+        if (!single().contains("\"slow\":[\"slow\"]")
+                || !firstPart().contains("\"hasNext\":true")) {
+            throw new IllegalStateException("Unexpected responses of the slow operation");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String single() {
+        try {
+            return objectMapper.writeValueAsString(
+                    graphQlHandler.handleRequest(request(SINGLE_BODY)).block().toMap());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** the first part follows the leading delimiter */
+    @Benchmark
+    public String firstPart() {
+        return incrementalDelivery.execute(request(DEFERRED_BODY)).elementAt(1).block();
+    }
+
+    private static WebGraphQlRequest request(Map<String, Object> body) {
+        return new WebGraphQlRequest(
+                URL, new HttpHeaders(), null, null, Map.of(), body, "1", Locale.ENGLISH);
+    }
+
+    /** Resolvers of a fast field and a field waiting for a slow downstream */
+    @GraphQLApi
+    public static class SlowApi {
+
+        @GraphQLQuery(name = "fast")
+        public String fast() {
+            return "fast";
+        }
+
+        @GraphQLQuery(name = "slow")
+        public Mono<String> slow() {
+            return Mono.delay(slowLatency).thenReturn("slow");
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.sample.city.springboot.benchmark;
+
+import com.sample.city.springboot.factory.GeneratedMethodInvoker;
+
+import io.leangen.geantyref.GenericTypeReflector;
+import io.leangen.graphql.metadata.execution.Executable;
+import io.leangen.graphql.metadata.execution.FixedMethodInvoker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/** Invocation of resolvers of various arities by SPQR reflective and generated invokers */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MethodInvokerBenchmark {
+
+    @Param({"0", "1", "2", "4", "6"})
+    public int arity;
+
+    @Param({"reflective", "generated"})
+    public String invoker;
+
+    private Executable<Method> executable;
+    private Object[] args;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        final var target = new Resolvers();
+        final var parameterTypes = new Class<?>[arity];
+        Arrays.fill(parameterTypes, int.class);
+        final var method = Resolvers.class.getMethod("arity" + arity, parameterTypes);
+        final var enclosingType = GenericTypeReflector.annotate(Resolvers.class);
+        executable =
+                invoker.equals("generated")
+                        ? new GeneratedMethodInvoker(() -> target, method, enclosingType)
+                        : new FixedMethodInvoker(() -> target, method, enclosingType);
+        args = IntStream.range(0, arity).boxed().toArray();
+    }
+
+    @Benchmark
+    public Object execute() throws ReflectiveOperationException {
+        return executable.execute(null, args);
+    }
+
+    /** Cheap resolvers, such as {@code getSquare}, where invocation overhead dominates */
+    public static class Resolvers {
+
+        public int arity0() {
+            return 0;
+        }
+
+        public int arity1(int a) {
+            return a * a;
+        }
+
+        public int arity2(int a, int b) {
+            return a + b;
+        }
+
+        public int arity4(int a, int b, int c, int d) {
+            return a + b + c + d;
+        }
+
+        public int arity6(int a, int b, int c, int d, int e, int f) {
+            return a + b + c + d + e + f;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.sample.city.springboot.benchmark;
+
+import com.sample.city.springboot.configuration.UserProperties;
+import com.sample.city.springboot.model.User;
+import com.sample.city.springboot.repository.ReactiveUserRepository;
+import com.sample.city.springboot.repository.UserRepository;
+import com.sample.city.springboot.service.ReactiveUserService;
+import com.sample.city.springboot.service.UserService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution of a user save while other callers keep saving, on the blocking path
+ * offloaded to the bounded elastic scheduler and on the reactive one. Once the callers outnumber
+ * the threads of the scheduler, blocking saves queue for them and p99 grows to several save
+ * latencies, while reactive saves hold no thread while the repository responds and stay at one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReactiveUserServiceBenchmark {
+
+    @Param({"false", "true"})
+    public boolean reactive;
+
+    /** callers saving concurrently, including the measured one */
+    @Param({"1", "16", "64", "256"})
+    public int threads;
+
+    @Param({"20"})
+    public long saveLatencyMillis;
+
+    private AnnotationConfigApplicationContext context;
+    private ReactiveUserService service;
+    private ExecutorService callers;
+    private volatile boolean running;
+
+    @Setup
+    public void setUp() {
+        LoggingSystem.get(ReactiveUserServiceBenchmark.class.getClassLoader())
+                .setLogLevel(LoggingSystem.ROOT_LOGGER_NAME, LogLevel.WARN);
+        final var repositories =
+                new InMemoryUserRepositories(
+                        List.of(), Duration.ZERO, Duration.ofMillis(saveLatencyMillis));
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(UserRepository.class, repositories::userRepository);
+        context.registerBean(ReactiveUserRepository.class, repositories::reactiveUserRepository);
+        context.register(UserProperties.class, UserService.class, ReactiveUserService.class);
+        context.refresh();
+        context.getBean(UserProperties.class).getPersistence().setReactive(reactive);
+        service = context.getBean(ReactiveUserService.class);
+        running = true;
+        callers = Executors.newFixedThreadPool(Math.max(1, threads - 1));
+        for (int i = 1; i < threads; i++) {
+            final var id = i;
+            callers.execute(
+                    () -> {
+                        while (running) {
+                            service.saveUser(new User(id, "user" + id, null)).block();
+                        }
+                    });
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        running = false;
+        callers.shutdown();
+        callers.awaitTermination(10, TimeUnit.SECONDS);
+        context.close();
+    }
+
+    @Benchmark
+    public User save() {
+        return service.saveUser(new User(0, "user0", null)).block();
+    }
+}
@@ -0,0 +1,90 @@
+package com.sample.city.springboot.benchmark;
+
+import com.sample.city.springboot.component.CachingRepositoryPostProcessor;
+import com.sample.city.springboot.component.NearCache;
+import com.sample.city.springboot.model.User;
+import com.sample.city.springboot.repository.UserRepository;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Reads of users by id from the in-memory repository, directly and through a {@link NearCache}
+ * large enough to hold all users, with no latency and with the latency of a round trip to a nearby
+ * database. The cache is filled in setup and ids are drawn uniformly, so it measures the steady
+ * state of a warm cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RepositoryCacheBenchmark {
+
+    private static final int USERS = 10_000;
+    private static final int BATCH = 10;
+
+    @Param({"false", "true"})
+    public boolean cached;
+
+    @Param({"0", "1"})
+    public long queryLatencyMillis;
+
+    private UserRepository repository;
+
+    @Setup
+    public void setUp() {
+        repository =
+                new InMemoryUserRepositories(
+                                LongStream.range(0, USERS)
+                                        .mapToObj(
+                                                id ->
+                                                        new User(
+                                                                id,
+                                                                "user" + id,
+                                                                List.of(
+                                                                        (id + 1) % USERS,
+                                                                        (id + 2) % USERS,
+                                                                        (id + 3) % USERS)))
+                                        .toList(),
+                                Duration.ofMillis(queryLatencyMillis))
+                        .userRepository();
+        if (cached) {
+            final var cache =
+                    new NearCache<Long, User>(
+                            "users", 64L * 1024 * 1024, Duration.ofSeconds(30), user -> 200);
+            repository =
+                    CachingRepositoryPostProcessor.decorate(
+                            UserRepository.class, repository, cache, User::id);
+            repository.findAllById(LongStream.range(0, USERS).boxed().toList());
+        }
+    }
+
+    @Benchmark
+    public User findById() {
+        return repository.findById(ThreadLocalRandom.current().nextLong(USERS)).orElseThrow();
+    }
+
+    @Benchmark
+    public List<User> findAllById() {
+        final var random = ThreadLocalRandom.current();
+        return repository.findAllById(
+                LongStream.generate(() -> random.nextLong(USERS)).limit(BATCH).boxed().toList());
+    }
+}
@@ -0,0 +1,135 @@
+package com.sample.city.springboot.benchmark;
+
+import com.sample.city.springboot.component.RequestHeaderMvcInjector;
+import com.sample.city.springboot.component.RequestHeaders;
+import com.sample.city.springboot.factory.GraphQlSchemaFactory;
+
+import io.leangen.graphql.annotations.GraphQLQuery;
+import io.leangen.graphql.spqr.spring.annotations.GraphQLApi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.graphql.ExecutionGraphQlResponse;
+import org.springframework.graphql.execution.DefaultExecutionGraphQlService;
+import org.springframework.graphql.support.DefaultExecutionGraphQlRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Injection of request headers into resolver arguments by {@link RequestHeaderMvcInjector}, on its
+ * own and end-to-end compared to the same field without the header argument. Headers are read
+ * either from {@link RequestHeaders} captured in the GraphQL context, as the web transports do, or
+ * from the request bound to the benchmark thread, as Spring MVC binds it to the request thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RequestHeaderInjectionBenchmark {
+
+    private static final String HEADER = "X-Tenant";
+
+    private AnnotationConfigApplicationContext context;
+    private DefaultExecutionGraphQlService service;
+    private RequestHeaders requestHeaders;
+    private HttpHeaders headers;
+    private int headerIndex;
+
+    @Setup
+    public void setUp() {
+        final var request = new MockHttpServletRequest();
+        request.addHeader(HEADER, "tenant");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        context = DemoGraphQl.context(HeaderApi.class);
+        requestHeaders = new RequestHeaders();
+        service =
+                DemoGraphQl.service(
+                        new GraphQlSchemaFactory(
+                                context,
+                                GraphQlSchemaFactory.Options.defaults()
+                                        .withRequestHeaders(requestHeaders)));
+        headers = new HttpHeaders();
+        headers.add(HEADER, "tenant");
+        headerIndex = requestHeaders.index(HEADER);
+        if (!"tenant".equals(headerInjected().<String>field("tenant").getValue())
+                || !"tenant".equals(headerCaptured().<String>field("tenant").getValue())) {
+            throw new IllegalStateException("Header was not injected");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    /** baseline of reading the header from the request bound to the thread by Spring MVC */
+    @Benchmark
+    public String currentHeader() {
+        return ((ServletRequestAttributes) RequestContextHolder.currentRequestAttributes())
+                .getRequest()
+                .getHeader(HEADER);
+    }
+
+    @Benchmark
+    public String capturedHeader() {
+        return requestHeaders.capture(headers).get(headerIndex);
+    }
+
+    @Benchmark
+    public ExecutionGraphQlResponse headerCaptured() {
+        final var request =
+                new DefaultExecutionGraphQlRequest(
+                        "{ tenant }", null, Map.of(), Map.of(), "1", Locale.ENGLISH);
+        final var captured = requestHeaders.capture(headers);
+        request.configureExecutionInput(
+                (executionInput, builder) -> {
+                    executionInput.getGraphQLContext().put(RequestHeaders.CONTEXT_KEY, captured);
+                    return executionInput;
+                });
+        return service.execute(request).block();
+    }
+
+    @Benchmark
+    public ExecutionGraphQlResponse headerInjected() {
+        return DemoGraphQl.execute(service, "{ tenant }");
+    }
+
+    @Benchmark
+    public ExecutionGraphQlResponse noHeader() {
+        return DemoGraphQl.execute(service, "{ defaultTenant }");
+    }
+
+    @GraphQLApi
+    public static class HeaderApi {
+
+        @GraphQLQuery(name = "tenant")
+        public String tenant(@RequestHeader(HEADER) String tenant) {
+            return tenant;
+        }
+
+        @GraphQLQuery(name = "defaultTenant")
+        public String defaultTenant() {
+            return "tenant";
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.sample.city.springboot.benchmark;
+
+import com.sample.city.springboot.component.CachingDocumentProvider;
+import com.sample.city.springboot.component.ResolverLatencyInstrumentation;
+import com.sample.city.springboot.factory.GraphQlSchemaFactory;
+import com.sample.city.springboot.factory.GraphQlSourceFactory;
+
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+
+import io.leangen.graphql.annotations.GraphQLArgument;
+import io.leangen.graphql.annotations.GraphQLQuery;
+import io.leangen.graphql.spqr.spring.annotations.GraphQLApi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Execution of an operation fetching {@link #FIELDS} resolver fields, with and without {@link
+ * ResolverLatencyInstrumentation}, to measure the recording overhead per field, i.e. the difference
+ * of the scores divided by {@link #FIELDS}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResolverLatencyBenchmark {
+
+    public static final int FIELDS = 50;
+
+    private static final String QUERY =
+            IntStream.range(0, FIELDS)
+                    .mapToObj(i -> "f" + i + ": value(input: " + i + ")")
+                    .collect(Collectors.joining(" ", "query Values { ", " }"));
+
+    @Param({"false", "true"})
+    public boolean instrumented;
+
+    private AnnotationConfigApplicationContext context;
+    private GraphQL graphQL;
+
+    @Setup
+    public void setUp() {
+        // unconfigured logback logs debug messages of every execution
+        LoggingSystem.get(getClass().getClassLoader())
+                .setLogLevel(LoggingSystem.ROOT_LOGGER_NAME, LogLevel.WARN);
+        context = new AnnotationConfigApplicationContext(BenchmarkApi.class);
+        final var schemaFactory = new GraphQlSchemaFactory(context);
+        graphQL =
+                new GraphQlSourceFactory(
+                                schemaFactory::getObject,
+                                new CachingDocumentProvider(1_000_000, false),
+                                instrumented
+                                        ? List.of(new ResolverLatencyInstrumentation(64, 1000))
+                                        : List.of())
+                        .getObject()
+                        .graphQl();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ExecutionResult execute() {
+        return graphQL.execute(QUERY);
+    }
+
+    @GraphQLApi
+    public static class BenchmarkApi {
+
+        @GraphQLQuery(name = "value")
+        public int value(@GraphQLArgument(name = "input") int input) {
+            return input;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.sample.city.springboot.benchmark;
+
+import com.sample.city.springboot.annotation.GraphQLTimeout;
+import com.sample.city.springboot.component.ResolverTimeoutInterceptor;
+import com.sample.city.springboot.factory.GraphQlSchemaFactory;
+
+import io.leangen.graphql.annotations.GraphQLQuery;
+import io.leangen.graphql.spqr.spring.annotations.GraphQLApi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.graphql.ExecutionGraphQlResponse;
+import org.springframework.graphql.execution.DefaultExecutionGraphQlService;
+
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latency distribution of a query which resolver is slow once in fifty invocations, like a read
+ * served by a stalled replica: unbounded, bounded by a time limit failing the slow invocations, and
+ * hedged by a second invocation started once the first one is slow. Unbounded, p99 is the slow
+ * latency; the time limit caps it at the limit at the cost of errors, and hedging cuts it to the
+ * hedge delay without them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@Fork(1)
+@Threads(40)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ResolverTimeoutBenchmark {
+
+    private static final long TIMEOUT_MS = 150;
+    private static final long HEDGE_AFTER_MS = 30;
+
+    @Param({"tail", "bounded", "hedged"})
+    public String query;
+
+    private AnnotationConfigApplicationContext context;
+    private DefaultExecutionGraphQlService service;
+    private String document;
+
+    @Setup
+    public void setUp() {
+        context = DemoGraphQl.context(TailApi.class);
+        service =
+                DemoGraphQl.service(
+                        new GraphQlSchemaFactory(
+                                context,
+                                GraphQlSchemaFactory.Options.defaults()
+                                        .withResolverTimeouts(
+                                                new ResolverTimeoutInterceptor(null, Map.of()))));
+        document = "{ %s }".formatted(query);
+        if (!execute().getErrors().isEmpty()) {
+            throw new IllegalStateException("Query " + query + " failed");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ExecutionGraphQlResponse execute() {
+        return DemoGraphQl.execute(service, document);
+    }
+
+    /** Resolvers of a downstream which every fiftieth invocation is slow */
+    @GraphQLApi
+    public static class TailApi {
+
+        private static final int SLOW_EVERY = 50;
+        private static final Duration FAST_LATENCY = Duration.ofMillis(5);
+        private static final Duration SLOW_LATENCY = Duration.ofSeconds(1);
+
+        private final AtomicInteger invocations = new AtomicInteger();
+
+        @GraphQLQuery(name = "tail")
+        public Mono<String> tail() {
+            return downstream();
+        }
+
+        @GraphQLQuery(name = "bounded")
+        @GraphQLTimeout(TIMEOUT_MS)
+        public Mono<String> bounded() {
+            return downstream();
+        }
+
+        @GraphQLQuery(name = "hedged")
+        @GraphQLTimeout(value = TIMEOUT_MS, hedgeAfter = HEDGE_AFTER_MS)
+        public Mono<String> hedged() {
+            return downstream();
+        }
+
+        private Mono<String> downstream() {
+            final var slow = invocations.incrementAndGet() % SLOW_EVERY == 0;
+            return Mono.delay(slow ? SLOW_LATENCY : FAST_LATENCY).map(tick -> "done");
+        }
+    }
+}
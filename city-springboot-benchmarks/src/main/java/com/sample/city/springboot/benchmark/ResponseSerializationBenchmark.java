@@ -0,0 +1,155 @@
+package com.sample.city.springboot.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sample.city.springboot.component.StreamingGraphQlHttpHandler;
+import com.sample.city.springboot.factory.GraphQlSchemaFactory;
+
+import io.leangen.graphql.annotations.GraphQLQuery;
+import io.leangen.graphql.spqr.spring.annotations.GraphQLApi;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.graphql.server.webmvc.GraphQlHttpHandler;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.function.HandlerFunction;
+import org.springframework.web.servlet.function.ServerRequest;
+import org.springframework.web.servlet.function.ServerResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Serialization of a list query response on the Spring MVC route, by the message converter of
+ * Spring for GraphQL and by {@link StreamingGraphQlHttpHandler}. Includes reading the request and
+ * executing the operation; the response is written to a stream discarding it. Run with {@code -prof
+ * gc} for the allocation rate, sample time gives the p99 latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResponseSerializationBenchmark {
+
+    @Param({"converter", "streaming"})
+    public String handler;
+
+    @Param({"10", "10000"})
+    public int items;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<HttpMessageConverter<?>> messageConverters =
+            List.of(new MappingJackson2HttpMessageConverter(objectMapper));
+    private final ServerResponse.Context responseContext = () -> messageConverters;
+    private AnnotationConfigApplicationContext context;
+    private HandlerFunction<ServerResponse> handlerFunction;
+    private byte[] body;
+
+    @Setup
+    public void setUp() throws Exception {
+        context = DemoGraphQl.context(ItemApi.class);
+        final var graphQlHandler =
+                WebGraphQlHandler.builder(DemoGraphQl.service(new GraphQlSchemaFactory(context)))
+                        .build();
+        handlerFunction =
+                handler.equals("streaming")
+                        ? new StreamingGraphQlHttpHandler(
+                                        graphQlHandler, objectMapper, 16 * 1024, 64)
+                                ::handleRequest
+                        : new GraphQlHttpHandler(graphQlHandler, messageConverters.get(0))
+                                ::handleRequest;
+        body =
+                ("{\"query\":\"{ items(count: " + items + ") { id name } }\"}")
+                        .getBytes(StandardCharsets.UTF_8);
+        final var written = execute();
+        if (written < items * 20L || written > items * 40L + 100) {
+            throw new IllegalStateException("Unexpected response of " + written + " bytes");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public long execute() throws Exception {
+        final var servletRequest = new MockHttpServletRequest("POST", "/graphql");
+        servletRequest.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        servletRequest.addHeader("Accept", MediaType.APPLICATION_JSON_VALUE);
+        servletRequest.setContent(body);
+        final var servletResponse = new DiscardingServletResponse();
+        handlerFunction
+                .handle(ServerRequest.create(servletRequest, messageConverters))
+                .writeTo(servletRequest, servletResponse, responseContext);
+        return servletResponse.output.written;
+    }
+
+    /** Item of a large list */
+    public record Item(int id, String name) {}
+
+    @GraphQLApi
+    public static class ItemApi {
+
+        @GraphQLQuery(name = "items")
+        public List<Item> items(int count) {
+            return IntStream.range(0, count).mapToObj(id -> new Item(id, "item" + id)).toList();
+        }
+    }
+
+    /** Response counting the bytes written instead of keeping them */
+    private static final class DiscardingServletResponse extends MockHttpServletResponse {
+
+        private final CountingOutputStream output = new CountingOutputStream();
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return output;
+        }
+    }
+
+    private static final class CountingOutputStream extends ServletOutputStream {
+
+        private long written;
+
+        @Override
+        public void write(int b) {
+            written++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            written += length;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {}
+    }
+}
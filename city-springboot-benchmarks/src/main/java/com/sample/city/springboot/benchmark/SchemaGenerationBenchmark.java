@@ -0,0 +1,83 @@
+package com.sample.city.springboot.benchmark;
+
+import com.sample.city.springboot.controller.GraphQlDemoServerController;
+import com.sample.city.springboot.controller.UserController;
+import com.sample.city.springboot.factory.GraphQlSchemaFactory;
+import com.sample.city.springboot.factory.SchemaSnapshotGenerator;
+
+import graphql.schema.GraphQLSchema;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generation of the demo application schema by {@link GraphQlSchemaFactory}, at startup and on
+ * every refresh, either by SPQR or from a build-time schema snapshot
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SchemaGenerationBenchmark {
+
+    @Param({"spqr", "snapshot"})
+    public String source;
+
+    private AnnotationConfigApplicationContext context;
+    private Path snapshotFile;
+    private GraphQlSchemaFactory schemaFactory;
+
+    @Setup
+    public void setUp() throws IOException {
+        context = DemoGraphQl.context();
+        snapshotFile = Files.createTempFile("schema-snapshot", ".json");
+        try (var outputStream = Files.newOutputStream(snapshotFile)) {
+            new SchemaSnapshotGenerator()
+                    .generate(List.of(GraphQlDemoServerController.class, UserController.class))
+                    .write(outputStream);
+        }
+        schemaFactory =
+                new GraphQlSchemaFactory(
+                        context,
+                        GraphQlSchemaFactory.Options.defaults()
+                                .withSnapshotLocation(
+                                        source.equals("snapshot")
+                                                ? new FileSystemResource(snapshotFile)
+                                                : null));
+        schemaFactory.getObject();
+        if (schemaFactory.statistics().snapshot() != source.equals("snapshot")) {
+            throw new IllegalStateException("Schema was not built from " + source);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        Files.deleteIfExists(snapshotFile);
+    }
+
+    @Benchmark
+    public GraphQLSchema refresh() {
+        return schemaFactory.refresh();
+    }
+}
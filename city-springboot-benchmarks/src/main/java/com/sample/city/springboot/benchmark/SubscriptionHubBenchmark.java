@@ -0,0 +1,70 @@
+package com.sample.city.springboot.benchmark;
+
+import com.sample.city.springboot.component.SubscriptionHub;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fan-out of an event by {@link SubscriptionHub} from the shared upstream of a topic to all of its
+ * subscribers, i.e. the time to publish one event to {@link #subscribers} subscribers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SubscriptionHubBenchmark {
+
+    @Param({"1000", "50000"})
+    public int subscribers;
+
+    private final LongAdder received = new LongAdder();
+    private final List<Disposable> subscriptions = new ArrayList<>();
+    private Sinks.Many<Integer> source;
+    private SubscriptionHub hub;
+
+    @Setup
+    public void setUp() {
+        hub = new SubscriptionHub(16, SubscriptionHub.Overflow.DROP_OLDEST);
+        source = Sinks.many().multicast().directBestEffort();
+        for (int i = 0; i < subscribers; i++) {
+            subscriptions.add(
+                    hub.subscribe("events", source::asFlux)
+                            .subscribe(event -> received.increment()));
+        }
+        if (hub.statistics().subscribers() != subscribers) {
+            throw new IllegalStateException("Subscribers were not registered");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        subscriptions.forEach(Disposable::dispose);
+        subscriptions.clear();
+    }
+
+    @Benchmark
+    public Sinks.EmitResult publish() {
+        return source.tryEmitNext(1);
+    }
+}
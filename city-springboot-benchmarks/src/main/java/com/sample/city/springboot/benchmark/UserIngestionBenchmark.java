@@ -0,0 +1,96 @@
+package com.sample.city.springboot.benchmark;
+
+import com.sample.city.springboot.configuration.UserProperties;
+import com.sample.city.springboot.model.User;
+import com.sample.city.springboot.service.UserIngestionService;
+import com.sample.city.springboot.service.UserIngestionService.IngestionProgress;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link UserIngestionService} inserting users into the in-memory stand-in of Mongo,
+ * each bulk write completing after the latency of a round trip to a nearby database. Batches of one
+ * user cost a round trip per user like saving them one at a time does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UserIngestionBenchmark {
+
+    private static final int USERS = 2000;
+
+    @Param({"1", "100", "1000"})
+    public int batchSize;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    @Param({"1"})
+    public long queryLatencyMillis;
+
+    private AnnotationConfigApplicationContext context;
+    private UserIngestionService userIngestionService;
+    private List<User> users;
+
+    @Setup
+    public void setUp() {
+        // unconfigured logback logs debug messages of every batch
+        LoggingSystem.get(UserIngestionBenchmark.class.getClassLoader())
+                .setLogLevel(LoggingSystem.ROOT_LOGGER_NAME, LogLevel.WARN);
+        final var repositories =
+                new InMemoryUserRepositories(List.of(), Duration.ofMillis(queryLatencyMillis));
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(ReactiveMongoOperations.class, repositories::reactiveMongoOperations);
+        context.register(UserProperties.class, UserIngestionService.class);
+        context.refresh();
+        final var ingestion = context.getBean(UserProperties.class).getIngestion();
+        ingestion.setBatchSize(batchSize);
+        ingestion.setParallelism(parallelism);
+        userIngestionService = context.getBean(UserIngestionService.class);
+        users =
+                Flux.range(0, USERS)
+                        .map(id -> new User(id, "user" + id, List.of(id + 1L, id + 2L)))
+                        .collectList()
+                        .block();
+        final var progress = ingest();
+        if (progress.inserted() != USERS) {
+            throw new IllegalStateException("Unexpected progress " + progress);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(USERS)
+    public IngestionProgress ingest() {
+        return userIngestionService.ingest(Flux.fromIterable(users)).blockLast();
+    }
+}
@@ -5,9 +5,12 @@ import org.slf4j.helpers.MessageFormatter;
 /** Custom exception class for JEDI application */
 public class CityException extends RuntimeException {
 
+    private final boolean expected;
+
     /** Default constructor */
     public CityException() {
         super();
+        this.expected = false;
     }
 
     /**
@@ -17,6 +20,7 @@ public class CityException extends RuntimeException {
      */
     public CityException(String message) {
         super(message);
+        this.expected = false;
     }
 
     /**
@@ -37,6 +41,7 @@ public class CityException extends RuntimeException {
      */
     public CityException(String message, Throwable cause) {
         super(message, cause);
+        this.expected = false;
     }
 
     /**
@@ -46,5 +51,40 @@ public class CityException extends RuntimeException {
      */
     public CityException(Throwable cause) {
         super(cause);
+        this.expected = false;
+    }
+
+    /**
+     * Constructor of exception without stack trace and suppressed exceptions
+     *
+     * @param message exception message
+     * @param cause exception cause
+     * @param expected whether exception is an expected business error
+     */
+    protected CityException(String message, Throwable cause, boolean expected) {
+        super(message, cause, !expected, !expected);
+        this.expected = expected;
+    }
+
+    /**
+     * Creates exception of an expected business error, e.g. entity not found, which is reported to
+     * the client and needs no stack trace. Stack trace is not captured, making the exception cheap
+     * to create under error storms. Exceptions of fixed messages are immutable and may be kept in
+     * constants.
+     *
+     * @param messagePattern message pattern in slf4j format
+     * @param args arguments to be used to render string from pattern
+     * @return exception without stack trace
+     */
+    public static CityException expected(String messagePattern, Object... args) {
+        return new CityException(
+                MessageFormatter.basicArrayFormat(messagePattern, args), null, true);
+    }
+
+    /**
+     * @return {@code true} when exception is an expected business error without stack trace
+     */
+    public boolean isExpected() {
+        return expected;
     }
 }
@@ -0,0 +1,40 @@
+package com.sample.city.springboot.exception;
+
+import java.time.Duration;
+
+/**
+ * Resolver did not complete within the time limit of its field. Timeouts are expected under
+ * degraded downstreams, so the exception carries no stack trace.
+ */
+public class ResolverTimeoutException extends CityException {
+
+    private final String operation;
+    private final Duration timeout;
+
+    /**
+     * @param operation timed out operation, identified as {@code Type.field}
+     * @param timeout time limit of the operation
+     */
+    public ResolverTimeoutException(String operation, Duration timeout) {
+        super(
+                "Resolver of '" + operation + "' timed out after " + timeout.toMillis() + " ms",
+                null,
+                true);
+        this.operation = operation;
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return timed out operation, identified as {@code Type.field}
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return time limit of the operation
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+}
@@ -0,0 +1,169 @@
+package com.sample.city.springboot.component;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.CrudRepository;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Decorates repository beans of the given type with a read-through {@link NearCache}, if the cache
+ * bean exists. Reads by id are served from the cache, documents saved or inserted through the
+ * repository are written through to it, and deleted ones are invalidated before and after the
+ * delete. Other queries go to the repository, and so do writes by other means, e.g. through {@code
+ * MongoTemplate}, which have to invalidate the cache themselves.
+ *
+ * @param <T> document type
+ * @param <ID> document id type
+ * @param <R> repository type
+ */
+@Slf4j
+public class CachingRepositoryPostProcessor<T, ID, R extends CrudRepository<T, ID>>
+        implements BeanPostProcessor {
+
+    private final Class<R> repositoryType;
+    private final ObjectProvider<NearCache<ID, T>> nearCache;
+    private final Function<T, ID> idOf;
+
+    /**
+     * Creates post processor of repositories
+     *
+     * @param repositoryType type of the decorated repositories
+     * @param nearCache provider of the cache, repositories are not decorated if it is not available
+     * @param idOf id of a document
+     */
+    public CachingRepositoryPostProcessor(
+            Class<R> repositoryType,
+            ObjectProvider<NearCache<ID, T>> nearCache,
+            Function<T, ID> idOf) {
+        this.repositoryType = repositoryType;
+        this.nearCache = nearCache;
+        this.idOf = idOf;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!repositoryType.isInstance(bean)) {
+            return bean;
+        }
+        final var cache = nearCache.getIfAvailable();
+        if (cache == null) {
+            return bean;
+        }
+        log.info("Reads of '{}' by id are cached by '{}'", beanName, cache.getName());
+        return decorate(repositoryType, repositoryType.cast(bean), cache, idOf);
+    }
+
+    /**
+     * Decorates repository with read-through cache
+     *
+     * @param repositoryType type of the repository
+     * @param repository decorated repository
+     * @param nearCache cache of the documents
+     * @param idOf id of a document
+     * @return repository caching reads by id
+     */
+    public static <T, ID, R extends CrudRepository<T, ID>> R decorate(
+            Class<R> repositoryType,
+            R repository,
+            NearCache<ID, T> nearCache,
+            Function<T, ID> idOf) {
+        return repositoryType.cast(
+                Proxy.newProxyInstance(
+                        repositoryType.getClassLoader(),
+                        new Class<?>[] {repositoryType},
+                        new CachingInvocationHandler<>(repository, nearCache, idOf)));
+    }
+
+    /** Serves reads by id from the cache and keeps it in sync with writes of the repository */
+    @SuppressWarnings("unchecked")
+    private record CachingInvocationHandler<T, ID>(
+            CrudRepository<T, ID> repository, NearCache<ID, T> nearCache, Function<T, ID> idOf)
+            implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            return switch (method.getName()) {
+                case "findById" -> Optional.ofNullable(
+                        nearCache.get((ID) args[0], id -> repository.findById(id).orElse(null)));
+                case "findAllById" -> new ArrayList<>(
+                        nearCache.getAll((Iterable<ID>) args[0], this::findAllById).values());
+                case "save", "saveAll", "insert" -> {
+                    final var saved = delegate(method, args);
+                    if (saved instanceof Iterable<?> documents) {
+                        documents.forEach(document -> put((T) document));
+                    } else if (saved != null) {
+                        put((T) saved);
+                    }
+                    yield saved;
+                }
+                case "deleteById" -> delete(method, args, () -> nearCache.invalidate((ID) args[0]));
+                case "delete" -> delete(
+                        method, args, () -> nearCache.invalidate(idOf.apply((T) args[0])));
+                case "deleteAllById" -> delete(
+                        method,
+                        args,
+                        () -> ((Iterable<ID>) args[0]).forEach(nearCache::invalidate));
+                case "deleteAll" -> delete(
+                        method,
+                        args,
+                        () -> {
+                            if (args == null) {
+                                nearCache.invalidateAll();
+                            } else {
+                                ((Iterable<T>) args[0])
+                                        .forEach(
+                                                document ->
+                                                        nearCache.invalidate(idOf.apply(document)));
+                            }
+                        });
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                case "toString" -> "Caching" + repository;
+                default -> delegate(method, args);
+            };
+        }
+
+        private Map<ID, T> findAllById(Set<? extends ID> ids) {
+            final var documents = new HashMap<ID, T>();
+            repository
+                    .findAllById((Iterable<ID>) ids)
+                    .forEach(document -> documents.put(idOf.apply(document), document));
+            return documents;
+        }
+
+        /** invalidates after the delete too, a read meanwhile may have cached the document again */
+        private Object delete(Method method, Object[] args, Runnable invalidation)
+                throws Throwable {
+            invalidation.run();
+            try {
+                return delegate(method, args);
+            } finally {
+                invalidation.run();
+            }
+        }
+
+        private void put(T document) {
+            nearCache.put(idOf.apply(document), document);
+        }
+
+        private Object delegate(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(repository, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
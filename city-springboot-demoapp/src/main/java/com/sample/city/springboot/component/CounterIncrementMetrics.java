@@ -0,0 +1,58 @@
+package com.sample.city.springboot.component;
+
+import com.sample.city.springboot.service.CounterIncrementEngine;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer binder publishing flush statistics of the {@link CounterIncrementEngine}. Mean batch
+ * size is {@code counter.increment.flushed} divided by the count of {@code
+ * counter.increment.flush}.
+ */
+public class CounterIncrementMetrics implements MeterBinder {
+
+    private final CounterIncrementEngine incrementEngine;
+
+    public CounterIncrementMetrics(CounterIncrementEngine incrementEngine) {
+        this.incrementEngine = incrementEngine;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("counter.increment.pending", incrementEngine, e -> e.statistics().pending())
+                .description("Buffered counter increments not written yet")
+                .register(registry);
+        FunctionTimer.builder(
+                        "counter.increment.flush",
+                        incrementEngine,
+                        e -> e.statistics().flushes(),
+                        e -> e.statistics().totalFlushTimeMs(),
+                        TimeUnit.MILLISECONDS)
+                .description("Batched counter writes and their accumulated latency")
+                .register(registry);
+        FunctionCounter.builder(
+                        "counter.increment.flushed",
+                        incrementEngine,
+                        e -> e.statistics().flushedIncrements())
+                .description("Counter increments written by batched writes")
+                .register(registry);
+        FunctionCounter.builder(
+                        "counter.increment.failed",
+                        incrementEngine,
+                        e -> e.statistics().failedIncrements())
+                .description("Counter increments dropped as their counter does not exist")
+                .register(registry);
+        Gauge.builder(
+                        "counter.increment.batch.size.last",
+                        incrementEngine,
+                        e -> e.statistics().lastBatchSize())
+                .description("Number of increments written by the latest batched write")
+                .register(registry);
+    }
+}
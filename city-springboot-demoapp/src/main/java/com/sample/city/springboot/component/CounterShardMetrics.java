@@ -0,0 +1,40 @@
+package com.sample.city.springboot.component;
+
+import com.sample.city.springboot.service.CounterShards;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Micrometer binder publishing statistics of the {@link CounterShards}. Ratio of contended
+ * increments is {@code counter.shard.contended} divided by {@code counter.shard.increments}.
+ */
+public class CounterShardMetrics implements MeterBinder {
+
+    private final CounterShards counterShards;
+
+    public CounterShardMetrics(CounterShards counterShards) {
+        this.counterShards = counterShards;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("counter.shard.shards", counterShards, s -> s.statistics().shards())
+                .description("Shards of the counters incremented by this node")
+                .register(registry);
+        FunctionCounter.builder(
+                        "counter.shard.increments", counterShards, s -> s.statistics().increments())
+                .description("Increments of sharded counters")
+                .register(registry);
+        FunctionCounter.builder(
+                        "counter.shard.contended", counterShards, s -> s.statistics().contended())
+                .description("Increments finding another increment of the same shard in flight")
+                .register(registry);
+        FunctionCounter.builder(
+                        "counter.shard.growths", counterShards, s -> s.statistics().growths())
+                .description("Times the shards of a counter were doubled")
+                .register(registry);
+    }
+}
@@ -0,0 +1,156 @@
+package com.sample.city.springboot.component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sample.city.springboot.exception.CityException;
+
+import javax.annotation.Nullable;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * On-heap cache of documents in front of their repository. Entries expire after the time to live
+ * since they were loaded or written, which bounds how stale a cached document can get when it is
+ * changed by another node or by a write path not going through this cache. Size is bounded by the
+ * estimated heap footprint of the entries, evicting by Caffeine's W-TinyLFU policy.
+ *
+ * <p>Missing documents are not cached.
+ *
+ * @param <K> document id type
+ * @param <V> document type
+ */
+public class NearCache<K, V> {
+
+    /** Estimated footprint of a cache entry besides its value, including a boxed key */
+    static final int ENTRY_BYTES = 96;
+
+    private final String name;
+    private final Cache<K, V> cache;
+
+    /**
+     * Creates near-cache
+     *
+     * @param name name of the cache, used in metrics
+     * @param maximumBytes maximum estimated heap footprint of the cached entries
+     * @param timeToLive time after which loaded or written entries expire
+     * @param valueBytes estimates heap footprint of a value
+     */
+    public NearCache(
+            String name, long maximumBytes, Duration timeToLive, ToIntFunction<V> valueBytes) {
+        if (maximumBytes < 1 || timeToLive.isNegative() || timeToLive.isZero()) {
+            throw new CityException(
+                    "Invalid size {} or time to live {} of cache '{}'",
+                    maximumBytes,
+                    timeToLive,
+                    name);
+        }
+        this.name = name;
+        this.cache =
+                Caffeine.newBuilder()
+                        .maximumWeight(maximumBytes)
+                        .weigher((K key, V value) -> ENTRY_BYTES + valueBytes.applyAsInt(value))
+                        .expireAfterWrite(timeToLive)
+                        .recordStats()
+                        .build();
+    }
+
+    /**
+     * @return name of the cache
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns cached document, loading it if absent
+     *
+     * @param key document id
+     * @param loader loads the document, null if it does not exist
+     * @return document or null if it does not exist
+     */
+    @Nullable
+    public V get(K key, Function<K, V> loader) {
+        return cache.get(key, loader);
+    }
+
+    /**
+     * Returns cached documents, loading all absent ones at once
+     *
+     * @param keys document ids
+     * @param loader loads documents of the absent ids, omitting those which do not exist
+     * @return found documents by their id
+     */
+    public Map<K, V> getAll(
+            Iterable<? extends K> keys, Function<Set<? extends K>, Map<K, V>> loader) {
+        return cache.getAll(keys, loader);
+    }
+
+    /**
+     * Caches a written document
+     *
+     * @param key document id
+     * @param value document as written
+     */
+    public void put(K key, V value) {
+        cache.put(key, value);
+    }
+
+    /**
+     * Drops cached document, so that it is loaded again by the next read
+     *
+     * @param key document id
+     */
+    public void invalidate(K key) {
+        cache.invalidate(key);
+    }
+
+    /** Drops all cached documents */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Underlying cache, exposed for metrics
+     *
+     * @return cache of the documents
+     */
+    public Cache<K, V> getCache() {
+        return cache;
+    }
+
+    /**
+     * @return current statistics of the cache
+     */
+    public CacheStatistics statistics() {
+        final var stats = cache.stats();
+        return new CacheStatistics(
+                stats.hitCount(),
+                stats.missCount(),
+                stats.hitRate(),
+                stats.evictionCount(),
+                cache.estimatedSize(),
+                cache.policy().eviction().orElseThrow().weightedSize().orElse(0));
+    }
+
+    /**
+     * Statistics of the near-cache
+     *
+     * @param hits number of reads served from the cache
+     * @param misses number of reads loading from the repository
+     * @param hitRatio ratio of reads served from the cache, 1 if there were no reads
+     * @param evictions number of entries evicted by size
+     * @param size number of cached entries
+     * @param estimatedBytes estimated heap footprint of the cached entries
+     */
+    public record CacheStatistics(
+            long hits,
+            long misses,
+            double hitRatio,
+            long evictions,
+            long size,
+            long estimatedBytes) {}
+}
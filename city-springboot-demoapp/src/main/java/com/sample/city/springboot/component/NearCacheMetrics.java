@@ -0,0 +1,32 @@
+package com.sample.city.springboot.component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.util.List;
+
+/**
+ * Micrometer binder publishing hit/miss, eviction and size metrics of a {@link NearCache}, tagged
+ * with the cache name, and the estimated heap footprint of its entries
+ */
+public class NearCacheMetrics implements MeterBinder {
+
+    private final NearCache<?, ?> nearCache;
+
+    public NearCacheMetrics(NearCache<?, ?> nearCache) {
+        this.nearCache = nearCache;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new CaffeineCacheMetrics<>(nearCache.getCache(), nearCache.getName(), List.of())
+                .bindTo(registry);
+        Gauge.builder("cache.memory", nearCache, c -> c.statistics().estimatedBytes())
+                .tag("cache", nearCache.getName())
+                .baseUnit("bytes")
+                .description("Estimated heap footprint of the cached entries")
+                .register(registry);
+    }
+}
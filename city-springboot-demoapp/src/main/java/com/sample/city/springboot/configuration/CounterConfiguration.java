@@ -0,0 +1,136 @@
+package com.sample.city.springboot.configuration;
+
+import com.sample.city.springboot.component.CachingRepositoryPostProcessor;
+import com.sample.city.springboot.component.CounterIncrementMetrics;
+import com.sample.city.springboot.component.CounterShardMetrics;
+import com.sample.city.springboot.component.NearCache;
+import com.sample.city.springboot.component.NearCacheMetrics;
+import com.sample.city.springboot.model.Counter;
+import com.sample.city.springboot.repository.CounterRepository;
+import com.sample.city.springboot.service.CounterBlockAllocator;
+import com.sample.city.springboot.service.CounterIncrementEngine;
+import com.sample.city.springboot.service.CounterShards;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+/** Configuration of counters */
+@Configuration
+@EnableConfigurationProperties(CounterProperties.class)
+public class CounterConfiguration {
+
+    /**
+     * @return configured instance of {@link CounterIncrementEngine}
+     */
+    @Bean
+    public CounterIncrementEngine counterIncrementEngine(
+            MongoTemplate mongoTemplate, CounterProperties properties) {
+        final var increment = properties.getIncrement();
+        return new CounterIncrementEngine(
+                mongoTemplate,
+                increment.getFlushInterval(),
+                increment.getFlushThreshold(),
+                increment.getFlushThreads());
+    }
+
+    /**
+     * @return configured instance of {@link CounterBlockAllocator}
+     */
+    @Bean
+    public CounterBlockAllocator counterBlockAllocator(
+            MongoTemplate mongoTemplate, CounterProperties properties) {
+        final var block = properties.getBlock();
+        return new CounterBlockAllocator(
+                mongoTemplate,
+                block.getInitialSize(),
+                block.getMinSize(),
+                block.getMaxSize(),
+                block.getTargetRefillInterval());
+    }
+
+    /**
+     * @return configured instance of {@link CounterShards}
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "counter.shard", name = "enabled")
+    public CounterShards counterShards(MongoTemplate mongoTemplate, CounterProperties properties) {
+        final var shard = properties.getShard();
+        return new CounterShards(
+                mongoTemplate,
+                shard.getInitialShards(),
+                shard.getMaxShards(),
+                shard.getContentionThreshold(),
+                shard.getSampleSize());
+    }
+
+    /**
+     * @return configured instance of {@link CounterShardMetrics}
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "counter.shard", name = "enabled")
+    public CounterShardMetrics counterShardMetrics(CounterShards counterShards) {
+        return new CounterShardMetrics(counterShards);
+    }
+
+    /**
+     * @return configured instance of {@link CounterIncrementMetrics}
+     */
+    @Bean
+    public CounterIncrementMetrics counterIncrementMetrics(
+            CounterIncrementEngine counterIncrementEngine) {
+        return new CounterIncrementMetrics(counterIncrementEngine);
+    }
+
+    /**
+     * @return configured instance of {@link NearCache} of counters
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "counter.cache", name = "enabled")
+    public NearCache<String, Counter> counterCache(CounterProperties properties) {
+        final var cache = properties.getCache();
+        return new NearCache<>(
+                "counters",
+                cache.getMaximumBytes(),
+                cache.getMaxStaleness(),
+                CounterConfiguration::estimateBytes);
+    }
+
+    /**
+     * Counter documents are single shards when sharding is enabled, so the near-cache then holds
+     * only sums of shards read by {@link CounterShards}
+     *
+     * @return configured instance of {@link CachingRepositoryPostProcessor} of {@link
+     *     CounterRepository}
+     */
+    @Bean
+    @ConditionalOnProperty(
+            prefix = "counter.shard",
+            name = "enabled",
+            havingValue = "false",
+            matchIfMissing = true)
+    public static CachingRepositoryPostProcessor<Counter, String, CounterRepository>
+            counterRepositoryCache(ObjectProvider<NearCache<String, Counter>> counterCache) {
+        return new CachingRepositoryPostProcessor<>(
+                CounterRepository.class, counterCache, Counter::id);
+    }
+
+    /**
+     * @return configured instance of {@link NearCacheMetrics} of counters
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "counter.cache", name = "enabled")
+    public NearCacheMetrics counterCacheMetrics(NearCache<String, Counter> counterCache) {
+        return new NearCacheMetrics(counterCache);
+    }
+
+    /** Estimated heap footprint of the record and its Latin-1 id and name */
+    static int estimateBytes(Counter counter) {
+        final var id = counter.id() == null ? 0 : counter.id().length();
+        final var name = counter.name() == null ? 0 : counter.name().length();
+        return 32 + 40 + id + 40 + name;
+    }
+}
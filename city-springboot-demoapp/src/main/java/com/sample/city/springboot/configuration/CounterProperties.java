@@ -0,0 +1,101 @@
+package com.sample.city.springboot.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/** Properties of counters, bound from {@code counter} */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "counter")
+public class CounterProperties {
+
+    /** Coalescing of counter increments */
+    private Increment increment = new Increment();
+
+    /** Block allocation of counters used as ID sequences */
+    private Block block = new Block();
+
+    /** Near-cache of counters read by id */
+    private Cache cache = new Cache();
+
+    /** Sharding of hot counters into several documents */
+    private Shard shard = new Shard();
+
+    @Getter
+    @Setter
+    public static class Increment {
+
+        /** Whether concurrent increments are coalesced into batched writes */
+        private boolean coalescing = true;
+
+        /** Interval of flushing buffered increments */
+        private Duration flushInterval = Duration.ofMillis(100);
+
+        /** Number of buffered increments triggering flush before the interval elapses */
+        private long flushThreshold = 1000;
+
+        /**
+         * Number of threads flushing buffered increments and writing grouped increments of hot
+         * counters
+         */
+        private int flushThreads = 2;
+    }
+
+    @Getter
+    @Setter
+    public static class Block {
+
+        /** Number of values reserved by the first block of a sequence */
+        private long initialSize = 1000;
+
+        /** Minimum number of values reserved by one block */
+        private long minSize = 100;
+
+        /** Maximum number of values reserved by one block */
+        private long maxSize = 1_000_000;
+
+        /** Desired interval between block reservations, block size adapts towards it */
+        private Duration targetRefillInterval = Duration.ofSeconds(1);
+    }
+
+    @Getter
+    @Setter
+    public static class Cache {
+
+        /** Whether counters read by id are cached on heap */
+        private boolean enabled;
+
+        /**
+         * Maximum time a cached counter is served after it was read, so changes written elsewhere,
+         * including flushed increments, are visible to readers within this bound
+         */
+        private Duration maxStaleness = Duration.ofSeconds(1);
+
+        /** Maximum estimated heap footprint of cached counters in bytes */
+        private long maximumBytes = 8L * 1024 * 1024;
+    }
+
+    @Getter
+    @Setter
+    public static class Shard {
+
+        /** Whether increments are spread over shard documents summed by reads */
+        private boolean enabled;
+
+        /** Number of shards of a counter before its increments contend */
+        private int initialShards = 1;
+
+        /** Maximum number of shards of a counter, reads query all of them */
+        private int maxShards = 16;
+
+        /** Ratio of increments finding another one of the same shard in flight doubling shards */
+        private double contentionThreshold = 0.1;
+
+        /** Number of increments of a counter after which its contention is evaluated */
+        private int sampleSize = 1000;
+    }
+}
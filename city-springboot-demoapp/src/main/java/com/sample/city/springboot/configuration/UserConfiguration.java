@@ -0,0 +1,59 @@
+package com.sample.city.springboot.configuration;
+
+import com.sample.city.springboot.component.CachingRepositoryPostProcessor;
+import com.sample.city.springboot.component.NearCache;
+import com.sample.city.springboot.component.NearCacheMetrics;
+import com.sample.city.springboot.model.User;
+import com.sample.city.springboot.repository.UserRepository;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/** Configuration of users */
+@Configuration
+@EnableConfigurationProperties(UserProperties.class)
+public class UserConfiguration {
+
+    /**
+     * @return configured instance of {@link NearCache} of users
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "user.cache", name = "enabled")
+    public NearCache<Long, User> userCache(UserProperties properties) {
+        final var cache = properties.getCache();
+        return new NearCache<>(
+                "users",
+                cache.getMaximumBytes(),
+                cache.getTimeToLive(),
+                UserConfiguration::estimateBytes);
+    }
+
+    /**
+     * @return configured instance of {@link CachingRepositoryPostProcessor} of {@link
+     *     UserRepository}
+     */
+    @Bean
+    public static CachingRepositoryPostProcessor<User, Long, UserRepository> userRepositoryCache(
+            ObjectProvider<NearCache<Long, User>> userCache) {
+        return new CachingRepositoryPostProcessor<>(UserRepository.class, userCache, User::id);
+    }
+
+    /**
+     * @return configured instance of {@link NearCacheMetrics} of users
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "user.cache", name = "enabled")
+    public NearCacheMetrics userCacheMetrics(NearCache<Long, User> userCache) {
+        return new NearCacheMetrics(userCache);
+    }
+
+    /** Estimated heap footprint of the record, its Latin-1 name and list of boxed friend ids */
+    static int estimateBytes(User user) {
+        final var friends = user.friendIds() == null ? 0 : user.friendIds().size();
+        final var name = user.name() == null ? 0 : user.name().length();
+        return 32 + 40 + name + 40 + 20 * friends;
+    }
+}
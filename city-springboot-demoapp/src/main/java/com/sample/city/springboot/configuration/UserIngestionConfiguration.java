@@ -0,0 +1,162 @@
+package com.sample.city.springboot.configuration;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.sample.city.springboot.model.User;
+import com.sample.city.springboot.service.UserIngestionService;
+import com.sample.city.springboot.service.UserIngestionService.IngestionProgress;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Routes of the NDJSON upload of users. Users are read one line at a time as the ingestion requests
+ * them, and progress is streamed back as NDJSON after each batch, so neither the upload nor its
+ * progress is held in memory. On Spring MVC, lines which are not a user are reported as {@link
+ * RejectedLine} in the progress and skipped.
+ */
+@Configuration
+@Slf4j
+public class UserIngestionConfiguration {
+
+    /**
+     * @param userIngestionService service inserting the users
+     * @param objectMapper mapper of the users and the progress
+     * @param properties properties of users
+     * @return configured instance of {@link
+     *     org.springframework.web.servlet.function.RouterFunction} of the upload
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public org.springframework.web.servlet.function.RouterFunction<
+                    org.springframework.web.servlet.function.ServerResponse>
+            userIngestionMvcRouterFunction(
+                    UserIngestionService userIngestionService,
+                    ObjectMapper objectMapper,
+                    UserProperties properties) {
+        return org.springframework.web.servlet.function.RouterFunctions.route()
+                .POST(
+                        properties.getIngestion().getPath(),
+                        org.springframework.web.servlet.function.RequestPredicates.contentType(
+                                MediaType.APPLICATION_NDJSON),
+                        request -> handleMvcUpload(userIngestionService, objectMapper, request))
+                .build();
+    }
+
+    /**
+     * @param userIngestionService service inserting the users
+     * @param properties properties of users
+     * @return configured instance of {@link RouterFunction} of the upload
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    public RouterFunction<ServerResponse> userIngestionWebFluxRouterFunction(
+            UserIngestionService userIngestionService, UserProperties properties) {
+        return RouterFunctions.route()
+                .POST(
+                        properties.getIngestion().getPath(),
+                        RequestPredicates.contentType(MediaType.APPLICATION_NDJSON),
+                        request ->
+                                ServerResponse.ok()
+                                        .contentType(MediaType.APPLICATION_NDJSON)
+                                        .body(
+                                                userIngestionService.ingest(
+                                                        request.bodyToFlux(User.class)),
+                                                IngestionProgress.class))
+                .build();
+    }
+
+    /**
+     * Reads users from the request body on the bounded elastic scheduler, as servlet input is
+     * blocking, and writes each progress and rejected line as a line flushed right away
+     */
+    private static org.springframework.web.servlet.function.ServerResponse handleMvcUpload(
+            UserIngestionService userIngestionService,
+            ObjectMapper objectMapper,
+            org.springframework.web.servlet.function.ServerRequest request) {
+        final var userReader = objectMapper.readerFor(User.class);
+        final Flux<Object> records =
+                Flux.using(
+                                () ->
+                                        new BufferedReader(
+                                                new InputStreamReader(
+                                                        request.servletRequest().getInputStream(),
+                                                        StandardCharsets.UTF_8)),
+                                reader -> Flux.fromStream(reader.lines()).index(),
+                                UserIngestionConfiguration::close)
+                        .filter(line -> !line.getT2().isBlank())
+                        .map(line -> read(userReader, line.getT1() + 1, line.getT2()))
+                        .subscribeOn(Schedulers.boundedElastic());
+        // rejected lines are written as they are read, progress as the batches complete
+        final Flux<Object> progress =
+                records.publish(
+                        shared ->
+                                Flux.merge(
+                                        userIngestionService.ingest(shared.ofType(User.class)),
+                                        shared.ofType(RejectedLine.class)));
+        return org.springframework.web.servlet.function.ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .stream(
+                        builder ->
+                                progress.subscribe(
+                                        value -> {
+                                            try {
+                                                builder.write(line(objectMapper, value)).flush();
+                                            } catch (IOException e) {
+                                                throw new UncheckedIOException(e);
+                                            }
+                                        },
+                                        e -> {
+                                            log.warn("Ingestion of users failed", e);
+                                            builder.error(e);
+                                        },
+                                        builder::complete));
+    }
+
+    private static Object read(ObjectReader userReader, long number, String line) {
+        try {
+            return userReader.readValue(line);
+        } catch (JsonProcessingException e) {
+            log.debug("Rejected line {} of upload of users", number, e);
+            return new RejectedLine(number, e.getOriginalMessage());
+        }
+    }
+
+    private static byte[] line(ObjectMapper objectMapper, Object value) throws IOException {
+        return (objectMapper.writeValueAsString(value) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void close(BufferedReader upload) {
+        try {
+            upload.close();
+        } catch (IOException e) {
+            log.debug("Failed to close upload of users", e);
+        }
+    }
+
+    /**
+     * Line of the upload which is not a user, skipped by the ingestion
+     *
+     * @param line number of the line, starting at 1
+     * @param error reason of the rejection
+     */
+    public record RejectedLine(long line, String error) {}
+}
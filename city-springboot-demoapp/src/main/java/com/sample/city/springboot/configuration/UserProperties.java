@@ -0,0 +1,63 @@
+package com.sample.city.springboot.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/** Properties of users, bound from {@code user} */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "user")
+public class UserProperties {
+
+    /** Persistence of users */
+    private Persistence persistence = new Persistence();
+
+    /** Near-cache of users read by id */
+    private Cache cache = new Cache();
+
+    /** Bulk ingestion of users */
+    private Ingestion ingestion = new Ingestion();
+
+    @Getter
+    @Setter
+    public static class Persistence {
+
+        /**
+         * Whether reactive resolvers persist users through the reactive Mongo driver, instead of
+         * offloading the blocking repository to the bounded elastic scheduler
+         */
+        private boolean reactive;
+    }
+
+    @Getter
+    @Setter
+    public static class Cache {
+
+        /** Whether users read by id are cached on heap */
+        private boolean enabled;
+
+        /** Time after which cached users expire, bounding staleness of users changed elsewhere */
+        private Duration timeToLive = Duration.ofSeconds(30);
+
+        /** Maximum estimated heap footprint of cached users in bytes */
+        private long maximumBytes = 64L * 1024 * 1024;
+    }
+
+    @Getter
+    @Setter
+    public static class Ingestion {
+
+        /** Number of users inserted by one unordered bulk write */
+        private int batchSize = 1000;
+
+        /** Maximum number of bulk writes in flight, each holding one batch in memory */
+        private int parallelism = 4;
+
+        /** Path of the NDJSON upload of users, streaming back progress after each batch */
+        private String path = "/users/ingest";
+    }
+}
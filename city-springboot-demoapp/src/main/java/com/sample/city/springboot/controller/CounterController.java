@@ -0,0 +1,38 @@
+package com.sample.city.springboot.controller;
+
+import com.sample.city.springboot.model.Counter;
+import com.sample.city.springboot.service.ChangeStreamService;
+import com.sample.city.springboot.service.CounterService;
+
+import io.leangen.graphql.annotations.GraphQLQuery;
+import io.leangen.graphql.annotations.GraphQLSubscription;
+import io.leangen.graphql.spqr.spring.annotations.GraphQLApi;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+
+import reactor.core.publisher.Flux;
+
+@GraphQLApi
+@Controller
+@Slf4j
+public class CounterController {
+
+    @Autowired private ChangeStreamService changeStreamService;
+    @Autowired private CounterService counterService;
+
+    @GraphQLQuery(name = "counter")
+    public Counter counter(String id) {
+        log.debug("counter() request received for counter '{}'", id);
+        return counterService.findCounter(id);
+    }
+
+    /** Streams the counter whenever it changes, instead of polling for it */
+    @GraphQLSubscription(name = "counterUpdates")
+    public Flux<Counter> counterUpdates(String id) {
+        log.debug("counterUpdates() request received for counter '{}'", id);
+        return changeStreamService.counterChanges(id);
+    }
+}
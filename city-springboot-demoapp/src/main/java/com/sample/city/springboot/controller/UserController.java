@@ -1,8 +1,15 @@
 package com.sample.city.springboot.controller;
 
+import com.sample.city.springboot.annotation.GraphQLCost;
+import com.sample.city.springboot.annotation.GraphQLTimeout;
+import com.sample.city.springboot.component.SubscriptionHub;
 import com.sample.city.springboot.model.User;
+import com.sample.city.springboot.service.ChangeStreamService;
+import com.sample.city.springboot.service.ReactiveUserService;
 import com.sample.city.springboot.service.UserService;
 
+import io.leangen.graphql.annotations.Batched;
+import io.leangen.graphql.annotations.GraphQLContext;
 import io.leangen.graphql.annotations.GraphQLQuery;
 import io.leangen.graphql.annotations.GraphQLSubscription;
 import io.leangen.graphql.spqr.spring.annotations.GraphQLApi;
@@ -15,9 +22,14 @@ import org.springframework.stereotype.Controller;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
 
 import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @GraphQLApi
 @Controller
@@ -25,8 +37,12 @@ import java.time.Duration;
 public class UserController {
 
     @Autowired private UserService userService;
+    @Autowired private ReactiveUserService reactiveUserService;
+    @Autowired private SubscriptionHub subscriptionHub;
+    @Autowired private ChangeStreamService changeStreamService;
 
     @GraphQLQuery(name = "saveUser")
+    @GraphQLCost(50)
     public User saveUser(User user) throws Exception {
         log.debug("saveUser() request received with user '{}'", user);
         Thread.sleep(3000);
@@ -34,17 +50,55 @@ public class UserController {
         return userService.saveUser(user);
     }
 
+    @GraphQLQuery(name = "users")
+    @GraphQLCost(10)
+    public List<User> users() {
+        log.debug("users() request received");
+        return userService.findUsers();
+    }
+
+    /**
+     * Friends of all users of the response are loaded by a single query, instead of one per user
+     */
+    @Batched
+    @GraphQLQuery(name = "friends")
+    @GraphQLCost(5)
+    public List<List<User>> friends(@GraphQLContext List<User> users) {
+        log.debug("friends() request received for {} users", users.size());
+        final var friendIds =
+                users.stream()
+                        .map(User::friendIds)
+                        .filter(Objects::nonNull)
+                        .flatMap(Collection::stream)
+                        .collect(Collectors.toSet());
+        final Map<Long, User> friends =
+                userService.findUsers(friendIds).stream()
+                        .collect(Collectors.toMap(User::id, Function.identity()));
+        return users.stream()
+                .map(
+                        user ->
+                                user.friendIds() == null
+                                        ? List.<User>of()
+                                        : user.friendIds().stream()
+                                                .map(friends::get)
+                                                .filter(Objects::nonNull)
+                                                .toList())
+                .toList();
+    }
+
     @GraphQLQuery(name = "saveUserT")
     public Mono<User> saveUserT(User user) {
         log.debug("saveUserT() request received with user '{}'", user);
-        return Mono.just(userService.saveUser(user)).map(u -> u);
+        return reactiveUserService.saveUser(user);
     }
 
     @GraphQLQuery(name = "saveUserR")
+    @GraphQLTimeout(5000)
     public Mono<User> saveUserReactive(User user) {
         log.debug("saveUserR() request received with user '{}'", user);
 
-        return Mono.just(userService.saveUser(user))
+        return reactiveUserService
+                .saveUser(user)
                 .delayElement(
                         Duration.ofSeconds(
                                 3)) // because of this you will see different threads in logs and
@@ -88,20 +142,19 @@ public class UserController {
                 ]
               }
             }
+        unless the field is requested with @stream and the request accepts multipart/mixed,
+        then each event is delivered as its own part as soon as it is emitted
          */
     }
 
     @GraphQLQuery(name = "saveUserRC")
+    @GraphQLTimeout(5000)
     public Mono<User> saveUserReactiveCallable(User user) {
         log.debug("saveUserRC() request received with user '{}'", user);
 
-        return Mono.fromCallable(
-                        () -> {
-                            log.info("Callable for saving execution started");
-                            Thread.sleep(3000);
-                            return userService.saveUser(user);
-                        })
-                .subscribeOn(Schedulers.boundedElastic())
+        return Mono.delay(Duration.ofSeconds(3))
+                .doOnNext(tick -> log.info("Delayed save execution started"))
+                .then(reactiveUserService.saveUser(user))
 
                 // because of this you will see that now even the save is getting called
                 // asynchronously
@@ -112,10 +165,19 @@ public class UserController {
                 .doOnTerminate(() -> log.info("Mono processing terminated for : {}", user));
     }
 
+    /** All subscribers share a single timer, started by the first and stopped after the last one */
     @GraphQLSubscription(name = "getEvents")
     public Flux<String> getEvents() {
         log.debug("getEvents() request received");
-        return Flux.interval(Duration.ofSeconds(1)) // Simulate emitting values every second
-                .map(i -> "Event #" + i);
+        // Simulate emitting values every second
+        return subscriptionHub.subscribe(
+                "events", () -> Flux.interval(Duration.ofSeconds(1)).map(i -> "Event #" + i));
+    }
+
+    /** Streams the user whenever it is saved, instead of polling for it */
+    @GraphQLSubscription(name = "userUpdates")
+    public Flux<User> userUpdates(long id) {
+        log.debug("userUpdates() request received for user {}", id);
+        return changeStreamService.userChanges(id);
     }
 }
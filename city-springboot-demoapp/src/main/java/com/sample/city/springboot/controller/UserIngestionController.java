@@ -0,0 +1,37 @@
+package com.sample.city.springboot.controller;
+
+import com.sample.city.springboot.annotation.GraphQLCost;
+import com.sample.city.springboot.model.User;
+import com.sample.city.springboot.service.UserIngestionService;
+import com.sample.city.springboot.service.UserIngestionService.IngestionSummary;
+
+import io.leangen.graphql.annotations.GraphQLMutation;
+import io.leangen.graphql.spqr.spring.annotations.GraphQLApi;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Bulk ingestion of users posted in a GraphQL mutation. Uploads too large for a single request body
+ * are streamed as NDJSON to {@code user.ingestion.path} instead.
+ */
+@GraphQLApi
+@Controller
+@Slf4j
+public class UserIngestionController {
+
+    @Autowired private UserIngestionService userIngestionService;
+
+    @GraphQLMutation(name = "ingestUsers")
+    @GraphQLCost(50)
+    public Mono<IngestionSummary> ingestUsers(List<User> users) {
+        log.debug("ingestUsers() request received with {} users", users.size());
+        return userIngestionService.ingestAll(users);
+    }
+}
@@ -1,3 +1,5 @@
 package com.sample.city.springboot.model;
 
-public record User(long id, String name) {}
+import java.util.List;
+
+public record User(long id, String name, List<Long> friendIds) {}
@@ -0,0 +1,7 @@
+package com.sample.city.springboot.repository;
+
+import com.sample.city.springboot.model.User;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+public interface ReactiveUserRepository extends ReactiveMongoRepository<User, Long> {}
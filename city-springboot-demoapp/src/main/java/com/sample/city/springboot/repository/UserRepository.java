@@ -4,4 +4,4 @@ import com.sample.city.springboot.model.User;
 
 import org.springframework.data.mongodb.repository.MongoRepository;
 
-public interface UserRepository extends MongoRepository<User, String> {}
+public interface UserRepository extends MongoRepository<User, Long> {}
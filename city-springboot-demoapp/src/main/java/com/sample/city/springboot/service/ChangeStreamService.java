@@ -0,0 +1,120 @@
+package com.sample.city.springboot.service;
+
+import com.sample.city.springboot.component.SubscriptionHub;
+import com.sample.city.springboot.exception.CityException;
+import com.sample.city.springboot.model.Counter;
+import com.sample.city.springboot.model.User;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Nullable;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Streams changes of documents from Mongo change streams. All subscriptions of a collection share a
+ * single change stream cursor, opened by the first subscription and closed after the last one.
+ * Changes of a document are fanned out through {@link SubscriptionHub}, so the cursor is filtered
+ * once per watched document rather than once per subscriber.
+ *
+ * <p>Increments of sharded counters write one of their shards, so with {@link CounterShards}
+ * changes of a counter are changes of any of its shards, streamed as the sum of all shards.
+ *
+ * <p>Change streams require Mongo running as a replica set. Deleted documents are not streamed.
+ */
+@Service
+@Slf4j
+public class ChangeStreamService {
+
+    private static final ChangeStreamOptions OPTIONS =
+            ChangeStreamOptions.builder().returnFullDocumentOnUpdate().build();
+
+    @Autowired private ReactiveMongoOperations reactiveMongoOperations;
+    @Autowired private SubscriptionHub subscriptionHub;
+
+    @Autowired(required = false)
+    @Nullable
+    private CounterShards counterShards;
+
+    private final Map<String, Flux<?>> changeStreams = new ConcurrentHashMap<>();
+
+    /**
+     * @param id counter id
+     * @return counter after each of its changes made after subscribing
+     */
+    public Flux<Counter> counterChanges(String id) {
+        if (counterShards == null) {
+            return changes(Counter.class, id, Counter::id);
+        }
+        final var collection = reactiveMongoOperations.getCollectionName(Counter.class);
+        return subscriptionHub.subscribe(
+                collection + "/" + id,
+                () ->
+                        Flux.merge(
+                                        changeStream(Counter.class, collection).map(Counter::id),
+                                        changeStream(Counter.class, CounterShards.COLLECTION)
+                                                .map(shard -> CounterShards.counterId(shard.id())))
+                                .filter(id::equals)
+                                // changes coming faster than the shards are read are coalesced
+                                .onBackpressureLatest()
+                                .concatMap(
+                                        changed ->
+                                                Mono.fromCallable(() -> counterShards.read(id))
+                                                        .subscribeOn(Schedulers.boundedElastic())
+                                                        // shard written after counter deletion
+                                                        .onErrorResume(
+                                                                CityException.class,
+                                                                e -> Mono.empty()),
+                                        1));
+    }
+
+    /**
+     * @param id user id
+     * @return user after each of its changes made after subscribing
+     */
+    public Flux<User> userChanges(long id) {
+        return changes(User.class, id, User::id);
+    }
+
+    private <T> Flux<T> changes(Class<T> type, Object id, Function<T, Object> idOf) {
+        final var collection = reactiveMongoOperations.getCollectionName(type);
+        return subscriptionHub.subscribe(
+                collection + "/" + id,
+                () -> changeStream(type, collection).filter(body -> id.equals(idOf.apply(body))));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Flux<T> changeStream(Class<T> type, String collection) {
+        return (Flux<T>)
+                changeStreams.computeIfAbsent(
+                        collection,
+                        key ->
+                                reactiveMongoOperations
+                                        .changeStream(collection, OPTIONS, type)
+                                        .mapNotNull(ChangeStreamEvent::getBody)
+                                        .doOnSubscribe(
+                                                subscription ->
+                                                        log.debug(
+                                                                "Opening change stream of '{}'",
+                                                                collection))
+                                        .doOnCancel(
+                                                () ->
+                                                        log.debug(
+                                                                "Closing change stream of '{}'",
+                                                                collection))
+                                        .publish()
+                                        .refCount());
+    }
+}
@@ -0,0 +1,169 @@
+package com.sample.city.springboot.service;
+
+import com.sample.city.springboot.exception.CityException;
+import com.sample.city.springboot.model.Counter;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Hands out values of counters used as ID sequences from blocks reserved in Mongo (hi/lo
+ * allocation).
+ *
+ * <p>Each block is reserved by a single {@code $inc} of the counter, so blocks reserved by
+ * different nodes never overlap. Values of the current block are handed out lock-free from local
+ * memory; only the thread exhausting the block reserves the next one. Block size adapts to the
+ * consumption rate: it doubles when a block lasts less than half of the target refill interval and
+ * halves when it lasts more than twice of it.
+ *
+ * <p>Values are unique but not gap-free: values left in blocks of a stopped node are never handed
+ * out. Counters used as sequences must not be incremented by other means.
+ */
+@Slf4j
+public class CounterBlockAllocator {
+
+    private static final Consumer<String> NO_LISTENER = id -> {};
+
+    private final MongoTemplate mongoTemplate;
+    private final long initialSize;
+    private final long minSize;
+    private final long maxSize;
+    private final long targetRefillNanos;
+    private final Map<String, Sequence> sequences = new ConcurrentHashMap<>();
+
+    /**
+     * Creates block allocator
+     *
+     * @param mongoTemplate template used to reserve blocks
+     * @param initialSize number of values reserved by the first block of a sequence
+     * @param minSize minimum number of values reserved by one block
+     * @param maxSize maximum number of values reserved by one block
+     * @param targetRefillInterval desired interval between block reservations
+     */
+    public CounterBlockAllocator(
+            MongoTemplate mongoTemplate,
+            long initialSize,
+            long minSize,
+            long maxSize,
+            Duration targetRefillInterval) {
+        if (minSize < 1 || minSize > maxSize) {
+            throw new CityException(
+                    "Invalid block size bounds [{}, {}] of counter sequences", minSize, maxSize);
+        }
+        this.mongoTemplate = mongoTemplate;
+        this.initialSize = Math.min(maxSize, Math.max(minSize, initialSize));
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.targetRefillNanos = targetRefillInterval.toNanos();
+    }
+
+    /**
+     * Returns next value of the sequence
+     *
+     * @param id counter id
+     * @return value unique across all nodes sharing the counter
+     * @throws CityException when counter does not exist
+     */
+    public long next(String id) {
+        return next(id, NO_LISTENER);
+    }
+
+    /**
+     * Returns next value of the sequence, notifying the caller when the counter was written
+     *
+     * @param id counter id
+     * @param onReserved invoked with the counter id after a block of the counter is reserved, e.g.
+     *     to invalidate cached reads of the counter
+     * @return value unique across all nodes sharing the counter
+     * @throws CityException when counter does not exist
+     */
+    public long next(String id, Consumer<String> onReserved) {
+        final var sequence = sequences.computeIfAbsent(id, key -> new Sequence(initialSize));
+        while (true) {
+            final var block = sequence.block;
+            final var value = block.next.getAndIncrement();
+            if (value <= block.last) {
+                return value;
+            }
+            if (reserve(id, sequence, block)) {
+                onReserved.accept(id);
+            }
+        }
+    }
+
+    /**
+     * @param id counter id
+     * @return size of the next block reserved for the sequence
+     */
+    long blockSize(String id) {
+        final var sequence = sequences.get(id);
+        return sequence != null ? sequence.blockSize : initialSize;
+    }
+
+    /** reserves next block unless another thread did, returns whether the counter was written */
+    private boolean reserve(String id, Sequence sequence, Block exhausted) {
+        synchronized (sequence) {
+            if (sequence.block != exhausted) {
+                return false;
+            }
+            final var now = System.nanoTime();
+            if (sequence.reservedAt != 0) {
+                final var lasted = now - sequence.reservedAt;
+                if (lasted < targetRefillNanos / 2) {
+                    sequence.blockSize = Math.min(maxSize, sequence.blockSize * 2);
+                } else if (lasted > targetRefillNanos * 2) {
+                    sequence.blockSize = Math.max(minSize, sequence.blockSize / 2);
+                }
+            }
+
+            final var size = sequence.blockSize;
+            final var counter =
+                    mongoTemplate.findAndModify(
+                            Query.query(Criteria.where("id").is(id)),
+                            new Update().inc("count", size),
+                            FindAndModifyOptions.options().returnNew(true),
+                            Counter.class);
+            if (counter == null) {
+                throw CityException.expected("Counter '{}' not found", id);
+            }
+            log.debug("Reserved block of {} values of counter '{}'", size, id);
+            sequence.reservedAt = now;
+            sequence.block = new Block(counter.count() - size + 1, counter.count());
+            return true;
+        }
+    }
+
+    private static final class Sequence {
+
+        private volatile Block block = new Block(1, 0);
+        private volatile long blockSize;
+        private long reservedAt;
+
+        private Sequence(long blockSize) {
+            this.blockSize = blockSize;
+        }
+    }
+
+    /** range of reserved values, {@code next} may run past {@code last} once exhausted */
+    private static final class Block {
+
+        private final AtomicLong next;
+        private final long last;
+
+        private Block(long first, long last) {
+            this.next = new AtomicLong(first);
+            this.last = last;
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package com.sample.city.springboot.service;
+
+import com.sample.city.springboot.exception.CityException;
+import com.sample.city.springboot.model.Counter;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.data.util.Pair;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Coalesces counter increments into batched {@code $inc} writes, so hot counters do not serialize
+ * on one Mongo round-trip per increment.
+ *
+ * <p>Two modes are supported:
+ *
+ * <ul>
+ *   <li>{@link #increment(String)} buffers the increment in a striped {@link LongAdder} per
+ *       counter. Buffered increments of all counters are written by a single unordered bulk write,
+ *       every flush interval or as soon as the flush threshold of pending increments is reached.
+ *       They are not visible to readers until flushed.
+ *   <li>{@link #incrementAndGet(String)} returns strongly consistent post-increment value. A caller
+ *       finding no write of the counter in flight writes it on its own thread, so increments of
+ *       cold counters are not capped by the flush threads. Callers of the same counter arriving
+ *       while a write is in flight are grouped into one {@code findAndModify}, each receiving its
+ *       own value from the range the write allocated. Each grouped write is a task of its own, so
+ *       callers of hot counters do not hold the flush threads from other counters and scheduled
+ *       flushes.
+ * </ul>
+ *
+ * <p>Increments of counters which do not exist are not written, they are counted as failed.
+ */
+@Slf4j
+public class CounterIncrementEngine implements DisposableBean {
+
+    private static final String COUNT = "count";
+
+    /** bound of the wait for a write grouping the increment with those of other callers */
+    private static final Duration MAX_WAIT = Duration.ofSeconds(30);
+
+    private final MongoTemplate mongoTemplate;
+    private final long flushThreshold;
+    private final int thresholdCheckMask;
+    private final ScheduledExecutorService executor;
+    private final Map<String, Accumulator> accumulators = new ConcurrentHashMap<>();
+    private final LongAdder pending = new LongAdder();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushedIncrements = new LongAdder();
+    private final LongAdder failedIncrements = new LongAdder();
+    private final LongAdder totalFlushNanos = new LongAdder();
+    private volatile long lastBatchSize;
+
+    /**
+     * Creates increment engine and schedules periodic flush of buffered increments
+     *
+     * @param mongoTemplate template used to write increments
+     * @param flushInterval interval of flushing buffered increments
+     * @param flushThreshold number of buffered increments triggering flush before the interval
+     * @param flushThreads number of threads writing increments
+     */
+    public CounterIncrementEngine(
+            MongoTemplate mongoTemplate,
+            Duration flushInterval,
+            long flushThreshold,
+            int flushThreads) {
+        this.mongoTemplate = mongoTemplate;
+        this.flushThreshold = flushThreshold;
+        // summing the striped adder on every increment would contend on its cells again
+        this.thresholdCheckMask =
+                Integer.highestOneBit((int) Math.max(1, Math.min(flushThreshold / 16, 64))) - 1;
+        final var threadFactory = new CustomizableThreadFactory("counter-flush-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newScheduledThreadPool(flushThreads, threadFactory);
+        final var intervalNanos = flushInterval.toNanos();
+        executor.scheduleWithFixedDelay(
+                this::flush, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Buffers increment of the counter, to be written with the next flush. The flush threshold is
+     * checked by a sample of increments, so it may be exceeded by a few increments per thread.
+     *
+     * @param id counter id
+     */
+    public void increment(String id) {
+        accumulator(id).delta.increment();
+        pending.increment();
+        if ((ThreadLocalRandom.current().nextInt() & thresholdCheckMask) == 0
+                && !flushRequested.get()
+                && pending.sum() >= flushThreshold
+                && flushRequested.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                // shutting down, buffered increments are written by the final flush
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    /**
+     * Increments the counter and returns its value after the increment
+     *
+     * @param id counter id
+     * @return post-increment value of the counter
+     * @throws CityException when counter does not exist, or the write of the increment did not
+     *     complete in time
+     */
+    public long incrementAndGet(String id) {
+        final var accumulator = accumulator(id);
+        final var waiter = new CompletableFuture<Long>();
+        if (accumulator.enqueue(waiter)) {
+            // no write of the counter in flight, the caller writes it on its own thread
+            commit(accumulator);
+        }
+        try {
+            return waiter.get(MAX_WAIT.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause
+                    ? cause
+                    : new CityException("Increment of counter '" + id + "' failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new CityException("Increment of counter '" + id + "' timed out", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CityException("Increment of counter '" + id + "' interrupted", e);
+        }
+    }
+
+    /** Writes all buffered increments with a single bulk write */
+    public void flush() {
+        flushRequested.set(false);
+        final var ids = new ArrayList<String>();
+        final var deltas = new ArrayList<Long>();
+        final var updates = new ArrayList<Pair<Query, UpdateDefinition>>();
+        long total = 0;
+        for (Accumulator accumulator : accumulators.values()) {
+            final var delta = accumulator.drain();
+            if (delta != 0) {
+                ids.add(accumulator.id);
+                deltas.add(delta);
+                updates.add(Pair.of(query(accumulator.id), new Update().inc(COUNT, delta)));
+                total += delta;
+            }
+        }
+        if (updates.isEmpty()) {
+            return;
+        }
+
+        pending.add(-total);
+        final var start = System.nanoTime();
+        try {
+            final var result =
+                    mongoTemplate
+                            .bulkOps(BulkMode.UNORDERED, Counter.class)
+                            .updateOne(updates)
+                            .execute();
+            final var failed =
+                    result.getMatchedCount() < updates.size() ? dropMissing(ids, deltas) : 0;
+            record(total - failed, start);
+        } catch (RuntimeException e) {
+            log.warn("Flush of {} counter increments failed, retrying with next flush", total, e);
+            for (int i = 0; i < ids.size(); i++) {
+                accumulator(ids.get(i)).delta.add(deltas.get(i));
+            }
+            pending.add(total);
+        }
+    }
+
+    /**
+     * @return current statistics of the engine
+     */
+    public IncrementStatistics statistics() {
+        return new IncrementStatistics(
+                pending.sum(),
+                flushes.sum(),
+                flushedIncrements.sum(),
+                failedIncrements.sum(),
+                TimeUnit.NANOSECONDS.toMillis(totalFlushNanos.sum()),
+                lastBatchSize);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+            log.warn("Counter increment writes did not finish in time");
+        }
+        flush();
+    }
+
+    /**
+     * writes increments of the waiting callers, callers arriving meanwhile are written by the next
+     * task queued behind the tasks of other counters, or failed if the engine is shutting down
+     */
+    private void commit(Accumulator accumulator) {
+        final var batch = accumulator.takeWaiters();
+        final var buffered = accumulator.drain();
+        pending.add(-buffered);
+        final var total = buffered + batch.size();
+        final var start = System.nanoTime();
+        try {
+            final var counter =
+                    mongoTemplate.findAndModify(
+                            query(accumulator.id),
+                            new Update().inc(COUNT, total),
+                            FindAndModifyOptions.options().returnNew(true),
+                            Counter.class);
+            if (counter == null) {
+                fail(accumulator.id, buffered);
+                throw CityException.expected("Counter '{}' not found", accumulator.id);
+            }
+            record(total, start);
+            final var first = counter.count() - batch.size();
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).complete(first + i + 1);
+            }
+        } catch (CityException e) {
+            batch.forEach(waiter -> waiter.completeExceptionally(e));
+        } catch (RuntimeException e) {
+            accumulator.delta.add(buffered);
+            pending.add(buffered);
+            batch.forEach(waiter -> waiter.completeExceptionally(e));
+        }
+        if (accumulator.continueCommitting()) {
+            try {
+                executor.execute(() -> commit(accumulator));
+            } catch (RejectedExecutionException e) {
+                // shutting down, the remaining callers are not left waiting
+                accumulator.abort(
+                        new CityException(
+                                "Increment of counter '" + accumulator.id + "' rejected", e));
+            }
+        }
+    }
+
+    /** drops increments of the counters which did not match, as they do not exist */
+    private long dropMissing(List<String> ids, List<Long> deltas) {
+        final var query = Query.query(Criteria.where("id").in(ids));
+        query.fields().include("id");
+        final Set<String> existing =
+                mongoTemplate.find(query, Counter.class).stream()
+                        .map(Counter::id)
+                        .collect(Collectors.toSet());
+        long failed = 0;
+        for (int i = 0; i < ids.size(); i++) {
+            if (!existing.contains(ids.get(i))) {
+                fail(ids.get(i), deltas.get(i));
+                failed += deltas.get(i);
+            }
+        }
+        return failed;
+    }
+
+    private void fail(String id, long increments) {
+        if (increments != 0) {
+            log.warn("Dropped {} buffered increments of missing counter '{}'", increments, id);
+            failedIncrements.add(increments);
+        }
+    }
+
+    private void record(long increments, long start) {
+        totalFlushNanos.add(System.nanoTime() - start);
+        flushes.increment();
+        flushedIncrements.add(increments);
+        lastBatchSize = increments;
+    }
+
+    private Accumulator accumulator(String id) {
+        return accumulators.computeIfAbsent(id, Accumulator::new);
+    }
+
+    private static Query query(String id) {
+        return Query.query(Criteria.where("id").is(id));
+    }
+
+    /**
+     * Statistics of the increment engine
+     *
+     * @param pending buffered increments not written yet
+     * @param flushes number of writes
+     * @param flushedIncrements number of increments written
+     * @param failedIncrements number of increments dropped as their counter does not exist
+     * @param totalFlushTimeMs accumulated duration of writes
+     * @param lastBatchSize number of increments written by the latest write
+     */
+    public record IncrementStatistics(
+            long pending,
+            long flushes,
+            long flushedIncrements,
+            long failedIncrements,
+            long totalFlushTimeMs,
+            long lastBatchSize) {}
+
+    private static final class Accumulator {
+
+        private final String id;
+        private final LongAdder delta = new LongAdder();
+        private List<CompletableFuture<Long>> waiters = new ArrayList<>();
+        private boolean committing;
+
+        private Accumulator(String id) {
+            this.id = id;
+        }
+
+        /**
+         * @return whether caller has to start committing waiters
+         */
+        private synchronized boolean enqueue(CompletableFuture<Long> waiter) {
+            waiters.add(waiter);
+            if (committing) {
+                return false;
+            }
+            committing = true;
+            return true;
+        }
+
+        private synchronized List<CompletableFuture<Long>> takeWaiters() {
+            final var batch = waiters;
+            waiters = new ArrayList<>();
+            return batch;
+        }
+
+        /**
+         * @return whether callers arrived during the write, to be committed by the next task
+         */
+        private synchronized boolean continueCommitting() {
+            committing = !waiters.isEmpty();
+            return committing;
+        }
+
+        /** fails the waiting callers, the next caller starts committing again */
+        private void abort(RuntimeException e) {
+            final List<CompletableFuture<Long>> batch;
+            synchronized (this) {
+                batch = waiters;
+                waiters = new ArrayList<>();
+                committing = false;
+            }
+            batch.forEach(waiter -> waiter.completeExceptionally(e));
+        }
+
+        /** unlike sumThenReset(), does not lose increments added concurrently */
+        private long drain() {
+            final var sum = delta.sum();
+            if (sum != 0) {
+                delta.add(-sum);
+            }
+            return sum;
+        }
+    }
+}
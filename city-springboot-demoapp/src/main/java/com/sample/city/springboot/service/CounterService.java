@@ -1,25 +1,121 @@
 package com.sample.city.springboot.service;
 
+import com.sample.city.springboot.component.NearCache;
+import com.sample.city.springboot.configuration.CounterProperties;
+import com.sample.city.springboot.exception.CityException;
 import com.sample.city.springboot.model.Counter;
+import com.sample.city.springboot.repository.CounterRepository;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.Nullable;
+
 @Service
 public class CounterService {
 
     @Autowired private MongoTemplate mongoTemplate;
+    @Autowired private CounterIncrementEngine incrementEngine;
+    @Autowired private CounterBlockAllocator blockAllocator;
+    @Autowired private CounterProperties counterProperties;
+    @Autowired private CounterRepository counterRepository;
+
+    @Autowired(required = false)
+    @Nullable
+    private NearCache<String, Counter> counterCache;
+
+    @Autowired(required = false)
+    @Nullable
+    private CounterShards counterShards;
 
+    /**
+     * Reads the counter, from the near-cache if {@code counter.cache} is enabled. Increments
+     * written by other nodes and buffered increments flushed later are visible within the
+     * configured staleness bound. Sharded counters are read with the sum of their shards.
+     *
+     * @param id counter id
+     * @return the counter
+     * @throws CityException when counter does not exist
+     */
+    public Counter findCounter(String id) {
+        if (counterShards != null) {
+            return counterCache != null
+                    ? counterCache.get(id, counterShards::read)
+                    : counterShards.read(id);
+        }
+        return counterRepository
+                .findById(id)
+                .orElseThrow(() -> CityException.expected("Counter '{}' not found", id));
+    }
+
+    /**
+     * Increments the counter, coalescing concurrent increments of the same counter into one write
+     * unless {@code counter.increment.coalescing} is disabled. With {@code counter.shard} enabled
+     * increments write one shard of the counter instead, and cached reads catch up within the
+     * staleness bound.
+     *
+     * @param id counter id
+     * @return value of the counter after the increment, approximate when sharded
+     */
     public long incrementCounter(String id) {
+        if (counterShards != null) {
+            return counterShards.incrementAndGet(id);
+        }
+        if (counterProperties.getIncrement().isCoalescing()) {
+            final var count = incrementEngine.incrementAndGet(id);
+            invalidate(id);
+            return count;
+        }
+
         Query query = Query.query(Criteria.where("id").is(id));
         Update update = new Update().inc("count", 1);
 
-        Counter counter = mongoTemplate.findAndModify(query, update, Counter.class);
+        Counter counter =
+                mongoTemplate.findAndModify(
+                        query,
+                        update,
+                        FindAndModifyOptions.options().returnNew(true),
+                        Counter.class);
+        if (counter == null) {
+            throw CityException.expected("Counter '{}' not found", id);
+        }
+        if (counterCache != null) {
+            counterCache.put(id, counter);
+        }
 
         return counter.count();
     }
+
+    /**
+     * Buffers increment of the counter, written by the next batched flush. Use when the caller does
+     * not need the resulting value.
+     *
+     * @param id counter id
+     */
+    public void incrementCounterLater(String id) {
+        incrementEngine.increment(id);
+    }
+
+    /**
+     * Returns next value of the counter used as ID sequence. Values are handed out from blocks
+     * reserved with a single write, so they are unique across nodes but not gap-free. Cached reads
+     * of the counter are invalidated only when a block is reserved.
+     *
+     * @param id counter id
+     * @return next sequence value
+     */
+    public long nextId(String id) {
+        return blockAllocator.next(id, this::invalidate);
+    }
+
+    private void invalidate(String id) {
+        if (counterCache != null) {
+            counterCache.invalidate(id);
+        }
+    }
 }
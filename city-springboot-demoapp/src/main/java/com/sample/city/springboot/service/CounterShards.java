@@ -0,0 +1,276 @@
+package com.sample.city.springboot.service;
+
+import com.sample.city.springboot.exception.CityException;
+import com.sample.city.springboot.model.Counter;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Splits hot counters into shard documents, so concurrent increments of one logical counter do not
+ * serialize on a single Mongo document.
+ *
+ * <p>Shard 0 is the counter document itself, shard {@code k} is the document {@code <id>#k} of the
+ * {@value #COLLECTION} collection created by its first increment, so shards are neither summed into
+ * a counter of such an id nor listed with the counters. An increment writes only the shard picked
+ * by hash of the calling thread; reads sum the counter with its other shards read by a single query
+ * of their ids. Counters start with the initial number of shards and double it, up to the maximum,
+ * when more than the contention threshold of sampled increments found another increment of the same
+ * shard in flight. Shard counts are local to the node, reads cover shards up to the maximum, so
+ * nodes grow their shard counts independently.
+ *
+ * <p>Values returned by {@link #incrementAndGet(String)} are approximate: the written shard is
+ * added to the values of the other shards last seen by this node. Counters used as ID sequences
+ * must not be sharded.
+ */
+@Slf4j
+public class CounterShards {
+
+    /** Collection of the shards other than the counter document itself */
+    public static final String COLLECTION = "counterShard";
+
+    private static final String COUNT = "count";
+    private static final String SEPARATOR = "#";
+
+    private final MongoTemplate mongoTemplate;
+    private final int initialShards;
+    private final int maxShards;
+    private final double contentionThreshold;
+    private final int sampleSize;
+    private final Map<String, ShardedCounter> counters = new ConcurrentHashMap<>();
+
+    private final LongAdder increments = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder growths = new LongAdder();
+
+    /**
+     * Creates sharded counters
+     *
+     * @param mongoTemplate template used to write and read shards
+     * @param initialShards number of shards of a counter before it is contended
+     * @param maxShards maximum number of shards of a counter
+     * @param contentionThreshold ratio of contended increments doubling the number of shards
+     * @param sampleSize number of increments of a counter after which its contention is evaluated
+     */
+    public CounterShards(
+            MongoTemplate mongoTemplate,
+            int initialShards,
+            int maxShards,
+            double contentionThreshold,
+            int sampleSize) {
+        if (initialShards < 1 || initialShards > maxShards) {
+            throw new CityException(
+                    "Invalid shard count bounds [{}, {}] of counters", initialShards, maxShards);
+        }
+        if (contentionThreshold < 0 || contentionThreshold > 1 || sampleSize < 1) {
+            throw new CityException(
+                    "Invalid contention threshold {} or sample size {} of counter shards",
+                    contentionThreshold,
+                    sampleSize);
+        }
+        this.mongoTemplate = mongoTemplate;
+        this.initialShards = initialShards;
+        this.maxShards = maxShards;
+        this.contentionThreshold = contentionThreshold;
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * Increments one shard of the counter
+     *
+     * @param id counter id
+     * @return approximate value of the counter after the increment
+     * @throws CityException when counter does not exist
+     */
+    public long incrementAndGet(String id) {
+        var counter = counters.get(id);
+        if (counter == null) {
+            // reading the counter fails if it does not exist, before any shard is created
+            read(id);
+            counter = counters.computeIfAbsent(id, key -> new ShardedCounter(initialShards));
+        }
+        final var shard = shard(counter.shards);
+        final var concurrent = counter.inFlight.getAndIncrement(shard);
+        try {
+            final var update = new Update().inc(COUNT, 1);
+            final var written =
+                    shard == 0
+                            ? mongoTemplate.findAndModify(
+                                    query(id),
+                                    update,
+                                    FindAndModifyOptions.options().returnNew(true),
+                                    Counter.class)
+                            : mongoTemplate.findAndModify(
+                                    query(shardId(id, shard)),
+                                    update,
+                                    FindAndModifyOptions.options().returnNew(true).upsert(true),
+                                    Counter.class,
+                                    COLLECTION);
+            if (written == null) {
+                throw CityException.expected("Counter '{}' not found", id);
+            }
+            counter.seen.set(shard, written.count());
+            return counter.total();
+        } finally {
+            counter.inFlight.decrementAndGet(shard);
+            sample(id, counter, concurrent > 0);
+        }
+    }
+
+    /**
+     * Reads the counter with the sum of its shards
+     *
+     * @param id counter id
+     * @return counter with the total count of its shards
+     * @throws CityException when counter does not exist
+     */
+    public Counter read(String id) {
+        final var base = mongoTemplate.findOne(query(id), Counter.class);
+        if (base == null) {
+            throw CityException.expected("Counter '{}' not found", id);
+        }
+        final var counter = counters.get(id);
+        if (counter != null) {
+            counter.seen.set(0, base.count());
+        }
+        long total = base.count();
+        if (maxShards > 1) {
+            final var shards =
+                    mongoTemplate.find(
+                            Query.query(Criteria.where("id").in(shardIds(id))),
+                            Counter.class,
+                            COLLECTION);
+            for (Counter shard : shards) {
+                total += shard.count();
+                if (counter != null) {
+                    counter.seen.set(shardIndex(shard.id()), shard.count());
+                }
+            }
+        }
+        return base.withCount(total);
+    }
+
+    /**
+     * @param shardId id of a document of the {@value #COLLECTION} collection
+     * @return id of the counter the shard belongs to
+     */
+    public static String counterId(String shardId) {
+        return shardId.substring(0, shardId.lastIndexOf(SEPARATOR));
+    }
+
+    /**
+     * @param id counter id
+     * @return number of shards this node increments
+     */
+    public int shardCount(String id) {
+        final var counter = counters.get(id);
+        return counter != null ? counter.shards : initialShards;
+    }
+
+    /**
+     * @return current statistics of the sharded counters
+     */
+    public ShardStatistics statistics() {
+        return new ShardStatistics(
+                counters.size(),
+                counters.values().stream().mapToLong(counter -> counter.shards).sum(),
+                increments.sum(),
+                contended.sum(),
+                growths.sum());
+    }
+
+    /** doubles shards of the counter once a sample of its increments was contended enough */
+    private void sample(String id, ShardedCounter counter, boolean contention) {
+        increments.increment();
+        if (contention) {
+            contended.increment();
+            counter.contended.incrementAndGet();
+        }
+        if (counter.sampled.incrementAndGet() < sampleSize) {
+            return;
+        }
+        synchronized (counter) {
+            if (counter.sampled.get() < sampleSize) {
+                return;
+            }
+            final var ratio =
+                    (double) counter.contended.getAndSet(0) / counter.sampled.getAndSet(0);
+            if (ratio > contentionThreshold && counter.shards < maxShards) {
+                counter.shards = Math.min(maxShards, counter.shards * 2);
+                growths.increment();
+                log.info(
+                        "Counter '{}' split into {} shards, {}% of increments were contended",
+                        id, counter.shards, Math.round(ratio * 100));
+            }
+        }
+    }
+
+    private List<String> shardIds(String id) {
+        return IntStream.range(1, maxShards).mapToObj(shard -> shardId(id, shard)).toList();
+    }
+
+    private static String shardId(String id, int shard) {
+        return shard == 0 ? id : id + SEPARATOR + shard;
+    }
+
+    private static int shardIndex(String shardId) {
+        return Integer.parseInt(shardId.substring(shardId.lastIndexOf(SEPARATOR) + 1));
+    }
+
+    /** spreads threads over shards by Fibonacci hashing of their id */
+    private static int shard(int shards) {
+        final var hash = (int) ((Thread.currentThread().getId() * 0x9E3779B97F4A7C15L) >>> 32);
+        return Math.floorMod(hash, shards);
+    }
+
+    private static Query query(String id) {
+        return Query.query(Criteria.where("id").is(id));
+    }
+
+    /**
+     * Statistics of the sharded counters
+     *
+     * @param counters number of counters incremented by this node
+     * @param shards number of shards of these counters
+     * @param increments number of increments
+     * @param contended number of increments finding another increment of the shard in flight
+     * @param growths number of times the shards of a counter were doubled
+     */
+    public record ShardStatistics(
+            int counters, long shards, long increments, long contended, long growths) {}
+
+    private final class ShardedCounter {
+
+        private final AtomicIntegerArray inFlight = new AtomicIntegerArray(maxShards);
+        private final AtomicLongArray seen = new AtomicLongArray(maxShards);
+        private final AtomicInteger sampled = new AtomicInteger();
+        private final AtomicInteger contended = new AtomicInteger();
+        private volatile int shards;
+
+        private ShardedCounter(int shards) {
+            this.shards = shards;
+        }
+
+        private long total() {
+            long total = 0;
+            for (int shard = 0; shard < maxShards; shard++) {
+                total += seen.get(shard);
+            }
+            return total;
+        }
+    }
+}
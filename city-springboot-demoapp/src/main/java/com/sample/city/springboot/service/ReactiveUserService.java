@@ -0,0 +1,45 @@
+package com.sample.city.springboot.service;
+
+import com.sample.city.springboot.component.NearCache;
+import com.sample.city.springboot.configuration.UserProperties;
+import com.sample.city.springboot.model.User;
+import com.sample.city.springboot.repository.ReactiveUserRepository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Nullable;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * User persistence for reactive resolvers. With {@code user.persistence.reactive} enabled users are
+ * saved through {@link ReactiveUserRepository}, so no thread is blocked while Mongo responds.
+ * Otherwise the blocking {@link UserService} is offloaded to the bounded elastic scheduler.
+ *
+ * <p>In both modes nothing is saved until the returned {@link Mono} is subscribed.
+ */
+@Service
+public class ReactiveUserService {
+
+    @Autowired private UserService userService;
+    @Autowired private ReactiveUserRepository reactiveUserRepository;
+    @Autowired private UserProperties userProperties;
+
+    @Autowired(required = false)
+    @Nullable
+    private NearCache<Long, User> userCache;
+
+    public Mono<User> saveUser(User user) {
+        if (userProperties.getPersistence().isReactive()) {
+            // the reactive repository bypasses the near-cache of the blocking one
+            final var saved = reactiveUserRepository.save(user);
+            return userCache == null
+                    ? saved
+                    : saved.doOnNext(savedUser -> userCache.put(savedUser.id(), savedUser));
+        }
+        return Mono.fromCallable(() -> userService.saveUser(user))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+}
@@ -0,0 +1,171 @@
+package com.sample.city.springboot.service;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.sample.city.springboot.configuration.UserProperties;
+import com.sample.city.springboot.exception.CityException;
+import com.sample.city.springboot.model.User;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Nullable;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulk ingestion of users. Users are grouped into batches of {@code user.ingestion.batch-size},
+ * each inserted by one unordered bulk write, with at most {@code user.ingestion.parallelism} writes
+ * in flight. Batches are requested from the source only as writes complete, so a large upload is
+ * never held in memory as a whole.
+ *
+ * <p>A failed batch does not abort the ingestion. Unordered bulk writes insert all users of a batch
+ * they can, e.g. all but duplicates of existing ids, and the rest is reported as failed with the
+ * first error of the batch. Users are inserted past the repository, which is safe for its
+ * near-cache as it does not cache missing users.
+ */
+@Service
+@Slf4j
+public class UserIngestionService {
+
+    @Autowired private ReactiveMongoOperations reactiveMongoOperations;
+    @Autowired private UserProperties userProperties;
+
+    /**
+     * Inserts streamed users
+     *
+     * @param users users to insert
+     * @return progress after each batch, in the order the batches complete
+     * @throws CityException when batch size or parallelism are not positive
+     */
+    public Flux<IngestionProgress> ingest(Flux<User> users) {
+        final var ingestion = userProperties.getIngestion();
+        final var batchSize = ingestion.getBatchSize();
+        final var parallelism = ingestion.getParallelism();
+        if (batchSize < 1 || parallelism < 1) {
+            throw new CityException(
+                    "Invalid batch size {} or parallelism {} of user ingestion",
+                    batchSize,
+                    parallelism);
+        }
+        final var totalUsers = new AtomicLong();
+        final var totalInserted = new AtomicLong();
+        return users.buffer(batchSize)
+                .index()
+                .flatMap(batch -> insert(batch.getT1(), batch.getT2()), parallelism, 1)
+                .map(
+                        batch ->
+                                new IngestionProgress(
+                                        batch,
+                                        totalUsers.addAndGet(batch.users()),
+                                        totalInserted.addAndGet(batch.inserted())))
+                .doOnNext(progress -> log.debug("Ingested users: {}", progress))
+                .doOnComplete(
+                        () ->
+                                log.info(
+                                        "Ingested {} of {} users",
+                                        totalInserted.get(),
+                                        totalUsers.get()));
+    }
+
+    /**
+     * Inserts users of the list
+     *
+     * @param users users to insert
+     * @return summary of the ingestion, with the failed batches
+     */
+    public Mono<IngestionSummary> ingestAll(List<User> users) {
+        return ingest(Flux.fromIterable(users)).collectList().map(IngestionSummary::of);
+    }
+
+    private Mono<IngestionBatch> insert(long index, List<User> batch) {
+        return Mono.defer(
+                        () ->
+                                reactiveMongoOperations
+                                        .bulkOps(BulkMode.UNORDERED, User.class)
+                                        .insert(batch)
+                                        .execute())
+                .map(
+                        result ->
+                                new IngestionBatch(
+                                        index, batch.size(), result.getInsertedCount(), null))
+                .onErrorResume(
+                        e -> {
+                            final var result = failed(index, batch.size(), e);
+                            log.warn("Failed to insert users: {}", result);
+                            return Mono.just(result);
+                        });
+    }
+
+    private static IngestionBatch failed(long index, int users, Throwable e) {
+        if (e instanceof BulkOperationException bulk) {
+            return failed(index, users, bulk.getResult().getInsertedCount(), bulk.getErrors());
+        }
+        if (e instanceof MongoBulkWriteException bulk) {
+            return failed(
+                    index, users, bulk.getWriteResult().getInsertedCount(), bulk.getWriteErrors());
+        }
+        return new IngestionBatch(index, users, 0, String.valueOf(e.getMessage()));
+    }
+
+    private static IngestionBatch failed(
+            long index, int users, int inserted, List<BulkWriteError> errors) {
+        return new IngestionBatch(
+                index,
+                users,
+                inserted,
+                errors.isEmpty() ? "Bulk write failed" : errors.get(0).getMessage());
+    }
+
+    /**
+     * Result of a batch
+     *
+     * @param index index of the batch in the ingestion
+     * @param users number of users of the batch
+     * @param inserted number of inserted users
+     * @param error first error of the batch, null if all users were inserted
+     */
+    public record IngestionBatch(long index, int users, int inserted, @Nullable String error) {}
+
+    /**
+     * Progress of an ingestion
+     *
+     * @param batch just completed batch
+     * @param users number of users of all completed batches
+     * @param inserted number of inserted users of all completed batches
+     */
+    public record IngestionProgress(IngestionBatch batch, long users, long inserted) {}
+
+    /**
+     * Summary of a completed ingestion
+     *
+     * @param batches number of batches
+     * @param users number of users
+     * @param inserted number of inserted users
+     * @param failedBatches batches not inserted completely
+     */
+    public record IngestionSummary(
+            long batches, long users, long inserted, List<IngestionBatch> failedBatches) {
+
+        private static IngestionSummary of(List<IngestionProgress> progress) {
+            final var last = progress.isEmpty() ? null : progress.get(progress.size() - 1);
+            return new IngestionSummary(
+                    progress.size(),
+                    last == null ? 0 : last.users(),
+                    last == null ? 0 : last.inserted(),
+                    progress.stream()
+                            .map(IngestionProgress::batch)
+                            .filter(batch -> batch.error() != null)
+                            .toList());
+        }
+    }
+}
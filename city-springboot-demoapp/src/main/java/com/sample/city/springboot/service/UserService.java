@@ -6,6 +6,9 @@ import com.sample.city.springboot.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.List;
+
 @Service
 public class UserService {
 
@@ -15,4 +18,18 @@ public class UserService {
     public User saveUser(User user) {
         return userRepository.save(user);
     }
+
+    public List<User> findUsers() {
+        return userRepository.findAll();
+    }
+
+    /**
+     * Loads users with all provided ids by a single query
+     *
+     * @param ids user ids
+     * @return found users, in no particular order
+     */
+    public List<User> findUsers(Collection<Long> ids) {
+        return userRepository.findAllById(ids);
+    }
 }
@@ -0,0 +1,108 @@
+package com.sample.city.springboot.component;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sample.city.springboot.component.AdaptiveConcurrencyLimiter.Permit;
+import com.sample.city.springboot.component.AdaptiveConcurrencyLimiter.Priority;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/** Adaptation of concurrency limits to simulated latency, and priority of queries */
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final Duration FAST = Duration.ofMillis(1);
+    private static final Duration SLOW = Duration.ofMillis(20);
+
+    @Test
+    public void limitOfOperationFollowsItsLatency() {
+        final var limiter =
+                new AdaptiveConcurrencyLimiter(10, 2, 200, 1.5, 0.2, Priority.NONE, 0, 100);
+
+        for (int round = 0; round < 30; round++) {
+            saturate(limiter, "users", FAST);
+            saturate(limiter, "counter", FAST);
+        }
+        final var users = limiter.limit("users");
+        final var counter = limiter.limit("counter");
+        assertThat(users).isGreaterThan(10);
+        assertThat(counter).isGreaterThan(10);
+
+        // users slow down, e.g. on a slow database query, counters do not
+        for (int round = 0; round < 5; round++) {
+            saturate(limiter, "users", SLOW);
+        }
+        assertThat(limiter.limit("users")).isLessThan(users / 2);
+        assertThat(limiter.limit("counter")).isEqualTo(counter);
+        assertThat(limiter.retryAfterMillis("users")).isGreaterThan(FAST.toMillis());
+        assertThat(limiter.statistics().inFlight()).isZero();
+    }
+
+    @Test
+    public void mutationsAreShedBeforeQueries() {
+        final var limiter =
+                new AdaptiveConcurrencyLimiter(10, 10, 10, 1.5, 0.2, Priority.QUERIES, 0.2, 100);
+
+        final var mutations = acquire(limiter, "saveUser", true);
+        final var queries = acquire(limiter, "users", false);
+
+        assertThat(mutations).hasSize(8);
+        assertThat(queries).hasSize(2);
+        final var statistics = limiter.statistics();
+        assertThat(statistics.inFlight()).isEqualTo(10);
+        assertThat(statistics.rejectedMutations()).isOne();
+        assertThat(statistics.rejectedQueries()).isOne();
+
+        mutations.forEach(Permit::release);
+        // permits are released once
+        mutations.forEach(Permit::release);
+        assertThat(limiter.statistics().inFlight()).isEqualTo(2);
+        assertThat(acquire(limiter, "users", false)).hasSize(8);
+    }
+
+    @Test
+    public void unknownOperationNamesShareOneLimit() {
+        final var limiter =
+                new AdaptiveConcurrencyLimiter(10, 2, 200, 1.5, 0.2, Priority.NONE, 0, 2);
+        for (int round = 0; round < 30; round++) {
+            saturate(limiter, "users", FAST);
+        }
+        final var users = limiter.limit("users");
+        assertThat(users).isGreaterThan(10);
+        saturate(limiter, "counter", FAST);
+        final var rejected = limiter.statistics().rejectedQueries();
+
+        // every made-up name is admitted against the one shared limit
+        final var permits =
+                IntStream.range(0, 1_000)
+                        .mapToObj(i -> limiter.tryAcquire("random" + i, false))
+                        .filter(permit -> permit != null)
+                        .toList();
+
+        assertThat(permits).hasSize(10);
+        assertThat(limiter.statistics().operations()).isEqualTo(2);
+        assertThat(limiter.statistics().rejectedQueries()).isEqualTo(rejected + 990);
+        assertThat(limiter.limit("users")).isEqualTo(users);
+        assertThat(limiter.tryAcquire("users", false)).isNotNull();
+    }
+
+    /** Runs the operation at its limit, every execution completing after the latency */
+    private static void saturate(
+            AdaptiveConcurrencyLimiter limiter, String operationName, Duration latency) {
+        acquire(limiter, operationName, false).forEach(permit -> permit.release(latency.toNanos()));
+    }
+
+    private static List<Permit> acquire(
+            AdaptiveConcurrencyLimiter limiter, String operationName, boolean mutation) {
+        final var permits = new ArrayList<Permit>();
+        IntStream.iterate(0, i -> i + 1)
+                .mapToObj(i -> limiter.tryAcquire(operationName, mutation))
+                .takeWhile(permit -> permit != null)
+                .forEach(permits::add);
+        return permits;
+    }
+}
@@ -0,0 +1,248 @@
+package com.sample.city.springboot.component;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sample.city.springboot.DemoApp;
+import com.sample.city.springboot.exception.CityException;
+import com.sample.city.springboot.factory.GraphQlSchemaFactory;
+import com.sample.city.springboot.factory.GraphQlSourceFactory;
+
+import io.leangen.graphql.annotations.Batched;
+import io.leangen.graphql.annotations.GraphQLContext;
+import io.leangen.graphql.annotations.GraphQLQuery;
+import io.leangen.graphql.spqr.spring.annotations.GraphQLApi;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.graphql.execution.DefaultExecutionGraphQlService;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.http.HttpHeaders;
+
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/** Concurrent execution of batched operations sharing their data loaders */
+public class BatchedRequestsTest {
+
+    private static final AtomicInteger DETAIL_LOADS = new AtomicInteger();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        for (var resource : resources) {
+            resource.close();
+        }
+    }
+
+    @Test
+    public void operationsShareDataLoaders() throws Exception {
+        final var batchedRequests = new BatchedRequests(handler(), objectMapper, 10);
+        final var operations =
+                IntStream.range(0, 5)
+                        .mapToObj(i -> operation("{ items(count: " + (i + 1) + ") { details } }"))
+                        .toList();
+        DETAIL_LOADS.set(0);
+
+        final var responses = execute(batchedRequests, operations);
+
+        assertThat(DETAIL_LOADS).hasValue(1);
+        assertThat(responses).hasSize(5);
+        for (int i = 0; i < responses.size(); i++) {
+            assertThat(responses.get(i)).doesNotContainKey("errors");
+            assertThat(responses.get(i).get("data").toString())
+                    .isEqualTo(
+                            IntStream.range(0, i + 1)
+                                    .mapToObj(item -> "{details=details of " + item + "}")
+                                    .collect(Collectors.joining(", ", "{items=[", "]}")));
+        }
+    }
+
+    @Test
+    public void responsesKeepOrderOfOperations() throws Exception {
+        final var batchedRequests = new BatchedRequests(handler(), objectMapper, 10);
+
+        final var responses =
+                execute(
+                        batchedRequests,
+                        List.of(
+                                operation("{ slow }"),
+                                operation("{ unknown }"),
+                                operation("{ items(count: 1) { details } }")));
+
+        // Mono results are mapped to lists by the schema generator
+        assertThat(responses.get(0)).isEqualTo(Map.of("data", Map.of("slow", List.of("slow"))));
+        assertThat(responses.get(1)).containsKey("errors").doesNotContainKey("data");
+        assertThat(responses.get(2).get("data").toString())
+                .isEqualTo("{items=[{details=details of 0}]}");
+    }
+
+    @Test
+    public void malformedOperationGetsErrorResponse() throws Exception {
+        final var batchedRequests = new BatchedRequests(handler(), objectMapper, 10);
+        DETAIL_LOADS.set(0);
+
+        final var responses =
+                execute(
+                        batchedRequests,
+                        List.of(
+                                operation("{ items(count: 1) { details } }"),
+                                Map.of("query", 42),
+                                operation("{ items(count: 2) { details } }")));
+
+        assertThat(responses).hasSize(3);
+        assertThat(responses.get(0).get("data").toString())
+                .isEqualTo("{items=[{details=details of 0}]}");
+        assertThat(responses.get(1)).containsKey("errors").doesNotContainKey("data");
+        assertThat(responses.get(2).get("data").toString())
+                .isEqualTo("{items=[{details=details of 0}, {details=details of 1}]}");
+        assertThat(DETAIL_LOADS).hasValue(1);
+    }
+
+    @Test
+    public void batchSizeIsLimited() {
+        final var batchedRequests = new BatchedRequests(handler(), objectMapper, 2);
+
+        assertThatThrownBy(() -> batchedRequests.validate(List.of()))
+                .isInstanceOf(CityException.class);
+        assertThatThrownBy(
+                        () ->
+                                batchedRequests.validate(
+                                        List.of(
+                                                operation("{ slow }"),
+                                                operation("{ slow }"),
+                                                operation("{ slow }"))))
+                .isInstanceOf(CityException.class)
+                .hasMessage("Batch of 3 operations, expected 1 to 2");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"servlet", "reactive"})
+    public void batchIsPostedAsJsonArray(String webApplicationType) throws Exception {
+        try (var context =
+                new SpringApplicationBuilder(DemoApp.class)
+                        .run(
+                                "--spring.main.web-application-type=" + webApplicationType,
+                                "--server.port=0",
+                                "--logging.level.root=WARN",
+                                "--logging.level.reactor=WARN",
+                                "--logging.level.org.springframework.web.reactive=WARN",
+                                "--spring.graphql.graphiql.enabled=false",
+                                "--graphql.server.batch.max-operations=3")) {
+            final var uri =
+                    URI.create(
+                            "http://localhost:"
+                                    + context.getEnvironment().getProperty("local.server.port")
+                                    + "/graphql/batch");
+
+            final var batched =
+                    post(
+                            uri,
+                            "[{\"query\":\"{ getSquare(input: 3) }\"},"
+                                    + "{\"query\":\"{ getSquareMono(input: 4) }\"}]");
+            assertThat(batched.statusCode()).isEqualTo(200);
+            assertThat(batched.body())
+                    .isEqualTo(
+                            "[{\"data\":{\"getSquare\":9}},{\"data\":{\"getSquareMono\":[16]}}]");
+
+            final var tooLarge = post(uri, "[" + String.join(",", "{}", "{}", "{}", "{}") + "]");
+            assertThat(tooLarge.statusCode()).isEqualTo(400);
+            assertThat(tooLarge.body()).contains("Batch of 4 operations, expected 1 to 3");
+        }
+    }
+
+    private WebGraphQlHandler handler() {
+        final var context = new AnnotationConfigApplicationContext(ItemApi.class);
+        resources.add(context);
+        final var schemaFactory = new GraphQlSchemaFactory(context);
+        final var service =
+                new DefaultExecutionGraphQlService(
+                        new GraphQlSourceFactory(schemaFactory::getObject).getObject());
+        service.addDataLoaderRegistrar(new BatchedResolverRegistrar(schemaFactory));
+        return WebGraphQlHandler.builder(service).build();
+    }
+
+    private List<Map<String, Object>> execute(
+            BatchedRequests batchedRequests, List<Map<String, Object>> operations)
+            throws Exception {
+        final var body =
+                String.join(
+                        "",
+                        batchedRequests
+                                .execute(
+                                        operations,
+                                        (index, operation) ->
+                                                new WebGraphQlRequest(
+                                                        URI.create("http://localhost/graphql"),
+                                                        new HttpHeaders(),
+                                                        null,
+                                                        null,
+                                                        Map.of(),
+                                                        operation,
+                                                        "1-" + index,
+                                                        Locale.ENGLISH))
+                                .collectList()
+                                .block(Duration.ofSeconds(10)));
+        return objectMapper.readValue(body, new TypeReference<>() {});
+    }
+
+    private static Map<String, Object> operation(String query) {
+        return Map.of("query", query);
+    }
+
+    private static HttpResponse<String> post(URI uri, String body) throws Exception {
+        return HttpClient.newHttpClient()
+                .send(
+                        HttpRequest.newBuilder(uri)
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofString(body))
+                                .build(),
+                        HttpResponse.BodyHandlers.ofString());
+    }
+
+    /** Item of a list with batched details */
+    public record Item(int id) {}
+
+    /** Resolvers of items and their batched details, and of a slow field */
+    @GraphQLApi
+    public static class ItemApi {
+
+        @GraphQLQuery(name = "items")
+        public List<Item> items(int count) {
+            return IntStream.range(0, count).mapToObj(Item::new).toList();
+        }
+
+        @Batched
+        @GraphQLQuery(name = "details")
+        public List<String> details(@GraphQLContext List<Item> items) {
+            DETAIL_LOADS.incrementAndGet();
+            return items.stream().map(item -> "details of " + item.id()).toList();
+        }
+
+        @GraphQLQuery(name = "slow")
+        public Mono<String> slow() {
+            return Mono.delay(Duration.ofMillis(200)).thenReturn("slow");
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.sample.city.springboot.component;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import com.sample.city.springboot.configuration.GraphQlServerConfiguration;
+import com.sample.city.springboot.configuration.GraphQlServerProperties;
+import com.sample.city.springboot.factory.GraphQlSchemaFactory;
+import com.sample.city.springboot.factory.GraphQlSourceFactory;
+import com.sample.city.springboot.factory.SchemaSnapshotGenerator;
+
+import io.leangen.graphql.annotations.GraphQLQuery;
+import io.leangen.graphql.spqr.spring.annotations.GraphQLApi;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.graphql.ExecutionGraphQlResponse;
+import org.springframework.graphql.execution.DefaultExecutionGraphQlService;
+import org.springframework.graphql.support.DefaultExecutionGraphQlRequest;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** Execution of blocking resolvers on virtual threads, within per-operation concurrency limits */
+public class BlockingResolverExecutorTest {
+
+    private static final int REQUESTS = 2_000;
+    private static final Duration SLOW_LATENCY = Duration.ofMillis(500);
+
+    @TempDir Path tempDir;
+
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        for (var resource : resources) {
+            resource.close();
+        }
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    public void thousandsOfSlowResolversWithoutPlatformThreads() {
+        final var executor =
+                new BlockingResolverExecutor(
+                        new VirtualThreadTaskExecutor("graphql-resolver-"),
+                        REQUESTS,
+                        Map.of(),
+                        Duration.ofSeconds(1),
+                        null);
+        final var service = service(schemaFactory(executor, false));
+        final var threadBean = ManagementFactory.getThreadMXBean();
+        final var liveThreads = threadBean.getThreadCount();
+        threadBean.resetPeakThreadCount();
+
+        final var responses =
+                Flux.range(0, REQUESTS)
+                        .flatMap(i -> execute(service, "{ slow }"), REQUESTS)
+                        .collectList()
+                        .block();
+
+        assertThat(responses).allSatisfy(response -> assertThat(response.getErrors()).isEmpty());
+        assertThat(threadBean.getPeakThreadCount() - liveThreads).isLessThan(100);
+        assertThat(executor.statistics().completed()).isEqualTo(REQUESTS);
+    }
+
+    @Test
+    public void concurrencyIsLimitedPerOperation() {
+        final var executor =
+                new BlockingResolverExecutor(
+                        platformExecutor(),
+                        REQUESTS,
+                        Map.of("Query.slow", 2),
+                        Duration.ofMillis(50),
+                        null);
+        final var service = service(schemaFactory(executor, false));
+
+        final var responses =
+                Flux.range(0, 5).flatMap(i -> execute(service, "{ slow }")).collectList().block();
+
+        assertThat(responses).filteredOn(response -> response.getErrors().isEmpty()).hasSize(2);
+        assertThat(responses)
+                .filteredOn(response -> !response.getErrors().isEmpty())
+                .hasSize(3)
+                .allSatisfy(
+                        response ->
+                                assertThat(response.getErrors().get(0).getMessage())
+                                        .contains(
+                                                "Concurrency limit of operation 'Query.slow'"
+                                                        + " reached"));
+        assertThat(executor.statistics().rejected()).isEqualTo(3);
+        assertThat(execute(service, "{ fast }").block().getErrors()).isEmpty();
+    }
+
+    @Test
+    public void invocationsWaitingForPermitHoldNoThreadOfExecutor() {
+        final var threads =
+                Executors.newFixedThreadPool(2, new CustomizableThreadFactory("resolver-"));
+        resources.add(threads::shutdownNow);
+        final var executor =
+                new BlockingResolverExecutor(
+                        threads, REQUESTS, Map.of("Query.slow", 1), Duration.ofSeconds(5), null);
+        final var service = service(schemaFactory(executor, false));
+
+        final var slow = Flux.range(0, 3).flatMap(i -> execute(service, "{ slow }")).collectList();
+        final var responses = slow.subscribeOn(Schedulers.boundedElastic()).toFuture();
+        await().atMost(Duration.ofSeconds(5)).until(() -> executor.statistics().active() == 1);
+
+        // the second thread is free although two invocations of slow are queued
+        assertThat(execute(service, "{ fast }").block(SLOW_LATENCY.dividedBy(2)).getErrors())
+                .isEmpty();
+        assertThat(responses.join())
+                .hasSize(3)
+                .allSatisfy(response -> assertThat(response.getErrors()).isEmpty());
+        assertThat(executor.statistics().rejected()).isZero();
+    }
+
+    @Test
+    public void blockingResolversRunOnExecutor() throws Exception {
+        for (var snapshot : List.of(false, true)) {
+            final var executor =
+                    new BlockingResolverExecutor(
+                            platformExecutor(), REQUESTS, Map.of(), Duration.ofSeconds(1), null);
+            final var schemaFactory = schemaFactory(executor, snapshot);
+            final var response = execute(service(schemaFactory), "{ thread mono }").block();
+
+            assertThat(schemaFactory.statistics().snapshot()).isEqualTo(snapshot);
+            assertThat(response.getErrors()).isEmpty();
+            final Map<String, Object> data = response.getData();
+            assertThat(data.get("thread")).asString().startsWith("resolver-");
+            assertThat(data.get("mono")).asString().doesNotStartWith("resolver-");
+            assertThat(executor.statistics().completed()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    @EnabledForJreRange(max = JRE.JAVA_20)
+    public void virtualThreadsModeFallsBackToBoundedElasticScheduler() {
+        final var properties = new GraphQlServerProperties();
+        properties.getExecution().setMode(GraphQlServerProperties.Mode.VIRTUAL_THREADS);
+        final var executor = new GraphQlServerConfiguration().blockingResolverExecutor(properties);
+        final var service = service(schemaFactory(executor, false));
+
+        final var responses =
+                Flux.range(0, 20)
+                        .flatMap(i -> execute(service, "{ thread mono }"), 20)
+                        .collectList()
+                        .block();
+
+        assertThat(responses)
+                .hasSize(20)
+                .allSatisfy(
+                        response -> {
+                            assertThat(response.getErrors()).isEmpty();
+                            final Map<String, Object> data = response.getData();
+                            assertThat(data.get("thread")).asString().startsWith("boundedElastic-");
+                            assertThat(data.get("mono"))
+                                    .asString()
+                                    .doesNotStartWith("boundedElastic-");
+                        });
+        assertThat(executor.statistics().completed()).isEqualTo(20);
+        assertThat(executor.statistics().pinned()).isZero();
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    public void pinnedVirtualThreadsAreCounted() {
+        final var executor =
+                new BlockingResolverExecutor(
+                        new VirtualThreadTaskExecutor("graphql-resolver-"),
+                        REQUESTS,
+                        Map.of(),
+                        Duration.ofSeconds(1),
+                        Duration.ofMillis(10));
+        resources.add(executor::destroy);
+        final var service = service(schemaFactory(executor, false));
+
+        assertThat(execute(service, "{ pinned }").block().getErrors()).isEmpty();
+
+        await().atMost(Duration.ofSeconds(10))
+                .untilAsserted(() -> assertThat(executor.statistics().pinned()).isPositive());
+    }
+
+    private GraphQlSchemaFactory schemaFactory(
+            BlockingResolverExecutor executor, boolean snapshot) {
+        final var context = new AnnotationConfigApplicationContext(SlowApi.class);
+        resources.add(context);
+        if (!snapshot) {
+            return new GraphQlSchemaFactory(
+                    context,
+                    GraphQlSchemaFactory.Options.defaults().withBlockingResolverExecutor(executor));
+        }
+        final var snapshotFile = tempDir.resolve("schema-snapshot.json");
+        try (var outputStream = Files.newOutputStream(snapshotFile)) {
+            new SchemaSnapshotGenerator().generate(List.of(SlowApi.class)).write(outputStream);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return new GraphQlSchemaFactory(
+                context,
+                GraphQlSchemaFactory.Options.defaults()
+                        .withSnapshotLocation(new FileSystemResource(snapshotFile))
+                        .withBlockingResolverExecutor(executor));
+    }
+
+    private ExecutorService platformExecutor() {
+        final var executor =
+                Executors.newCachedThreadPool(new CustomizableThreadFactory("resolver-"));
+        resources.add(executor::shutdownNow);
+        return executor;
+    }
+
+    private static DefaultExecutionGraphQlService service(GraphQlSchemaFactory schemaFactory) {
+        return new DefaultExecutionGraphQlService(
+                new GraphQlSourceFactory(schemaFactory::getObject).getObject());
+    }
+
+    private static Mono<ExecutionGraphQlResponse> execute(
+            DefaultExecutionGraphQlService service, String query) {
+        return service.execute(
+                new DefaultExecutionGraphQlRequest(
+                        query, null, Map.of(), Map.of(), "1", Locale.ENGLISH));
+    }
+
+    /** Resolvers waiting for a slow downstream */
+    @GraphQLApi
+    public static class SlowApi {
+
+        private final Object lock = new Object();
+
+        @GraphQLQuery(name = "slow")
+        public String slow() throws InterruptedException {
+            Thread.sleep(SLOW_LATENCY.toMillis());
+            return "slow";
+        }
+
+        @GraphQLQuery(name = "fast")
+        public String fast() {
+            return "fast";
+        }
+
+        @GraphQLQuery(name = "thread")
+        public String thread() {
+            return Thread.currentThread().getName();
+        }
+
+        @GraphQLQuery(name = "mono")
+        public Mono<String> mono() {
+            return Mono.fromSupplier(() -> Thread.currentThread().getName());
+        }
+
+        @GraphQLQuery(name = "pinned")
+        public String pinned() throws InterruptedException {
+            synchronized (lock) {
+                Thread.sleep(50);
+            }
+            return "pinned";
+        }
+    }
+}
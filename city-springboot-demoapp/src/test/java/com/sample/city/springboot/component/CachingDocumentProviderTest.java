@@ -0,0 +1,140 @@
+package com.sample.city.springboot.component;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import graphql.ExecutionInput;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.persisted.PersistedQueryIdInvalid;
+import graphql.execution.preparsed.persisted.PersistedQueryNotFound;
+import graphql.execution.preparsed.persisted.PersistedQuerySupport;
+import graphql.parser.Parser;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Parsed document cache and Automatic Persisted Queries */
+public class CachingDocumentProviderTest {
+
+    private static final String QUERY = "{ users { id name } }";
+
+    private final AtomicInteger parsed = new AtomicInteger();
+
+    @Test
+    public void documentsAreParsedOncePerQuery() {
+        final var provider = new CachingDocumentProvider(10_000, false);
+
+        final var first = document(provider, input(QUERY, Map.of()));
+        final var second = document(provider, input(QUERY, Map.of()));
+        document(provider, input("{ users { id } }", Map.of()));
+
+        assertThat(second).isSameAs(first);
+        assertThat(parsed).hasValue(2);
+        assertThat(provider.getCache().stats().hitCount()).isOne();
+
+        provider.invalidateAll();
+        document(provider, input(QUERY, Map.of()));
+        assertThat(parsed).hasValue(3);
+    }
+
+    @Test
+    public void persistedQueryIsRegisteredByItsHashAndThenServedWithoutText() {
+        final var provider = new CachingDocumentProvider(10_000, true);
+        final var extensions = persistedQuery(sha256(QUERY));
+
+        final var missing =
+                document(provider, input(PersistedQuerySupport.PERSISTED_QUERY_MARKER, extensions));
+        assertThat(missing.hasErrors()).isTrue();
+        assertThat(missing.getErrors())
+                .singleElement()
+                .satisfies(
+                        error ->
+                                assertThat(error.getErrorType())
+                                        .isInstanceOf(PersistedQueryNotFound.class));
+        assertThat(provider.getPersistedQueryNotFoundCount()).isOne();
+
+        final var registered = document(provider, input(QUERY, extensions));
+        assertThat(registered.hasErrors()).isFalse();
+
+        final var hit =
+                document(provider, input(PersistedQuerySupport.PERSISTED_QUERY_MARKER, extensions));
+        assertThat(hit).isSameAs(registered);
+        assertThat(parsed).hasValue(1);
+        assertThat(provider.getPersistedQueryNotFoundCount()).isOne();
+    }
+
+    @Test
+    public void persistedQueryWithMismatchingHashIsRejected() {
+        final var provider = new CachingDocumentProvider(10_000, true);
+
+        final var entry = document(provider, input(QUERY, persistedQuery(sha256("{ other }"))));
+
+        assertThat(entry.getErrors())
+                .singleElement()
+                .satisfies(
+                        error ->
+                                assertThat(error.getErrorType())
+                                        .isInstanceOf(PersistedQueryIdInvalid.class));
+        assertThat(parsed).hasValue(0);
+        assertThat(provider.getCache().estimatedSize()).isZero();
+    }
+
+    @Test
+    public void metricsPublishCacheHitsAndPersistedQueryMisses() {
+        final var provider = new CachingDocumentProvider(10_000, true);
+        final var registry = new SimpleMeterRegistry();
+        new DocumentCacheMetrics(provider).bindTo(registry);
+
+        document(provider, input(QUERY, Map.of()));
+        document(provider, input(QUERY, Map.of()));
+        document(
+                provider,
+                input(PersistedQuerySupport.PERSISTED_QUERY_MARKER, persistedQuery("unknown")));
+
+        assertThat(
+                        registry.get("cache.gets")
+                                .tag("cache", "graphql.documents")
+                                .tag("result", "hit")
+                                .functionCounter()
+                                .count())
+                .isEqualTo(1);
+        assertThat(registry.get("graphql.persisted.queries.not.found").functionCounter().count())
+                .isEqualTo(1);
+    }
+
+    private PreparsedDocumentEntry document(
+            CachingDocumentProvider provider, ExecutionInput executionInput) {
+        return provider.getDocumentAsync(
+                        executionInput,
+                        input -> {
+                            parsed.incrementAndGet();
+                            return new PreparsedDocumentEntry(Parser.parse(input.getQuery()));
+                        })
+                .join();
+    }
+
+    private static ExecutionInput input(String query, Map<String, Object> extensions) {
+        return ExecutionInput.newExecutionInput(query).extensions(extensions).build();
+    }
+
+    private static Map<String, Object> persistedQuery(String hash) {
+        return Map.of("persistedQuery", Map.of("version", 1, "sha256Hash", hash));
+    }
+
+    private static String sha256(String query) {
+        try {
+            return HexFormat.of()
+                    .formatHex(
+                            MessageDigest.getInstance("SHA-256")
+                                    .digest(query.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
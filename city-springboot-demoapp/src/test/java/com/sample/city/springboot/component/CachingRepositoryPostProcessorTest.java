@@ -0,0 +1,160 @@
+package com.sample.city.springboot.component;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.sample.city.springboot.model.User;
+import com.sample.city.springboot.repository.UserRepository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.StreamSupport;
+
+/** Reads through and writes to {@link NearCache} of repository decorated by the post processor */
+public class CachingRepositoryPostProcessorTest {
+
+    private final Map<Long, User> users = new HashMap<>();
+    private UserRepository repository;
+
+    @BeforeEach
+    public void setUp() {
+        for (long id = 1; id <= 3; id++) {
+            users.put(id, new User(id, "user" + id, List.of()));
+        }
+        repository = mock(UserRepository.class);
+        when(repository.findById(any()))
+                .thenAnswer(
+                        invocation -> Optional.ofNullable(users.get(invocation.getArgument(0))));
+        when(repository.findAllById(any()))
+                .thenAnswer(
+                        invocation ->
+                                StreamSupport.stream(
+                                                invocation
+                                                        .<Iterable<Long>>getArgument(0)
+                                                        .spliterator(),
+                                                false)
+                                        .map(users::get)
+                                        .filter(user -> user != null)
+                                        .toList());
+        when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(repository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    public void readsByIdLoadOnlyMissingUsers() {
+        final var cache = cache(Duration.ofMinutes(1));
+        final var cached = decorate(cache);
+
+        assertThat(cached.findById(1L)).contains(users.get(1L));
+        assertThat(cached.findById(1L)).contains(users.get(1L));
+        assertThat(cached.findById(4L)).isEmpty();
+        verify(repository, times(1)).findById(1L);
+
+        final var found = cached.findAllById(List.of(1L, 2L, 3L, 4L));
+        assertThat(found).containsExactlyInAnyOrderElementsOf(users.values());
+        verify(repository).findAllById(Set.of(2L, 3L, 4L));
+
+        // weights of written entries are applied by Caffeine's asynchronous maintenance
+        cache.getCache().cleanUp();
+        final var statistics = cache.statistics();
+        assertThat(statistics.hits()).isEqualTo(2);
+        assertThat(statistics.misses()).isEqualTo(5);
+        assertThat(statistics.size()).isEqualTo(3);
+        assertThat(statistics.hitRatio()).isEqualTo(2 / 7d);
+        assertThat(statistics.estimatedBytes()).isGreaterThan(3L * NearCache.ENTRY_BYTES);
+    }
+
+    @Test
+    public void writesThroughRepositoryUpdateCache() {
+        final var cache = cache(Duration.ofMinutes(1));
+        final var cached = decorate(cache);
+        cached.findById(1L);
+
+        final var renamed = new User(1L, "renamed", List.of(2L));
+        cached.save(renamed);
+        assertThat(cached.findById(1L)).contains(renamed);
+        verify(repository, times(1)).findById(1L);
+
+        cached.deleteById(1L);
+        verify(repository).deleteById(1L);
+        cached.findById(1L);
+        verify(repository, times(2)).findById(1L);
+
+        cached.deleteAll();
+        cache.getCache().cleanUp();
+        assertThat(cache.statistics().size()).isZero();
+    }
+
+    @Test
+    public void readsDuringDeleteAreNotCached() {
+        final var cached = decorate(cache(Duration.ofMinutes(1)));
+        doAnswer(
+                        invocation -> {
+                            // read by another thread before the document is deleted
+                            cached.findById(1L);
+                            users.remove(1L);
+                            return null;
+                        })
+                .when(repository)
+                .deleteById(1L);
+
+        cached.deleteById(1L);
+
+        assertThat(cached.findById(1L)).isEmpty();
+    }
+
+    @Test
+    public void expiredUsersAreLoadedAgain() {
+        final var cached = decorate(cache(Duration.ofMillis(100)));
+        cached.findById(1L);
+        users.put(1L, new User(1L, "changed elsewhere", List.of()));
+
+        await().atMost(Duration.ofSeconds(5))
+                .until(() -> cached.findById(1L).orElseThrow().name().equals("changed elsewhere"));
+    }
+
+    @Test
+    public void sizeIsBoundedByEstimatedBytes() {
+        final var cache =
+                new NearCache<Long, User>(
+                        "users",
+                        10L * (NearCache.ENTRY_BYTES + 100),
+                        Duration.ofMinutes(1),
+                        u -> 100);
+        final var cached = decorate(cache);
+        final var saved = new ArrayList<User>();
+        for (long id = 1; id <= 100; id++) {
+            saved.add(new User(id, "user" + id, List.of()));
+        }
+        cached.saveAll(saved);
+
+        cache.getCache().cleanUp();
+        assertThat(cache.statistics().evictions()).isPositive();
+        assertThat(cache.statistics().size()).isLessThanOrEqualTo(10);
+        assertThat(cache.statistics().estimatedBytes())
+                .isLessThanOrEqualTo(10L * (NearCache.ENTRY_BYTES + 100));
+    }
+
+    private NearCache<Long, User> cache(Duration timeToLive) {
+        return new NearCache<>("users", 1 << 20, timeToLive, user -> 64);
+    }
+
+    private UserRepository decorate(NearCache<Long, User> cache) {
+        return CachingRepositoryPostProcessor.decorate(
+                UserRepository.class, repository, cache, User::id);
+    }
+}
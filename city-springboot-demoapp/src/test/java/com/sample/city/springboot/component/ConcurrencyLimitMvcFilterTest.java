@@ -0,0 +1,188 @@
+package com.sample.city.springboot.component;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import com.sample.city.springboot.DemoApp;
+import com.sample.city.springboot.component.ConcurrencyLimitMvcFilter.Operation;
+
+import io.leangen.graphql.annotations.GraphQLQuery;
+import io.leangen.graphql.spqr.spring.annotations.GraphQLApi;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/** Rejection of operations over their concurrency limit on Spring MVC, and their type */
+public class ConcurrencyLimitMvcFilterTest {
+
+    private static final CountDownLatch RELEASED = new CountDownLatch(1);
+
+    @Test
+    public void operationsOverLimitAreRejectedWithRetryHint() throws Exception {
+        try (var context =
+                new SpringApplicationBuilder(DemoApp.class, BlockedApi.class)
+                        .run(
+                                "--spring.main.web-application-type=servlet",
+                                "--server.port=0",
+                                "--logging.level.root=WARN",
+                                "--logging.level.reactor=WARN",
+                                "--spring.graphql.graphiql.enabled=false",
+                                "--graphql.server.concurrency-limit.enabled=true",
+                                "--graphql.server.concurrency-limit.initial-limit=2",
+                                "--graphql.server.concurrency-limit.max-limit=2")) {
+            final var limiter = context.getBean(AdaptiveConcurrencyLimiter.class);
+            final var uri =
+                    URI.create(
+                            "http://localhost:"
+                                    + context.getEnvironment().getProperty("local.server.port")
+                                    + "/graphql");
+            final var client = HttpClient.newHttpClient();
+
+            final var blocked =
+                    Stream.of(1, 2)
+                            .map(
+                                    i ->
+                                            client.sendAsync(
+                                                    request(uri, "query Blocked { blocked }"),
+                                                    HttpResponse.BodyHandlers.ofString()))
+                            .toList();
+            await().atMost(Duration.ofSeconds(10))
+                    .until(() -> limiter.statistics().inFlight() == 2);
+
+            final var rejected =
+                    client.send(
+                            request(uri, "query Blocked { blocked }"),
+                            HttpResponse.BodyHandlers.ofString());
+            assertThat(rejected.statusCode()).isEqualTo(503);
+            assertThat(rejected.headers().firstValueAsLong("Retry-After")).hasValue(1);
+            assertThat(rejected.body())
+                    .startsWith("{\"errors\":[")
+                    .contains("Concurrency limit of operation 'Blocked' reached")
+                    .contains("retryAfterMs");
+
+            RELEASED.countDown();
+            for (var response : blocked) {
+                assertThat(response.get(10, TimeUnit.SECONDS).statusCode()).isEqualTo(200);
+                assertThat(response.get().body()).isEqualTo("{\"data\":{\"blocked\":true}}");
+            }
+            // permits of asynchronously completed responses are released
+            await().atMost(Duration.ofSeconds(10))
+                    .until(() -> limiter.statistics().inFlight() == 0);
+            assertThat(limiter.statistics().rejectedQueries()).isOne();
+            assertThat(limiter.statistics().accepted()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void batchesTakePermitOfEachOperationAndLargeBodiesAreRejected() throws Exception {
+        try (var context =
+                new SpringApplicationBuilder(DemoApp.class, BlockedApi.class)
+                        .run(
+                                "--spring.main.web-application-type=servlet",
+                                "--server.port=0",
+                                "--logging.level.root=WARN",
+                                "--logging.level.reactor=WARN",
+                                "--spring.graphql.graphiql.enabled=false",
+                                "--graphql.server.concurrency-limit.enabled=true",
+                                "--graphql.server.concurrency-limit.initial-limit=2",
+                                "--graphql.server.concurrency-limit.max-limit=2",
+                                "--graphql.server.concurrency-limit.max-body-size=200")) {
+            final var limiter = context.getBean(AdaptiveConcurrencyLimiter.class);
+            final var uri =
+                    URI.create(
+                            "http://localhost:"
+                                    + context.getEnvironment().getProperty("local.server.port")
+                                    + "/graphql");
+            final var client = HttpClient.newHttpClient();
+
+            final var admitted =
+                    client.send(
+                            post(
+                                    URI.create(uri + "/batch"),
+                                    "[{\"query\":\"{ ready }\"},{\"query\":\"{ ready }\"}]"),
+                            HttpResponse.BodyHandlers.ofString());
+            final var rejected =
+                    client.send(
+                            post(
+                                    URI.create(uri + "/batch"),
+                                    "[{\"query\":\"{ ready }\"},{\"query\":\"{ ready }\"},"
+                                            + "{\"query\":\"{ ready }\"}]"),
+                            HttpResponse.BodyHandlers.ofString());
+            final var tooLarge =
+                    client.send(
+                            post(uri, "{\"query\":\"{ ready " + " ".repeat(200) + "}\"}"),
+                            HttpResponse.BodyHandlers.ofString());
+
+            assertThat(admitted.statusCode()).isEqualTo(200);
+            assertThat(rejected.statusCode()).isEqualTo(503);
+            assertThat(tooLarge.statusCode()).isEqualTo(413);
+            assertThat(tooLarge.body()).contains("Request body exceeds 200 bytes");
+            await().atMost(Duration.ofSeconds(10))
+                    .until(() -> limiter.statistics().inFlight() == 0);
+            // permits of the operations admitted before the batch was rejected are released
+            assertThat(limiter.statistics().accepted()).isEqualTo(4);
+            assertThat(limiter.statistics().rejectedQueries()).isOne();
+        }
+    }
+
+    @Test
+    public void operationIsFoundWithoutParsing() {
+        assertThat(ConcurrencyLimitMvcFilter.operation("{ users { id } }", null))
+                .isEqualTo(new Operation(null, false));
+        assertThat(ConcurrencyLimitMvcFilter.operation("mutation { saveUser(id: 1) }", null))
+                .isEqualTo(new Operation(null, true));
+        assertThat(
+                        ConcurrencyLimitMvcFilter.operation(
+                                "mutation Save($id: Long) { saveUser(id: $id) { id } }", null))
+                .isEqualTo(new Operation("Save", true));
+        final var document =
+                """
+                # query in a comment, "mutation" in a string
+                query Users { users(filter: "mutation Save") { id } }
+                fragment Name on User { name }
+                mutation Save { saveUser(id: 1) { ...Name } }
+                """;
+        assertThat(ConcurrencyLimitMvcFilter.operation(document, "Users"))
+                .isEqualTo(new Operation("Users", false));
+        assertThat(ConcurrencyLimitMvcFilter.operation(document, "Save"))
+                .isEqualTo(new Operation("Save", true));
+        assertThat(ConcurrencyLimitMvcFilter.operation(null, "Persisted"))
+                .isEqualTo(new Operation("Persisted", false));
+    }
+
+    private static HttpRequest request(URI uri, String query) {
+        return post(uri, "{\"query\":\"" + query + "\"}");
+    }
+
+    private static HttpRequest post(URI uri, String body) {
+        return HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    /** Resolver blocked until the test releases it */
+    @GraphQLApi
+    public static class BlockedApi {
+
+        @GraphQLQuery(name = "blocked")
+        public boolean blocked() throws InterruptedException {
+            return RELEASED.await(30, TimeUnit.SECONDS);
+        }
+
+        @GraphQLQuery(name = "ready")
+        public boolean ready() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.sample.city.springboot.component;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sample.city.springboot.exception.CityException;
+import com.sample.city.springboot.factory.GraphQlSchemaFactory;
+import com.sample.city.springboot.factory.GraphQlSourceFactory;
+
+import io.leangen.graphql.annotations.GraphQLQuery;
+import io.leangen.graphql.spqr.spring.annotations.GraphQLApi;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.graphql.ExecutionGraphQlResponse;
+import org.springframework.graphql.ResponseError;
+import org.springframework.graphql.execution.DefaultExecutionGraphQlService;
+import org.springframework.graphql.support.DefaultExecutionGraphQlRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/** Resolution of resolver exceptions to errors, and sampling of their stack traces */
+public class GraphQlExceptionResolverTest {
+
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        for (var resource : resources) {
+            resource.close();
+        }
+    }
+
+    @Test
+    public void exceptionsAreResolvedToErrors() {
+        final var exceptionResolver = new GraphQlExceptionResolver(10);
+        final var registry = new SimpleMeterRegistry();
+        new GraphQlErrorMetrics(exceptionResolver).bindTo(registry);
+        final var service = service(exceptionResolver);
+
+        final var response = execute(service, "{ nullPointer cityException expected }");
+
+        assertThat(response.getErrors())
+                .extracting(ResponseError::getMessage)
+                .containsExactlyInAnyOrder(
+                        "[NullPointerException] null",
+                        "[CityException] Counter 'visits' failed",
+                        "[CityException] Counter 'visits' not found");
+        assertThat(exceptionResolver.statistics())
+                .isEqualTo(new GraphQlExceptionResolver.ErrorStatistics(1, 2, 2, 0));
+        assertThat(registry.get("graphql.errors").tag("kind", "expected").functionCounter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void stackTracesAreLoggedUpToTheRate() {
+        final var exceptionResolver = new GraphQlExceptionResolver(2);
+        final var service = service(exceptionResolver);
+        final var fields = 20;
+        final var query =
+                IntStream.range(0, fields)
+                        .mapToObj(i -> "f" + i + ": nullPointer")
+                        .collect(Collectors.joining(" ", "{ ", " expected }"));
+
+        assertThat(execute(service, query).getErrors()).hasSize(fields + 1);
+
+        final var statistics = exceptionResolver.statistics();
+        assertThat(statistics.expected()).isEqualTo(1);
+        assertThat(statistics.unexpected()).isEqualTo(fields);
+        // the window of one second may roll over once during the execution
+        assertThat(statistics.stackTracesLogged()).isBetween(2L, 4L);
+        assertThat(statistics.stackTracesLogged() + statistics.stackTracesSuppressed())
+                .isEqualTo(fields);
+    }
+
+    @Test
+    public void expectedExceptionsHaveNoStackTrace() {
+        final var expected = CityException.expected("Counter '{}' not found", "visits");
+
+        assertThat(expected.isExpected()).isTrue();
+        assertThat(expected.getMessage()).isEqualTo("Counter 'visits' not found");
+        assertThat(expected.getStackTrace()).isEmpty();
+        expected.addSuppressed(new IllegalStateException());
+        assertThat(expected.getSuppressed()).isEmpty();
+        assertThat(new CityException("Counter '{}' failed", "visits").getStackTrace()).isNotEmpty();
+    }
+
+    private DefaultExecutionGraphQlService service(GraphQlExceptionResolver exceptionResolver) {
+        final var context = new AnnotationConfigApplicationContext(ErrorApi.class);
+        resources.add(context);
+        final var schemaFactory = new GraphQlSchemaFactory(context);
+        return new DefaultExecutionGraphQlService(
+                new GraphQlSourceFactory(
+                                schemaFactory::getObject, null, List.of(), exceptionResolver)
+                        .getObject());
+    }
+
+    private static ExecutionGraphQlResponse execute(
+            DefaultExecutionGraphQlService service, String query) {
+        return service.execute(
+                        new DefaultExecutionGraphQlRequest(
+                                query, null, Map.of(), Map.of(), "1", Locale.ENGLISH))
+                .block();
+    }
+
+    /** Resolvers failing with and without stack trace */
+    @GraphQLApi
+    public static class ErrorApi {
+
+        @GraphQLQuery(name = "nullPointer")
+        public String nullPointer() {
+            throw new NullPointerException();
+        }
+
+        @GraphQLQuery(name = "cityException")
+        public String cityException() {
+            throw new CityException("Counter '{}' failed", "visits");
+        }
+
+        @GraphQLQuery(name = "expected")
+        public String expected() {
+            throw CityException.expected("Counter '{}' not found", "visits");
+        }
+    }
+}
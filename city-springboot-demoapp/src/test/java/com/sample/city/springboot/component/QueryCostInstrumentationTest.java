@@ -0,0 +1,300 @@
+package com.sample.city.springboot.component;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sample.city.springboot.annotation.GraphQLCost;
+import com.sample.city.springboot.factory.GraphQlSchemaFactory;
+import com.sample.city.springboot.factory.GraphQlSourceFactory;
+import com.sample.city.springboot.factory.SchemaSnapshotGenerator;
+
+import io.leangen.graphql.annotations.GraphQLArgument;
+import io.leangen.graphql.annotations.GraphQLQuery;
+import io.leangen.graphql.spqr.spring.annotations.GraphQLApi;
+
+import org.assertj.core.api.InstanceOfAssertFactories;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.graphql.ExecutionGraphQlResponse;
+import org.springframework.graphql.execution.DefaultExecutionGraphQlService;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.support.DefaultExecutionGraphQlRequest;
+import org.springframework.http.HttpHeaders;
+
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Admission of operations by their static depth and cost, and per-client rate limits of clients
+ * identified by {@link ClientIdInterceptor}
+ */
+public class QueryCostInstrumentationTest {
+
+    private static final String SEARCH = "{ search(first: %d) { id child { id } } }";
+
+    @TempDir Path tempDir;
+
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        for (var resource : resources) {
+            resource.close();
+        }
+    }
+
+    @Test
+    public void operationsOverLimitsAreRejected() {
+        for (var snapshot : List.of(false, true)) {
+            final var instrumentation = new QueryCostInstrumentation(4, 50, 1, 0, 0);
+            final var service = service(instrumentation, snapshot);
+
+            // (5 + id + child { id }) * first
+            final var overBudget = execute(service, SEARCH.formatted(10), Map.of(), null);
+            assertThat(overBudget.getErrors())
+                    .singleElement()
+                    .satisfies(
+                            error -> {
+                                assertThat(error.getMessage())
+                                        .isEqualTo("Query cost 80 exceeds the limit of 50");
+                                assertThat(error.getExtensions()).containsEntry("cost", 80L);
+                            });
+            assertThat((Object) overBudget.getData()).isNull();
+            assertThat(execute(service, SEARCH.formatted(5), Map.of(), null).getErrors()).isEmpty();
+
+            final var tooDeep =
+                    execute(
+                            service,
+                            "{ node { child { child { child { id } } } } }",
+                            Map.of(),
+                            null);
+            assertThat(tooDeep.getErrors())
+                    .singleElement()
+                    .satisfies(
+                            error ->
+                                    assertThat(error.getMessage())
+                                            .isEqualTo("Query depth 5 exceeds the limit of 4"));
+
+            final var statistics = instrumentation.statistics();
+            assertThat(statistics.rejectedCost()).isEqualTo(1);
+            assertThat(statistics.rejectedDepth()).isEqualTo(1);
+            assertThat(statistics.admittedCost()).isEqualTo(40);
+        }
+    }
+
+    @Test
+    public void costsAreCachedUnlessDependingOnVariables() {
+        final var instrumentation = new QueryCostInstrumentation(10, 50, 1, 0, 0);
+        final var service = service(instrumentation, false);
+
+        IntStream.range(0, 3)
+                .forEach(
+                        i ->
+                                assertThat(
+                                                execute(service, "{ node { id } }", Map.of(), null)
+                                                        .getErrors())
+                                        .isEmpty());
+        assertThat(instrumentation.statistics().analyzed()).isEqualTo(1);
+        assertThat(instrumentation.statistics().cacheHits()).isEqualTo(2);
+
+        final var query =
+                "query Search($first: Int!) { search(first: $first) { id child { id } } }";
+        assertThat(execute(service, query, Map.of("first", 2), null).getErrors()).isEmpty();
+        assertThat(execute(service, query, Map.of("first", 10), null).getErrors())
+                .singleElement()
+                .satisfies(
+                        error ->
+                                assertThat(error.getMessage())
+                                        .isEqualTo("Query cost 80 exceeds the limit of 50"));
+        assertThat(instrumentation.statistics().analyzed()).isEqualTo(3);
+    }
+
+    @Test
+    public void costsSelectedByDirectiveVariablesAreNotCached() {
+        final var instrumentation = new QueryCostInstrumentation(10, 50, 1, 0, 0);
+        final var service = service(instrumentation, false);
+
+        for (var query :
+                List.of(
+                        "query Q($expensive: Boolean!) {"
+                                + " node { id } search(first: 10) @include(if: $expensive) { id"
+                                + " child { id } } }",
+                        "query Q($cheap: Boolean!) {"
+                                + " node { id } ... @skip(if: $cheap) { search(first: 10) { id"
+                                + " child { id } } } }")) {
+            final var variable = query.contains("$expensive") ? "expensive" : "cheap";
+            final var cheap =
+                    execute(service, query, Map.of(variable, variable.equals("cheap")), null);
+            final var expensive =
+                    execute(service, query, Map.of(variable, variable.equals("expensive")), null);
+
+            assertThat(cheap.getErrors()).isEmpty();
+            assertThat(expensive.getErrors())
+                    .singleElement()
+                    .satisfies(
+                            error ->
+                                    assertThat(error.getMessage())
+                                            .isEqualTo("Query cost 82 exceeds the limit of 50"));
+        }
+        assertThat(instrumentation.statistics().cacheHits()).isZero();
+    }
+
+    @Test
+    public void clientsAreLimitedByTheirOwnBudget() {
+        final var instrumentation = new QueryCostInstrumentation(10, 50, 1, 60, 10);
+        final var service = service(instrumentation, false);
+        final var query = SEARCH.formatted(5);
+
+        assertThat(execute(service, query, Map.of(), "a").getErrors()).isEmpty();
+        final var throttled = execute(service, query, Map.of(), "a");
+        assertThat(throttled.getErrors())
+                .singleElement()
+                .satisfies(
+                        error -> {
+                            assertThat(error.getMessage())
+                                    .startsWith(
+                                            "Query cost 40 exceeds the remaining budget of client"
+                                                    + " 'a', retry after");
+                            assertThat(error.getExtensions().get("retryAfterMs"))
+                                    .asInstanceOf(InstanceOfAssertFactories.LONG)
+                                    .isBetween(1_000L, 2_000L);
+                        });
+        assertThat(execute(service, query, Map.of(), "b").getErrors()).isEmpty();
+        assertThat(instrumentation.statistics().throttled()).isEqualTo(1);
+    }
+
+    @Test
+    public void clientIsIdentifiedByHeaderOrRemoteAddress() {
+        final var interceptor = new ClientIdInterceptor("X-Client-Id");
+        final var headers = new HttpHeaders();
+        headers.set("X-Client-Id", "mobile");
+
+        assertThat(clientId(interceptor, headers, new InetSocketAddress("127.0.0.1", 4000)))
+                .isEqualTo("mobile");
+        assertThat(
+                        clientId(
+                                interceptor,
+                                new HttpHeaders(),
+                                new InetSocketAddress("127.0.0.1", 4000)))
+                .isEqualTo("127.0.0.1");
+        assertThat(
+                        clientId(
+                                interceptor,
+                                new HttpHeaders(),
+                                InetSocketAddress.createUnresolved("proxy.local", 4000)))
+                .isEqualTo("proxy.local");
+        assertThat(clientId(interceptor, new HttpHeaders(), null)).isNull();
+    }
+
+    private static String clientId(
+            ClientIdInterceptor interceptor, HttpHeaders headers, InetSocketAddress remoteAddress) {
+        final var request =
+                new WebGraphQlRequest(
+                        URI.create("http://localhost/graphql"),
+                        headers,
+                        null,
+                        remoteAddress,
+                        Map.of(),
+                        Map.of("query", "{ node { id } }"),
+                        "1",
+                        Locale.ENGLISH);
+        interceptor.intercept(request, next -> Mono.empty()).block();
+        return request.toExecutionInput()
+                .getGraphQLContext()
+                .get(QueryCostInstrumentation.CLIENT_ID);
+    }
+
+    private DefaultExecutionGraphQlService service(
+            QueryCostInstrumentation instrumentation, boolean snapshot) {
+        final var context = new AnnotationConfigApplicationContext(CostApi.class);
+        resources.add(context);
+        var schemaFactory = new GraphQlSchemaFactory(context);
+        if (snapshot) {
+            final var snapshotFile = tempDir.resolve("schema-snapshot.json");
+            try (var outputStream = Files.newOutputStream(snapshotFile)) {
+                new SchemaSnapshotGenerator().generate(List.of(CostApi.class)).write(outputStream);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            schemaFactory =
+                    new GraphQlSchemaFactory(
+                            context,
+                            GraphQlSchemaFactory.Options.defaults()
+                                    .withSnapshotLocation(new FileSystemResource(snapshotFile)));
+            schemaFactory.getObject();
+            assertThat(schemaFactory.statistics().snapshot()).isTrue();
+        }
+        return new DefaultExecutionGraphQlService(
+                new GraphQlSourceFactory(
+                                schemaFactory::getObject,
+                                new CachingDocumentProvider(1_000_000, false),
+                                List.of(instrumentation))
+                        .getObject());
+    }
+
+    private static ExecutionGraphQlResponse execute(
+            DefaultExecutionGraphQlService service,
+            String query,
+            Map<String, Object> variables,
+            String clientId) {
+        final var request =
+                new DefaultExecutionGraphQlRequest(
+                        query, null, variables, Map.of(), "1", Locale.ENGLISH);
+        if (clientId != null) {
+            request.configureExecutionInput(
+                    (executionInput, builder) -> {
+                        executionInput
+                                .getGraphQLContext()
+                                .put(QueryCostInstrumentation.CLIENT_ID, clientId);
+                        return executionInput;
+                    });
+        }
+        return service.execute(request).block();
+    }
+
+    /** Resolvers of a recursive type with a weighted list field */
+    @GraphQLApi
+    public static class CostApi {
+
+        @GraphQLQuery(name = "node")
+        public Node node() {
+            return new Node(0);
+        }
+
+        @GraphQLQuery(name = "search")
+        @GraphQLCost(value = 5, multipliers = "first")
+        public List<Node> search(@GraphQLArgument(name = "first") int first) {
+            return IntStream.range(0, first).mapToObj(Node::new).toList();
+        }
+    }
+
+    public static class Node {
+
+        private final int id;
+
+        public Node(int id) {
+            this.id = id;
+        }
+
+        @GraphQLQuery(name = "id")
+        public int getId() {
+            return id;
+        }
+
+        @GraphQLQuery(name = "child")
+        public Node getChild() {
+            return new Node(id + 1);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.sample.city.springboot.component;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sample.city.springboot.factory.GraphQlSchemaFactory;
+import com.sample.city.springboot.factory.GraphQlSourceFactory;
+
+import io.leangen.graphql.annotations.GraphQLQuery;
+import io.leangen.graphql.spqr.spring.annotations.GraphQLApi;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.graphql.ExecutionGraphQlResponse;
+import org.springframework.graphql.execution.DefaultExecutionGraphQlService;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.support.DefaultExecutionGraphQlRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+/** Injection of request headers captured in the GraphQL context, on any thread */
+public class RequestHeaderInjectionTest {
+
+    private static final String QUERY = "{ tenant thread }";
+
+    private final RequestHeaders requestHeaders = new RequestHeaders();
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        RequestContextHolder.resetRequestAttributes();
+        for (var resource : resources) {
+            resource.close();
+        }
+    }
+
+    @Test
+    public void capturedHeadersAreInjectedOnResolverThreads() {
+        final var handler =
+                WebGraphQlHandler.builder(service())
+                        .interceptor(new RequestHeadersInterceptor(requestHeaders))
+                        .build();
+        final var headers = new HttpHeaders();
+        headers.add("x-tenant", "acme");
+
+        final var response = handler.handleRequest(request(headers)).block();
+
+        assertThat(response.getErrors()).isEmpty();
+        final Map<String, Object> data = response.getData();
+        assertThat(data).containsEntry("tenant", "acme");
+        assertThat(data.get("thread")).asString().startsWith("resolver-");
+        final Map<String, Object> withoutHeader =
+                handler.handleRequest(request(new HttpHeaders())).block().getData();
+        assertThat(withoutHeader).containsEntry("tenant", null);
+    }
+
+    @Test
+    public void headersOfThreadBoundRequestAreInjectedWithoutInterceptor() {
+        final var servletRequest = new MockHttpServletRequest();
+        servletRequest.addHeader(TenantApi.HEADER, "acme");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(servletRequest));
+        final var service =
+                new DefaultExecutionGraphQlService(
+                        new GraphQlSourceFactory(schemaFactory(null)::getObject).getObject());
+
+        final ExecutionGraphQlResponse response =
+                service.execute(
+                                new DefaultExecutionGraphQlRequest(
+                                        QUERY, null, Map.of(), Map.of(), "1", Locale.ENGLISH))
+                        .block();
+
+        assertThat(response.getErrors()).isEmpty();
+        assertThat((String) response.field("tenant").getValue()).isEqualTo("acme");
+    }
+
+    private DefaultExecutionGraphQlService service() {
+        final var executorService =
+                Executors.newCachedThreadPool(new CustomizableThreadFactory("resolver-"));
+        resources.add(executorService::shutdownNow);
+        final var executor =
+                new BlockingResolverExecutor(
+                        executorService, 100, Map.of(), Duration.ofSeconds(1), null);
+        return new DefaultExecutionGraphQlService(
+                new GraphQlSourceFactory(schemaFactory(executor)::getObject).getObject());
+    }
+
+    private GraphQlSchemaFactory schemaFactory(BlockingResolverExecutor executor) {
+        final var context = new AnnotationConfigApplicationContext(TenantApi.class);
+        resources.add(context);
+        return new GraphQlSchemaFactory(
+                context,
+                GraphQlSchemaFactory.Options.defaults()
+                        .withBlockingResolverExecutor(executor)
+                        .withRequestHeaders(requestHeaders));
+    }
+
+    private static WebGraphQlRequest request(HttpHeaders headers) {
+        return new WebGraphQlRequest(
+                URI.create("http://localhost/graphql"),
+                headers,
+                null,
+                null,
+                Map.of(),
+                Map.of("query", QUERY),
+                "1",
+                Locale.ENGLISH);
+    }
+
+    /** Resolvers of a header value and of the thread resolving it */
+    @GraphQLApi
+    public static class TenantApi {
+
+        static final String HEADER = "X-Tenant";
+
+        @GraphQLQuery(name = "tenant")
+        public String tenant(@RequestHeader(HEADER) String tenant) {
+            return tenant;
+        }
+
+        @GraphQLQuery(name = "thread")
+        public String thread() {
+            return Thread.currentThread().getName();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.sample.city.springboot.component;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.assertj.core.api.Assertions.withinPercentage;
+
+import com.sample.city.springboot.component.ResolverLatencyInstrumentation.LatencyStatistics;
+import com.sample.city.springboot.factory.GraphQlSchemaFactory;
+import com.sample.city.springboot.factory.GraphQlSourceFactory;
+
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+
+import io.leangen.graphql.annotations.GraphQLQuery;
+import io.leangen.graphql.spqr.spring.annotations.GraphQLApi;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.graphql.ExecutionGraphQlResponse;
+import org.springframework.graphql.execution.DefaultExecutionGraphQlService;
+import org.springframework.graphql.support.DefaultExecutionGraphQlRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Latency recording of fields and operations, its meters and endpoint. Recording overhead is
+ * measured by {@code ResolverLatencyBenchmark}.
+ */
+public class ResolverLatencyInstrumentationTest {
+
+    private static final int SLOW_MS = 50;
+    private static final String ITEMS_SCHEMA = "type Query { items: [Item] } type Item { id: Int }";
+
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        for (var resource : resources) {
+            resource.close();
+        }
+    }
+
+    @Test
+    public void fieldsAndOperationsAreRecorded() {
+        final var instrumentation = new ResolverLatencyInstrumentation(64, 1);
+        final var registry = new SimpleMeterRegistry();
+        new ResolverLatencyMetrics(instrumentation).bindTo(registry);
+        final var context = new AnnotationConfigApplicationContext(LatencyApi.class);
+        resources.add(context);
+        final var service = service(new GraphQlSchemaFactory(context)::getObject, instrumentation);
+
+        assertThat(execute(service, "query Slow { slow fast }").getErrors()).isEmpty();
+        assertThat(execute(service, "query Fast { fast }").getErrors()).isEmpty();
+        assertThat(execute(service, "{ fast }").getErrors()).isEmpty();
+
+        final var report = new ResolverLatencyEndpoint(instrumentation, 1).slowest();
+        assertThat(report.fields())
+                .singleElement()
+                .satisfies(
+                        slow -> {
+                            assertThat(slow.name()).isEqualTo("Query.slow");
+                            assertThat(slow.count()).isEqualTo(1);
+                            assertThat(slow.p99Ms()).isGreaterThanOrEqualTo(SLOW_MS * 0.99);
+                        });
+        // operations over the limit are recorded together
+        assertThat(instrumentation.slowest(10).operations())
+                .extracting(LatencyStatistics::name, LatencyStatistics::count)
+                .containsExactly(tuple("Slow", 1L), tuple("<other>", 2L));
+
+        final var fast = registry.get("graphql.field.latency").tag("field", "Query.fast");
+        assertThat(fast.functionTimer().count()).isEqualTo(3);
+        final var slow = registry.get("graphql.field.latency").tag("field", "Query.slow");
+        assertThat(slow.functionTimer().totalTime(TimeUnit.MILLISECONDS))
+                .isGreaterThanOrEqualTo(SLOW_MS);
+        assertThat(
+                        registry.get("graphql.operation.latency.p99")
+                                .tag("operation", "Slow")
+                                .timeGauge()
+                                .value(TimeUnit.MILLISECONDS))
+                .isGreaterThanOrEqualTo(SLOW_MS * 0.99);
+    }
+
+    @Test
+    public void trivialFieldsAreSampled() {
+        final var items = 64_000;
+        final var itemList = IntStream.range(0, items).mapToObj(i -> Map.of("id", i)).toList();
+        final var schema =
+                new SchemaGenerator()
+                        .makeExecutableSchema(
+                                new SchemaParser().parse(ITEMS_SCHEMA),
+                                RuntimeWiring.newRuntimeWiring()
+                                        .type(
+                                                "Query",
+                                                type ->
+                                                        type.dataFetcher(
+                                                                "items", environment -> itemList))
+                                        .build());
+        final var instrumentation = new ResolverLatencyInstrumentation(64, 10);
+        final var service = service(() -> schema, instrumentation);
+
+        assertThat(execute(service, "{ items { id } }").getErrors()).isEmpty();
+
+        final var fields =
+                instrumentation.slowest(10).fields().stream()
+                        .collect(Collectors.toMap(LatencyStatistics::name, s -> s));
+        assertThat(fields.get("Query.items").count()).isEqualTo(1);
+        assertThat(fields.get("Item.id").count() % 64).isZero();
+        assertThat(fields.get("Item.id").count()).isCloseTo(items, withinPercentage(15));
+    }
+
+    private static DefaultExecutionGraphQlService service(
+            Supplier<GraphQLSchema> schema, ResolverLatencyInstrumentation instrumentation) {
+        return new DefaultExecutionGraphQlService(
+                new GraphQlSourceFactory(schema, null, List.of(instrumentation)).getObject());
+    }
+
+    private static ExecutionGraphQlResponse execute(
+            DefaultExecutionGraphQlService service, String query) {
+        return service.execute(
+                        new DefaultExecutionGraphQlRequest(
+                                query, null, Map.of(), Map.of(), "1", Locale.ENGLISH))
+                .block();
+    }
+
+    /** Resolvers of an asynchronously completed slow field and a fast one */
+    @GraphQLApi
+    public static class LatencyApi {
+
+        @GraphQLQuery(name = "slow")
+        public CompletableFuture<String> slow() {
+            return CompletableFuture.supplyAsync(
+                    () -> "slow",
+                    CompletableFuture.delayedExecutor(SLOW_MS, TimeUnit.MILLISECONDS));
+        }
+
+        @GraphQLQuery(name = "fast")
+        public String fast() {
+            return "fast";
+        }
+    }
+}
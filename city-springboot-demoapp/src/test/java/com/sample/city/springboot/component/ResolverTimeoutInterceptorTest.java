@@ -0,0 +1,374 @@
+package com.sample.city.springboot.component;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sample.city.springboot.annotation.GraphQLTimeout;
+import com.sample.city.springboot.factory.GraphQlSchemaFactory;
+import com.sample.city.springboot.factory.GraphQlSourceFactory;
+import com.sample.city.springboot.factory.SchemaSnapshotGenerator;
+
+import io.leangen.graphql.annotations.GraphQLMutation;
+import io.leangen.graphql.annotations.GraphQLQuery;
+import io.leangen.graphql.spqr.spring.annotations.GraphQLApi;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.graphql.ExecutionGraphQlResponse;
+import org.springframework.graphql.execution.DefaultExecutionGraphQlService;
+import org.springframework.graphql.support.DefaultExecutionGraphQlRequest;
+
+import javax.annotation.Nullable;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Time limits and hedging of resolvers returning publishers, and the tail latency they cap */
+public class ResolverTimeoutInterceptorTest {
+
+    private static final int REQUESTS = 200;
+    private static final long TIMEOUT_MS = 150;
+    private static final long HEDGE_AFTER_MS = 30;
+    private static final Duration FAST_LATENCY = Duration.ofMillis(5);
+    private static final Duration SLOW_LATENCY = Duration.ofSeconds(1);
+
+    @TempDir Path tempDir;
+
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        for (var resource : resources) {
+            resource.close();
+        }
+    }
+
+    @Test
+    public void slowFieldFailsWithTimeoutErrorAndPartialResult() {
+        for (var snapshot : List.of(false, true)) {
+            final var timeouts = new ResolverTimeoutInterceptor(null, Map.of());
+            final var schemaFactory = schemaFactory(context(), timeouts, snapshot);
+            final var service = service(schemaFactory);
+
+            final var response = execute(service, "{ fast hanging }").block();
+
+            assertThat(schemaFactory.statistics().snapshot()).isEqualTo(snapshot);
+            final Map<String, Object> data = response.getData();
+            assertThat(data).containsEntry("fast", "fast").containsEntry("hanging", null);
+            assertThat(response.getErrors())
+                    .singleElement()
+                    .satisfies(
+                            error -> {
+                                assertThat(error.getErrorType())
+                                        .isEqualTo(GraphQlExceptionResolver.TIMEOUT);
+                                assertThat(error.getMessage())
+                                        .isEqualTo(
+                                                "[ResolverTimeoutException] Resolver of"
+                                                        + " 'Query.hanging' timed out after 150"
+                                                        + " ms");
+                                assertThat(error.getExtensions())
+                                        .containsEntry("timeoutMs", TIMEOUT_MS);
+                                assertThat(error.getParsedPath()).containsExactly("hanging");
+                            });
+            assertThat(timeouts.statistics().timedOut()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void streamsAreBoundedAsAWhole() {
+        final var timeouts = new ResolverTimeoutInterceptor(null, Map.of());
+        final var service = service(schemaFactory(context(), timeouts, false));
+
+        final var completed = execute(service, "{ ticks(count: 3) }").block();
+        final var endless = execute(service, "{ ticks(count: 100) }").block();
+
+        assertThat(completed.getErrors()).isEmpty();
+        assertThat(completed.<Map<String, Object>>getData().get("ticks"))
+                .asList()
+                .containsExactly(0, 1, 2);
+        assertThat(endless.getErrors())
+                .singleElement()
+                .satisfies(
+                        error ->
+                                assertThat(error.getErrorType())
+                                        .isEqualTo(GraphQlExceptionResolver.TIMEOUT));
+        assertThat(timeouts.statistics().bounded()).isEqualTo(2);
+    }
+
+    @Test
+    public void configuredTimeoutsOverrideAnnotationAndDefault() {
+        final var timeouts =
+                new ResolverTimeoutInterceptor(
+                        Duration.ofMillis(50), Map.of("Query.hanging", Duration.ofMillis(20)));
+        final var service = service(schemaFactory(context(), timeouts, false));
+
+        final var response = execute(service, "{ hanging unannotated }").block();
+
+        assertThat(response.getErrors())
+                .extracting(error -> error.getExtensions().get("timeoutMs"))
+                .containsExactlyInAnyOrder(20L, 50L);
+    }
+
+    @Test
+    public void mutationsAreNotHedged() {
+        final var timeouts = new ResolverTimeoutInterceptor(null, Map.of());
+        final var context = context();
+        final var service = service(schemaFactory(context, timeouts, false));
+        final var api = context.getBean(TailApi.class);
+        api.invocations.set(TailApi.SLOW_EVERY - 1);
+
+        final var response = execute(service, "mutation { hedgedWrite }").block();
+
+        assertThat(response.getErrors())
+                .singleElement()
+                .satisfies(
+                        error ->
+                                assertThat(error.getErrorType())
+                                        .isEqualTo(GraphQlExceptionResolver.TIMEOUT));
+        assertThat(api.invocations).hasValue(TailApi.SLOW_EVERY);
+        assertThat(timeouts.statistics().hedged()).isZero();
+    }
+
+    @Test
+    public void slowQueryIsAnsweredByItsHedge() {
+        final var timeouts = new ResolverTimeoutInterceptor(null, Map.of());
+        final var context = context();
+        final var service = service(schemaFactory(context, timeouts, false));
+        final var api = context.getBean(TailApi.class);
+        api.invocations.set(TailApi.SLOW_EVERY - 1);
+
+        final var response = execute(service, "{ hedged }").block();
+
+        assertThat(response.getErrors()).isEmpty();
+        assertThat(response.<Map<String, Object>>getData())
+                .containsEntry("hedged", List.of("done"));
+        assertThat(api.invocations).hasValue(TailApi.SLOW_EVERY + 1);
+        assertThat(timeouts.statistics().hedged()).isOne();
+        assertThat(timeouts.statistics().hedgesWon()).isOne();
+    }
+
+    /**
+     * One in fifty invocations is slow, like a read served by a stalled replica. Requests run on
+     * virtual time, so latencies are exact: unbounded, p99 is the slow latency; a time limit caps
+     * it at the limit at the cost of errors, and hedging cuts it to the hedge delay plus the fast
+     * latency without them.
+     */
+    @Test
+    public void timeoutsAndHedgesCapTailLatency() {
+        final var scheduler = VirtualTimeScheduler.getOrSet();
+        try {
+            final var unbounded =
+                    measure(scheduler, service(schemaFactory(context(), null, false)), "{ tail }");
+            final var timeouts = new ResolverTimeoutInterceptor(null, Map.of());
+            final var bounded =
+                    measure(
+                            scheduler,
+                            service(schemaFactory(context(), timeouts, false)),
+                            "{ bounded }");
+            final var hedged =
+                    measure(
+                            scheduler,
+                            service(schemaFactory(context(), timeouts, false)),
+                            "{ hedged }");
+
+            assertThat(unbounded.p50()).isEqualTo(FAST_LATENCY.toMillis());
+            assertThat(unbounded.p99()).isEqualTo(SLOW_LATENCY.toMillis());
+            assertThat(unbounded.errors()).isZero();
+            assertThat(bounded.p99()).isEqualTo(TIMEOUT_MS);
+            assertThat(bounded.errors()).isEqualTo(REQUESTS / TailApi.SLOW_EVERY);
+            assertThat(hedged.p50()).isEqualTo(FAST_LATENCY.toMillis());
+            assertThat(hedged.p99()).isEqualTo(HEDGE_AFTER_MS + FAST_LATENCY.toMillis());
+            assertThat(hedged.errors()).isZero();
+            assertThat(timeouts.statistics().hedgesWon()).isPositive();
+        } finally {
+            VirtualTimeScheduler.reset();
+        }
+    }
+
+    @Test
+    public void hedgeAnswersQueryWhichFirstInvocationFailed() {
+        final var timeouts = new ResolverTimeoutInterceptor(null, Map.of());
+        final var service = service(schemaFactory(context(), timeouts, false));
+
+        final var response = execute(service, "{ flaky }").block();
+
+        assertThat(response.getErrors()).isEmpty();
+        assertThat(response.<Map<String, Object>>getData()).containsEntry("flaky", List.of("done"));
+        assertThat(timeouts.statistics().hedgesWon()).isOne();
+    }
+
+    @Test
+    public void queryWithoutValueOfEitherInvocationKeepsItsFirstOutcome() {
+        final var timeouts = new ResolverTimeoutInterceptor(null, Map.of());
+        final var service = service(schemaFactory(context(), timeouts, false));
+
+        final var failing = execute(service, "{ failing }").block();
+        final var empty = execute(service, "{ empty }").block();
+
+        assertThat(failing.getErrors())
+                .singleElement()
+                .satisfies(error -> assertThat(error.getMessage()).contains("Invocation 1 failed"));
+        assertThat(empty.getErrors()).isEmpty();
+        assertThat(empty.<Map<String, Object>>getData()).containsEntry("empty", List.of());
+        assertThat(timeouts.statistics().hedged()).isEqualTo(2);
+        assertThat(timeouts.statistics().hedgesWon()).isZero();
+    }
+
+    /** Executes the requests one after another, advancing virtual time until each completes */
+    private static Latencies measure(
+            VirtualTimeScheduler scheduler, DefaultExecutionGraphQlService service, String query) {
+        final var latencies = new ArrayList<Long>();
+        var errors = 0;
+        for (int i = 0; i < REQUESTS; i++) {
+            final long start = scheduler.now(TimeUnit.MILLISECONDS);
+            final var response = execute(service, query).toFuture();
+            while (!response.isDone()) {
+                scheduler.advanceTimeBy(Duration.ofMillis(1));
+            }
+            latencies.add(scheduler.now(TimeUnit.MILLISECONDS) - start);
+            if (!response.join().getErrors().isEmpty()) {
+                errors++;
+            }
+        }
+        final var sorted = latencies.stream().sorted().toList();
+        return new Latencies(
+                sorted.get(sorted.size() / 2),
+                sorted.get((int) Math.ceil(sorted.size() * 0.99) - 1),
+                errors);
+    }
+
+    private AnnotationConfigApplicationContext context() {
+        final var context = new AnnotationConfigApplicationContext(TailApi.class);
+        resources.add(context);
+        return context;
+    }
+
+    private GraphQlSchemaFactory schemaFactory(
+            AnnotationConfigApplicationContext context,
+            @Nullable ResolverTimeoutInterceptor timeouts,
+            boolean snapshot) {
+        if (!snapshot) {
+            return new GraphQlSchemaFactory(
+                    context,
+                    GraphQlSchemaFactory.Options.defaults().withResolverTimeouts(timeouts));
+        }
+        final var snapshotFile = tempDir.resolve("schema-snapshot.json");
+        try (var outputStream = Files.newOutputStream(snapshotFile)) {
+            new SchemaSnapshotGenerator().generate(List.of(TailApi.class)).write(outputStream);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return new GraphQlSchemaFactory(
+                context,
+                GraphQlSchemaFactory.Options.defaults()
+                        .withSnapshotLocation(new FileSystemResource(snapshotFile))
+                        .withResolverTimeouts(timeouts));
+    }
+
+    private static DefaultExecutionGraphQlService service(GraphQlSchemaFactory schemaFactory) {
+        return new DefaultExecutionGraphQlService(
+                new GraphQlSourceFactory(schemaFactory::getObject).getObject());
+    }
+
+    private static Mono<ExecutionGraphQlResponse> execute(
+            DefaultExecutionGraphQlService service, String query) {
+        return service.execute(
+                new DefaultExecutionGraphQlRequest(
+                        query, null, Map.of(), Map.of(), "1", Locale.ENGLISH));
+    }
+
+    private record Latencies(long p50, long p99, int errors) {}
+
+    /** Resolvers of a downstream which every fiftieth invocation is slow */
+    @GraphQLApi
+    public static class TailApi {
+
+        static final int SLOW_EVERY = 50;
+
+        final AtomicInteger invocations = new AtomicInteger();
+
+        @GraphQLQuery(name = "fast")
+        public String fast() {
+            return "fast";
+        }
+
+        @GraphQLQuery(name = "hanging")
+        @GraphQLTimeout(TIMEOUT_MS)
+        public Mono<String> hanging() {
+            return Mono.never();
+        }
+
+        @GraphQLQuery(name = "unannotated")
+        public Mono<String> unannotated() {
+            return Mono.never();
+        }
+
+        @GraphQLQuery(name = "ticks")
+        @GraphQLTimeout(TIMEOUT_MS)
+        public Flux<Integer> ticks(int count) {
+            return Flux.interval(Duration.ofMillis(20)).map(Long::intValue).take(count);
+        }
+
+        @GraphQLQuery(name = "tail")
+        public Mono<String> tail() {
+            return downstream();
+        }
+
+        @GraphQLQuery(name = "bounded")
+        @GraphQLTimeout(TIMEOUT_MS)
+        public Mono<String> bounded() {
+            return downstream();
+        }
+
+        @GraphQLQuery(name = "hedged")
+        @GraphQLTimeout(value = TIMEOUT_MS, hedgeAfter = HEDGE_AFTER_MS)
+        public Mono<String> hedged() {
+            return downstream();
+        }
+
+        @GraphQLQuery(name = "flaky")
+        @GraphQLTimeout(value = TIMEOUT_MS, hedgeAfter = HEDGE_AFTER_MS)
+        public Mono<String> flaky() {
+            return invocations.incrementAndGet() == 1
+                    ? Mono.error(new IllegalStateException("Invocation 1 failed"))
+                    : Mono.just("done");
+        }
+
+        @GraphQLQuery(name = "failing")
+        @GraphQLTimeout(value = TIMEOUT_MS, hedgeAfter = HEDGE_AFTER_MS)
+        public Mono<String> failing() {
+            final var invocation = invocations.incrementAndGet();
+            return Mono.error(new IllegalStateException("Invocation " + invocation + " failed"));
+        }
+
+        @GraphQLQuery(name = "empty")
+        @GraphQLTimeout(value = TIMEOUT_MS, hedgeAfter = HEDGE_AFTER_MS)
+        public Mono<String> empty() {
+            return Mono.empty();
+        }
+
+        @GraphQLMutation(name = "hedgedWrite")
+        @GraphQLTimeout(value = TIMEOUT_MS, hedgeAfter = HEDGE_AFTER_MS)
+        public Mono<String> hedgedWrite() {
+            return downstream();
+        }
+
+        private Mono<String> downstream() {
+            final var slow = invocations.incrementAndGet() % SLOW_EVERY == 0;
+            return Mono.delay(slow ? SLOW_LATENCY : FAST_LATENCY).map(tick -> "done");
+        }
+    }
+}
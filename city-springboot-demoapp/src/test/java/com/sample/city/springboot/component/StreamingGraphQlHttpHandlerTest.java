@@ -0,0 +1,166 @@
+package com.sample.city.springboot.component;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.sample.city.springboot.DemoApp;
+
+import graphql.ExecutionResultImpl;
+
+import io.leangen.graphql.annotations.GraphQLQuery;
+import io.leangen.graphql.spqr.spring.annotations.GraphQLApi;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.graphql.ExecutionGraphQlService;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.graphql.support.DefaultExecutionGraphQlResponse;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.function.ServerRequest;
+
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Responses written directly by {@link StreamingGraphQlHttpHandler}, buffered below the threshold
+ * and streamed above it, compared with responses converted by Spring for GraphQL, and results
+ * failing to serialize
+ */
+public class StreamingGraphQlHttpHandlerTest {
+
+    private static final int THRESHOLD = 256;
+    private static final Map<String, String> QUERIES =
+            Map.of(
+                    "small", "{ getSquare(input: 3) }",
+                    "error", "{ throwingNPE(input: 3) }",
+                    "large", "{ numbers(count: 1000) }");
+
+    @Test
+    public void responsesMatchConvertedResponses() throws Exception {
+        final var converted = execute(false);
+        final var streamed = execute(true);
+
+        assertThat(streamed.keySet()).isEqualTo(QUERIES.keySet());
+        streamed.forEach(
+                (name, response) ->
+                        assertThat(response.body()).as(name).isEqualTo(converted.get(name).body()));
+        assertThat(streamed.get("small").body()).isEqualTo("{\"data\":{\"getSquare\":9}}");
+        assertThat(streamed.get("error").body()).startsWith("{\"errors\":[");
+        assertThat(streamed.get("large").body().length()).isGreaterThan(THRESHOLD);
+
+        for (var name : List.of("small", "error")) {
+            assertThat(streamed.get(name).headers().firstValueAsLong("Content-Length"))
+                    .hasValue(streamed.get(name).body().length());
+        }
+        assertThat(streamed.get("large").headers().firstValue("Content-Length")).isEmpty();
+        assertThat(streamed.get("large").headers().firstValue("Transfer-Encoding"))
+                .hasValue("chunked");
+        assertThat(streamed.values())
+                .allSatisfy(
+                        response ->
+                                assertThat(response.headers().firstValue("Content-Type"))
+                                        .hasValue("application/graphql-response+json"));
+    }
+
+    @Test
+    public void resultFailingToSerializeIsNotSent() throws Exception {
+        final var objectMapper = new ObjectMapper();
+        final var result =
+                ExecutionResultImpl.newExecutionResult()
+                        .data(Map.of("value", new BrokenValue()))
+                        .build();
+        final ExecutionGraphQlService service =
+                request ->
+                        Mono.just(
+                                new DefaultExecutionGraphQlResponse(
+                                        request.toExecutionInput(), result));
+        final var handler =
+                new StreamingGraphQlHttpHandler(
+                        WebGraphQlHandler.builder(service).build(), objectMapper, THRESHOLD, 0);
+        final var servletRequest = new MockHttpServletRequest("POST", "/graphql");
+        servletRequest.setContentType("application/json");
+        servletRequest.setContent("{\"query\":\"{ value }\"}".getBytes(StandardCharsets.UTF_8));
+        final List<HttpMessageConverter<?>> converters =
+                List.of(new MappingJackson2HttpMessageConverter(objectMapper));
+        final var servletResponse = new MockHttpServletResponse();
+
+        final var response =
+                handler.handleRequest(ServerRequest.create(servletRequest, converters));
+
+        assertThatThrownBy(
+                        () -> response.writeTo(servletRequest, servletResponse, () -> converters))
+                .isInstanceOf(JsonMappingException.class)
+                .hasMessageContaining("broken");
+        assertThat(servletResponse.isCommitted()).isFalse();
+        assertThat(servletResponse.getContentAsByteArray()).isEmpty();
+    }
+
+    private static Map<String, HttpResponse<String>> execute(boolean streaming) throws Exception {
+        try (var context =
+                new SpringApplicationBuilder(DemoApp.class, ListApi.class)
+                        .run(
+                                "--spring.main.web-application-type=servlet",
+                                "--server.port=0",
+                                "--logging.level.root=WARN",
+                                "--logging.level.reactor=WARN",
+                                "--spring.graphql.graphiql.enabled=false",
+                                "--graphql.server.response.streaming=" + streaming,
+                                "--graphql.server.response.streaming-threshold=" + THRESHOLD)) {
+            final var uri =
+                    URI.create(
+                            "http://localhost:"
+                                    + context.getEnvironment().getProperty("local.server.port")
+                                    + "/graphql");
+            final var client = HttpClient.newHttpClient();
+            final Map<String, HttpResponse<String>> responses = new HashMap<>();
+            for (var query : QUERIES.entrySet()) {
+                final var response =
+                        client.send(
+                                HttpRequest.newBuilder(uri)
+                                        .header("Content-Type", "application/json")
+                                        .header("Accept", "application/graphql-response+json")
+                                        .POST(
+                                                HttpRequest.BodyPublishers.ofString(
+                                                        "{\"query\":\"" + query.getValue() + "\"}"))
+                                        .build(),
+                                HttpResponse.BodyHandlers.ofString());
+                assertThat(response.statusCode()).isEqualTo(200);
+                responses.put(query.getKey(), response);
+            }
+            return responses;
+        }
+    }
+
+    /** Value which serialization fails */
+    public static class BrokenValue {
+
+        public String getValue() {
+            throw new IllegalStateException("broken");
+        }
+    }
+
+    /** Resolver of a list larger than the streaming threshold */
+    @GraphQLApi
+    public static class ListApi {
+
+        @GraphQLQuery(name = "numbers")
+        public List<Integer> numbers(int count) {
+            return IntStream.range(0, count).boxed().toList();
+        }
+    }
+}
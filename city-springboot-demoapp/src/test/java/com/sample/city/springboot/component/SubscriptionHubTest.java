@@ -0,0 +1,175 @@
+package com.sample.city.springboot.component;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sample.city.springboot.exception.CityException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+/**
+ * Fan-out of a shared upstream to many subscribers, and handling of slow subscribers. Fan-out time
+ * is measured by {@code SubscriptionHubBenchmark}.
+ */
+public class SubscriptionHubTest {
+
+    private static final int SUBSCRIBERS = 1_000;
+    private static final int EVENTS = 20;
+
+    @Test
+    public void subscribersShareSingleUpstream() {
+        final var hub = new SubscriptionHub(16, SubscriptionHub.Overflow.DROP_OLDEST);
+        final var upstreamSubscriptions = new AtomicInteger();
+        final var upstreamCancelled = new AtomicInteger();
+        final Sinks.Many<Integer> source = Sinks.many().multicast().directBestEffort();
+        final var received = new AtomicLong();
+        final List<Disposable> subscriptions = new ArrayList<>(SUBSCRIBERS);
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            subscriptions.add(
+                    hub.subscribe(
+                                    "events",
+                                    () ->
+                                            source.asFlux()
+                                                    .doOnSubscribe(
+                                                            s ->
+                                                                    upstreamSubscriptions
+                                                                            .incrementAndGet())
+                                                    .doOnCancel(upstreamCancelled::incrementAndGet))
+                            .subscribe(event -> received.incrementAndGet()));
+        }
+        assertThat(upstreamSubscriptions).hasValue(1);
+        assertThat(hub.statistics().subscribers()).isEqualTo(SUBSCRIBERS);
+
+        IntStream.range(0, EVENTS).forEach(source::tryEmitNext);
+
+        assertThat(received).hasValue((long) EVENTS * SUBSCRIBERS);
+        final var statistics = hub.statistics();
+        assertThat(statistics.published()).isEqualTo(EVENTS);
+        assertThat(statistics.delivered()).isEqualTo((long) EVENTS * SUBSCRIBERS);
+        assertThat(statistics.dropped()).isZero();
+        assertThat(statistics.buffered()).isZero();
+
+        subscriptions.forEach(Disposable::dispose);
+        assertThat(hub.statistics().topics()).isZero();
+        assertThat(hub.statistics().subscribers()).isZero();
+        assertThat(upstreamCancelled).hasValue(1);
+    }
+
+    @Test
+    public void slowSubscriberKeepsLatestEventsWhenDroppingOldest() {
+        final var hub = new SubscriptionHub(3, SubscriptionHub.Overflow.DROP_OLDEST);
+        final Sinks.Many<Integer> source = Sinks.many().multicast().directBestEffort();
+        final var slow = new SlowSubscriber();
+        final var fast = new CopyOnWriteArrayList<Integer>();
+        hub.subscribe("events", source::asFlux).subscribe(slow);
+        hub.subscribe("events", source::asFlux).subscribe(fast::add);
+
+        IntStream.range(0, 10).forEach(source::tryEmitNext);
+        assertThat(hub.statistics().buffered()).isEqualTo(3);
+        slow.request(10);
+
+        assertThat(slow.events).containsExactly(7, 8, 9);
+        assertThat(fast).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        final var registry = new SimpleMeterRegistry();
+        new SubscriptionHubMetrics(hub).bindTo(registry);
+        assertThat(
+                        registry.get("graphql.subscription.events")
+                                .tag("outcome", "dropped")
+                                .functionCounter()
+                                .count())
+                .isEqualTo(7);
+        assertThat(registry.get("graphql.subscription.lag").gauge().value()).isZero();
+        assertThat(registry.get("graphql.subscription.subscribers").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    public void slowSubscriberReceivesLatestEventWhenConflating() {
+        final var hub = new SubscriptionHub(3, SubscriptionHub.Overflow.CONFLATE);
+        final Sinks.Many<Integer> source = Sinks.many().multicast().directBestEffort();
+        final var slow = new SlowSubscriber();
+        hub.subscribe("events", source::asFlux).subscribe(slow);
+
+        IntStream.range(0, 10).forEach(source::tryEmitNext);
+        slow.request(10);
+
+        assertThat(slow.events).containsExactly(9);
+        assertThat(hub.statistics().dropped()).isEqualTo(9);
+    }
+
+    @Test
+    public void slowSubscriberIsDisconnected() {
+        final var hub = new SubscriptionHub(3, SubscriptionHub.Overflow.DROP_OLDEST);
+        final Sinks.Many<Integer> source = Sinks.many().multicast().directBestEffort();
+        final var slow = new SlowSubscriber();
+        final var fast = new CopyOnWriteArrayList<Integer>();
+        hub.subscribe("events", source::asFlux, SubscriptionHub.Overflow.DISCONNECT)
+                .subscribe(slow);
+        hub.subscribe("events", source::asFlux).subscribe(fast::add);
+
+        IntStream.range(0, 10).forEach(source::tryEmitNext);
+
+        assertThat(slow.error.get())
+                .isInstanceOf(CityException.class)
+                .hasMessageContaining("did not keep up");
+        assertThat(fast).hasSize(10);
+        final var statistics = hub.statistics();
+        assertThat(statistics.disconnected()).isEqualTo(1);
+        assertThat(statistics.subscribers()).isEqualTo(1);
+        assertThat(statistics.buffered()).isZero();
+    }
+
+    @Test
+    public void upstreamIsResubscribedAfterTopicIsClosed() {
+        final var hub = new SubscriptionHub(3, SubscriptionHub.Overflow.DROP_OLDEST);
+        final var upstreamSubscriptions = new AtomicInteger();
+        final var events =
+                hub.subscribe(
+                        "events",
+                        () ->
+                                Flux.range(0, 3)
+                                        .doOnSubscribe(
+                                                s -> upstreamSubscriptions.incrementAndGet()));
+
+        assertThat(events.collectList().block()).containsExactly(0, 1, 2);
+        assertThat(events.collectList().block()).containsExactly(0, 1, 2);
+        assertThat(upstreamSubscriptions).hasValue(2);
+        assertThat(hub.statistics().topics()).isZero();
+    }
+
+    /** Subscriber requesting events only when told to */
+    private static class SlowSubscriber extends BaseSubscriber<Integer> {
+
+        private final List<Integer> events = new CopyOnWriteArrayList<>();
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            // no demand until requested
+        }
+
+        @Override
+        protected void hookOnNext(Integer event) {
+            events.add(event);
+        }
+
+        @Override
+        protected void hookOnError(Throwable throwable) {
+            error.set(throwable);
+        }
+    }
+}
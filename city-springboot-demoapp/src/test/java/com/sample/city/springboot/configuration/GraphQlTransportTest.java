@@ -0,0 +1,118 @@
+package com.sample.city.springboot.configuration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sample.city.springboot.DemoApp;
+
+import io.leangen.graphql.annotations.GraphQLQuery;
+import io.leangen.graphql.spqr.spring.annotations.GraphQLApi;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.graphql.client.WebSocketGraphQlClient;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Queries and WebSocket subscriptions of Reactor-returning resolvers served by Spring MVC and
+ * Spring WebFlux, their throughput is compared by {@code GraphQlTransportBenchmark}
+ */
+public class GraphQlTransportTest {
+
+    private static final int REQUESTS = 20;
+    private static final Duration RESOLVER_LATENCY = Duration.ofMillis(10);
+
+    @Test
+    public void mvcAndWebFluxTransports() {
+        assertThat(run("servlet")).startsWith("http-nio-");
+        assertThat(run("reactive")).startsWith("reactor-http-");
+    }
+
+    /**
+     * @return name of the thread serving the queries
+     */
+    private String run(String webApplicationType) {
+        try (var context =
+                new SpringApplicationBuilder(DemoApp.class, TransportApi.class)
+                        .run(
+                                "--spring.main.web-application-type=" + webApplicationType,
+                                "--server.port=0",
+                                "--logging.level.root=WARN",
+                                "--logging.level.reactor=WARN",
+                                "--logging.level.org.springframework.web.reactive=WARN",
+                                "--spring.graphql.graphiql.enabled=false")) {
+            final var port = context.getEnvironment().getProperty("local.server.port");
+            final var client =
+                    WebClient.builder()
+                            .baseUrl("http://localhost:" + port + "/graphql")
+                            .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(1 << 20))
+                            .build();
+
+            final var responses = execute(client, REQUESTS);
+
+            assertThat(responses)
+                    .hasSize(REQUESTS)
+                    .allSatisfy(data -> assertThat(data).containsKeys("delayed", "thread"));
+            assertThat(client.get().exchangeToMono(r -> Mono.just(r.statusCode())).block())
+                    .isEqualTo(HttpStatus.METHOD_NOT_ALLOWED);
+            final var webSocketClient =
+                    WebSocketGraphQlClient.builder(
+                                    "ws://localhost:" + port + "/graphql",
+                                    new ReactorNettyWebSocketClient())
+                            .build();
+            final var events =
+                    webSocketClient
+                            .document("subscription { getEvents }")
+                            .retrieveSubscription("getEvents")
+                            .toEntity(String.class)
+                            .take(2)
+                            .collectList()
+                            .block(Duration.ofSeconds(10));
+            assertThat(events).containsExactly("Event #0", "Event #1");
+            // an open session would hold the graceful shutdown of the server
+            webSocketClient.stop().block(Duration.ofSeconds(10));
+            return responses.get(0).get("thread");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, String>> execute(WebClient client, int requests) {
+        return Flux.range(0, requests)
+                .flatMap(
+                        i ->
+                                client.post()
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .accept(MediaType.APPLICATION_JSON)
+                                        .bodyValue(Map.of("query", "{ delayed thread }"))
+                                        .retrieve()
+                                        .bodyToMono(Map.class)
+                                        .map(body -> (Map<String, String>) body.get("data")),
+                        requests)
+                .collectList()
+                .block();
+    }
+
+    /** Resolvers of the test, independent of Mongo */
+    @GraphQLApi
+    public static class TransportApi {
+
+        @GraphQLQuery(name = "delayed")
+        public Mono<String> delayed() {
+            return Mono.delay(RESOLVER_LATENCY).thenReturn("delayed");
+        }
+
+        @GraphQLQuery(name = "thread")
+        public String thread() {
+            return Thread.currentThread().getName();
+        }
+    }
+}
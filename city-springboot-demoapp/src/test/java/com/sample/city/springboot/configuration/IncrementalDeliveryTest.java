@@ -0,0 +1,239 @@
+package com.sample.city.springboot.configuration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sample.city.springboot.DemoApp;
+
+import io.leangen.graphql.annotations.GraphQLQuery;
+import io.leangen.graphql.spqr.spring.annotations.GraphQLApi;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Incremental delivery of {@code @defer} and {@code @stream} results over {@code multipart/mixed},
+ * where the initial result is a part of its own, delivered without slow fields and long lists. The
+ * first part is asserted to arrive before the gated resolvers complete, its latency is measured by
+ * {@code IncrementalDeliveryBenchmark}.
+ */
+public class IncrementalDeliveryTest {
+
+    private static final Duration ITEM_INTERVAL = Duration.ofMillis(200);
+    private static final int ITEMS = 5;
+    private static final Duration SLOW_LATENCY = Duration.ofSeconds(1);
+    private static final Duration GATE_TIMEOUT = Duration.ofSeconds(5);
+
+    @ParameterizedTest
+    @ValueSource(strings = {"servlet", "reactive"})
+    public void partsAreDeliveredIncrementally(String webApplicationType) throws Exception {
+        try (var context =
+                new SpringApplicationBuilder(DemoApp.class, IncrementalApi.class)
+                        .run(
+                                "--spring.main.web-application-type=" + webApplicationType,
+                                "--server.port=0",
+                                "--logging.level.root=WARN",
+                                "--logging.level.reactor=WARN",
+                                "--logging.level.org.springframework.web.reactive=WARN",
+                                "--spring.graphql.graphiql.enabled=false")) {
+            final var uri =
+                    URI.create(
+                            "http://localhost:"
+                                    + context.getEnvironment().getProperty("local.server.port")
+                                    + "/graphql");
+
+            final var streamed =
+                    execute(uri, "{ fast numbers @stream(initialCount: 1, label: \"numbers\") }");
+            assertThat(streamed.get(0))
+                    .contains("\"fast\":\"fast\"", "\"numbers\":[0]", "\"hasNext\":true");
+            assertThat(streamed)
+                    .filteredOn(part -> part.contains("\"incremental\""))
+                    .hasSize(ITEMS - 1)
+                    .allSatisfy(part -> assertThat(part).contains("\"label\":\"numbers\""))
+                    .last()
+                    .satisfies(
+                            part ->
+                                    assertThat(part)
+                                            .contains("\"items\":[4]", "\"path\":[\"numbers\",4]"));
+            assertThat(streamed.get(streamed.size() - 1)).isEqualTo("{\"hasNext\":false}");
+
+            final var deferred = execute(uri, "{ fast ... @defer(label: \"slow\") { slow } }");
+            assertThat(deferred.get(0))
+                    .contains("\"fast\":\"fast\"", "\"hasNext\":true")
+                    .doesNotContain("\"slow\"");
+            assertThat(deferred)
+                    .anySatisfy(
+                            part ->
+                                    assertThat(part)
+                                            .contains("\"slow\":[\"slow\"]", "\"label\":\"slow\""));
+
+            assertThat(execute(uri, "{ ... @defer { fast } }"))
+                    .containsExactly(
+                            "{\"data\":{},\"hasNext\":true}",
+                            "{\"hasNext\":true,\"incremental\":[{\"path\":[],\"data\":{\"fast\":\"fast\"}}]}",
+                            "{\"hasNext\":false}");
+
+            final var api = context.getBean(IncrementalApi.class);
+            final var gatedStream =
+                    execute(
+                            uri,
+                            "{ fast gatedNumbers @stream(initialCount: 1) }",
+                            () -> api.gate.complete(1));
+            // the last item is published only once the client received the first part
+            assertThat(gatedStream.get(0)).contains("\"gatedNumbers\":[0]");
+            assertThat(gatedStream).anySatisfy(part -> assertThat(part).contains("\"items\":[1]"));
+
+            api.gate = new CompletableFuture<>();
+            final var gatedDefer =
+                    execute(uri, "{ fast ... @defer { gatedSlow } }", () -> api.gate.complete(1));
+            assertThat(gatedDefer.get(0)).doesNotContain("gatedSlow");
+            assertThat(gatedDefer)
+                    .anySatisfy(part -> assertThat(part).contains("\"gatedSlow\":[\"released\"]"));
+
+            final var plain = execute(uri, "{ fast numbers }");
+            assertThat(plain)
+                    .singleElement()
+                    .satisfies(
+                            part ->
+                                    assertThat(part)
+                                            .contains("\"numbers\":[0,1,2,3,4]")
+                                            .contains("\"hasNext\":false"));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"servlet", "reactive"})
+    public void clientsNotAskingForMultipartGetSingleJsonResponse(String webApplicationType)
+            throws Exception {
+        try (var context =
+                new SpringApplicationBuilder(DemoApp.class, IncrementalApi.class)
+                        .run(
+                                "--spring.main.web-application-type=" + webApplicationType,
+                                "--server.port=0",
+                                "--logging.level.root=WARN",
+                                "--logging.level.reactor=WARN",
+                                "--logging.level.org.springframework.web.reactive=WARN",
+                                "--spring.graphql.graphiql.enabled=false")) {
+            final var uri =
+                    URI.create(
+                            "http://localhost:"
+                                    + context.getEnvironment().getProperty("local.server.port")
+                                    + "/graphql");
+
+            for (var accept : new String[] {null, "*/*", "application/*"}) {
+                final var builder = request(uri, "{ fast ... @defer { fast } }");
+                if (accept != null) {
+                    builder.header("Accept", accept);
+                }
+                final var response =
+                        HttpClient.newHttpClient()
+                                .send(builder.build(), HttpResponse.BodyHandlers.ofString());
+
+                assertThat(response.statusCode()).as("Accept: %s", accept).isEqualTo(200);
+                assertThat(response.headers().firstValue("Content-Type"))
+                        .as("Accept: %s", accept)
+                        .hasValueSatisfying(type -> assertThat(type).startsWith("application/"));
+                assertThat(response.body())
+                        .contains("\"fast\":\"fast\"")
+                        .doesNotContain("\"hasNext\"");
+            }
+        }
+    }
+
+    private static List<String> execute(URI uri, String query) throws Exception {
+        return execute(uri, query, () -> {});
+    }
+
+    /**
+     * Sends the query accepting {@code multipart/mixed}, collecting each part as it is received
+     *
+     * @param onFirstPart invoked once the first part is received, before reading the next ones
+     */
+    private static List<String> execute(URI uri, String query, Runnable onFirstPart)
+            throws Exception {
+        final var request = request(uri, query).header("Accept", "multipart/mixed").build();
+        final var response =
+                HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofInputStream());
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.headers().firstValue("Content-Type"))
+                .hasValueSatisfying(type -> assertThat(type).startsWith("multipart/mixed"));
+
+        final var parts = new ArrayList<String>();
+        try (var reader =
+                new BufferedReader(
+                        new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("{")) {
+                    parts.add(line);
+                    if (parts.size() == 1) {
+                        onFirstPart.run();
+                    }
+                }
+            }
+        }
+        return parts;
+    }
+
+    private static HttpRequest.Builder request(URI uri, String query) {
+        return HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(
+                        HttpRequest.BodyPublishers.ofString(
+                                "{\"query\":\"" + query.replace("\"", "\\\"") + "\"}"));
+    }
+
+    /**
+     * Resolvers delivering their results slowly. Gated resolvers complete once the gate is opened,
+     * or with a value marking the gate timed out.
+     */
+    @GraphQLApi
+    public static class IncrementalApi {
+
+        volatile CompletableFuture<Integer> gate = new CompletableFuture<>();
+
+        @GraphQLQuery(name = "fast")
+        public String fast() {
+            return "fast";
+        }
+
+        @GraphQLQuery(name = "numbers")
+        public Flux<Integer> numbers() {
+            return Flux.interval(ITEM_INTERVAL).map(Long::intValue).take(ITEMS);
+        }
+
+        @GraphQLQuery(name = "slow")
+        public Mono<String> slow() {
+            return Mono.delay(SLOW_LATENCY).thenReturn("slow");
+        }
+
+        @GraphQLQuery(name = "gatedNumbers")
+        public Flux<Integer> gatedNumbers() {
+            return Flux.concat(Mono.just(0), gate());
+        }
+
+        @GraphQLQuery(name = "gatedSlow")
+        public Mono<String> gatedSlow() {
+            return gate().map(opened -> opened > 0 ? "released" : "timed out");
+        }
+
+        private Mono<Integer> gate() {
+            return Mono.fromFuture(gate, true).timeout(GATE_TIMEOUT, Mono.just(-1));
+        }
+    }
+}
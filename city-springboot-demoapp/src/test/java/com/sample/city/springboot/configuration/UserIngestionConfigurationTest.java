@@ -0,0 +1,167 @@
+package com.sample.city.springboot.configuration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteResult;
+import com.sample.city.springboot.DemoApp;
+import com.sample.city.springboot.model.User;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/** NDJSON upload of users on Spring MVC, with bulk writes of a mocked Mongo */
+public class UserIngestionConfigurationTest {
+
+    private static final int USERS = 250;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void uploadStreamsProgressAfterEachBatch() throws Exception {
+        final var body =
+                LongStream.range(0, USERS)
+                        .mapToObj(id -> json(new User(id, "user" + id, List.of())))
+                        .collect(Collectors.joining("\n"));
+
+        final var progress = upload(body);
+
+        assertThat(progress).hasSize(3);
+        assertThat(progress.get(2)).containsEntry("users", USERS).containsEntry("inserted", USERS);
+    }
+
+    @Test
+    public void malformedLinesAreReportedAndSkipped() throws Exception {
+        final var lines =
+                LongStream.range(0, USERS)
+                        .mapToObj(id -> json(new User(id, "user" + id, List.of())))
+                        .collect(Collectors.toCollection(ArrayList::new));
+        lines.set(120, "{\"id\": 120, \"name\": ");
+        lines.set(121, "{\"id\": \"not a number\"}");
+
+        final var progress = upload(String.join("\n", lines));
+
+        assertThat(progress)
+                .filteredOn(line -> line.containsKey("error"))
+                .extracting(line -> line.get("line"))
+                .containsExactly(121, 122);
+        final var batches = progress.stream().filter(line -> line.containsKey("batch")).toList();
+        assertThat(batches).hasSize(3);
+        assertThat(batches.get(2))
+                .containsEntry("users", USERS - 2)
+                .containsEntry("inserted", USERS - 2);
+    }
+
+    /** posts the NDJSON body to a servlet application, returning the lines of the response */
+    private List<Map<String, Object>> upload(String body) throws Exception {
+        try (var context =
+                new SpringApplicationBuilder(DemoApp.class, MockedBulkWrites.class)
+                        .run(
+                                "--spring.main.web-application-type=servlet",
+                                "--server.port=0",
+                                "--logging.level.root=WARN",
+                                "--logging.level.reactor=WARN",
+                                "--spring.graphql.graphiql.enabled=false",
+                                "--user.ingestion.batch-size=100")) {
+            final var response =
+                    HttpClient.newHttpClient()
+                            .send(
+                                    HttpRequest.newBuilder(
+                                                    URI.create(
+                                                            "http://localhost:"
+                                                                    + context.getEnvironment()
+                                                                            .getProperty(
+                                                                                    "local.server.port")
+                                                                    + "/users/ingest"))
+                                            .header("Content-Type", "application/x-ndjson")
+                                            .POST(HttpRequest.BodyPublishers.ofString(body))
+                                            .build(),
+                                    HttpResponse.BodyHandlers.ofLines());
+
+            assertThat(response.statusCode()).isEqualTo(200);
+            assertThat(response.headers().firstValue("Content-Type"))
+                    .hasValue("application/x-ndjson");
+            final var lines = new ArrayList<Map<String, Object>>();
+            response.body().forEach(line -> lines.add(read(line)));
+            return lines;
+        }
+    }
+
+    private String json(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Map<String, Object> read(String line) {
+        try {
+            return objectMapper.readValue(line, new TypeReference<>() {});
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Mongo template acknowledging every bulk insert of users without a Mongo server */
+    public static class MockedBulkWrites {
+
+        @Bean
+        public static BeanPostProcessor mockedBulkWrites() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof ReactiveMongoTemplate template)) {
+                        return bean;
+                    }
+                    final var mocked = spy(template);
+                    doAnswer(invocation -> bulkOperations())
+                            .when(mocked)
+                            .bulkOps(eq(BulkMode.UNORDERED), eq(User.class));
+                    return mocked;
+                }
+            };
+        }
+
+        private static ReactiveBulkOperations bulkOperations() {
+            final var bulkOperations = mock(ReactiveBulkOperations.class);
+            final var inserted = new ArrayList<Object>();
+            when(bulkOperations.insert(anyList()))
+                    .thenAnswer(
+                            invocation -> {
+                                inserted.addAll(invocation.getArgument(0));
+                                return bulkOperations;
+                            });
+            when(bulkOperations.execute()).thenAnswer(invocation -> acknowledged(inserted.size()));
+            return bulkOperations;
+        }
+
+        private static Mono<BulkWriteResult> acknowledged(int inserted) {
+            return Mono.just(BulkWriteResult.acknowledged(inserted, 0, 0, 0, List.of(), List.of()));
+        }
+    }
+}
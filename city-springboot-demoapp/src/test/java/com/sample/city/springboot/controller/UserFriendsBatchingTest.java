@@ -0,0 +1,177 @@
+package com.sample.city.springboot.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.sample.city.springboot.component.BatchedResolverRegistrar;
+import com.sample.city.springboot.component.SubscriptionHub;
+import com.sample.city.springboot.configuration.UserProperties;
+import com.sample.city.springboot.factory.GraphQlSchemaFactory;
+import com.sample.city.springboot.factory.GraphQlSourceFactory;
+import com.sample.city.springboot.factory.SchemaSnapshotGenerator;
+import com.sample.city.springboot.model.User;
+import com.sample.city.springboot.repository.ReactiveUserRepository;
+import com.sample.city.springboot.repository.UserRepository;
+import com.sample.city.springboot.service.ChangeStreamService;
+import com.sample.city.springboot.service.ReactiveUserService;
+import com.sample.city.springboot.service.UserService;
+
+import io.leangen.graphql.annotations.GraphQLContext;
+import io.leangen.graphql.annotations.GraphQLQuery;
+import io.leangen.graphql.spqr.spring.annotations.GraphQLApi;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.graphql.execution.DefaultExecutionGraphQlService;
+import org.springframework.graphql.support.DefaultExecutionGraphQlRequest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/** Counts repository queries per request of a nested list query, with and without batching */
+public class UserFriendsBatchingTest {
+
+    private static final int USERS = 50;
+    private static final String QUERY = "{ users { id friends { id name } } }";
+
+    @TempDir Path tempDir;
+
+    private final AtomicInteger queries = new AtomicInteger();
+    private final List<AnnotationConfigApplicationContext> contexts = new ArrayList<>();
+    private UserRepository userRepository;
+
+    @BeforeEach
+    public void setUp() {
+        final var users =
+                LongStream.range(0, USERS)
+                        .mapToObj(
+                                id ->
+                                        new User(
+                                                id,
+                                                "user" + id,
+                                                List.of(
+                                                        (id + 1) % USERS,
+                                                        (id + 2) % USERS,
+                                                        (id + 3) % USERS)))
+                        .toList();
+        userRepository = mock(UserRepository.class);
+        when(userRepository.findAll())
+                .thenAnswer(
+                        invocation -> {
+                            queries.incrementAndGet();
+                            return users;
+                        });
+        when(userRepository.findAllById(anyIterable()))
+                .thenAnswer(
+                        invocation -> {
+                            queries.incrementAndGet();
+                            final Iterable<Long> ids = invocation.getArgument(0);
+                            return StreamSupport.stream(ids.spliterator(), false)
+                                    .map(id -> users.get(id.intValue()))
+                                    .toList();
+                        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        contexts.forEach(AnnotationConfigApplicationContext::close);
+    }
+
+    @Test
+    public void batchedFriendsQueryCount() throws Exception {
+        final var unbatched = execute(new GraphQlSchemaFactory(context(UnbatchedUserApi.class)));
+        final var unbatchedQueries = queries.getAndSet(0);
+        final var batched = execute(new GraphQlSchemaFactory(context(UserController.class)));
+        final var batchedQueries = queries.getAndSet(0);
+
+        final var snapshotFile = tempDir.resolve("schema-snapshot.json");
+        try (var outputStream = Files.newOutputStream(snapshotFile)) {
+            new SchemaSnapshotGenerator()
+                    .generate(List.of(UserController.class))
+                    .write(outputStream);
+        }
+        final var snapshotFactory =
+                new GraphQlSchemaFactory(
+                        context(UserController.class),
+                        GraphQlSchemaFactory.Options.defaults()
+                                .withSnapshotLocation(new FileSystemResource(snapshotFile)));
+        final var snapshot = execute(snapshotFactory);
+        final var snapshotQueries = queries.getAndSet(0);
+
+        System.out.printf(
+                "Queries per request for %d users with friends: unbatched %d, batched %d%n",
+                USERS, unbatchedQueries, batchedQueries);
+        assertThat(unbatchedQueries).isEqualTo(USERS + 1);
+        assertThat(batchedQueries).isEqualTo(2);
+        assertThat(snapshotFactory.statistics().snapshot()).isTrue();
+        assertThat(snapshotQueries).isEqualTo(2);
+        assertThat(batched).isEqualTo(unbatched).isEqualTo(snapshot);
+    }
+
+    private AnnotationConfigApplicationContext context(Class<?> apiType) {
+        final var context = new AnnotationConfigApplicationContext();
+        context.registerBean(UserRepository.class, () -> userRepository);
+        context.registerBean(
+                ReactiveUserRepository.class, () -> mock(ReactiveUserRepository.class));
+        context.registerBean(
+                ReactiveMongoOperations.class, () -> mock(ReactiveMongoOperations.class));
+        context.registerBean(
+                SubscriptionHub.class,
+                () -> new SubscriptionHub(256, SubscriptionHub.Overflow.DROP_OLDEST));
+        context.register(
+                UserProperties.class,
+                UserService.class,
+                ReactiveUserService.class,
+                ChangeStreamService.class,
+                apiType);
+        context.refresh();
+        contexts.add(context);
+        return context;
+    }
+
+    private static Object execute(GraphQlSchemaFactory schemaFactory) {
+        final var service =
+                new DefaultExecutionGraphQlService(
+                        new GraphQlSourceFactory(schemaFactory::getObject).getObject());
+        service.addDataLoaderRegistrar(new BatchedResolverRegistrar(schemaFactory));
+        final var response =
+                service.execute(
+                                new DefaultExecutionGraphQlRequest(
+                                        QUERY, null, Map.of(), Map.of(), "1", Locale.ENGLISH))
+                        .block();
+        assertThat(response.getErrors()).isEmpty();
+        return response.getData();
+    }
+
+    /** Resolves friends one user at a time, as before batching */
+    @GraphQLApi
+    public static class UnbatchedUserApi {
+
+        @Autowired private UserService userService;
+
+        @GraphQLQuery(name = "users")
+        public List<User> users() {
+            return userService.findUsers();
+        }
+
+        @GraphQLQuery(name = "friends")
+        public List<User> friends(@GraphQLContext User user) {
+            return userService.findUsers(user.friendIds());
+        }
+    }
+}
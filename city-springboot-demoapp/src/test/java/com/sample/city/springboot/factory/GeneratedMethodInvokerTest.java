@@ -0,0 +1,172 @@
+package com.sample.city.springboot.factory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.sample.city.springboot.exception.CityException;
+import com.sample.city.springboot.factory.GraphQlSchemaFactory.AopAwareMethodInvokerFactory;
+
+import io.leangen.geantyref.GenericTypeReflector;
+import io.leangen.graphql.metadata.execution.FixedMethodInvoker;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+
+import java.lang.reflect.AnnotatedType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Resolver invocation through generated accessors and method handles, the overhead of which is
+ * measured by {@code MethodInvokerBenchmark}
+ */
+public class GeneratedMethodInvokerTest {
+
+    private static final int[] ARITIES = {0, 1, 2, 4, 6};
+
+    @Test
+    public void resultsMatchReflectiveInvocation() throws Exception {
+        final var target = new Resolvers();
+        for (var arity : ARITIES) {
+            final var method = method(arity);
+            final var args = IntStream.range(1, arity + 1).boxed().toArray();
+            final var reflective =
+                    new FixedMethodInvoker(() -> target, method, annotatedType())
+                            .execute(null, args);
+            final var generated =
+                    new GeneratedMethodInvoker(() -> target, method, annotatedType())
+                            .execute(null, args);
+            assertThat(generated).as("arity %d", arity).isEqualTo(reflective);
+            assertThat(
+                            new GeneratedMethodInvoker(null, method, annotatedType())
+                                    .execute(target, args))
+                    .isEqualTo(reflective);
+        }
+    }
+
+    @Test
+    public void staticVoidAndFailingResolvers() throws Exception {
+        final var target = new OtherResolvers();
+
+        final var square = OtherResolvers.class.getMethod("square", long.class);
+        assertThat(invoker(target, square).execute(null, new Object[] {3L})).isEqualTo(9L);
+
+        final var record = OtherResolvers.class.getMethod("record", String.class);
+        assertThat(invoker(target, record).execute(null, new Object[] {"a"})).isNull();
+        assertThat(target.recorded).isEqualTo("a");
+
+        final var fail = OtherResolvers.class.getMethod("fail", String.class);
+        assertThatThrownBy(() -> invoker(target, fail).execute(null, new Object[] {"broken"}))
+                .isInstanceOf(InvocationTargetException.class)
+                .cause()
+                .isInstanceOf(CityException.class)
+                .hasMessage("Resolver broken failed");
+    }
+
+    @Test
+    public void proxiesApplyAdvice() throws Exception {
+        final var invocations = new AtomicInteger();
+        final MethodInterceptor counter =
+                invocation -> {
+                    invocations.incrementAndGet();
+                    return invocation.proceed();
+                };
+        final var factory = new AopAwareMethodInvokerFactory();
+
+        final var classProxyFactory = new ProxyFactory(new Resolvers());
+        classProxyFactory.setProxyTargetClass(true);
+        classProxyFactory.addAdvice(counter);
+        final var classProxy = classProxyFactory.getProxy();
+        assertThat(
+                        factory.create(
+                                        () -> classProxy,
+                                        method(1),
+                                        annotatedType(),
+                                        classProxy.getClass())
+                                .execute(null, new Object[] {4}))
+                .isEqualTo(16);
+
+        final var interfaceProxyFactory = new ProxyFactory(new OtherResolvers());
+        interfaceProxyFactory.addAdvice(counter);
+        final var interfaceProxy = interfaceProxyFactory.getProxy();
+        assertThat(
+                        factory.create(
+                                        () -> interfaceProxy,
+                                        OtherResolvers.class.getMethod("greet", String.class),
+                                        GenericTypeReflector.annotate(OtherResolvers.class),
+                                        interfaceProxy.getClass())
+                                .execute(null, new Object[] {"proxy"}))
+                .isEqualTo("Hello proxy");
+        assertThat(invocations).hasValue(2);
+    }
+
+    private static Method method(int arity) throws NoSuchMethodException {
+        final var parameterTypes = new Class<?>[arity];
+        Arrays.fill(parameterTypes, int.class);
+        return Resolvers.class.getMethod("arity" + arity, parameterTypes);
+    }
+
+    private static AnnotatedType annotatedType() {
+        return GenericTypeReflector.annotate(Resolvers.class);
+    }
+
+    private static GeneratedMethodInvoker invoker(OtherResolvers target, Method method) {
+        return new GeneratedMethodInvoker(
+                () -> target, method, GenericTypeReflector.annotate(OtherResolvers.class));
+    }
+
+    /** Cheap resolvers, such as {@code getSquare}, where invocation overhead dominates */
+    public static class Resolvers {
+
+        public int arity0() {
+            return 0;
+        }
+
+        public int arity1(int a) {
+            return a * a;
+        }
+
+        public int arity2(int a, int b) {
+            return a + b;
+        }
+
+        public int arity4(int a, int b, int c, int d) {
+            return a + b + c + d;
+        }
+
+        public int arity6(int a, int b, int c, int d, int e, int f) {
+            return a + b + c + d + e + f;
+        }
+    }
+
+    public interface Greeter {
+        String greet(String name);
+    }
+
+    /** Resolvers bound through method handles rather than generated accessors */
+    public static class OtherResolvers implements Greeter {
+
+        private String recorded;
+
+        public static long square(long input) {
+            return input * input;
+        }
+
+        public void record(String value) {
+            recorded = value;
+        }
+
+        public String fail(String name) {
+            throw new CityException("Resolver {} failed", name);
+        }
+
+        @Override
+        public String greet(String name) {
+            return "Hello " + name;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.sample.city.springboot.factory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sample.city.springboot.component.CachingDocumentProvider;
+import com.sample.city.springboot.component.GraphQlSchemaEndpoint;
+
+import graphql.ExecutionInput;
+
+import io.leangen.graphql.annotations.GraphQLQuery;
+import io.leangen.graphql.spqr.spring.annotations.GraphQLApi;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.graphql.execution.GraphQlSource;
+
+import java.util.Map;
+
+/** Caching of the generated schema, its refresh and the swap of sources to the new generation */
+public class GraphQlSchemaFactoryTest {
+
+    private AnnotationConfigApplicationContext context;
+    private GraphQlSchemaFactory schemaFactory;
+    private CachingDocumentProvider documentProvider;
+    private GraphQlSource graphQlSource;
+
+    @BeforeEach
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext(GreetingApi.class);
+        schemaFactory = new GraphQlSchemaFactory(context);
+        documentProvider = new CachingDocumentProvider(10_000, false);
+        graphQlSource =
+                new GraphQlSourceFactory(schemaFactory::getObject, documentProvider).getObject();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void schemaIsGeneratedOnceAndServedFromCache() {
+        final var schema = schemaFactory.getObject();
+
+        assertThat(schemaFactory.getObject()).isSameAs(schema);
+        // the source is built once per generation, not per lookup
+        assertThat(graphQlSource.schema()).isSameAs(graphQlSource.schema());
+        assertThat(schemaFactory.statistics().generation()).isOne();
+        assertThat(schemaFactory.statistics().lookups()).isEqualTo(4);
+        assertThat(schemaFactory.statistics().snapshot()).isFalse();
+    }
+
+    @Test
+    public void refreshSwapsSourceToNewGenerationAndInvalidatesDocuments() {
+        final var endpoint = new GraphQlSchemaEndpoint(schemaFactory);
+        final var schema = graphQlSource.schema();
+        final var graphQl = graphQlSource.graphQl();
+        assertThat(execute("{ greeting }")).containsEntry("greeting", "hello");
+        assertThat(documentProvider.getCache().estimatedSize()).isOne();
+
+        final var statistics = endpoint.refresh();
+
+        assertThat(statistics.generation()).isEqualTo(2);
+        assertThat(graphQlSource.schema()).isNotSameAs(schema);
+        assertThat(graphQlSource.graphQl()).isNotSameAs(graphQl);
+        assertThat(documentProvider.getCache().estimatedSize()).isZero();
+        assertThat(execute("{ greeting }")).containsEntry("greeting", "hello");
+        assertThat(documentProvider.getCache().stats().missCount()).isEqualTo(2);
+        assertThat(endpoint.statistics().generation()).isEqualTo(2);
+    }
+
+    @Test
+    public void contextRefreshRegeneratesSchemaAfterStartup() {
+        final var event = new ContextRefreshedEvent(context);
+
+        schemaFactory.onApplicationEvent(event);
+        final var schema = schemaFactory.getObject();
+        assertThat(schemaFactory.statistics().generation()).isOne();
+
+        schemaFactory.onApplicationEvent(event);
+        assertThat(schemaFactory.statistics().generation()).isEqualTo(2);
+        assertThat(schemaFactory.getObject()).isNotSameAs(schema);
+    }
+
+    private Map<String, Object> execute(String query) {
+        final var result =
+                graphQlSource.graphQl().execute(ExecutionInput.newExecutionInput(query).build());
+        assertThat(result.getErrors()).isEmpty();
+        return result.getData();
+    }
+
+    @GraphQLApi
+    public static class GreetingApi {
+
+        @GraphQLQuery(name = "greeting")
+        public String greeting() {
+            return "hello";
+        }
+    }
+}
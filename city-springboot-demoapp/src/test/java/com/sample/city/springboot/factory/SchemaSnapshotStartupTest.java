@@ -0,0 +1,124 @@
+package com.sample.city.springboot.factory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.sample.city.springboot.component.SubscriptionHub;
+import com.sample.city.springboot.controller.GraphQlDemoServerController;
+import com.sample.city.springboot.configuration.UserProperties;
+import com.sample.city.springboot.controller.UserController;
+import com.sample.city.springboot.repository.ReactiveUserRepository;
+import com.sample.city.springboot.repository.UserRepository;
+import com.sample.city.springboot.service.ChangeStreamService;
+import com.sample.city.springboot.service.ReactiveUserService;
+import com.sample.city.springboot.service.UserService;
+
+import graphql.ExecutionInput;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.SchemaPrinter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.graphql.execution.GraphQlSource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares schema built from build-time snapshot with runtime SPQR generation, build times are
+ * compared by {@code SchemaGenerationBenchmark}
+ */
+public class SchemaSnapshotStartupTest {
+
+    @TempDir Path tempDir;
+
+    private AnnotationConfigApplicationContext context;
+    private FileSystemResource snapshotLocation;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        final var userRepository = mock(UserRepository.class);
+        when(userRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(UserRepository.class, () -> userRepository);
+        context.registerBean(
+                ReactiveUserRepository.class, () -> mock(ReactiveUserRepository.class));
+        context.registerBean(
+                ReactiveMongoOperations.class, () -> mock(ReactiveMongoOperations.class));
+        context.registerBean(
+                SubscriptionHub.class,
+                () -> new SubscriptionHub(256, SubscriptionHub.Overflow.DROP_OLDEST));
+        context.register(
+                UserProperties.class,
+                UserService.class,
+                ReactiveUserService.class,
+                ChangeStreamService.class,
+                GraphQlDemoServerController.class,
+                UserController.class);
+        context.refresh();
+
+        final var snapshot =
+                new SchemaSnapshotGenerator()
+                        .generate(List.of(GraphQlDemoServerController.class, UserController.class));
+        final var snapshotFile = tempDir.resolve("schema-snapshot.json");
+        try (var outputStream = Files.newOutputStream(snapshotFile)) {
+            snapshot.write(outputStream);
+        }
+        snapshotLocation = new FileSystemResource(snapshotFile);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void snapshotSchemaMatchesRuntimeSchema() {
+        final var runtimeFactory = new GraphQlSchemaFactory(context);
+        final var snapshotFactory =
+                new GraphQlSchemaFactory(
+                        context,
+                        GraphQlSchemaFactory.Options.defaults()
+                                .withSnapshotLocation(snapshotLocation));
+        final var runtimeSchema = runtimeFactory.getObject();
+        final var snapshotSchema = snapshotFactory.getObject();
+
+        assertThat(runtimeFactory.statistics().snapshot()).isFalse();
+        assertThat(snapshotFactory.statistics().snapshot()).isTrue();
+        assertThat(new SchemaPrinter().print(snapshotSchema))
+                .isEqualTo(new SchemaPrinter().print(runtimeSchema));
+
+        final var query =
+                "{ getSquare(input: 3) getSquareMono(input: 4)"
+                        + " saveUserT(user: {id: 7, name: \"city\"}) { id name } }";
+        final Map<String, Object> expected =
+                Map.of(
+                        "getSquare",
+                        9,
+                        "getSquareMono",
+                        List.of(16),
+                        "saveUserT",
+                        List.of(Map.of("id", 7L, "name", "city")));
+        assertThat(execute(runtimeSchema, query)).isEqualTo(expected);
+        assertThat(execute(snapshotSchema, query)).isEqualTo(expected);
+    }
+
+    private static Object execute(GraphQLSchema schema, String query) {
+        final var result =
+                GraphQlSource.builder(schema)
+                        .build()
+                        .graphQl()
+                        .execute(ExecutionInput.newExecutionInput(query).build());
+        assertThat(result.getErrors()).isEmpty();
+        return result.getData();
+    }
+}
@@ -4,11 +4,13 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import com.sample.city.springboot.model.Counter;
 import com.sample.city.springboot.service.CounterService;
+import com.sample.city.springboot.service.CounterShards;
 
 import org.instancio.Instancio;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.util.stream.IntStream;
@@ -19,6 +21,7 @@ public class CounterRepositoryTest {
 
     @Autowired CounterRepository counterRepository;
     @Autowired CounterService counterService;
+    @Autowired MongoTemplate mongoTemplate;
 
     @Test
     public void counterTest() {
@@ -40,4 +43,19 @@ public class CounterRepositoryTest {
 
         //        counterRepository.delete(counter);
     }
+
+    @Test
+    public void shardedCounterTest() {
+        var counter = Instancio.create(Counter.class).withCount(1);
+        counterRepository.save(counter);
+
+        var sharded = new CounterShards(mongoTemplate, 4, 4, 1, 1000);
+        IntStream.range(0, 1000).parallel().forEach(i -> sharded.incrementAndGet(counter.id()));
+
+        assertThat(sharded.read(counter.id()).count()).isEqualTo(1001L);
+        assertThat(counterRepository.findById(counter.id())).isNotEmpty();
+        assertThat(counterRepository.findAll())
+                .extracting(Counter::id)
+                .doesNotContain(counter.id() + "#1");
+    }
 }
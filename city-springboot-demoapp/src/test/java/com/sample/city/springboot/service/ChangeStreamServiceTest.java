@@ -0,0 +1,157 @@
+package com.sample.city.springboot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.sample.city.springboot.component.SubscriptionHub;
+import com.sample.city.springboot.model.Counter;
+import com.sample.city.springboot.model.User;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+
+import javax.annotation.Nullable;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Fan-out of a shared change stream cursor to subscribers of single documents */
+public class ChangeStreamServiceTest {
+
+    private final Sinks.Many<ChangeStreamEvent<Counter>> counterChanges =
+            Sinks.many().multicast().directBestEffort();
+    private final Sinks.Many<ChangeStreamEvent<Counter>> shardChanges =
+            Sinks.many().multicast().directBestEffort();
+    private final Sinks.Many<ChangeStreamEvent<User>> userChanges =
+            Sinks.many().multicast().directBestEffort();
+    private final AtomicInteger cursorsOpened = new AtomicInteger();
+    private final AtomicInteger cursorsClosed = new AtomicInteger();
+    private ReactiveMongoOperations reactiveMongoOperations;
+    private AnnotationConfigApplicationContext context;
+    private ChangeStreamService changeStreamService;
+
+    @BeforeEach
+    public void setUp() {
+        reactiveMongoOperations = mock(ReactiveMongoOperations.class);
+        when(reactiveMongoOperations.getCollectionName(Counter.class)).thenReturn("counter");
+        when(reactiveMongoOperations.getCollectionName(User.class)).thenReturn("user");
+        when(reactiveMongoOperations.changeStream(
+                        eq("counter"), any(ChangeStreamOptions.class), eq(Counter.class)))
+                .thenReturn(
+                        counterChanges
+                                .asFlux()
+                                .doOnSubscribe(subscription -> cursorsOpened.incrementAndGet())
+                                .doOnCancel(cursorsClosed::incrementAndGet));
+        when(reactiveMongoOperations.changeStream(
+                        eq("user"), any(ChangeStreamOptions.class), eq(User.class)))
+                .thenReturn(userChanges.asFlux());
+        when(reactiveMongoOperations.changeStream(
+                        eq(CounterShards.COLLECTION),
+                        any(ChangeStreamOptions.class),
+                        eq(Counter.class)))
+                .thenReturn(shardChanges.asFlux());
+        start(null);
+    }
+
+    private void start(@Nullable CounterShards counterShards) {
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(ReactiveMongoOperations.class, () -> reactiveMongoOperations);
+        context.registerBean(
+                SubscriptionHub.class,
+                () -> new SubscriptionHub(16, SubscriptionHub.Overflow.DROP_OLDEST));
+        if (counterShards != null) {
+            context.registerBean(CounterShards.class, () -> counterShards);
+        }
+        context.register(ChangeStreamService.class);
+        context.refresh();
+        changeStreamService = context.getBean(ChangeStreamService.class);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void subscribersOfCountersShareSingleCursor() {
+        final List<Counter> visits = new CopyOnWriteArrayList<>();
+        final List<Counter> visitsAgain = new CopyOnWriteArrayList<>();
+        final List<Counter> orders = new CopyOnWriteArrayList<>();
+        final List<Disposable> subscriptions =
+                List.of(
+                        changeStreamService.counterChanges("visits").subscribe(visits::add),
+                        changeStreamService.counterChanges("visits").subscribe(visitsAgain::add),
+                        changeStreamService.counterChanges("orders").subscribe(orders::add));
+
+        counterChanges.tryEmitNext(change(new Counter("visits", "visits", 1)));
+        counterChanges.tryEmitNext(change(new Counter("orders", "orders", 1)));
+        // deleted documents have no body
+        counterChanges.tryEmitNext(change(null));
+        counterChanges.tryEmitNext(change(new Counter("visits", "visits", 2)));
+
+        assertThat(cursorsOpened).hasValue(1);
+        assertThat(visits)
+                .extracting(Counter::count)
+                .containsExactly(1L, 2L)
+                .isEqualTo(visitsAgain.stream().map(Counter::count).toList());
+        assertThat(orders).extracting(Counter::count).containsExactly(1L);
+
+        subscriptions.forEach(Disposable::dispose);
+        assertThat(cursorsClosed).hasValue(1);
+        changeStreamService.counterChanges("visits").subscribe().dispose();
+        assertThat(cursorsOpened).hasValue(2);
+    }
+
+    @Test
+    public void userChangesAreFilteredById() {
+        final List<User> users = new CopyOnWriteArrayList<>();
+        final var subscription = changeStreamService.userChanges(1).subscribe(users::add);
+
+        userChanges.tryEmitNext(change(new User(2, "other", List.of())));
+        userChanges.tryEmitNext(change(new User(1, "renamed", List.of(2L))));
+        subscription.dispose();
+
+        assertThat(users).containsExactly(new User(1, "renamed", List.of(2L)));
+    }
+
+    @Test
+    public void changesOfShardsStreamSumOfShards() {
+        context.close();
+        final var counterShards = mock(CounterShards.class);
+        when(counterShards.read("visits")).thenReturn(new Counter("visits", "visits", 5));
+        start(counterShards);
+        final List<Counter> visits = new CopyOnWriteArrayList<>();
+        final var subscription =
+                changeStreamService.counterChanges("visits").subscribe(visits::add);
+
+        shardChanges.tryEmitNext(change(new Counter("visits#3", "visits", 2)));
+        // counter of a shard-like id is not a shard of the logical counter
+        counterChanges.tryEmitNext(change(new Counter("visits#1", "visits#1", 1)));
+        shardChanges.tryEmitNext(change(new Counter("other#1", "other", 1)));
+
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> assertThat(visits).hasSize(1));
+        subscription.dispose();
+        assertThat(visits).containsExactly(new Counter("visits", "visits", 5));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> ChangeStreamEvent<T> change(T body) {
+        final ChangeStreamEvent<T> event = mock(ChangeStreamEvent.class);
+        when(event.getBody()).thenReturn(body);
+        return event;
+    }
+}
@@ -0,0 +1,125 @@
+package com.sample.city.springboot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.sample.city.springboot.exception.CityException;
+import com.sample.city.springboot.model.Counter;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/** Block allocation of sequence values against in-memory stand-in of the counters collection */
+public class CounterBlockAllocatorTest {
+
+    private static final String SEQUENCE_ID = "sequence";
+    private static final int VALUES = 100_000;
+
+    private final AtomicLong counter = new AtomicLong();
+    private final AtomicInteger reservations = new AtomicInteger();
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.findAndModify(
+                        any(Query.class),
+                        any(UpdateDefinition.class),
+                        any(FindAndModifyOptions.class),
+                        eq(Counter.class)))
+                .thenAnswer(
+                        invocation -> {
+                            final var id =
+                                    invocation
+                                            .getArgument(0, Query.class)
+                                            .getQueryObject()
+                                            .getString("id");
+                            if (!SEQUENCE_ID.equals(id)) {
+                                return null;
+                            }
+                            reservations.incrementAndGet();
+                            final var inc =
+                                    invocation
+                                            .getArgument(1, UpdateDefinition.class)
+                                            .getUpdateObject()
+                                            .get("$inc", Document.class)
+                                            .get("count", Long.class);
+                            return new Counter(id, id, counter.addAndGet(inc));
+                        });
+    }
+
+    @Test
+    public void valuesAreUniqueAcrossNodes() {
+        final var nodes =
+                IntStream.range(0, 4).mapToObj(i -> allocator(100, Duration.ofSeconds(1))).toList();
+
+        final var values =
+                IntStream.range(0, VALUES)
+                        .parallel()
+                        .mapToLong(i -> nodes.get(i % nodes.size()).next(SEQUENCE_ID))
+                        .boxed()
+                        .collect(Collectors.toSet());
+
+        assertThat(values).hasSize(VALUES);
+        assertThat(reservations.get()).isLessThan(VALUES / 100);
+    }
+
+    @Test
+    public void blockSizeAdaptsToConsumptionRate() throws InterruptedException {
+        final var allocator = allocator(100, Duration.ofMillis(200));
+
+        for (int i = 0; i < 10_000; i++) {
+            allocator.next(SEQUENCE_ID);
+        }
+        final var grownSize = allocator.blockSize(SEQUENCE_ID);
+        assertThat(grownSize).isGreaterThan(100);
+
+        final var remaining = counter.get() - allocator.next(SEQUENCE_ID);
+        for (long i = 0; i < remaining; i++) {
+            allocator.next(SEQUENCE_ID);
+        }
+        Thread.sleep(500);
+        allocator.next(SEQUENCE_ID);
+        assertThat(allocator.blockSize(SEQUENCE_ID)).isLessThan(grownSize);
+    }
+
+    @Test
+    public void callerIsNotifiedOfReservationsOnly() {
+        final var allocator = allocator(100, Duration.ofSeconds(1));
+        final var notified = new AtomicInteger();
+
+        for (int i = 0; i < 1_000; i++) {
+            allocator.next(SEQUENCE_ID, id -> notified.incrementAndGet());
+        }
+
+        assertThat(notified).hasValue(reservations.get());
+        assertThat(reservations.get()).isBetween(1, 10);
+    }
+
+    @Test
+    public void nextFailsForMissingCounter() {
+        assertThatThrownBy(() -> allocator(100, Duration.ofSeconds(1)).next("missing"))
+                .isInstanceOf(CityException.class)
+                .hasMessage("Counter 'missing' not found");
+    }
+
+    private CounterBlockAllocator allocator(long initialSize, Duration targetRefillInterval) {
+        return new CounterBlockAllocator(
+                mongoTemplate, initialSize, 10, 1_000_000, targetRefillInterval);
+    }
+}
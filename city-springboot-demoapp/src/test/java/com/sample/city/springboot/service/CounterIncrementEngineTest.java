@@ -0,0 +1,265 @@
+package com.sample.city.springboot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.sample.city.springboot.exception.CityException;
+import com.sample.city.springboot.model.Counter;
+
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.data.util.Pair;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/** Coalescing of counter increments against in-memory stand-in of the counters collection */
+public class CounterIncrementEngineTest {
+
+    private static final String COUNTER_ID = "hot";
+
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final AtomicInteger roundTrips = new AtomicInteger();
+    private final Map<String, Thread> writers = new ConcurrentHashMap<>();
+    private final CountDownLatch writing = new CountDownLatch(1);
+    private volatile CountDownLatch gate;
+
+    private CounterIncrementEngine engine;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        counters.put(COUNTER_ID, new AtomicLong(1));
+        final var mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.findAndModify(
+                        any(Query.class),
+                        any(UpdateDefinition.class),
+                        any(FindAndModifyOptions.class),
+                        eq(Counter.class)))
+                .thenAnswer(
+                        invocation -> {
+                            roundTrips.incrementAndGet();
+                            final var id = id(invocation.getArgument(0));
+                            writers.put(id, Thread.currentThread());
+                            final var held = gate;
+                            if (held != null) {
+                                writing.countDown();
+                                held.await();
+                            }
+                            Thread.sleep(2);
+                            final var counter = counters.get(id);
+                            return counter == null
+                                    ? null
+                                    : new Counter(
+                                            id,
+                                            id,
+                                            counter.addAndGet(inc(invocation.getArgument(1))));
+                        });
+        final var bulkOperations = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkMode.UNORDERED, Counter.class)).thenReturn(bulkOperations);
+        final var matched = new AtomicInteger();
+        when(bulkOperations.updateOne(anyList()))
+                .thenAnswer(
+                        invocation -> {
+                            roundTrips.incrementAndGet();
+                            final List<Pair<Query, UpdateDefinition>> updates =
+                                    invocation.getArgument(0);
+                            matched.set(0);
+                            for (var update : updates) {
+                                final var counter = counters.get(id(update.getFirst()));
+                                if (counter != null) {
+                                    counter.addAndGet(inc(update.getSecond()));
+                                    matched.incrementAndGet();
+                                }
+                            }
+                            return bulkOperations;
+                        });
+        when(bulkOperations.execute())
+                .thenAnswer(
+                        invocation ->
+                                BulkWriteResult.acknowledged(
+                                        0, matched.get(), 0, matched.get(), List.of(), List.of()));
+        when(mongoTemplate.find(any(Query.class), eq(Counter.class)))
+                .thenAnswer(
+                        invocation ->
+                                counters.keySet().stream()
+                                        .map(id -> new Counter(id, id, 0))
+                                        .toList());
+
+        engine = new CounterIncrementEngine(mongoTemplate, Duration.ofMillis(50), 1000, 2);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        engine.destroy();
+    }
+
+    @Test
+    public void incrementAndGetReturnsDistinctPostIncrementValues() {
+        final var values =
+                IntStream.range(0, 100)
+                        .parallel()
+                        .mapToObj(i -> engine.incrementAndGet(COUNTER_ID))
+                        .collect(Collectors.toSet());
+
+        assertThat(values)
+                .containsExactlyInAnyOrderElementsOf(
+                        LongStream.rangeClosed(2, 101).boxed().toList());
+        assertThat(counters.get(COUNTER_ID)).hasValue(101);
+        assertThat(roundTrips.get()).isLessThanOrEqualTo(100);
+        assertThat(engine.statistics().flushedIncrements()).isEqualTo(100);
+    }
+
+    @Test
+    public void bufferedIncrementsAreFlushedInBatches() {
+        counters.put("other", new AtomicLong());
+
+        IntStream.range(0, 10_000)
+                .parallel()
+                .forEach(i -> engine.increment(i % 2 == 0 ? COUNTER_ID : "other"));
+
+        await().atMost(Duration.ofSeconds(5))
+                .untilAsserted(() -> assertThat(engine.statistics().pending()).isZero());
+        assertThat(counters.get(COUNTER_ID)).hasValue(5_001);
+        assertThat(counters.get("other")).hasValue(5_000);
+        assertThat(roundTrips.get()).isLessThan(100);
+    }
+
+    @Test
+    public void incrementAndGetIncludesBufferedIncrements() {
+        engine.increment(COUNTER_ID);
+        engine.increment(COUNTER_ID);
+
+        assertThat(engine.incrementAndGet(COUNTER_ID)).isEqualTo(4);
+        assertThat(engine.statistics().pending()).isZero();
+    }
+
+    @Test
+    public void incrementAndGetFailsForMissingCounter() {
+        assertThatThrownBy(() -> engine.incrementAndGet("missing"))
+                .isInstanceOf(CityException.class)
+                .hasMessage("Counter 'missing' not found");
+    }
+
+    @Test
+    public void hotCountersDoNotHoldFlushThreadsFromOtherCounters() throws Exception {
+        counters.put("second", new AtomicLong());
+        counters.put("cold", new AtomicLong());
+        final var running = new AtomicBoolean(true);
+        final ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            for (int i = 0; i < 8; i++) {
+                final var id = i % 2 == 0 ? COUNTER_ID : "second";
+                callers.execute(
+                        () -> {
+                            while (running.get()) {
+                                engine.incrementAndGet(id);
+                            }
+                        });
+            }
+            await().atMost(Duration.ofSeconds(5)).until(() -> counters.get("second").get() > 100);
+
+            engine.increment("cold");
+            final var cold = CompletableFuture.supplyAsync(() -> engine.incrementAndGet("cold"));
+
+            assertThat(cold.get(5, TimeUnit.SECONDS)).isBetween(1L, 2L);
+            await().atMost(Duration.ofSeconds(5))
+                    .untilAsserted(() -> assertThat(counters.get("cold")).hasValue(2));
+        } finally {
+            running.set(false);
+            callers.shutdown();
+            assertThat(callers.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        }
+    }
+
+    @Test
+    public void counterWithoutWriteInFlightIsWrittenOnCallerThread() {
+        counters.put("cold", new AtomicLong());
+
+        assertThat(engine.incrementAndGet("cold")).isOne();
+        assertThat(writers).containsEntry("cold", Thread.currentThread());
+    }
+
+    @Test
+    public void callersWaitingForRejectedWriteFailAndNextCallerWritesAgain() throws Exception {
+        gate = new CountDownLatch(1);
+        final var leader = CompletableFuture.supplyAsync(() -> engine.incrementAndGet(COUNTER_ID));
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        final var follower = new CompletableFuture<Long>();
+        final var followerThread =
+                new Thread(
+                        () -> {
+                            try {
+                                follower.complete(engine.incrementAndGet(COUNTER_ID));
+                            } catch (RuntimeException e) {
+                                follower.completeExceptionally(e);
+                            }
+                        });
+        followerThread.start();
+        // parked waiting for the write in flight
+        await().atMost(Duration.ofSeconds(5))
+                .until(() -> followerThread.getState() == Thread.State.TIMED_WAITING);
+
+        engine.destroy();
+        gate.countDown();
+        gate = null;
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo(2);
+        assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(CityException.class)
+                .hasMessageContaining("Increment of counter 'hot' rejected");
+        assertThat(engine.incrementAndGet(COUNTER_ID)).isEqualTo(3);
+    }
+
+    @Test
+    public void bufferedIncrementsOfMissingCounterAreCountedAsFailed() {
+        engine.increment(COUNTER_ID);
+        engine.increment("missing");
+        engine.increment("missing");
+
+        engine.flush();
+
+        final var statistics = engine.statistics();
+        assertThat(counters.get(COUNTER_ID)).hasValue(2);
+        assertThat(statistics.flushedIncrements()).isEqualTo(1);
+        assertThat(statistics.failedIncrements()).isEqualTo(2);
+        assertThat(statistics.pending()).isZero();
+    }
+
+    private static String id(Query query) {
+        return query.getQueryObject().getString("id");
+    }
+
+    private static long inc(UpdateDefinition update) {
+        return ((Number) update.getUpdateObject().get("$inc", Document.class).get("count"))
+                .longValue();
+    }
+}
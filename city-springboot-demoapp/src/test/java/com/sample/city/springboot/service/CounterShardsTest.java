@@ -0,0 +1,195 @@
+package com.sample.city.springboot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.sample.city.springboot.exception.CityException;
+import com.sample.city.springboot.model.Counter;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Sharded increments against in-memory stand-ins of the counter and shard collections */
+public class CounterShardsTest {
+
+    private static final String COUNTER_ID = "hot";
+    private static final int THREADS = 8;
+
+    private final Map<String, AtomicLong> documents = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> shardDocuments = new ConcurrentHashMap<>();
+    private volatile long writeLatencyMs;
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        documents.put(COUNTER_ID, new AtomicLong(1));
+        mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.findAndModify(
+                        any(Query.class),
+                        any(UpdateDefinition.class),
+                        any(FindAndModifyOptions.class),
+                        eq(Counter.class)))
+                .thenAnswer(invocation -> increment(documents, invocation));
+        when(mongoTemplate.findAndModify(
+                        any(Query.class),
+                        any(UpdateDefinition.class),
+                        any(FindAndModifyOptions.class),
+                        eq(Counter.class),
+                        eq(CounterShards.COLLECTION)))
+                .thenAnswer(invocation -> increment(shardDocuments, invocation));
+        when(mongoTemplate.findOne(any(Query.class), eq(Counter.class)))
+                .thenAnswer(
+                        invocation -> {
+                            final var id = id(invocation.getArgument(0));
+                            final var document = documents.get(id);
+                            return document == null ? null : new Counter(id, id, document.get());
+                        });
+        when(mongoTemplate.find(any(Query.class), eq(Counter.class), eq(CounterShards.COLLECTION)))
+                .thenAnswer(
+                        invocation -> {
+                            final var ids =
+                                    (Collection<?>)
+                                            invocation
+                                                    .getArgument(0, Query.class)
+                                                    .getQueryObject()
+                                                    .get("id", Document.class)
+                                                    .get("$in");
+                            return ids.stream()
+                                    .filter(shardDocuments::containsKey)
+                                    .map(
+                                            id ->
+                                                    new Counter(
+                                                            (String) id,
+                                                            (String) id,
+                                                            shardDocuments.get(id).get()))
+                                    .toList();
+                        });
+    }
+
+    @Test
+    public void readsSumIncrementsOfAllShards() throws InterruptedException {
+        final var shards = new CounterShards(mongoTemplate, 4, 4, 1, 1000);
+
+        increment(shards, 250);
+
+        final var counter = shards.read(COUNTER_ID);
+        assertThat(counter.count()).isEqualTo(1 + THREADS * 250);
+        assertThat(counter.name()).isEqualTo(COUNTER_ID);
+        assertThat(documents).containsOnlyKeys(COUNTER_ID);
+        assertThat(shardDocuments).isNotEmpty().hasSizeLessThanOrEqualTo(3);
+        assertThat(shardDocuments.keySet()).allMatch(id -> id.matches(COUNTER_ID + "#[1-3]"));
+        assertThat(CounterShards.counterId(COUNTER_ID + "#3")).isEqualTo(COUNTER_ID);
+    }
+
+    @Test
+    public void countersOfShardLikeIdsAreNotShards() throws InterruptedException {
+        documents.put(COUNTER_ID + "#1", new AtomicLong(100));
+        final var shards = new CounterShards(mongoTemplate, 4, 4, 1, 1000);
+
+        increment(shards, 10);
+
+        assertThat(shards.read(COUNTER_ID).count()).isEqualTo(1 + THREADS * 10);
+        assertThat(shards.read(COUNTER_ID + "#1").count()).isEqualTo(100);
+    }
+
+    @Test
+    public void contendedCounterGrowsShards() throws InterruptedException {
+        writeLatencyMs = 1;
+        final var shards = new CounterShards(mongoTemplate, 1, 8, 0.1, 50);
+
+        increment(shards, 100);
+
+        assertThat(shards.shardCount(COUNTER_ID)).isGreaterThan(1);
+        assertThat(shards.statistics().growths()).isPositive();
+        assertThat(shards.read(COUNTER_ID).count()).isEqualTo(1 + THREADS * 100);
+    }
+
+    @Test
+    public void uncontendedCounterKeepsSingleShard() {
+        writeLatencyMs = 1;
+        final var shards = new CounterShards(mongoTemplate, 1, 8, 0.1, 50);
+
+        long count = 0;
+        for (int i = 0; i < 200; i++) {
+            count = shards.incrementAndGet(COUNTER_ID);
+        }
+
+        assertThat(count).isEqualTo(201);
+        assertThat(shards.shardCount(COUNTER_ID)).isOne();
+        assertThat(shards.statistics().contended()).isZero();
+        assertThat(shardDocuments).isEmpty();
+    }
+
+    @Test
+    public void missingCounterFailsWithoutCreatingShards() {
+        final var shards = new CounterShards(mongoTemplate, 4, 4, 0.1, 50);
+
+        assertThatThrownBy(() -> shards.incrementAndGet("missing"))
+                .isInstanceOf(CityException.class)
+                .hasMessage("Counter 'missing' not found");
+        assertThatThrownBy(() -> shards.read("missing")).isInstanceOf(CityException.class);
+        assertThat(documents).containsOnlyKeys(COUNTER_ID);
+        assertThat(shardDocuments).isEmpty();
+    }
+
+    /** increments the document of the query, writes of one document are serialized like in Mongo */
+    private Counter increment(Map<String, AtomicLong> collection, InvocationOnMock invocation)
+            throws InterruptedException {
+        final var id = id(invocation.getArgument(0));
+        final var inc =
+                invocation
+                        .getArgument(1, UpdateDefinition.class)
+                        .getUpdateObject()
+                        .get("$inc", Document.class)
+                        .get("count", Integer.class);
+        final var document =
+                invocation.getArgument(2, FindAndModifyOptions.class).isUpsert()
+                        ? collection.computeIfAbsent(id, key -> new AtomicLong())
+                        : collection.get(id);
+        if (document == null) {
+            return null;
+        }
+        synchronized (document) {
+            if (writeLatencyMs > 0) {
+                Thread.sleep(writeLatencyMs);
+            }
+            return new Counter(id, id, document.addAndGet(inc));
+        }
+    }
+
+    private static String id(Query query) {
+        return query.getQueryObject().getString("id");
+    }
+
+    private static void increment(CounterShards shards, int increments)
+            throws InterruptedException {
+        final var executor = Executors.newFixedThreadPool(THREADS);
+        for (int thread = 0; thread < THREADS; thread++) {
+            executor.execute(
+                    () -> {
+                        for (int i = 0; i < increments; i++) {
+                            shards.incrementAndGet(COUNTER_ID);
+                        }
+                    });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+    }
+}
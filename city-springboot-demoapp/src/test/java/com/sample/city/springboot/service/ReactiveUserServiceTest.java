@@ -0,0 +1,82 @@
+package com.sample.city.springboot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.sample.city.springboot.configuration.UserProperties;
+import com.sample.city.springboot.model.User;
+import com.sample.city.springboot.repository.ReactiveUserRepository;
+import com.sample.city.springboot.repository.UserRepository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Saves of the blocking and reactive path are deferred until subscription, their latency under load
+ * of concurrent callers is compared by {@code ReactiveUserServiceBenchmark}
+ */
+public class ReactiveUserServiceTest {
+
+    private static final Duration SAVE_LATENCY = Duration.ofMillis(20);
+
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    private AnnotationConfigApplicationContext context;
+    private UserProperties userProperties;
+
+    @BeforeEach
+    public void setUp() {
+        final var userRepository = mock(UserRepository.class);
+        when(userRepository.save(any()))
+                .thenAnswer(
+                        invocation -> {
+                            threads.add(Thread.currentThread());
+                            Thread.sleep(SAVE_LATENCY.toMillis());
+                            return invocation.getArgument(0);
+                        });
+        final var reactiveUserRepository = mock(ReactiveUserRepository.class);
+        when(reactiveUserRepository.save(any()))
+                .thenAnswer(
+                        invocation ->
+                                Mono.delay(SAVE_LATENCY)
+                                        .doOnNext(tick -> threads.add(Thread.currentThread()))
+                                        .thenReturn(invocation.getArgument(0)));
+
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(UserRepository.class, () -> userRepository);
+        context.registerBean(ReactiveUserRepository.class, () -> reactiveUserRepository);
+        context.register(UserProperties.class, UserService.class, ReactiveUserService.class);
+        context.refresh();
+        userProperties = context.getBean(UserProperties.class);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void saveIsDeferredUntilSubscription() {
+        final var service = context.getBean(ReactiveUserService.class);
+        for (var reactive : List.of(false, true)) {
+            userProperties.getPersistence().setReactive(reactive);
+            final var user = new User(1, "user", List.of());
+
+            final var save = service.saveUser(user);
+            assertThat(threads).isEmpty();
+            assertThat(save.block()).isEqualTo(user);
+            assertThat(threads).isNotEmpty();
+            threads.clear();
+        }
+    }
+}
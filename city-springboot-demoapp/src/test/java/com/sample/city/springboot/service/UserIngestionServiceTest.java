@@ -0,0 +1,174 @@
+package com.sample.city.springboot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.sample.city.springboot.configuration.UserProperties;
+import com.sample.city.springboot.model.User;
+import com.sample.city.springboot.service.UserIngestionService.IngestionBatch;
+
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Batching, parallelism and failure reporting of user ingestion against mocked bulk writes */
+public class UserIngestionServiceTest {
+
+    private static final int BATCH_SIZE = 100;
+    private static final int PARALLELISM = 3;
+    private static final long DUPLICATE_ID = 150;
+    private static final long UNAVAILABLE_ID = 420;
+
+    private final List<Integer> batchSizes = new ArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicLong emitted = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong maxBuffered = new AtomicLong();
+    private AnnotationConfigApplicationContext context;
+    private UserIngestionService userIngestionService;
+
+    @BeforeEach
+    public void setUp() {
+        final var reactiveMongoOperations = mock(ReactiveMongoOperations.class);
+        when(reactiveMongoOperations.bulkOps(eq(BulkMode.UNORDERED), eq(User.class)))
+                .thenAnswer(invocation -> bulkOperations());
+
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(ReactiveMongoOperations.class, () -> reactiveMongoOperations);
+        context.register(UserProperties.class, UserIngestionService.class);
+        context.refresh();
+        final var ingestion = context.getBean(UserProperties.class).getIngestion();
+        ingestion.setBatchSize(BATCH_SIZE);
+        ingestion.setParallelism(PARALLELISM);
+        userIngestionService = context.getBean(UserIngestionService.class);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void streamedUsersAreInsertedInBoundedParallelBatches() {
+        final var progress =
+                userIngestionService
+                        .ingest(users(10_000, 1050).doOnNext(user -> emitted.incrementAndGet()))
+                        .collectList()
+                        .block();
+
+        assertThat(batchSizes).hasSize(11).containsOnly(BATCH_SIZE, 50);
+        assertThat(progress).hasSize(11);
+        assertThat(progress.get(progress.size() - 1).users()).isEqualTo(1050);
+        assertThat(progress.get(progress.size() - 1).inserted()).isEqualTo(1050);
+        assertThat(progress)
+                .extracting(p -> p.batch().index())
+                .containsExactlyInAnyOrder(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+        assertThat(maxInFlight).hasValueBetween(2, PARALLELISM);
+        // users are requested only as batches complete
+        assertThat(maxBuffered.get()).isLessThanOrEqualTo((PARALLELISM + 1L) * BATCH_SIZE);
+    }
+
+    @Test
+    public void failedBatchesAreReportedWithoutAbortingIngestion() {
+        final var summary =
+                userIngestionService.ingestAll(users(0, 1000).collectList().block()).block();
+
+        assertThat(summary.batches()).isEqualTo(10);
+        assertThat(summary.users()).isEqualTo(1000);
+        assertThat(summary.inserted()).isEqualTo(1000 - 1 - BATCH_SIZE);
+        assertThat(summary.failedBatches())
+                .extracting(IngestionBatch::index, IngestionBatch::inserted, IngestionBatch::error)
+                .containsExactlyInAnyOrder(
+                        tuple(1L, BATCH_SIZE - 1, "E11000 duplicate key"),
+                        tuple(4L, 0, "Mongo unavailable"));
+    }
+
+    @Test
+    public void emptyIngestionInsertsNothing() {
+        final var summary = userIngestionService.ingestAll(List.of()).block();
+
+        assertThat(summary.batches()).isZero();
+        assertThat(summary.inserted()).isZero();
+        assertThat(batchSizes).isEmpty();
+    }
+
+    private ReactiveBulkOperations bulkOperations() {
+        final var bulkOperations = mock(ReactiveBulkOperations.class);
+        final List<User> batch = new ArrayList<>();
+        when(bulkOperations.insert(anyList()))
+                .thenAnswer(
+                        invocation -> {
+                            batch.addAll(invocation.getArgument(0));
+                            return bulkOperations;
+                        });
+        when(bulkOperations.execute())
+                .thenAnswer(
+                        invocation -> {
+                            synchronized (batchSizes) {
+                                batchSizes.add(batch.size());
+                            }
+                            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                            maxBuffered.accumulateAndGet(emitted.get() - written.get(), Math::max);
+                            return Mono.delay(Duration.ofMillis(10))
+                                    .then(Mono.defer(() -> result(batch)))
+                                    .doOnTerminate(
+                                            () -> {
+                                                inFlight.decrementAndGet();
+                                                written.addAndGet(batch.size());
+                                            });
+                        });
+        return bulkOperations;
+    }
+
+    private static Mono<BulkWriteResult> result(List<User> batch) {
+        final var ids = batch.stream().map(User::id).toList();
+        if (ids.contains(UNAVAILABLE_ID)) {
+            return Mono.error(new DataAccessResourceFailureException("Mongo unavailable"));
+        }
+        if (ids.contains(DUPLICATE_ID)) {
+            return Mono.error(
+                    new MongoBulkWriteException(
+                            BulkWriteResult.acknowledged(
+                                    batch.size() - 1, 0, 0, 0, List.of(), List.of()),
+                            List.of(
+                                    new BulkWriteError(
+                                            11000,
+                                            "E11000 duplicate key",
+                                            new BsonDocument(),
+                                            ids.indexOf(DUPLICATE_ID))),
+                            null,
+                            new ServerAddress(),
+                            Set.of()));
+        }
+        return Mono.just(BulkWriteResult.acknowledged(batch.size(), 0, 0, 0, List.of(), List.of()));
+    }
+
+    private static Flux<User> users(long from, int count) {
+        return Flux.range(0, count).map(index -> new User(from + index, "user" + index, List.of()));
+    }
+}
@@ -0,0 +1,39 @@
+package com.sample.city.springboot.annotation;
+
+import graphql.introspection.Introspection;
+
+import io.leangen.graphql.annotations.types.GraphQLDirective;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Weight of a field in the static cost of operations, declared next to SPQR {@code @GraphQLQuery}.
+ * The weight is exposed as {@code @cost} directive of the field definition, so it is part of the
+ * schema snapshot as well.
+ *
+ * <p>Cost of a field selection is its weight plus the cost of its sub-selections, multiplied by the
+ * values of its {@link #multipliers()} arguments, e.g. page size of a list field.
+ */
+@GraphQLDirective(
+        name = GraphQLCost.NAME,
+        description = "Weight of the field in the static cost of operations",
+        locations = Introspection.DirectiveLocation.FIELD_DEFINITION)
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface GraphQLCost {
+
+    String NAME = "cost";
+
+    /**
+     * @return cost of resolving the field once
+     */
+    int value() default 1;
+
+    /**
+     * @return names of numeric arguments multiplying the cost of the field selection
+     */
+    String[] multipliers() default {};
+}
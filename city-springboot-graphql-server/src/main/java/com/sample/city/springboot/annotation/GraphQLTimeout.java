@@ -0,0 +1,31 @@
+package com.sample.city.springboot.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Time limit of a resolver returning {@code Mono}, {@code Flux} or another publisher, declared next
+ * to SPQR {@code @GraphQLQuery}. A resolver not completing in time fails with a timeout error, so
+ * the response carries a {@code null} field with the error instead of waiting for it.
+ *
+ * <p>Resolvers returning {@code Mono} may be hedged as well: if no signal arrives within {@link
+ * #hedgeAfter()}, the resolver is invoked once more and whichever invocation signals first wins.
+ * Hedging applies to query operations only, as mutations are not idempotent.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface GraphQLTimeout {
+
+    /**
+     * @return maximum time in milliseconds until the resolver completes
+     */
+    long value();
+
+    /**
+     * @return time in milliseconds after which a slow query is invoked once more, {@code 0} to
+     *     never hedge
+     */
+    long hedgeAfter() default 0;
+}
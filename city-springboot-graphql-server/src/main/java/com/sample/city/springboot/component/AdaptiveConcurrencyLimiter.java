@@ -0,0 +1,290 @@
+package com.sample.city.springboot.component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sample.city.springboot.exception.CityException;
+
+import javax.annotation.Nullable;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adaptive limits of concurrently executing GraphQL operations, so that operations slowed down by
+ * their backends are rejected fast instead of piling up.
+ *
+ * <p>Every operation name has its own limit, and all operations share the limit of the node. Limits
+ * follow the gradient of latency: each completed operation updates a short and a long moving
+ * average of its latency, and the limit is scaled by their ratio, within the tolerance, plus a
+ * queue of the square root of the limit. The limit therefore grows while latency is steady and
+ * shrinks as soon as latency rises, e.g. when the database slows down. Limits not used up to their
+ * half are not updated, as their latency says nothing about the capacity.
+ *
+ * <p>Operation names are chosen by clients, so only the names seen first, up to the maximum, are
+ * limited separately until they are idle for an hour. Further names share one limit rather than
+ * evicting those, so that made-up names neither displace the limits of known operations nor each
+ * start at the initial limit.
+ *
+ * <p>Operations of the type not prioritized may use only the share of the node limit that is not
+ * reserved for the prioritized ones, so they are shed first.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final String ANONYMOUS = "anonymous";
+    private static final double SHORT_SMOOTHING = 2.0 / (10 + 1);
+    private static final double LONG_SMOOTHING = 2.0 / (600 + 1);
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final Priority priority;
+    private final double reservedShare;
+    private final int maxOperations;
+    private final Limit total;
+    private final Limit otherOperations;
+    private final Cache<String, Limit> operations;
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejectedQueries = new LongAdder();
+    private final LongAdder rejectedMutations = new LongAdder();
+
+    /**
+     * Creates concurrency limiter
+     *
+     * @param initialLimit limit of an operation before its latency is measured
+     * @param minLimit minimum limit of an operation and of the node
+     * @param maxLimit maximum limit of an operation and of the node
+     * @param tolerance ratio of short to long latency tolerated before the limit shrinks
+     * @param smoothing weight of a latency sample in the limit
+     * @param priority type of operations admitted ahead of the others
+     * @param reservedShare share of the node limit reserved for the prioritized operations
+     * @param maxOperations maximum number of operation names limited separately, others share one
+     *     limit
+     */
+    public AdaptiveConcurrencyLimiter(
+            int initialLimit,
+            int minLimit,
+            int maxLimit,
+            double tolerance,
+            double smoothing,
+            Priority priority,
+            double reservedShare,
+            int maxOperations) {
+        if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new CityException(
+                    "Invalid concurrency limits: initial {}, bounds [{}, {}]",
+                    initialLimit,
+                    minLimit,
+                    maxLimit);
+        }
+        if (tolerance < 1 || smoothing <= 0 || smoothing > 1) {
+            throw new CityException(
+                    "Invalid latency tolerance {} or smoothing {} of concurrency limits",
+                    tolerance,
+                    smoothing);
+        }
+        if (reservedShare < 0 || reservedShare >= 1) {
+            throw new CityException(
+                    "Invalid reserved share {} of concurrency limit", reservedShare);
+        }
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.priority = priority;
+        this.reservedShare = reservedShare;
+        this.maxOperations = maxOperations;
+        this.total = new Limit();
+        this.otherOperations = new Limit();
+        this.operations = Caffeine.newBuilder().expireAfterAccess(Duration.ofHours(1)).build();
+    }
+
+    /**
+     * Admits the operation if both its limit and the node limit allow
+     *
+     * @param operationName name of the operation, {@code null} for anonymous operations
+     * @param mutation whether the operation is a mutation
+     * @return permit to release once the operation completes, or {@code null} if rejected
+     */
+    @Nullable
+    public Permit tryAcquire(@Nullable String operationName, boolean mutation) {
+        final var operation = operation(operationName);
+        final var deprioritized =
+                priority == Priority.QUERIES && mutation
+                        || priority == Priority.MUTATIONS && !mutation;
+        if (total.tryAcquire(deprioritized ? 1 - reservedShare : 1)) {
+            if (operation.tryAcquire(1)) {
+                accepted.increment();
+                return new Permit(operation);
+            }
+            total.inFlight.decrementAndGet();
+        }
+        (mutation ? rejectedMutations : rejectedQueries).increment();
+        return null;
+    }
+
+    /**
+     * Time after which a rejected operation may be admitted, the recent latency of the operation
+     *
+     * @param operationName name of the operation, {@code null} for anonymous operations
+     * @return milliseconds to retry after, at least one
+     */
+    public long retryAfterMillis(@Nullable String operationName) {
+        final var operation = limited(operationName);
+        final var latency = operation.shortRtt > 0 ? operation : total;
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(Math.round(latency.shortRtt)));
+    }
+
+    /**
+     * @param operationName name of the operation, {@code null} for anonymous operations
+     * @return current limit of the operation
+     */
+    public int limit(@Nullable String operationName) {
+        return (int) limited(operationName).limit;
+    }
+
+    /**
+     * Snapshot of the node limit and admission counters
+     *
+     * @return current {@link LimiterStatistics}
+     */
+    public LimiterStatistics statistics() {
+        return new LimiterStatistics(
+                (int) total.limit,
+                total.inFlight.get(),
+                operations.estimatedSize(),
+                accepted.sum(),
+                rejectedQueries.sum(),
+                rejectedMutations.sum());
+    }
+
+    private Limit operation(@Nullable String operationName) {
+        final var name = name(operationName);
+        final var operation = operations.getIfPresent(name);
+        if (operation != null) {
+            return operation;
+        }
+        return operations.estimatedSize() < maxOperations
+                ? operations.get(name, key -> new Limit())
+                : otherOperations;
+    }
+
+    /** Limit of the operation without admitting its name, a new name has the initial limit */
+    private Limit limited(@Nullable String operationName) {
+        final var name = name(operationName);
+        final var operation = operations.getIfPresent(name);
+        if (operation != null) {
+            return operation;
+        }
+        return operations.estimatedSize() < maxOperations ? new Limit() : otherOperations;
+    }
+
+    private static String name(@Nullable String operationName) {
+        return Objects.requireNonNullElse(operationName, ANONYMOUS);
+    }
+
+    /** Type of operations admitted ahead of the others */
+    public enum Priority {
+        /** Queries and mutations share the whole node limit */
+        NONE,
+        /** Mutations are limited to the share of the node limit not reserved for queries */
+        QUERIES,
+        /** Queries are limited to the share of the node limit not reserved for mutations */
+        MUTATIONS
+    }
+
+    /** Admission of an operation, released once it completes */
+    public final class Permit {
+
+        private final Limit operation;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Limit operation) {
+            this.operation = operation;
+        }
+
+        /** Releases the permit and updates limits by the latency of the operation, only once */
+        public void release() {
+            release(System.nanoTime() - startNanos);
+        }
+
+        /** Releases the permit once, updating limits by the given latency */
+        void release(long latencyNanos) {
+            if (released.compareAndSet(false, true)) {
+                operation.release(latencyNanos);
+                total.release(latencyNanos);
+            }
+        }
+    }
+
+    /** Concurrency limit following the gradient of latency */
+    private final class Limit {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile double limit = initialLimit;
+        private volatile double shortRtt;
+        private double longRtt;
+
+        private boolean tryAcquire(double share) {
+            final var allowed = Math.max(1, (int) (limit * share));
+            while (true) {
+                final var current = inFlight.get();
+                if (current >= allowed) {
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void release(long rtt) {
+            update(rtt, inFlight.getAndDecrement());
+        }
+
+        private synchronized void update(long rtt, int concurrency) {
+            if (longRtt == 0) {
+                shortRtt = rtt;
+                longRtt = rtt;
+                return;
+            }
+            shortRtt += (rtt - shortRtt) * SHORT_SMOOTHING;
+            longRtt += (shortRtt - longRtt) * LONG_SMOOTHING;
+            // latency dropped, the slower baseline is forgotten faster
+            if (longRtt > 2 * shortRtt) {
+                longRtt *= 0.95;
+            }
+            if (concurrency < limit / 2) {
+                return;
+            }
+            final var gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+            final var target = limit * gradient + Math.sqrt(limit);
+            limit = Math.max(minLimit, Math.min(maxLimit, limit + (target - limit) * smoothing));
+        }
+    }
+
+    /**
+     * Concurrency limit counters
+     *
+     * @param limit current limit of the node
+     * @param inFlight number of operations executing
+     * @param operations number of operation names limited separately
+     * @param accepted number of admitted operations
+     * @param rejectedQueries number of rejected queries
+     * @param rejectedMutations number of rejected mutations
+     */
+    public record LimiterStatistics(
+            int limit,
+            int inFlight,
+            long operations,
+            long accepted,
+            long rejectedQueries,
+            long rejectedMutations) {}
+}
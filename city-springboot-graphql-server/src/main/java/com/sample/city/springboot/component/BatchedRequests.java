@@ -0,0 +1,249 @@
+package com.sample.city.springboot.component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sample.city.springboot.exception.CityException;
+
+import graphql.GraphqlErrorBuilder;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.dataloader.DataLoader;
+import org.dataloader.DataLoaderRegistry;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.graphql.server.WebGraphQlRequest;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Execution of batches of GraphQL operations posted as a JSON array, so that clients sending many
+ * small operations pay the HTTP round trip once. Responses are encoded as a JSON array in the order
+ * of the operations, each flushed as soon as it and all responses before it are complete.
+ *
+ * <p>Operations of a batch are executed concurrently and share their data loaders: a loader is
+ * registered by the first operation using it, and loaders are dispatched only once every operation
+ * still executing waits for them. Loads of all operations are therefore coalesced into a single
+ * batch loader invocation per level, just like loads of fields within one operation. Batch loaders
+ * see the context of the operation registering them.
+ */
+@Slf4j
+public class BatchedRequests {
+
+    private final WebGraphQlHandler graphQlHandler;
+    private final ObjectMapper objectMapper;
+    private final int maxOperations;
+
+    /**
+     * Creates batched request execution
+     *
+     * @param graphQlHandler handler of the operations
+     * @param objectMapper mapper of the responses
+     * @param maxOperations maximum number of operations of a batch
+     */
+    public BatchedRequests(
+            WebGraphQlHandler graphQlHandler, ObjectMapper objectMapper, int maxOperations) {
+        if (maxOperations < 1) {
+            throw new CityException(
+                    "Invalid maximum number of batched operations {}", maxOperations);
+        }
+        this.graphQlHandler = graphQlHandler;
+        this.objectMapper = objectMapper;
+        this.maxOperations = maxOperations;
+    }
+
+    /**
+     * Checks the number of operations of the batch
+     *
+     * @param operations posted operations
+     * @throws CityException if the batch is empty or exceeds the maximum number of operations
+     */
+    public void validate(List<?> operations) {
+        if (operations.isEmpty() || operations.size() > maxOperations) {
+            throw CityException.expected(
+                    "Batch of {} operations, expected 1 to {}", operations.size(), maxOperations);
+        }
+    }
+
+    /**
+     * Executes operations of the batch concurrently. An operation which request can not be created,
+     * e.g. as its body is malformed, gets an error response without failing the other operations.
+     *
+     * @param operations posted operations
+     * @param request creates request of the operation from its index and body
+     * @return encoded responses, including the enclosing brackets of the JSON array
+     */
+    public Flux<String> execute(
+            List<Map<String, Object>> operations,
+            BiFunction<Integer, Map<String, Object>, WebGraphQlRequest> request) {
+        validate(operations);
+        final var batch = new Batch(operations.size());
+        return Flux.range(0, operations.size())
+                .flatMapSequential(
+                        index ->
+                                execute(
+                                        index,
+                                        () -> request.apply(index, operations.get(index)),
+                                        batch.registry()),
+                        operations.size())
+                .index()
+                .map(response -> (response.getT1() == 0 ? "[" : ",") + encode(response.getT2()))
+                .concatWith(Mono.just("]"));
+    }
+
+    /**
+     * Response of an operation or a batch failed before execution
+     *
+     * @param error failure of the operation or the batch
+     * @return response with the error
+     */
+    public static Map<String, Object> errorResponse(Throwable error) {
+        return Map.of(
+                "errors",
+                List.of(
+                        GraphqlErrorBuilder.newError()
+                                .message(error.getMessage())
+                                .build()
+                                .toSpecification()));
+    }
+
+    /** completes the operation in the batch however it ends, so it never holds back dispatch */
+    private Mono<Map<String, Object>> execute(
+            int index, Callable<WebGraphQlRequest> request, OperationRegistry registry) {
+        return Mono.fromCallable(request)
+                .flatMap(
+                        operationRequest -> {
+                            operationRequest.configureExecutionInput(
+                                    (executionInput, builder) ->
+                                            builder.dataLoaderRegistry(registry).build());
+                            return graphQlHandler.handleRequest(operationRequest);
+                        })
+                .map(response -> response.toMap())
+                .onErrorResume(
+                        error -> {
+                            log.warn("Batched operation {} failed", index, error);
+                            return Mono.just(errorResponse(error));
+                        })
+                .doFinally(signal -> registry.complete());
+    }
+
+    private String encode(Map<String, Object> response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Data loaders shared by operations of a batch */
+    private static final class Batch {
+
+        private final Map<String, DataLoader<?, ?>> dataLoaders = new ConcurrentHashMap<>();
+        private final Set<OperationRegistry> waiting = new HashSet<>();
+        private int executing;
+
+        private Batch(int operations) {
+            this.executing = operations;
+        }
+
+        private OperationRegistry registry() {
+            return new OperationRegistry(this);
+        }
+
+        private int dispatch(OperationRegistry registry) {
+            synchronized (this) {
+                // an operation without loads since its last dispatch does not wait for any
+                if (!registry.loading) {
+                    return 0;
+                }
+                registry.loading = false;
+                waiting.add(registry);
+                if (waiting.size() < executing) {
+                    return 0;
+                }
+                waiting.clear();
+            }
+            return dispatch();
+        }
+
+        private void complete(OperationRegistry registry) {
+            synchronized (this) {
+                executing--;
+                waiting.remove(registry);
+                // the last operations executing may be waiting for the one completed
+                if (waiting.isEmpty() || waiting.size() < executing) {
+                    return;
+                }
+                waiting.clear();
+            }
+            dispatch();
+        }
+
+        private int dispatch() {
+            var dispatched = 0;
+            for (var dataLoader : dataLoaders.values()) {
+                dispatched += dataLoader.dispatchWithCounts().getKeysCount();
+            }
+            return dispatched;
+        }
+    }
+
+    /**
+     * Data loaders of an operation of the batch, registered with the batch so that operations share
+     * them. Dispatching is deferred until the other operations of the batch dispatch too, unless no
+     * loader was used by the operation since its last dispatch.
+     */
+    private static final class OperationRegistry extends DataLoaderRegistry {
+
+        private final Batch batch;
+        private volatile boolean loading;
+
+        private OperationRegistry(Batch batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public DataLoaderRegistry register(String key, DataLoader<?, ?> dataLoader) {
+            dataLoaders.put(key, batch.dataLoaders.computeIfAbsent(key, name -> dataLoader));
+            return this;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <K, V> DataLoader<K, V> computeIfAbsent(
+                String key, Function<String, DataLoader<?, ?>> mappingFunction) {
+            return (DataLoader<K, V>)
+                    dataLoaders.computeIfAbsent(
+                            key, name -> batch.dataLoaders.computeIfAbsent(name, mappingFunction));
+        }
+
+        @Override
+        public <K, V> DataLoader<K, V> getDataLoader(String key) {
+            loading = true;
+            return super.getDataLoader(key);
+        }
+
+        @Override
+        public void dispatchAll() {
+            batch.dispatch(this);
+        }
+
+        @Override
+        public int dispatchAllWithCount() {
+            return batch.dispatch(this);
+        }
+
+        private void complete() {
+            batch.complete(this);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.sample.city.springboot.component;
+
+import com.sample.city.springboot.factory.GraphQlSchemaFactory;
+
+import graphql.GraphQLContext;
+
+import org.dataloader.DataLoaderFactory;
+import org.dataloader.DataLoaderOptions;
+import org.dataloader.DataLoaderRegistry;
+import org.springframework.graphql.execution.DataLoaderRegistrar;
+
+/**
+ * Registers data loaders of {@link io.leangen.graphql.annotations.Batched} resolvers of the current
+ * schema generation with every request, so nested fields of a whole list are resolved by a single
+ * resolver invocation instead of one per parent.
+ *
+ * <p>Complements the {@link org.springframework.graphql.execution.BatchLoaderRegistry}, which only
+ * serves loaders registered explicitly by the application.
+ */
+public class BatchedResolverRegistrar implements DataLoaderRegistrar {
+
+    private final GraphQlSchemaFactory schemaFactory;
+
+    public BatchedResolverRegistrar(GraphQlSchemaFactory schemaFactory) {
+        this.schemaFactory = schemaFactory;
+    }
+
+    @Override
+    public boolean hasRegistrations() {
+        return !schemaFactory.getBatchLoaders().isEmpty();
+    }
+
+    @Override
+    public void registerDataLoaders(DataLoaderRegistry registry, GraphQLContext context) {
+        final var options =
+                DataLoaderOptions.newOptions().setBatchLoaderContextProvider(() -> context);
+        schemaFactory
+                .getBatchLoaders()
+                .forEach(
+                        (name, batchLoader) ->
+                                registry.register(
+                                        name,
+                                        DataLoaderFactory.newDataLoader(batchLoader, options)));
+    }
+}
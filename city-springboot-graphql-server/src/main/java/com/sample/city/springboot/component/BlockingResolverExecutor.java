@@ -0,0 +1,271 @@
+package com.sample.city.springboot.component;
+
+import com.sample.city.springboot.exception.CityException;
+
+import graphql.schema.GraphQLNamedType;
+
+import io.leangen.geantyref.GenericTypeReflector;
+import io.leangen.graphql.execution.InvocationContext;
+import io.leangen.graphql.execution.ResolverInterceptor;
+import io.leangen.graphql.metadata.Resolver;
+
+import jdk.jfr.consumer.RecordingStream;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.DisposableBean;
+
+import javax.annotation.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs blocking resolvers, i.e. resolvers returning neither {@link Publisher} nor {@link
+ * CompletionStage}, on the given executor, typically one starting a virtual thread per task. The
+ * data fetcher then returns a {@link CompletableFuture} right away, so neither the servlet thread
+ * nor any other platform thread is held while the resolver waits for its downstreams.
+ *
+ * <p>Concurrent invocations are limited per operation, identified as {@code Type.field}. Permits
+ * are acquired before an invocation is dispatched, so invocations queued for a permit hold no
+ * thread of the executor. An invocation waiting longer than the acquire timeout for a permit fails
+ * with {@link CityException}. When pinning threshold is set, virtual threads pinned to their
+ * carrier for longer than the threshold are recorded by JFR and counted in {@link #statistics()}.
+ */
+@Slf4j
+public class BlockingResolverExecutor implements ResolverInterceptor, DisposableBean {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private final Executor executor;
+    private final int maxConcurrency;
+    private final Map<String, Integer> limits;
+    private final Duration acquireTimeout;
+    private final Map<String, Permits> permits = new ConcurrentHashMap<>();
+    private final Map<Resolver, Boolean> blockingResolvers = new ConcurrentHashMap<>();
+    private final LongAdder active = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicLong totalTimeNanos = new AtomicLong();
+    private final LongAdder pinned = new LongAdder();
+    private final AtomicLong totalPinnedNanos = new AtomicLong();
+    @Nullable private final RecordingStream pinningRecording;
+
+    /**
+     * @param executor executor running blocking resolvers
+     * @param maxConcurrency default limit of concurrent invocations per operation
+     * @param limits limits of concurrent invocations of particular operations, keyed by {@code
+     *     Type.field}
+     * @param acquireTimeout maximum time an invocation waits for a permit of its operation
+     * @param pinningThreshold minimum duration of recorded pinning, or {@code null} to not record
+     *     pinning at all
+     */
+    public BlockingResolverExecutor(
+            Executor executor,
+            int maxConcurrency,
+            Map<String, Integer> limits,
+            Duration acquireTimeout,
+            @Nullable Duration pinningThreshold) {
+        this.executor = executor;
+        this.maxConcurrency = maxConcurrency;
+        this.limits = Map.copyOf(limits);
+        this.acquireTimeout = acquireTimeout;
+        this.pinningRecording =
+                pinningThreshold == null ? null : startPinningRecording(pinningThreshold);
+    }
+
+    /**
+     * Runs SPQR resolver on the executor when it is blocking, including the conversion of its
+     * output. Non-blocking and {@code @Batched} resolvers proceed on the calling thread.
+     */
+    @Override
+    public Object aroundInvoke(InvocationContext context, Continuation continuation)
+            throws Exception {
+        final var resolver = context.getResolver();
+        if (!blockingResolvers.computeIfAbsent(resolver, BlockingResolverExecutor::isBlocking)) {
+            return continuation.proceed(context);
+        }
+        final var environment = context.getResolutionEnvironment().dataFetchingEnvironment;
+        final var operation =
+                environment.getParentType() instanceof GraphQLNamedType parentType
+                        ? parentType.getName() + "." + resolver.getOperationName()
+                        : resolver.getOperationName();
+        return execute(operation, () -> continuation.proceed(context));
+    }
+
+    /**
+     * Invokes the blocking resolver of the operation on the executor, within the concurrency limit
+     * of the operation
+     *
+     * @param operation operation identified as {@code Type.field}
+     * @param invocation resolver invocation
+     * @return future completed with the resolver result
+     */
+    public CompletableFuture<Object> execute(String operation, Callable<Object> invocation) {
+        final var operationPermits =
+                permits.computeIfAbsent(
+                        operation, key -> new Permits(limits.getOrDefault(key, maxConcurrency)));
+        return operationPermits
+                .acquire(acquireTimeout)
+                .exceptionally(
+                        e -> {
+                            rejected.increment();
+                            throw CityException.expected(
+                                    "Concurrency limit of operation '{}' reached, no permit within"
+                                            + " {} ms",
+                                    operation,
+                                    acquireTimeout.toMillis());
+                        })
+                .thenApplyAsync(
+                        permit -> {
+                            active.increment();
+                            final long start = System.nanoTime();
+                            try {
+                                return invocation.call();
+                            } catch (RuntimeException e) {
+                                throw e;
+                            } catch (Exception e) {
+                                throw new CompletionException(e);
+                            } finally {
+                                totalTimeNanos.addAndGet(System.nanoTime() - start);
+                                completed.increment();
+                                active.decrement();
+                                operationPermits.release();
+                            }
+                        },
+                        task -> {
+                            try {
+                                executor.execute(task);
+                            } catch (RejectedExecutionException e) {
+                                operationPermits.release();
+                                throw e;
+                            }
+                        });
+    }
+
+    /**
+     * Snapshot of blocking resolver counters
+     *
+     * @return current {@link ExecutionStatistics}
+     */
+    public ExecutionStatistics statistics() {
+        return new ExecutionStatistics(
+                active.sum(),
+                completed.sum(),
+                rejected.sum(),
+                TimeUnit.NANOSECONDS.toMillis(totalTimeNanos.get()),
+                pinned.sum(),
+                TimeUnit.NANOSECONDS.toMillis(totalPinnedNanos.get()));
+    }
+
+    @Override
+    public void destroy() {
+        if (pinningRecording != null) {
+            pinningRecording.close();
+        }
+    }
+
+    private RecordingStream startPinningRecording(Duration threshold) {
+        final var recording = new RecordingStream();
+        recording.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        recording.onEvent(
+                PINNED_EVENT,
+                event -> {
+                    pinned.increment();
+                    totalPinnedNanos.addAndGet(event.getDuration().toNanos());
+                    log.warn(
+                            "Virtual thread '{}' pinned to its carrier for {} ms",
+                            event.getThread() == null ? null : event.getThread().getJavaName(),
+                            event.getDuration().toMillis());
+                });
+        recording.startAsync();
+        return recording;
+    }
+
+    private static boolean isBlocking(Resolver resolver) {
+        final var returnType = GenericTypeReflector.erase(resolver.getReturnType().getType());
+        return !resolver.isBatched()
+                && !Publisher.class.isAssignableFrom(returnType)
+                && !CompletionStage.class.isAssignableFrom(returnType);
+    }
+
+    /**
+     * Permits of an operation, handed to waiting invocations in their order of arrival without
+     * blocking any thread
+     */
+    private static final class Permits {
+
+        private final Deque<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+        private int available;
+
+        private Permits(int limit) {
+            this.available = limit;
+        }
+
+        /**
+         * @return future completed once the permit is acquired, or failed with {@link
+         *     TimeoutException} when none is released within the timeout
+         */
+        private CompletableFuture<Void> acquire(Duration timeout) {
+            final var permit = new CompletableFuture<Void>();
+            synchronized (this) {
+                if (available > 0) {
+                    available--;
+                    permit.complete(null);
+                    return permit;
+                }
+                waiting.add(permit);
+            }
+            // a timed out waiter is skipped by release(), as it can no longer be completed
+            return permit.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        private void release() {
+            while (true) {
+                final CompletableFuture<Void> next;
+                synchronized (this) {
+                    next = waiting.poll();
+                    if (next == null) {
+                        available++;
+                        return;
+                    }
+                }
+                if (next.complete(null)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Blocking resolver counters
+     *
+     * @param active number of blocking resolvers currently running
+     * @param completed number of completed blocking resolver invocations
+     * @param rejected number of invocations rejected due to concurrency limit of their operation
+     * @param totalTimeMs accumulated duration of completed invocations
+     * @param pinned number of virtual thread pinning events longer than the threshold
+     * @param totalPinnedTimeMs accumulated duration of recorded pinning events
+     */
+    public record ExecutionStatistics(
+            long active,
+            long completed,
+            long rejected,
+            long totalTimeMs,
+            long pinned,
+            long totalPinnedTimeMs) {}
+}
@@ -0,0 +1,48 @@
+package com.sample.city.springboot.component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.TimeUnit;
+
+/** Micrometer binder publishing counters of blocking resolvers and virtual thread pinning */
+public class BlockingResolverMetrics implements MeterBinder {
+
+    private final BlockingResolverExecutor executor;
+
+    public BlockingResolverMetrics(BlockingResolverExecutor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("graphql.resolver.blocking.active", executor, e -> e.statistics().active())
+                .description("Blocking resolvers currently running")
+                .register(registry);
+        FunctionTimer.builder(
+                        "graphql.resolver.blocking",
+                        executor,
+                        e -> e.statistics().completed(),
+                        e -> e.statistics().totalTimeMs(),
+                        TimeUnit.MILLISECONDS)
+                .description("Completed blocking resolver invocations and their accumulated time")
+                .register(registry);
+        FunctionCounter.builder(
+                        "graphql.resolver.blocking.rejected",
+                        executor,
+                        e -> e.statistics().rejected())
+                .description("Invocations rejected due to concurrency limit of their operation")
+                .register(registry);
+        FunctionTimer.builder(
+                        "graphql.resolver.pinned",
+                        executor,
+                        e -> e.statistics().pinned(),
+                        e -> e.statistics().totalPinnedTimeMs(),
+                        TimeUnit.MILLISECONDS)
+                .description("Virtual threads pinned to their carrier longer than the threshold")
+                .register(registry);
+    }
+}
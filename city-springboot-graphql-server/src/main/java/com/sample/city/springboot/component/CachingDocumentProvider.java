@@ -0,0 +1,153 @@
+package com.sample.city.springboot.component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import graphql.ExecutionInput;
+import graphql.GraphqlErrorBuilder;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.PreparsedDocumentProvider;
+import graphql.execution.preparsed.persisted.PersistedQueryError;
+import graphql.execution.preparsed.persisted.PersistedQueryIdInvalid;
+import graphql.execution.preparsed.persisted.PersistedQueryNotFound;
+import graphql.execution.preparsed.persisted.PersistedQuerySupport;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * {@link PreparsedDocumentProvider} caching parsed and validated documents, with support of <a
+ * href="https://www.apollographql.com/docs/apollo-server/performance/apq/">Automatic Persisted
+ * Queries</a>.
+ *
+ * <p>Documents are kept in a bounded Caffeine (W-TinyLFU) cache weighted by query length. Requests
+ * carrying a {@code persistedQuery} extension are cached under their SHA-256 hash, so subsequent
+ * hash-only requests skip both sending and parsing of the query text. Other requests are cached
+ * under their query text.
+ */
+@Slf4j
+public class CachingDocumentProvider implements PreparsedDocumentProvider {
+
+    private static final String PERSISTED_QUERY_EXTENSION = "persistedQuery";
+    private static final String SHA_256_HASH = "sha256Hash";
+
+    private final Cache<String, CachedDocument> documents;
+    private final boolean persistedQueries;
+    private final LongAdder persistedQueryNotFound = new LongAdder();
+
+    /**
+     * Creates document cache
+     *
+     * @param maximumWeight maximum total weight of cached documents, in query characters
+     * @param persistedQueries whether hash-only persisted query requests are supported
+     */
+    public CachingDocumentProvider(long maximumWeight, boolean persistedQueries) {
+        this.documents =
+                Caffeine.newBuilder()
+                        .maximumWeight(maximumWeight)
+                        .weigher((String key, CachedDocument document) -> document.weight())
+                        .recordStats()
+                        .build();
+        this.persistedQueries = persistedQueries;
+    }
+
+    @Override
+    public CompletableFuture<PreparsedDocumentEntry> getDocumentAsync(
+            ExecutionInput executionInput,
+            Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidateFunction) {
+        final var query = executionInput.getQuery();
+        final var hash = persistedQueries ? findPersistedQueryHash(executionInput) : null;
+        if (hash == null) {
+            return CompletableFuture.completedFuture(
+                    documents
+                            .get(query, key -> parse(executionInput, parseAndValidateFunction))
+                            .entry());
+        }
+
+        final var cached = documents.getIfPresent(hash);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.entry());
+        }
+        if (!StringUtils.hasText(query)
+                || PersistedQuerySupport.PERSISTED_QUERY_MARKER.equals(query)) {
+            persistedQueryNotFound.increment();
+            return CompletableFuture.completedFuture(error(new PersistedQueryNotFound(hash)));
+        }
+        if (!hash.equalsIgnoreCase(sha256(query))) {
+            log.debug("Persisted query hash '{}' does not match the query text", hash);
+            return CompletableFuture.completedFuture(error(new PersistedQueryIdInvalid(hash)));
+        }
+        return CompletableFuture.completedFuture(
+                documents
+                        .get(hash, key -> parse(executionInput, parseAndValidateFunction))
+                        .entry());
+    }
+
+    /** Drops all cached documents, e.g. when schema they were validated against changes */
+    public void invalidateAll() {
+        documents.invalidateAll();
+    }
+
+    /**
+     * Underlying cache, exposed for metrics
+     *
+     * @return cache of parsed documents
+     */
+    public Cache<String, ?> getCache() {
+        return documents;
+    }
+
+    /**
+     * @return number of hash-only requests which hash was not cached
+     */
+    public long getPersistedQueryNotFoundCount() {
+        return persistedQueryNotFound.sum();
+    }
+
+    private static CachedDocument parse(
+            ExecutionInput executionInput,
+            Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidateFunction) {
+        return new CachedDocument(
+                parseAndValidateFunction.apply(executionInput),
+                Math.max(1, executionInput.getQuery().length()));
+    }
+
+    private static String findPersistedQueryHash(ExecutionInput executionInput) {
+        if (executionInput.getExtensions().get(PERSISTED_QUERY_EXTENSION)
+                instanceof Map<?, ?> persistedQuery) {
+            return persistedQuery.get(SHA_256_HASH) instanceof String hash ? hash : null;
+        }
+        return null;
+    }
+
+    private static PreparsedDocumentEntry error(PersistedQueryError error) {
+        return new PreparsedDocumentEntry(
+                GraphqlErrorBuilder.newError()
+                        .errorType(error)
+                        .message(error.getMessage())
+                        .build());
+    }
+
+    private static String sha256(String query) {
+        try {
+            return HexFormat.of()
+                    .formatHex(
+                            MessageDigest.getInstance("SHA-256")
+                                    .digest(query.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    private record CachedDocument(PreparsedDocumentEntry entry, int weight) {}
+}
@@ -0,0 +1,46 @@
+package com.sample.city.springboot.component;
+
+import org.springframework.graphql.server.WebGraphQlInterceptor;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.util.StringUtils;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Identifies the client of GraphQL requests by the configured header, falling back to the remote
+ * address, and stores it in the GraphQL context for {@link QueryCostInstrumentation}. The header is
+ * not authenticated, so the identifier is only as trustworthy as the client sending it.
+ */
+public class ClientIdInterceptor implements WebGraphQlInterceptor {
+
+    private final String header;
+
+    public ClientIdInterceptor(String header) {
+        this.header = header;
+    }
+
+    @Override
+    public Mono<WebGraphQlResponse> intercept(WebGraphQlRequest request, Chain chain) {
+        var clientId = request.getHeaders().getFirst(header);
+        final var remoteAddress = request.getRemoteAddress();
+        if (!StringUtils.hasText(clientId) && remoteAddress != null) {
+            // unresolved addresses have no InetAddress, only the host they were created with
+            clientId =
+                    remoteAddress.getAddress() == null
+                            ? remoteAddress.getHostString()
+                            : remoteAddress.getAddress().getHostAddress();
+        }
+        if (StringUtils.hasText(clientId)) {
+            final var id = clientId;
+            request.configureExecutionInput(
+                    (executionInput, builder) -> {
+                        executionInput
+                                .getGraphQLContext()
+                                .put(QueryCostInstrumentation.CLIENT_ID, id);
+                        return executionInput;
+                    });
+        }
+        return chain.next(request);
+    }
+}
@@ -0,0 +1,49 @@
+package com.sample.city.springboot.component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Micrometer binder publishing the node limit and admissions of {@link AdaptiveConcurrencyLimiter}
+ */
+public class ConcurrencyLimitMetrics implements MeterBinder {
+
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    public ConcurrencyLimitMetrics(AdaptiveConcurrencyLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("graphql.concurrency.limit", limiter, l -> l.statistics().limit())
+                .description("Current concurrency limit of operations of the node")
+                .register(registry);
+        Gauge.builder("graphql.concurrency.in.flight", limiter, l -> l.statistics().inFlight())
+                .description("Operations admitted and not completed yet")
+                .register(registry);
+        Gauge.builder("graphql.concurrency.operations", limiter, l -> l.statistics().operations())
+                .description("Operation names limited separately")
+                .register(registry);
+        FunctionCounter.builder(
+                        "graphql.concurrency.accepted", limiter, l -> l.statistics().accepted())
+                .description("Operations admitted by the concurrency limits")
+                .register(registry);
+        FunctionCounter.builder(
+                        "graphql.concurrency.rejected",
+                        limiter,
+                        l -> l.statistics().rejectedQueries())
+                .description("Operations rejected by the concurrency limits")
+                .tag("type", "query")
+                .register(registry);
+        FunctionCounter.builder(
+                        "graphql.concurrency.rejected",
+                        limiter,
+                        l -> l.statistics().rejectedMutations())
+                .description("Operations rejected by the concurrency limits")
+                .tag("type", "mutation")
+                .register(registry);
+    }
+}
@@ -0,0 +1,398 @@
+package com.sample.city.springboot.component;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sample.city.springboot.component.AdaptiveConcurrencyLimiter.Permit;
+
+import graphql.GraphqlErrorBuilder;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.slf4j.helpers.MessageFormatter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.function.HandlerFilterFunction;
+import org.springframework.web.servlet.function.HandlerFunction;
+import org.springframework.web.servlet.function.ServerRequest;
+import org.springframework.web.servlet.function.ServerResponse;
+
+import javax.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admits GraphQL requests of the Spring MVC route by the {@link AdaptiveConcurrencyLimiter} before
+ * they are handled. Rejected requests get a GraphQL error with the configured status and a {@code
+ * Retry-After} hint, without being parsed or executed.
+ *
+ * <p>The body is read once to find the name and type of the operation, and handed to the handler
+ * from memory. Bodies larger than the maximum size are rejected without being read entirely. The
+ * operation is found by scanning the top level of the document, so documents are not parsed twice.
+ * Batches take a permit of each of their operations, and are rejected unless all are admitted.
+ * Permits are released when the response completes, after asynchronous results are written.
+ */
+@Slf4j
+public class ConcurrencyLimitMvcFilter
+        implements HandlerFilterFunction<ServerResponse, ServerResponse> {
+
+    private static final Set<String> OPERATION_TYPES = Set.of("query", "mutation", "subscription");
+    private static final Operation ANONYMOUS_QUERY = new Operation(null, false);
+
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final ObjectMapper objectMapper;
+    private final HttpStatusCode rejectionStatus;
+    private final int maxBodySize;
+
+    /**
+     * Creates concurrency limiting filter
+     *
+     * @param limiter limiter admitting the requests
+     * @param objectMapper mapper reading operation name and document of the requests
+     * @param rejectionStatus status of rejected requests, e.g. 503 or 429
+     * @param maxBodySize maximum size in bytes of request bodies, larger ones are rejected
+     */
+    public ConcurrencyLimitMvcFilter(
+            AdaptiveConcurrencyLimiter limiter,
+            ObjectMapper objectMapper,
+            HttpStatusCode rejectionStatus,
+            int maxBodySize) {
+        this.limiter = limiter;
+        this.objectMapper = objectMapper;
+        this.rejectionStatus = rejectionStatus;
+        this.maxBodySize = maxBodySize;
+    }
+
+    @Override
+    public ServerResponse filter(ServerRequest request, HandlerFunction<ServerResponse> next)
+            throws Exception {
+        final var servletRequest = request.servletRequest();
+        if (servletRequest.getContentLengthLong() > maxBodySize) {
+            return tooLarge();
+        }
+        final var body = servletRequest.getInputStream().readNBytes(maxBodySize + 1);
+        if (body.length > maxBodySize) {
+            return tooLarge();
+        }
+        final var operations = readOperations(body);
+        final List<Permit> permits = new ArrayList<>(operations.size());
+        for (var operation : operations) {
+            final var permit = limiter.tryAcquire(operation.name(), operation.mutation());
+            if (permit == null) {
+                permits.forEach(Permit::release);
+                return rejected(operation.name());
+            }
+            permits.add(permit);
+        }
+        try {
+            final var response =
+                    next.handle(
+                            ServerRequest.create(
+                                    new BodyRequest(servletRequest, body),
+                                    request.messageConverters()));
+            return new ReleasingResponse(response, permits);
+        } catch (Exception | Error e) {
+            permits.forEach(Permit::release);
+            throw e;
+        }
+    }
+
+    /**
+     * Finds the executed operation by scanning top level of the document, skipping strings,
+     * comments and selections
+     *
+     * @param document GraphQL document
+     * @param operationName name of the executed operation, {@code null} if the document has one
+     * @return name and type of the operation
+     */
+    static Operation operation(@Nullable String document, @Nullable String operationName) {
+        if (document == null) {
+            return new Operation(operationName, false);
+        }
+        final var length = document.length();
+        var depth = 0;
+        String type = null;
+        for (int i = 0; i < length; i++) {
+            final var c = document.charAt(i);
+            if (c == '#') {
+                while (i < length && document.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (c == '"') {
+                i = skipString(document, i);
+            } else if (c == '{' || c == '(' || c == '[') {
+                // selection set or variables of an operation without a name
+                if (depth == 0 && operationName == null) {
+                    return new Operation(null, "mutation".equals(type));
+                }
+                depth++;
+                type = null;
+            } else if (c == '}' || c == ')' || c == ']') {
+                depth--;
+            } else if (depth == 0 && (Character.isLetter(c) || c == '_')) {
+                var end = i + 1;
+                while (end < length
+                        && (Character.isLetterOrDigit(document.charAt(end))
+                                || document.charAt(end) == '_')) {
+                    end++;
+                }
+                final var word = document.substring(i, end);
+                if (type != null) {
+                    if (operationName == null || operationName.equals(word)) {
+                        return new Operation(word, "mutation".equals(type));
+                    }
+                    type = null;
+                } else if (OPERATION_TYPES.contains(word)) {
+                    type = word;
+                }
+                i = end - 1;
+            }
+        }
+        return new Operation(operationName, false);
+    }
+
+    private static int skipString(String document, int start) {
+        if (document.startsWith("\"\"\"", start)) {
+            final var end = document.indexOf("\"\"\"", start + 3);
+            return end < 0 ? document.length() : end + 2;
+        }
+        for (int i = start + 1; i < document.length(); i++) {
+            final var c = document.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"' || c == '\n') {
+                return i;
+            }
+        }
+        return document.length();
+    }
+
+    /**
+     * Reads operations of the request, or of each request of a batch, malformed bodies are left to
+     * the handler
+     */
+    private List<Operation> readOperations(byte[] body) {
+        try (var parser = objectMapper.createParser(body)) {
+            final var token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT) {
+                return List.of(readOperation(parser));
+            }
+            if (token != JsonToken.START_ARRAY) {
+                return List.of(ANONYMOUS_QUERY);
+            }
+            final List<Operation> operations = new ArrayList<>();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.currentToken() == JsonToken.START_OBJECT) {
+                    operations.add(readOperation(parser));
+                } else {
+                    parser.skipChildren();
+                    operations.add(ANONYMOUS_QUERY);
+                }
+            }
+            return operations.isEmpty() ? List.of(ANONYMOUS_QUERY) : operations;
+        } catch (IOException e) {
+            log.debug("Operation of unreadable request admitted as anonymous query", e);
+            return List.of(ANONYMOUS_QUERY);
+        }
+    }
+
+    /** Reads top level members of the request object naming the operation */
+    private static Operation readOperation(JsonParser parser) throws IOException {
+        String document = null;
+        String operationName = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final var field = parser.currentName();
+            parser.nextToken();
+            if ("query".equals(field)) {
+                document = parser.getValueAsString();
+            } else if ("operationName".equals(field)) {
+                operationName = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return operation(document, operationName);
+    }
+
+    private ServerResponse tooLarge() {
+        final var error =
+                GraphqlErrorBuilder.newError()
+                        .message("Request body exceeds " + maxBodySize + " bytes")
+                        .build();
+        return ServerResponse.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("errors", List.of(error.toSpecification())));
+    }
+
+    private ServerResponse rejected(@Nullable String operationName) {
+        final var retryAfterMs = limiter.retryAfterMillis(operationName);
+        final var message =
+                MessageFormatter.basicArrayFormat(
+                        "Concurrency limit of operation '{}' reached, retry after {} ms",
+                        new Object[] {
+                            Objects.requireNonNullElse(operationName, "anonymous"), retryAfterMs
+                        });
+        final var error =
+                GraphqlErrorBuilder.newError()
+                        .message(message)
+                        .extensions(Map.of("retryAfterMs", retryAfterMs))
+                        .build();
+        return ServerResponse.status(rejectionStatus)
+                .header(
+                        HttpHeaders.RETRY_AFTER,
+                        String.valueOf(
+                                Math.max(1, TimeUnit.MILLISECONDS.toSeconds(retryAfterMs + 999))))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("errors", List.of(error.toSpecification())));
+    }
+
+    /**
+     * Name and type of the requested operation
+     *
+     * @param name operation name, {@code null} for anonymous operations
+     * @param mutation whether the operation is a mutation
+     */
+    record Operation(@Nullable String name, boolean mutation) {}
+
+    /** Response releasing the permits once written, or once its asynchronous result is written */
+    private record ReleasingResponse(ServerResponse delegate, List<Permit> permits)
+            implements ServerResponse {
+
+        @Override
+        public HttpStatusCode statusCode() {
+            return delegate.statusCode();
+        }
+
+        @Override
+        @SuppressWarnings("removal")
+        public int rawStatusCode() {
+            return delegate.rawStatusCode();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return delegate.headers();
+        }
+
+        @Override
+        public MultiValueMap<String, Cookie> cookies() {
+            return delegate.cookies();
+        }
+
+        @Override
+        @Nullable
+        public ModelAndView writeTo(
+                HttpServletRequest request, HttpServletResponse response, Context context)
+                throws ServletException, IOException {
+            final ModelAndView modelAndView;
+            try {
+                modelAndView = delegate.writeTo(request, response, context);
+            } catch (Exception | Error e) {
+                permits.forEach(Permit::release);
+                throw e;
+            }
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleasingListener(permits));
+            } else {
+                permits.forEach(Permit::release);
+            }
+            return modelAndView;
+        }
+    }
+
+    /** Releases the permits when the asynchronous response completes, with or without error */
+    private record ReleasingListener(List<Permit> permits) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            permits.forEach(Permit::release);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {}
+
+        @Override
+        public void onError(AsyncEvent event) {}
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+    /** Request serving the body already read from memory */
+    private static final class BodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        private BodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            final var input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException("Body is read from memory");
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] bytes, int offset, int length) {
+                    return input.read(bytes, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            final var encoding = getCharacterEncoding();
+            return new BufferedReader(
+                    new InputStreamReader(
+                            getInputStream(),
+                            encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding)));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.sample.city.springboot.component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.util.List;
+
+/** Micrometer binder publishing hit/miss, eviction and size metrics of the document cache */
+public class DocumentCacheMetrics implements MeterBinder {
+
+    private static final String CACHE_NAME = "graphql.documents";
+
+    private final CachingDocumentProvider documentProvider;
+
+    public DocumentCacheMetrics(CachingDocumentProvider documentProvider) {
+        this.documentProvider = documentProvider;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new CaffeineCacheMetrics<>(documentProvider.getCache(), CACHE_NAME, List.of())
+                .bindTo(registry);
+        FunctionCounter.builder(
+                        "graphql.persisted.queries.not.found",
+                        documentProvider,
+                        CachingDocumentProvider::getPersistedQueryNotFoundCount)
+                .description("Hash-only persisted query requests which hash was not cached")
+                .register(registry);
+    }
+}
@@ -0,0 +1,45 @@
+package com.sample.city.springboot.component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.function.ToDoubleFunction;
+
+/** Micrometer binder publishing counters of errors resolved by {@link GraphQlExceptionResolver} */
+public class GraphQlErrorMetrics implements MeterBinder {
+
+    private final GraphQlExceptionResolver exceptionResolver;
+
+    public GraphQlErrorMetrics(GraphQlExceptionResolver exceptionResolver) {
+        this.exceptionResolver = exceptionResolver;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        errors(registry, "expected", r -> r.statistics().expected());
+        errors(registry, "unexpected", r -> r.statistics().unexpected());
+        FunctionCounter.builder(
+                        "graphql.errors.stacktraces",
+                        exceptionResolver,
+                        r -> r.statistics().stackTracesLogged())
+                .description("Stack traces of unexpected resolver errors")
+                .tag("logged", "true")
+                .register(registry);
+        FunctionCounter.builder(
+                        "graphql.errors.stacktraces",
+                        exceptionResolver,
+                        r -> r.statistics().stackTracesSuppressed())
+                .description("Stack traces of unexpected resolver errors")
+                .tag("logged", "false")
+                .register(registry);
+    }
+
+    private void errors(
+            MeterRegistry registry, String kind, ToDoubleFunction<GraphQlExceptionResolver> count) {
+        FunctionCounter.builder("graphql.errors", exceptionResolver, count)
+                .description("Errors of data fetchers resolved to GraphQL errors")
+                .tag("kind", kind)
+                .register(registry);
+    }
+}
@@ -0,0 +1,150 @@
+package com.sample.city.springboot.component;
+
+import com.sample.city.springboot.exception.CityException;
+import com.sample.city.springboot.exception.ResolverTimeoutException;
+
+import graphql.ErrorClassification;
+import graphql.GraphQLError;
+import graphql.GraphqlErrorBuilder;
+import graphql.schema.DataFetchingEnvironment;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.graphql.execution.DataFetcherExceptionResolverAdapter;
+import org.springframework.graphql.execution.ErrorType;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resolves exceptions of data fetchers to {@link ErrorType#BAD_REQUEST} errors with message {@code
+ * [ExceptionClass] message}.
+ *
+ * <p>The message prefix is computed once per exception class, so resolving an error allocates only
+ * the error itself. Stack traces of unexpected exceptions are logged up to the given number per
+ * second; beyond it, as during an outage of a downstream, they are counted and summarized once per
+ * second instead. Expected business errors, see {@link CityException#expected(String, Object...)},
+ * are never logged. Timeouts of resolvers, see {@link ResolverTimeoutInterceptor}, are classified
+ * as {@link #TIMEOUT} with the time limit in {@code timeoutMs} extension, so clients can tell a
+ * slow field from a failed one.
+ */
+@Slf4j
+public class GraphQlExceptionResolver extends DataFetcherExceptionResolverAdapter {
+
+    /** Default maximum number of stack traces logged per second */
+    public static final int DEFAULT_MAX_STACK_TRACES_PER_SECOND = 10;
+
+    /** Classification of errors of fields which resolver did not complete in time */
+    public static final ErrorClassification TIMEOUT =
+            ErrorClassification.errorClassification("TIMEOUT");
+
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final ClassValue<ErrorTemplate> TEMPLATES =
+            new ClassValue<>() {
+                @Override
+                protected ErrorTemplate computeValue(Class<?> type) {
+                    final var prefix = "[" + type.getSimpleName() + "] ";
+                    return new ErrorTemplate(prefix, prefix + null);
+                }
+            };
+
+    private final int maxStackTracesPerSecond;
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final AtomicInteger windowStackTraces = new AtomicInteger();
+    private final LongAdder expected = new LongAdder();
+    private final LongAdder unexpected = new LongAdder();
+    private final LongAdder stackTracesLogged = new LongAdder();
+    private final LongAdder stackTracesSuppressed = new LongAdder();
+
+    /**
+     * Creates exception resolver
+     *
+     * @param maxStackTracesPerSecond maximum number of stack traces of unexpected exceptions logged
+     *     per second, {@code 0} to not log them
+     */
+    public GraphQlExceptionResolver(int maxStackTracesPerSecond) {
+        this.maxStackTracesPerSecond = maxStackTracesPerSecond;
+    }
+
+    @Override
+    protected GraphQLError resolveToSingleError(Throwable ex, DataFetchingEnvironment env) {
+        if (ex instanceof CityException cityException && cityException.isExpected()) {
+            expected.increment();
+        } else {
+            unexpected.increment();
+            if (sampleStackTrace()) {
+                stackTracesLogged.increment();
+                log.warn("Resolver of {} failed", env.getExecutionStepInfo().getPath(), ex);
+            } else {
+                stackTracesSuppressed.increment();
+            }
+        }
+        final var template = TEMPLATES.get(ex.getClass());
+        final var message = ex.getMessage();
+        if (ex instanceof ResolverTimeoutException timeout) {
+            return GraphqlErrorBuilder.newError(env)
+                    .errorType(TIMEOUT)
+                    .message(template.prefix().concat(message))
+                    .extensions(Map.of("timeoutMs", timeout.getTimeout().toMillis()))
+                    .build();
+        }
+        return GraphqlErrorBuilder.newError(env)
+                .errorType(ErrorType.BAD_REQUEST)
+                .message(
+                        message == null
+                                ? template.nullMessage()
+                                : template.prefix().concat(message))
+                .build();
+    }
+
+    /**
+     * Snapshot of resolved error counters
+     *
+     * @return current {@link ErrorStatistics}
+     */
+    public ErrorStatistics statistics() {
+        return new ErrorStatistics(
+                expected.sum(),
+                unexpected.sum(),
+                stackTracesLogged.sum(),
+                stackTracesSuppressed.sum());
+    }
+
+    private boolean sampleStackTrace() {
+        final long now = System.nanoTime();
+        final long start = windowStart.get();
+        if (now - start >= WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+            final int previous = windowStackTraces.getAndSet(0);
+            if (previous > maxStackTracesPerSecond) {
+                log.warn(
+                        "{} stack traces of resolver errors not logged in the last {} ms",
+                        previous - maxStackTracesPerSecond,
+                        TimeUnit.NANOSECONDS.toMillis(now - start));
+            }
+        }
+        return windowStackTraces.incrementAndGet() <= maxStackTracesPerSecond;
+    }
+
+    /**
+     * Precomputed message parts of errors of an exception class
+     *
+     * @param prefix message prefix naming the exception class
+     * @param nullMessage message of exceptions without message
+     */
+    private record ErrorTemplate(String prefix, String nullMessage) {}
+
+    /**
+     * Resolved error counters
+     *
+     * @param expected number of expected business errors
+     * @param unexpected number of other errors
+     * @param stackTracesLogged number of unexpected errors which stack trace was logged
+     * @param stackTracesSuppressed number of unexpected errors over the logging rate
+     */
+    public record ErrorStatistics(
+            long expected, long unexpected, long stackTracesLogged, long stackTracesSuppressed) {}
+}
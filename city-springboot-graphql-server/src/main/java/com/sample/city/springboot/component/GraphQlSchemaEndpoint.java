@@ -0,0 +1,44 @@
+package com.sample.city.springboot.component;
+
+import com.sample.city.springboot.factory.GraphQlSchemaFactory;
+import com.sample.city.springboot.factory.GraphQlSchemaFactory.SchemaStatistics;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+
+/** Actuator endpoint to inspect the cached GraphQL schema and trigger its regeneration */
+@Slf4j
+@Endpoint(id = "graphqlschema")
+public class GraphQlSchemaEndpoint {
+
+    private final GraphQlSchemaFactory schemaFactory;
+
+    public GraphQlSchemaEndpoint(GraphQlSchemaFactory schemaFactory) {
+        this.schemaFactory = schemaFactory;
+    }
+
+    /**
+     * Current schema generation counters
+     *
+     * @return statistics of the cached schema
+     */
+    @ReadOperation
+    public SchemaStatistics statistics() {
+        return schemaFactory.statistics();
+    }
+
+    /**
+     * Regenerates the schema and swaps it in for subsequent requests
+     *
+     * @return statistics after the refresh
+     */
+    @WriteOperation
+    public SchemaStatistics refresh() {
+        log.info("GraphQL schema refresh requested through actuator");
+        schemaFactory.refresh();
+        return schemaFactory.statistics();
+    }
+}
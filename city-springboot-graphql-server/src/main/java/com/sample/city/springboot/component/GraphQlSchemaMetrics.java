@@ -0,0 +1,48 @@
+package com.sample.city.springboot.component;
+
+import com.sample.city.springboot.factory.GraphQlSchemaFactory;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.TimeUnit;
+
+/** Micrometer binder publishing generation counters of the cached GraphQL schema */
+public class GraphQlSchemaMetrics implements MeterBinder {
+
+    private final GraphQlSchemaFactory schemaFactory;
+
+    public GraphQlSchemaMetrics(GraphQlSchemaFactory schemaFactory) {
+        this.schemaFactory = schemaFactory;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("graphql.schema.generation", schemaFactory, f -> f.statistics().generation())
+                .description("Current GraphQL schema generation")
+                .register(registry);
+        FunctionCounter.builder(
+                        "graphql.schema.lookups", schemaFactory, f -> f.statistics().lookups())
+                .description("GraphQL schema lookups served from the cached generation")
+                .register(registry);
+        FunctionTimer.builder(
+                        "graphql.schema.build",
+                        schemaFactory,
+                        f -> f.statistics().generation(),
+                        f -> f.statistics().totalBuildTimeMs(),
+                        TimeUnit.MILLISECONDS)
+                .description("GraphQL schema generations and their accumulated build time")
+                .register(registry);
+        TimeGauge.builder(
+                        "graphql.schema.build.last",
+                        schemaFactory,
+                        TimeUnit.MILLISECONDS,
+                        f -> f.statistics().lastBuildTimeMs())
+                .description("Duration of the latest GraphQL schema generation")
+                .register(registry);
+    }
+}
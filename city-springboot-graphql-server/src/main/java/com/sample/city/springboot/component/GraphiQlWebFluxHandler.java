@@ -0,0 +1,126 @@
+package com.sample.city.springboot.component;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.util.UriBuilder;
+
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+
+/**
+ * Spring WebFlux counterpart of {@link GraphiQlMvcHandler}, serving GraphiQl UI page with the same
+ * support of forwarded requests (e.g. through Spring Cloud Gateway)
+ */
+@Slf4j
+public class GraphiQlWebFluxHandler {
+
+    private static final String X_FORWARDED_PROTO = "x-forwarded-proto";
+    private static final String X_FORWARDED_PREFIX = "x-forwarded-prefix";
+    private static final String X_FORWARDED_HOST = "x-forwarded-host";
+    private static final String X_FORWARDED_PORT = "x-forwarded-port";
+
+    private static final String PATH = "path";
+    private static final String WS_PATH = "WsPath";
+    private final String graphQlPath;
+    private final String graphQlWsPath;
+    private final Resource htmlResource;
+
+    /**
+     * Constructor that serves the default {@code graphiql/index.html} included in the {@code
+     * spring-graphql} module
+     *
+     * @param graphQlPath the path to the GraphQl HTTP endpoint
+     * @param graphQlWsPath optional path to the GraphQl WebSocket endpoint
+     */
+    public GraphiQlWebFluxHandler(String graphQlPath, String graphQlWsPath) {
+        this(graphQlPath, graphQlWsPath, new ClassPathResource("graphiql/index.html"));
+    }
+
+    /**
+     * Constructor with the HTML page to serve
+     *
+     * @param graphQlPath the path to the GraphQl HTTP endpoint
+     * @param graphQlWsPath optional path to the GraphQl WebSocket endpoint
+     * @param htmlResource the GraphiQl page to serve
+     */
+    public GraphiQlWebFluxHandler(String graphQlPath, String graphQlWsPath, Resource htmlResource) {
+        Assert.hasText(graphQlPath, "graphQlPath should not be empty");
+        this.graphQlPath = graphQlPath;
+        this.graphQlWsPath = graphQlWsPath;
+        this.htmlResource = htmlResource;
+    }
+
+    /**
+     * Render the GraphiQl page as "text/html", or redirect back to the same URL with the "path"
+     * query parameter when it is missing
+     *
+     * @param request the current request
+     * @return the response to render
+     */
+    public Mono<ServerResponse> handleRequest(ServerRequest request) {
+        return request.queryParam(PATH).isPresent()
+                ? ServerResponse.ok()
+                        .contentType(MediaType.TEXT_HTML)
+                        .body(BodyInserters.fromResource(this.htmlResource))
+                : ServerResponse.temporaryRedirect(getRedirectUrl(request)).build();
+    }
+
+    private URI getRedirectUrl(ServerRequest request) {
+        final var uriBuilder = request.uriBuilder();
+        final var pathQueryParameterValue = applyPathPrefix(request, this.graphQlPath);
+        final var wsPathQueryParameterValue = applyPathPrefix(request, this.graphQlWsPath);
+
+        // check if we have forwarding headers and if we do, set up the redirect URL accordingly
+        final var headers = request.headers().asHttpHeaders();
+        final var xForwardedProto = headers.getFirst(X_FORWARDED_PROTO);
+        final var xForwardedPrefix = headers.getFirst(X_FORWARDED_PREFIX);
+        final var xForwardedHost = headers.getFirst(X_FORWARDED_HOST);
+        final var xForwardedPort = headers.getFirst(X_FORWARDED_PORT);
+        if (xForwardedProto != null
+                && xForwardedPrefix != null
+                && xForwardedHost != null
+                && xForwardedPort != null) {
+            log.info("Forwarded request detected to '{}'", request.requestPath());
+            uriBuilder
+                    .scheme(xForwardedProto)
+                    .host(xForwardedHost.replaceFirst(":\\d+$", ""))
+                    .port(xForwardedPort)
+                    .replacePath(xForwardedPrefix)
+                    .path(request.requestPath().value());
+            setQueryParams(
+                    uriBuilder,
+                    xForwardedPrefix + pathQueryParameterValue,
+                    xForwardedPrefix + wsPathQueryParameterValue);
+        } else {
+            setQueryParams(uriBuilder, pathQueryParameterValue, wsPathQueryParameterValue);
+        }
+        final var redirectToUri = uriBuilder.build(request.pathVariables());
+        log.info("Redirecting '{}' to '{}'", request.uri(), redirectToUri);
+        return redirectToUri;
+    }
+
+    private void setQueryParams(UriBuilder uriBuilder, String pathValue, String wsPathValue) {
+        uriBuilder.queryParam(PATH, pathValue);
+        if (StringUtils.hasText(this.graphQlWsPath)) {
+            uriBuilder.queryParam(WS_PATH, wsPathValue);
+        }
+    }
+
+    private String applyPathPrefix(ServerRequest request, String path) {
+        final var fullPath = request.requestPath().value();
+        final var pathWithinApplication = request.requestPath().pathWithinApplication().toString();
+        final var pathWithinApplicationIndex = fullPath.indexOf(pathWithinApplication);
+        return (pathWithinApplicationIndex != -1)
+                ? fullPath.substring(0, pathWithinApplicationIndex) + path
+                : path;
+    }
+}
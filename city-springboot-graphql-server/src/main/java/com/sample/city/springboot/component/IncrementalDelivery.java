@@ -0,0 +1,334 @@
+package com.sample.city.springboot.component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import graphql.Directives;
+import graphql.ExperimentalApi;
+import graphql.GraphqlErrorBuilder;
+import graphql.Scalars;
+import graphql.execution.ResultPath;
+import graphql.incremental.DelayedIncrementalPartialResult;
+import graphql.incremental.IncrementalExecutionResult;
+import graphql.introspection.Introspection;
+import graphql.language.OperationDefinition;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.GraphQLArgument;
+import graphql.schema.GraphQLDirective;
+import graphql.schema.GraphQLEnumType;
+import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLNonNull;
+import graphql.schema.GraphQLScalarType;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLTypeUtil;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.reactivestreams.Publisher;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.http.MediaType;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Incremental delivery of GraphQL responses as {@code multipart/mixed}, following the GraphQL
+ * incremental delivery over HTTP proposal. The initial result is sent as soon as it is complete,
+ * followed by a part per {@code @defer} fragment and per item of {@code @stream} fields, so clients
+ * receive first data without waiting for slow fields and long lists.
+ *
+ * <p>{@code @defer} is executed by graphql-java. {@code @stream} is not supported by graphql-java
+ * yet, so it is applied here to list fields of leaf types resolved by a {@link Publisher}: the
+ * first {@code initialCount} items are part of the initial result, the rest are delivered as they
+ * are published. On any other field {@code @stream} is ignored and the whole list is delivered at
+ * once, which the proposal allows. This includes lists of objects, such as {@code Flux<User>}:
+ * their items have selections of their own, which only the execution of graphql-java completes, so
+ * such lists are delivered with the initial result or a {@code @defer} fragment holding them.
+ */
+@Slf4j
+public class IncrementalDelivery {
+
+    public static final MediaType MULTIPART_MIXED =
+            MediaType.parseMediaType("multipart/mixed; boundary=\"-\"; deferSpec=20220824");
+
+    public static final GraphQLDirective STREAM_DIRECTIVE =
+            GraphQLDirective.newDirective()
+                    .name("stream")
+                    .description("Delivers items of the list field incrementally")
+                    .argument(
+                            GraphQLArgument.newArgument()
+                                    .name("if")
+                                    .type(GraphQLNonNull.nonNull(Scalars.GraphQLBoolean))
+                                    .defaultValueProgrammatic(true))
+                    .argument(
+                            GraphQLArgument.newArgument().name("label").type(Scalars.GraphQLString))
+                    .argument(
+                            GraphQLArgument.newArgument()
+                                    .name("initialCount")
+                                    .type(Scalars.GraphQLInt)
+                                    .defaultValueProgrammatic(0))
+                    .validLocation(Introspection.DirectiveLocation.FIELD)
+                    .build();
+
+    // every part is followed by a delimiter, so that clients can process it without waiting
+    private static final String DELIMITER = "\r\n---";
+    private static final String PART_HEADER =
+            "\r\nContent-Type: application/json; charset=utf-8\r\n\r\n";
+    private static final String CLOSE_DELIMITER = "--\r\n";
+
+    private final WebGraphQlHandler graphQlHandler;
+    private final ObjectMapper objectMapper;
+
+    public IncrementalDelivery(WebGraphQlHandler graphQlHandler, ObjectMapper objectMapper) {
+        this.graphQlHandler = graphQlHandler;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Whether the client asked for incremental delivery by listing {@code multipart/mixed} in its
+     * {@code Accept} header. A missing header and wildcards, which clients not aware of incremental
+     * delivery send, select the single JSON response.
+     *
+     * @param acceptedTypes media types of the {@code Accept} header
+     * @return whether the response is to be delivered as {@code multipart/mixed}
+     */
+    public static boolean isAccepted(List<MediaType> acceptedTypes) {
+        return acceptedTypes.stream()
+                .anyMatch(
+                        type ->
+                                !type.isWildcardType()
+                                        && !type.isWildcardSubtype()
+                                        && type.getQualityValue() > 0
+                                        && MULTIPART_MIXED.isCompatibleWith(type));
+    }
+
+    /**
+     * Adds {@code @defer} and {@code @stream} directive definitions to the schema
+     *
+     * @param schema GraphQL schema
+     * @return schema supporting incremental delivery directives
+     */
+    public static GraphQLSchema withDirectives(GraphQLSchema schema) {
+        if (schema.getDirective(Directives.DeferDirective.getName()) != null) {
+            return schema;
+        }
+        return schema.transform(
+                builder ->
+                        builder.additionalDirective(Directives.DeferDirective)
+                                .additionalDirective(STREAM_DIRECTIVE));
+    }
+
+    /**
+     * Applies {@code @stream} of the field to its resolved publisher, if the request is delivered
+     * incrementally and the field is a list of scalars or enums. Items after {@code initialCount}
+     * are delivered later as separate parts.
+     *
+     * @param environment environment of the field
+     * @param publisher publisher returned by the resolver
+     * @return publisher of items of the initial result
+     */
+    public static Publisher<?> stream(DataFetchingEnvironment environment, Publisher<?> publisher) {
+        final Results results = environment.getGraphQlContext().get(Results.class);
+        if (results == null
+                || environment.getOperationDefinition().getOperation()
+                        == OperationDefinition.Operation.SUBSCRIPTION) {
+            return publisher;
+        }
+        final var directive =
+                environment
+                        .getQueryDirectives()
+                        .getImmediateAppliedDirective(STREAM_DIRECTIVE.getName());
+        final var fieldType = GraphQLTypeUtil.unwrapNonNull(environment.getFieldType());
+        final var itemType = GraphQLTypeUtil.unwrapAll(fieldType);
+        if (directive.isEmpty()
+                || !(fieldType instanceof GraphQLList)
+                || !GraphQLTypeUtil.isLeaf(itemType)) {
+            return publisher;
+        }
+        final var arguments = directive.get(0);
+        final Boolean enabled = arguments.getArgument("if").getValue();
+        if (Boolean.FALSE.equals(enabled)) {
+            return publisher;
+        }
+        final Integer count = arguments.getArgument("initialCount").getValue();
+        final String label = arguments.getArgument("label").getValue();
+        final var initialCount = count == null ? 0 : Math.max(count, 0);
+        final var path = environment.getExecutionStepInfo().getPath();
+
+        final Flux<?> items;
+        final Flux<?> initialItems;
+        if (initialCount == 0) {
+            items = Flux.from(publisher);
+            initialItems = Flux.empty();
+        } else {
+            final var shared = Flux.from(publisher).publish().autoConnect(2);
+            items = shared.skip(initialCount);
+            initialItems = shared.take(initialCount);
+        }
+        results.add(
+                items.index()
+                        .map(
+                                item ->
+                                        streamPayload(
+                                                path.segment((int) (initialCount + item.getT1())),
+                                                label,
+                                                List.of(
+                                                        serialize(
+                                                                environment,
+                                                                itemType,
+                                                                item.getT2())),
+                                                null))
+                        .onErrorResume(
+                                error ->
+                                        Mono.just(
+                                                streamPayload(
+                                                        path, label, null, error.getMessage()))));
+        return initialItems;
+    }
+
+    /**
+     * Executes the request and encodes its incremental results as parts of a {@code
+     * multipart/mixed} body
+     *
+     * @param request GraphQL request
+     * @return encoded parts, including the delimiters
+     */
+    public Flux<String> execute(WebGraphQlRequest request) {
+        final var results = new Results();
+        request.configureExecutionInput(
+                (executionInput, builder) -> {
+                    executionInput
+                            .getGraphQLContext()
+                            .put(ExperimentalApi.ENABLE_INCREMENTAL_SUPPORT, true)
+                            .put(Results.class, results);
+                    return executionInput;
+                });
+        return graphQlHandler
+                .handleRequest(request)
+                .flatMapMany(
+                        response -> {
+                            final var executionResult = response.getExecutionResult();
+                            if (executionResult
+                                    instanceof IncrementalExecutionResult incrementalResult) {
+                                results.add(
+                                        Flux.from(incrementalResult.getIncrementalItemPublisher())
+                                                .map(
+                                                        DelayedIncrementalPartialResult
+                                                                ::toSpecification));
+                            }
+                            final var hasNext = results.hasNext();
+                            final var initial =
+                                    new LinkedHashMap<>(executionResult.toSpecification());
+                            initial.put("hasNext", hasNext);
+                            results.complete();
+                            return hasNext
+                                    ? Flux.concat(
+                                            Mono.just(initial),
+                                            results.payloads(),
+                                            Mono.just(Map.of("hasNext", false)))
+                                    : Flux.just(initial);
+                        })
+                .map(this::encode)
+                .startWith(DELIMITER)
+                .concatWith(Mono.just(CLOSE_DELIMITER));
+    }
+
+    private String encode(Map<?, ?> payload) {
+        try {
+            return PART_HEADER + objectMapper.writeValueAsString(payload) + DELIMITER;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object serialize(DataFetchingEnvironment environment, Object type, Object item) {
+        if (type instanceof GraphQLScalarType scalarType) {
+            return scalarType
+                    .getCoercing()
+                    .serialize(item, environment.getGraphQlContext(), environment.getLocale());
+        }
+        return ((GraphQLEnumType) type)
+                .serialize(item, environment.getGraphQlContext(), environment.getLocale());
+    }
+
+    private static Map<String, Object> streamPayload(
+            ResultPath path, String label, List<Object> items, String error) {
+        final var payload = new LinkedHashMap<String, Object>();
+        payload.put("items", items);
+        payload.put("path", path.toList());
+        if (label != null) {
+            payload.put("label", label);
+        }
+        if (error != null) {
+            payload.put(
+                    "errors",
+                    List.of(
+                            GraphqlErrorBuilder.newError()
+                                    .message(error)
+                                    .path(path)
+                                    .build()
+                                    .toSpecification()));
+        }
+        final var incremental = new LinkedHashMap<String, Object>();
+        incremental.put("incremental", List.of(payload));
+        incremental.put("hasNext", true);
+        return incremental;
+    }
+
+    /**
+     * Payloads delivered after the initial result of a request. Completes once the execution and
+     * all sources of payloads it added are complete.
+     */
+    static class Results {
+
+        private final Sinks.Many<Map<?, ?>> payloads =
+                Sinks.many().unicast().onBackpressureBuffer();
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private volatile boolean added;
+
+        void add(Flux<? extends Map<?, ?>> source) {
+            added = true;
+            pending.incrementAndGet();
+            source.subscribe(
+                    this::emit,
+                    error -> {
+                        log.warn("Incremental delivery failed", error);
+                        complete();
+                    },
+                    this::complete);
+        }
+
+        boolean hasNext() {
+            return added;
+        }
+
+        void complete() {
+            if (pending.decrementAndGet() == 0) {
+                synchronized (this) {
+                    payloads.tryEmitComplete();
+                }
+            }
+        }
+
+        Flux<Map<?, ?>> payloads() {
+            return payloads.asFlux()
+                    .map(
+                            payload -> {
+                                final var part = new LinkedHashMap<Object, Object>(payload);
+                                part.put("hasNext", true);
+                                return part;
+                            });
+        }
+
+        private synchronized void emit(Map<?, ?> payload) {
+            payloads.tryEmitNext(payload);
+        }
+    }
+}
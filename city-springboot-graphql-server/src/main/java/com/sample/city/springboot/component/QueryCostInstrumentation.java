@@ -0,0 +1,349 @@
+package com.sample.city.springboot.component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sample.city.springboot.annotation.GraphQLCost;
+import com.sample.city.springboot.exception.CityException;
+
+import graphql.ExecutionResult;
+import graphql.GraphQLError;
+import graphql.GraphqlErrorBuilder;
+import graphql.analysis.QueryTraverser;
+import graphql.analysis.QueryVisitorFieldEnvironment;
+import graphql.analysis.QueryVisitorStub;
+import graphql.execution.AbortExecutionException;
+import graphql.execution.ExecutionContext;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentationContext;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.language.Directive;
+import graphql.language.Document;
+import graphql.language.Node;
+import graphql.language.NodeTraverser;
+import graphql.language.NodeVisitorStub;
+import graphql.language.VariableReference;
+import graphql.util.TraversalControl;
+import graphql.util.TraverserContext;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.slf4j.helpers.MessageFormatter;
+import org.springframework.graphql.execution.ErrorType;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control of GraphQL operations by their static cost, applied before execution.
+ *
+ * <p>Cost of every field selection is the weight of the field, declared by {@link GraphQLCost} or
+ * the default one, plus the cost of its sub-selections, multiplied by its multiplier arguments.
+ * Operations deeper or more expensive than the limits are rejected. Admitted operations consume
+ * their cost from the token bucket of the client, identified by {@link #CLIENT_ID} in the GraphQL
+ * context; clients exceeding their rate are rejected with the time to retry after. The client
+ * identifier is whatever {@link ClientIdInterceptor} found, typically a header declared by the
+ * client itself, so the per-client budget is advisory: it keeps well-behaved clients from starving
+ * each other, but a client changing its identifier gets a fresh budget. The depth and cost limits
+ * of single operations apply to all clients.
+ *
+ * <p>Costs are cached per parsed document instance, so documents served by {@link
+ * CachingDocumentProvider} are analyzed once. Costs depending on variables, either by multiplier
+ * arguments or by directives such as {@code @include(if: $variable)} deciding which fields are
+ * selected, are not cached.
+ */
+@Slf4j
+public class QueryCostInstrumentation extends SimplePerformantInstrumentation {
+
+    /** Key of the client identifier in the GraphQL context */
+    public static final String CLIENT_ID = QueryCostInstrumentation.class.getName() + ".clientId";
+
+    private static final String ANONYMOUS = "anonymous";
+
+    private final int maxDepth;
+    private final long maxCost;
+    private final int defaultFieldCost;
+    private final long clientCapacity;
+    private final double clientRefillPerSecond;
+    private final Cache<Document, Map<String, QueryCost>> costs =
+            Caffeine.newBuilder().weakKeys().build();
+    private final Cache<String, TokenBucket> clients =
+            Caffeine.newBuilder()
+                    .maximumSize(100_000)
+                    .expireAfterAccess(Duration.ofHours(1))
+                    .build();
+    private final LongAdder analyzed = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder rejectedDepth = new LongAdder();
+    private final LongAdder rejectedCost = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder admittedCost = new LongAdder();
+
+    /**
+     * Creates query cost instrumentation
+     *
+     * @param maxDepth maximum depth of field selections of an operation
+     * @param maxCost maximum static cost of an operation
+     * @param defaultFieldCost weight of fields without {@link GraphQLCost}
+     * @param clientCapacity cost a client may spend in a burst
+     * @param clientRefillPerSecond cost refilled to every client per second, or {@code 0} to not
+     *     limit clients
+     */
+    public QueryCostInstrumentation(
+            int maxDepth,
+            long maxCost,
+            int defaultFieldCost,
+            long clientCapacity,
+            double clientRefillPerSecond) {
+        if (clientRefillPerSecond > 0 && clientCapacity < maxCost) {
+            throw new CityException(
+                    "Client capacity {} is lower than maximum query cost {}",
+                    clientCapacity,
+                    maxCost);
+        }
+        this.maxDepth = maxDepth;
+        this.maxCost = maxCost;
+        this.defaultFieldCost = defaultFieldCost;
+        this.clientCapacity = clientCapacity;
+        this.clientRefillPerSecond = clientRefillPerSecond;
+    }
+
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecuteOperation(
+            InstrumentationExecuteOperationParameters parameters, InstrumentationState state) {
+        final var executionContext = parameters.getExecutionContext();
+        final var queryCost = analyze(executionContext);
+        if (queryCost.depth() > maxDepth) {
+            rejectedDepth.increment();
+            throw abort(
+                    Map.of("depth", queryCost.depth()),
+                    "Query depth {} exceeds the limit of {}",
+                    queryCost.depth(),
+                    maxDepth);
+        }
+        if (queryCost.cost() > maxCost) {
+            rejectedCost.increment();
+            throw abort(
+                    Map.of("cost", queryCost.cost()),
+                    "Query cost {} exceeds the limit of {}",
+                    queryCost.cost(),
+                    maxCost);
+        }
+        if (clientRefillPerSecond > 0) {
+            final var clientId =
+                    Objects.toString(
+                            executionContext.getGraphQLContext().get(CLIENT_ID), ANONYMOUS);
+            final var retryAfterMs =
+                    clients.get(clientId, key -> new TokenBucket()).tryConsume(queryCost.cost());
+            if (retryAfterMs > 0) {
+                throttled.increment();
+                log.debug("Client '{}' throttled for {} ms", clientId, retryAfterMs);
+                throw abort(
+                        Map.of("cost", queryCost.cost(), "retryAfterMs", retryAfterMs),
+                        "Query cost {} exceeds the remaining budget of client '{}', retry after {}"
+                                + " ms",
+                        queryCost.cost(),
+                        clientId,
+                        retryAfterMs);
+            }
+        }
+        admittedCost.add(queryCost.cost());
+        return SimpleInstrumentationContext.noOp();
+    }
+
+    /**
+     * Snapshot of query cost counters
+     *
+     * @return current {@link CostStatistics}
+     */
+    public CostStatistics statistics() {
+        return new CostStatistics(
+                analyzed.sum(),
+                cacheHits.sum(),
+                rejectedDepth.sum(),
+                rejectedCost.sum(),
+                throttled.sum(),
+                admittedCost.sum());
+    }
+
+    private QueryCost analyze(ExecutionContext executionContext) {
+        final var operationName =
+                Objects.requireNonNullElse(executionContext.getOperationDefinition().getName(), "");
+        final var documentCosts =
+                costs.get(executionContext.getDocument(), key -> new ConcurrentHashMap<>());
+        final var cached = documentCosts.get(operationName);
+        if (cached != null) {
+            cacheHits.increment();
+            return cached;
+        }
+        analyzed.increment();
+        final var visitor = new CostVisitor();
+        QueryTraverser.newQueryTraverser()
+                .schema(executionContext.getGraphQLSchema())
+                .document(executionContext.getDocument())
+                .operationName(executionContext.getOperationDefinition().getName())
+                .coercedVariables(executionContext.getCoercedVariables())
+                .build()
+                .visitPostOrder(visitor);
+        final var queryCost = new QueryCost(visitor.cost, visitor.depth);
+        if (!visitor.variableDependent && !hasDirectiveVariables(executionContext.getDocument())) {
+            documentCosts.put(operationName, queryCost);
+        }
+        return queryCost;
+    }
+
+    /** skipped fields are not visited, so directives are looked for in the whole document */
+    private static boolean hasDirectiveVariables(Document document) {
+        final var found = new AtomicBoolean();
+        new NodeTraverser()
+                .depthFirst(
+                        new NodeVisitorStub() {
+                            @Override
+                            public TraversalControl visitVariableReference(
+                                    VariableReference node, TraverserContext<Node> context) {
+                                if (context.getParentNodes().stream()
+                                        .anyMatch(Directive.class::isInstance)) {
+                                    found.set(true);
+                                    return TraversalControl.QUIT;
+                                }
+                                return TraversalControl.CONTINUE;
+                            }
+                        },
+                        document);
+        return found.get();
+    }
+
+    private static AbortExecutionException abort(
+            Map<String, Object> extensions, String messagePattern, Object... args) {
+        final GraphQLError error =
+                GraphqlErrorBuilder.newError()
+                        .errorType(ErrorType.BAD_REQUEST)
+                        .message(MessageFormatter.basicArrayFormat(messagePattern, args))
+                        .extensions(extensions)
+                        .build();
+        return new AbortExecutionException(List.of(error));
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        try {
+            return Math.addExact(a, b);
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static long saturatedMultiply(long a, long b) {
+        try {
+            return Math.multiplyExact(a, b);
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /** Accumulates cost of sub-selections into their parent selection, visited after them */
+    private final class CostVisitor extends QueryVisitorStub {
+
+        private final Map<QueryVisitorFieldEnvironment, Long> childCosts = new HashMap<>();
+        private long cost;
+        private int depth;
+        private boolean variableDependent;
+
+        @Override
+        public void visitField(QueryVisitorFieldEnvironment environment) {
+            if (environment.isTypeNameIntrospectionField()) {
+                return;
+            }
+            final var directive =
+                    environment.getFieldDefinition().getAppliedDirective(GraphQLCost.NAME);
+            long fieldCost = defaultFieldCost;
+            List<String> multipliers = List.of();
+            if (directive != null) {
+                fieldCost = directive.getArgument("value").<Number>getValue().longValue();
+                multipliers = directive.getArgument("multipliers").getValue();
+            }
+            fieldCost = saturatedAdd(fieldCost, childCosts.getOrDefault(environment, 0L));
+            for (var multiplier : multipliers) {
+                if (environment.getArguments().get(multiplier) instanceof Number value) {
+                    fieldCost = saturatedMultiply(fieldCost, Math.max(1, value.longValue()));
+                }
+                final var argument =
+                        environment.getField().getArguments().stream()
+                                .filter(a -> a.getName().equals(multiplier))
+                                .findFirst();
+                if (argument.isPresent()
+                        && argument.get().getValue() instanceof VariableReference) {
+                    variableDependent = true;
+                }
+            }
+
+            final var parent = environment.getParentEnvironment();
+            if (parent == null) {
+                cost = saturatedAdd(cost, fieldCost);
+            } else {
+                childCosts.merge(parent, fieldCost, QueryCostInstrumentation::saturatedAdd);
+            }
+            int fieldDepth = 1;
+            for (var p = parent; p != null; p = p.getParentEnvironment()) {
+                fieldDepth++;
+            }
+            depth = Math.max(depth, fieldDepth);
+        }
+    }
+
+    /** Cost budget of a client, refilled continuously up to the capacity */
+    private final class TokenBucket {
+
+        private double tokens = clientCapacity;
+        private long refilledAt = System.nanoTime();
+
+        /**
+         * @return {@code 0} when the cost is consumed, otherwise milliseconds until it can be
+         */
+        synchronized long tryConsume(long cost) {
+            final long now = System.nanoTime();
+            tokens =
+                    Math.min(
+                            clientCapacity,
+                            tokens + (now - refilledAt) * clientRefillPerSecond / 1e9);
+            refilledAt = now;
+            if (tokens >= cost) {
+                tokens -= cost;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((cost - tokens) * 1000 / clientRefillPerSecond));
+        }
+    }
+
+    /**
+     * Static cost of an operation
+     *
+     * @param cost sum of weighted field selections
+     * @param depth maximum depth of field selections
+     */
+    private record QueryCost(long cost, int depth) {}
+
+    /**
+     * Query cost counters
+     *
+     * @param analyzed number of operations analyzed
+     * @param cacheHits number of operations which cost was cached
+     * @param rejectedDepth number of operations rejected due to their depth
+     * @param rejectedCost number of operations rejected due to their cost
+     * @param throttled number of operations rejected due to the rate of their client
+     * @param admittedCost accumulated cost of admitted operations
+     */
+    public record CostStatistics(
+            long analyzed,
+            long cacheHits,
+            long rejectedDepth,
+            long rejectedCost,
+            long throttled,
+            long admittedCost) {}
+}
@@ -0,0 +1,52 @@
+package com.sample.city.springboot.component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.function.ToDoubleFunction;
+
+/** Micrometer binder publishing counters of query cost analysis and admission */
+public class QueryCostMetrics implements MeterBinder {
+
+    private final QueryCostInstrumentation instrumentation;
+
+    public QueryCostMetrics(QueryCostInstrumentation instrumentation) {
+        this.instrumentation = instrumentation;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder(
+                        "graphql.query.cost", instrumentation, i -> i.statistics().admittedCost())
+                .description("Accumulated static cost of admitted operations")
+                .register(registry);
+        FunctionCounter.builder(
+                        "graphql.query.cost.analyses",
+                        instrumentation,
+                        i -> i.statistics().analyzed())
+                .description("Operations which cost was analyzed")
+                .tag("cache", "miss")
+                .register(registry);
+        FunctionCounter.builder(
+                        "graphql.query.cost.analyses",
+                        instrumentation,
+                        i -> i.statistics().cacheHits())
+                .description("Operations which cost was analyzed")
+                .tag("cache", "hit")
+                .register(registry);
+        rejected(registry, "depth", i -> i.statistics().rejectedDepth());
+        rejected(registry, "cost", i -> i.statistics().rejectedCost());
+        rejected(registry, "rate", i -> i.statistics().throttled());
+    }
+
+    private void rejected(
+            MeterRegistry registry,
+            String reason,
+            ToDoubleFunction<QueryCostInstrumentation> count) {
+        FunctionCounter.builder("graphql.query.rejected", instrumentation, count)
+                .description("Operations rejected before execution")
+                .tag("reason", reason)
+                .register(registry);
+    }
+}
@@ -1,5 +1,7 @@
 package com.sample.city.springboot.component;
 
+import graphql.GraphQLContext;
+
 import io.leangen.graphql.generator.mapping.ArgumentInjectorParams;
 import io.leangen.graphql.generator.mapping.common.InputValueDeserializer;
 
@@ -9,31 +11,105 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
+import javax.annotation.Nullable;
+
 import java.lang.reflect.AnnotatedType;
 import java.lang.reflect.Parameter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Injects values of request headers into resolver arguments annotated with {@link RequestHeader}.
+ *
+ * <p>Headers are read from {@link RequestHeaders} captured in the GraphQL context by {@link
+ * RequestHeadersInterceptor}, so injection works the same on MVC, WebFlux, virtual threads and in
+ * batch loaders. Each argument is bound to the name and index of its header in the given {@link
+ * RequestHeaders} when SPQR registers it while the schema is built, so invocations only look the
+ * binding up. Operations executed without the interceptor read headers of the servlet request bound
+ * to the current thread, if any.
+ */
 @Slf4j
 public class RequestHeaderMvcInjector extends InputValueDeserializer {
 
+    private final RequestHeaders requestHeaders;
+    private final Map<Parameter, HeaderBinding> bindings = new ConcurrentHashMap<>();
+
+    /**
+     * @param requestHeaders headers captured by the {@link RequestHeadersInterceptor} of requests
+     *     executing the schema
+     */
+    public RequestHeaderMvcInjector(RequestHeaders requestHeaders) {
+        this.requestHeaders = requestHeaders;
+    }
+
     @Override
     public Object getArgumentValue(ArgumentInjectorParams params) {
-        final var headerName =
-                params.getArgument().getTypedElement().getAnnotation(RequestHeader.class).value();
-        final var headerValue =
-                ((ServletRequestAttributes) RequestContextHolder.currentRequestAttributes())
-                        .getRequest()
-                        .getHeader(headerName);
-
-        log.debug(
-                "Injecting '{}' header value '{}' as '{} parameter value",
-                headerName,
-                headerValue,
-                params.getParameter().getName());
+        // bound by supports() while the schema was built
+        final var binding = bindings.get(params.getParameter());
+        final var environment = params.getResolutionEnvironment();
+        final GraphQLContext context;
+        if (environment.dataFetchingEnvironment != null) {
+            context = environment.dataFetchingEnvironment.getGraphQlContext();
+        } else if (environment.batchLoaderEnvironment != null
+                && environment.batchLoaderEnvironment.getContext()
+                        instanceof GraphQLContext batchContext) {
+            context = batchContext;
+        } else {
+            context = null;
+        }
+        final var headerValue = header(context, binding.index(), binding.name());
+
+        if (log.isDebugEnabled()) {
+            log.debug(
+                    "Injecting '{}' header value '{}' as '{} parameter value",
+                    binding.name(),
+                    headerValue,
+                    params.getParameter().getName());
+        }
         return headerValue;
     }
 
+    /**
+     * Resolves header value of the request, captured in its GraphQL context or bound to this thread
+     *
+     * @param context GraphQL context of the request
+     * @param index index of the header, see {@link RequestHeaders#index(String)}
+     * @param headerName name of the header
+     * @return header value or {@code null} if header is not present
+     */
+    @Nullable
+    public static String header(@Nullable GraphQLContext context, int index, String headerName) {
+        if (context != null
+                && context.get(RequestHeaders.CONTEXT_KEY)
+                        instanceof RequestHeaders.Captured headers) {
+            return headers.get(index);
+        }
+        if (RequestContextHolder.getRequestAttributes()
+                instanceof ServletRequestAttributes attributes) {
+            return attributes.getRequest().getHeader(headerName);
+        }
+        return null;
+    }
+
     @Override
     public boolean supports(AnnotatedType type, Parameter parameter) {
-        return parameter != null && parameter.isAnnotationPresent(RequestHeader.class);
+        if (parameter == null || !parameter.isAnnotationPresent(RequestHeader.class)) {
+            return false;
+        }
+        final var name = headerName(parameter.getAnnotation(RequestHeader.class));
+        bindings.put(parameter, new HeaderBinding(name, requestHeaders.index(name)));
+        return true;
     }
+
+    private static String headerName(RequestHeader requestHeader) {
+        return requestHeader.value().isEmpty() ? requestHeader.name() : requestHeader.value();
+    }
+
+    /**
+     * Header injected into a resolver argument
+     *
+     * @param name name of the header
+     * @param index index of the header in {@link RequestHeaders}
+     */
+    private record HeaderBinding(String name, int index) {}
 }
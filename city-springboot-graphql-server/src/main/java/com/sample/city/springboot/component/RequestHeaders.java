@@ -0,0 +1,95 @@
+package com.sample.city.springboot.component;
+
+import org.springframework.http.HttpHeaders;
+
+import javax.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Request headers injected into resolver arguments, which values are captured once per request into
+ * the GraphQL context under {@link #CONTEXT_KEY}, so resolvers read them on any thread.
+ *
+ * <p>Names of injected headers are indexed while the schema is built, see {@link #index(String)}.
+ * Only those headers are captured, into an array read by the index of the header. Schema built by a
+ * {@code GraphQlSchemaFactory} has to be executed with headers captured by the same instance.
+ */
+public final class RequestHeaders {
+
+    /** Key of the captured headers in the GraphQL context */
+    public static final String CONTEXT_KEY = RequestHeaders.class.getName();
+
+    private static final String[] NO_VALUES = new String[0];
+
+    private final Map<String, Integer> indexes = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[0];
+
+    /**
+     * Indexes header injected into resolver arguments, so it is captured with every request
+     *
+     * @param headerName case-insensitive name of the header
+     * @return index of the header
+     */
+    public int index(String headerName) {
+        final var name = headerName.toLowerCase(Locale.ROOT);
+        final var index = indexes.get(name);
+        return index != null ? index : register(name);
+    }
+
+    private synchronized int register(String name) {
+        final var index = indexes.get(name);
+        if (index != null) {
+            return index;
+        }
+        final var registered = Arrays.copyOf(names, names.length + 1);
+        registered[names.length] = name;
+        names = registered;
+        indexes.put(name, names.length - 1);
+        return names.length - 1;
+    }
+
+    /**
+     * Captures the first values of indexed headers of the request
+     *
+     * @param headers headers of the request
+     * @return captured headers
+     */
+    public Captured capture(HttpHeaders headers) {
+        final var headerNames = names;
+        final var values = headerNames.length == 0 ? NO_VALUES : new String[headerNames.length];
+        for (int i = 0; i < headerNames.length; i++) {
+            values[i] = headers.getFirst(headerNames[i]);
+        }
+        return new Captured(this, headers, values);
+    }
+
+    /** Values of indexed headers of a request */
+    public static final class Captured {
+
+        private final RequestHeaders requestHeaders;
+        private final HttpHeaders headers;
+        private final String[] values;
+
+        private Captured(RequestHeaders requestHeaders, HttpHeaders headers, String[] values) {
+            this.requestHeaders = requestHeaders;
+            this.headers = headers;
+            this.values = values;
+        }
+
+        /**
+         * @param index index of the header, see {@link RequestHeaders#index(String)}
+         * @return header value, or {@code null} when header is not present
+         */
+        @Nullable
+        public String get(int index) {
+            if (index < values.length) {
+                return values[index];
+            }
+            final var headerNames = requestHeaders.names;
+            return index < headerNames.length ? headers.getFirst(headerNames[index]) : null;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.sample.city.springboot.component;
+
+import org.springframework.graphql.server.WebGraphQlInterceptor;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.WebGraphQlResponse;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Captures headers injected into resolver arguments into the GraphQL context, see {@link
+ * RequestHeaders}. Applied to requests of both the MVC and the WebFlux transport.
+ */
+public class RequestHeadersInterceptor implements WebGraphQlInterceptor {
+
+    private final RequestHeaders requestHeaders;
+
+    /**
+     * @param requestHeaders headers indexed while the executed schema was built
+     */
+    public RequestHeadersInterceptor(RequestHeaders requestHeaders) {
+        this.requestHeaders = requestHeaders;
+    }
+
+    @Override
+    public Mono<WebGraphQlResponse> intercept(WebGraphQlRequest request, Chain chain) {
+        final var headers = requestHeaders.capture(request.getHeaders());
+        request.configureExecutionInput(
+                (executionInput, builder) -> {
+                    executionInput.getGraphQLContext().put(RequestHeaders.CONTEXT_KEY, headers);
+                    return executionInput;
+                });
+        return chain.next(request);
+    }
+}
@@ -0,0 +1,29 @@
+package com.sample.city.springboot.component;
+
+import com.sample.city.springboot.component.ResolverLatencyInstrumentation.LatencyReport;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+/** Actuator endpoint listing the slowest GraphQL fields and operations */
+@Endpoint(id = "graphqlresolvers")
+public class ResolverLatencyEndpoint {
+
+    private final ResolverLatencyInstrumentation instrumentation;
+    private final int reportSize;
+
+    public ResolverLatencyEndpoint(ResolverLatencyInstrumentation instrumentation, int reportSize) {
+        this.instrumentation = instrumentation;
+        this.reportSize = reportSize;
+    }
+
+    /**
+     * Slowest fields and operations by their 99th percentile latency
+     *
+     * @return report of the slowest fields and operations
+     */
+    @ReadOperation
+    public LatencyReport slowest() {
+        return instrumentation.slowest(reportSize);
+    }
+}
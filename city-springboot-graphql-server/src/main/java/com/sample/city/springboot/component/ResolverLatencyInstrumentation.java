@@ -0,0 +1,243 @@
+package com.sample.city.springboot.component;
+
+import graphql.ExecutionResult;
+import graphql.execution.instrumentation.FieldFetchingInstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentationContext;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import graphql.schema.GraphQLNamedType;
+
+import org.HdrHistogram.AtomicHistogram;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Records latency of every field fetch, keyed by {@code Type.field}, and of every operation
+ * execution, keyed by operation name, into preallocated HdrHistograms. Recording is lock-free and
+ * allocates nothing but the timing context of the fetch.
+ *
+ * <p>Trivial fields, i.e. properties of already fetched objects, are sampled one in {@code
+ * trivialSampleRate} and recorded with that weight, so their counts stay representative at a
+ * fraction of the cost.
+ */
+public class ResolverLatencyInstrumentation extends SimplePerformantInstrumentation {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final int SIGNIFICANT_DIGITS = 2;
+    private static final String ANONYMOUS_OPERATION = "<anonymous>";
+    private static final String OTHER_OPERATIONS = "<other>";
+
+    private final int trivialSampleRate;
+    private final int maxOperations;
+    private final Map<String, Map<String, Latency>> fields = new ConcurrentHashMap<>();
+    private final Map<String, Latency> operations = new ConcurrentHashMap<>();
+    private volatile Consumer<Latency> listener = latency -> {};
+
+    /**
+     * Creates resolver latency instrumentation
+     *
+     * @param trivialSampleRate one in how many fetches of trivial fields is recorded
+     * @param maxOperations maximum number of operation names tracked separately, others are
+     *     recorded together
+     */
+    public ResolverLatencyInstrumentation(int trivialSampleRate, int maxOperations) {
+        this.trivialSampleRate = Math.max(1, trivialSampleRate);
+        this.maxOperations = maxOperations;
+    }
+
+    @Override
+    public FieldFetchingInstrumentationContext beginFieldFetching(
+            InstrumentationFieldFetchParameters parameters, InstrumentationState state) {
+        var weight = 1;
+        if (parameters.isTrivialDataFetcher() && trivialSampleRate > 1) {
+            if (ThreadLocalRandom.current().nextInt(trivialSampleRate) != 0) {
+                return FieldFetchingInstrumentationContext.NOOP;
+            }
+            weight = trivialSampleRate;
+        }
+        final var environment = parameters.getEnvironment();
+        if (!(environment.getParentType() instanceof GraphQLNamedType parentType)) {
+            return FieldFetchingInstrumentationContext.NOOP;
+        }
+        final var fieldName = environment.getFieldDefinition().getName();
+        var typeFields = fields.get(parentType.getName());
+        if (typeFields == null) {
+            typeFields =
+                    fields.computeIfAbsent(parentType.getName(), key -> new ConcurrentHashMap<>());
+        }
+        var latency = typeFields.get(fieldName);
+        if (latency == null) {
+            latency =
+                    typeFields.computeIfAbsent(
+                            fieldName,
+                            key -> newLatency(Kind.FIELD, parentType.getName() + "." + key));
+        }
+        return new Timing(latency, System.nanoTime(), weight);
+    }
+
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecuteOperation(
+            InstrumentationExecuteOperationParameters parameters, InstrumentationState state) {
+        final var name =
+                Objects.requireNonNullElse(
+                        parameters.getExecutionContext().getOperationDefinition().getName(),
+                        ANONYMOUS_OPERATION);
+        var latency = operations.get(name);
+        if (latency == null) {
+            latency =
+                    operations.computeIfAbsent(
+                            operations.size() < maxOperations ? name : OTHER_OPERATIONS,
+                            key -> newLatency(Kind.OPERATION, key));
+        }
+        final var operationLatency = latency;
+        final long start = System.nanoTime();
+        return SimpleInstrumentationContext.whenCompleted(
+                (result, error) -> operationLatency.record(System.nanoTime() - start, 1));
+    }
+
+    /**
+     * Listens to latencies of fields and operations seen for the first time, e.g. to register their
+     * meters
+     *
+     * @param listener listener of new latencies
+     */
+    public void onNewLatency(Consumer<Latency> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return latencies of all fields seen so far
+     */
+    public List<Latency> fieldLatencies() {
+        return fields.values().stream().map(Map::values).flatMap(Collection::stream).toList();
+    }
+
+    /**
+     * @return latencies of all operations seen so far
+     */
+    public List<Latency> operationLatencies() {
+        return List.copyOf(operations.values());
+    }
+
+    /**
+     * Slowest fields and operations by their 99th percentile latency
+     *
+     * @param limit maximum number of fields and of operations
+     * @return report of the slowest fields and operations
+     */
+    public LatencyReport slowest(int limit) {
+        return new LatencyReport(
+                slowest(fieldLatencies(), limit), slowest(operationLatencies(), limit));
+    }
+
+    private static List<LatencyStatistics> slowest(List<Latency> latencies, int limit) {
+        return latencies.stream()
+                .map(Latency::statistics)
+                .sorted(Comparator.comparingDouble(LatencyStatistics::p99Ms).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    private Latency newLatency(Kind kind, String name) {
+        final var latency = new Latency(kind, name);
+        listener.accept(latency);
+        return latency;
+    }
+
+    /** Fetch of a field, recorded when its value completes */
+    private record Timing(Latency latency, long start, int weight)
+            implements FieldFetchingInstrumentationContext {
+
+        @Override
+        public void onDispatched() {}
+
+        @Override
+        public void onCompleted(Object result, Throwable t) {
+            latency.record(System.nanoTime() - start, weight);
+        }
+    }
+
+    public enum Kind {
+        FIELD,
+        OPERATION
+    }
+
+    /** Latency histogram of a field or an operation, in microseconds */
+    public static final class Latency {
+
+        private final Kind kind;
+        private final String name;
+        private final AtomicHistogram histogram =
+                new AtomicHistogram(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+        private final LongAdder totalMicros = new LongAdder();
+
+        private Latency(Kind kind, String name) {
+            this.kind = kind;
+            this.name = name;
+        }
+
+        public Kind kind() {
+            return kind;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        /**
+         * Snapshot of the histogram
+         *
+         * @return current {@link LatencyStatistics}
+         */
+        public LatencyStatistics statistics() {
+            return new LatencyStatistics(
+                    name,
+                    histogram.getTotalCount(),
+                    totalMicros.sum() / 1000.0,
+                    histogram.getValueAtPercentile(50) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getMaxValue() / 1000.0);
+        }
+
+        void record(long nanos, int weight) {
+            final long micros =
+                    Math.min(HIGHEST_TRACKABLE_MICROS, TimeUnit.NANOSECONDS.toMicros(nanos));
+            histogram.recordValueWithCount(micros, weight);
+            totalMicros.add(micros * weight);
+        }
+    }
+
+    /**
+     * Latency counters of a field or an operation
+     *
+     * @param name {@code Type.field} of the field, or name of the operation
+     * @param count number of recorded fetches or executions, including sampled out ones
+     * @param totalMs accumulated latency
+     * @param p50Ms median latency
+     * @param p99Ms 99th percentile latency
+     * @param maxMs maximum recorded latency
+     */
+    public record LatencyStatistics(
+            String name, long count, double totalMs, double p50Ms, double p99Ms, double maxMs) {}
+
+    /**
+     * Slowest fields and operations
+     *
+     * @param fields fields by descending 99th percentile latency
+     * @param operations operations by descending 99th percentile latency
+     */
+    public record LatencyReport(
+            List<LatencyStatistics> fields, List<LatencyStatistics> operations) {}
+}
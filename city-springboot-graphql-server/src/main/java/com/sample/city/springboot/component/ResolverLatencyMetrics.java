@@ -0,0 +1,54 @@
+package com.sample.city.springboot.component;
+
+import com.sample.city.springboot.component.ResolverLatencyInstrumentation.Kind;
+import com.sample.city.springboot.component.ResolverLatencyInstrumentation.Latency;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer binder publishing latency of fields and operations recorded by {@link
+ * ResolverLatencyInstrumentation}. Meters of fields and operations seen after binding are
+ * registered as they appear.
+ */
+public class ResolverLatencyMetrics implements MeterBinder {
+
+    private final ResolverLatencyInstrumentation instrumentation;
+
+    public ResolverLatencyMetrics(ResolverLatencyInstrumentation instrumentation) {
+        this.instrumentation = instrumentation;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        instrumentation.onNewLatency(latency -> register(registry, latency));
+        instrumentation.fieldLatencies().forEach(latency -> register(registry, latency));
+        instrumentation.operationLatencies().forEach(latency -> register(registry, latency));
+    }
+
+    private static void register(MeterRegistry registry, Latency latency) {
+        final var name =
+                latency.kind() == Kind.FIELD
+                        ? "graphql.field.latency"
+                        : "graphql.operation.latency";
+        final var tag = latency.kind() == Kind.FIELD ? "field" : "operation";
+        FunctionTimer.builder(
+                        name,
+                        latency,
+                        l -> l.statistics().count(),
+                        l -> l.statistics().totalMs(),
+                        TimeUnit.MILLISECONDS)
+                .description("Latency of GraphQL " + tag + "s")
+                .tag(tag, latency.name())
+                .register(registry);
+        TimeGauge.builder(
+                        name + ".p99", latency, TimeUnit.MILLISECONDS, l -> l.statistics().p99Ms())
+                .description("99th percentile latency of GraphQL " + tag + "s")
+                .tag(tag, latency.name())
+                .register(registry);
+    }
+}
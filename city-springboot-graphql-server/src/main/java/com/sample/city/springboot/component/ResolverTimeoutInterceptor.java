@@ -0,0 +1,307 @@
+package com.sample.city.springboot.component;
+
+import com.sample.city.springboot.annotation.GraphQLTimeout;
+import com.sample.city.springboot.exception.ResolverTimeoutException;
+
+import graphql.ExceptionWhileDataFetching;
+import graphql.execution.DataFetcherResult;
+import graphql.language.OperationDefinition;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.GraphQLNamedType;
+
+import io.leangen.graphql.execution.InvocationContext;
+import io.leangen.graphql.execution.ResolverInterceptor;
+import io.leangen.graphql.metadata.Resolver;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+
+import javax.annotation.Nullable;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.InvocationTargetException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounds the time of SPQR resolvers returning a {@link Publisher}, so a slow field fails with a
+ * {@link ResolverTimeoutException} and the rest of the response is returned without it.
+ *
+ * <p>Time limits of operations, identified as {@code Type.field}, are taken from the configured
+ * limits, then from {@link GraphQLTimeout} of the resolver, then from the default limit. A {@code
+ * Mono} is bounded until its signal, any other publisher until it completes. Subscriptions are
+ * never bounded. Resolvers of query operations may be hedged by {@link
+ * GraphQLTimeout#hedgeAfter()}: the resolver is invoked once more when the first invocation is
+ * slow, which cuts the tail latency of reads served by a replica stalled e.g. by a GC pause, at the
+ * cost of the duplicate reads.
+ *
+ * <p>Blocking resolvers are not bounded, as their result is not a publisher.
+ *
+ * <p>SPQR collects failed publishers into a generic data fetching error, so generated schemas
+ * register {@link #outputInterceptor()} as well, failing the field with the timeout itself for it
+ * to be resolved to a typed error like for schema snapshots.
+ */
+public class ResolverTimeoutInterceptor implements ResolverInterceptor {
+
+    @Nullable private final Duration defaultTimeout;
+    private final Map<String, Duration> timeouts;
+    private final Map<String, TimeoutPolicy> policies = new ConcurrentHashMap<>();
+    private final LongAdder bounded = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder hedgesWon = new LongAdder();
+
+    /**
+     * @param defaultTimeout time limit of resolvers without a limit of their own, or {@code null}
+     *     to not bound them
+     * @param timeouts time limits of particular operations, keyed by {@code Type.field}, overriding
+     *     {@link GraphQLTimeout} of their resolvers
+     */
+    public ResolverTimeoutInterceptor(
+            @Nullable Duration defaultTimeout, Map<String, Duration> timeouts) {
+        this.defaultTimeout = defaultTimeout;
+        this.timeouts = Map.copyOf(timeouts);
+    }
+
+    @Override
+    public Object aroundInvoke(InvocationContext context, Continuation continuation)
+            throws Exception {
+        final var environment = context.getResolutionEnvironment().dataFetchingEnvironment;
+        if (environment == null) {
+            return continuation.proceed(context);
+        }
+        // the chain can not be proceeded twice, hedges invoke the resolver as the innermost one
+        return bound(
+                policy(environment, context.getResolver()),
+                environment,
+                continuation.proceed(context),
+                () -> resolve(context));
+    }
+
+    /**
+     * Interceptor of the output of SPQR resolvers converted to a future, to be registered as outer
+     * interceptor next to this one
+     *
+     * @return interceptor failing the fields which publisher timed out with the {@link
+     *     ResolverTimeoutException}
+     */
+    public ResolverInterceptor outputInterceptor() {
+        return (context, continuation) -> {
+            final var result = continuation.proceed(context);
+            final var environment = context.getResolutionEnvironment().dataFetchingEnvironment;
+            return environment != null
+                            && result instanceof CompletionStage<?> stage
+                            && policy(environment, context.getResolver()) != TimeoutPolicy.NONE
+                    ? stage.thenApply(ResolverTimeoutInterceptor::rethrowTimeout)
+                    : result;
+        };
+    }
+
+    /**
+     * Time limit and hedging of the operation
+     *
+     * @param operation operation identified as {@code Type.field}
+     * @param resolver resolver method of the operation
+     * @return policy of the operation, {@link TimeoutPolicy#NONE} if it is not bounded
+     */
+    public TimeoutPolicy policy(String operation, AnnotatedElement resolver) {
+        final var annotation =
+                AnnotatedElementUtils.findMergedAnnotation(resolver, GraphQLTimeout.class);
+        final var hedgeAfter =
+                annotation == null || annotation.hedgeAfter() <= 0
+                        ? null
+                        : Duration.ofMillis(annotation.hedgeAfter());
+        var timeout = timeouts.get(operation);
+        if (timeout == null && annotation != null) {
+            timeout = Duration.ofMillis(annotation.value());
+        }
+        if (timeout == null) {
+            timeout = defaultTimeout;
+        }
+        return timeout == null && hedgeAfter == null
+                ? TimeoutPolicy.NONE
+                : new TimeoutPolicy(operation, timeout, hedgeAfter);
+    }
+
+    /**
+     * Invokes the resolver and bounds its publisher by the policy of the operation
+     *
+     * @param policy time limit and hedging of the operation
+     * @param environment environment of the fetched field
+     * @param invocation resolver invocation, invoked once more when hedged
+     * @return bounded publisher, or the result of the resolver if it is not a publisher
+     */
+    public Object invoke(
+            TimeoutPolicy policy, DataFetchingEnvironment environment, Callable<Object> invocation)
+            throws Exception {
+        return bound(policy, environment, invocation.call(), invocation);
+    }
+
+    /**
+     * Snapshot of timeout counters
+     *
+     * @return current {@link TimeoutStatistics}
+     */
+    public TimeoutStatistics statistics() {
+        return new TimeoutStatistics(bounded.sum(), timedOut.sum(), hedged.sum(), hedgesWon.sum());
+    }
+
+    private Object bound(
+            TimeoutPolicy policy,
+            DataFetchingEnvironment environment,
+            Object result,
+            Callable<Object> invocation) {
+        if (policy == TimeoutPolicy.NONE || !(result instanceof Publisher<?> publisher)) {
+            return result;
+        }
+        final var type = environment.getOperationDefinition().getOperation();
+        if (type == OperationDefinition.Operation.SUBSCRIPTION) {
+            return result;
+        }
+        if (publisher instanceof Mono<?> mono) {
+            return bound(policy, mono, type == OperationDefinition.Operation.QUERY, invocation);
+        }
+        return bound(policy, Flux.from(publisher));
+    }
+
+    private TimeoutPolicy policy(DataFetchingEnvironment environment, Resolver resolver) {
+        final var operation =
+                environment.getParentType() instanceof GraphQLNamedType parentType
+                        ? parentType.getName() + "." + resolver.getOperationName()
+                        : resolver.getOperationName();
+        return policies.computeIfAbsent(
+                operation, key -> policy(key, resolver.getExecutable().getDelegate()));
+    }
+
+    private static Object resolve(InvocationContext context) throws Exception {
+        try {
+            return context.getResolver()
+                    .resolve(context.getResolutionEnvironment().context, context.getArguments());
+        } catch (InvocationTargetException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    private static Object rethrowTimeout(Object output) {
+        if (output instanceof DataFetcherResult<?> result) {
+            for (var error : result.getErrors()) {
+                if (error instanceof ExceptionWhileDataFetching fetching
+                        && fetching.getException() instanceof ResolverTimeoutException timeout) {
+                    throw timeout;
+                }
+            }
+        }
+        return output;
+    }
+
+    /** hedges queries, as the resolver may be invoked once more only if it is idempotent */
+    private <T> Mono<T> bound(
+            TimeoutPolicy policy, Mono<T> mono, boolean query, Callable<Object> invocation) {
+        final var source =
+                policy.hedgeAfter() != null && query
+                        ? hedge(policy.hedgeAfter(), mono, invocation)
+                        : mono;
+        if (policy.timeout() == null) {
+            return source;
+        }
+        bounded.increment();
+        return source.timeout(policy.timeout(), Mono.error(() -> timedOut(policy)));
+    }
+
+    /** bounds the whole stream rather than each of its items */
+    private <T> Flux<T> bound(TimeoutPolicy policy, Flux<T> flux) {
+        if (policy.timeout() == null) {
+            return flux;
+        }
+        bounded.increment();
+        final var timeout = policy.timeout();
+        return Flux.defer(
+                () -> {
+                    final long deadline = System.nanoTime() + timeout.toNanos();
+                    return flux.timeout(
+                            Mono.delay(timeout),
+                            item ->
+                                    Mono.delay(
+                                            Duration.ofNanos(
+                                                    Math.max(0, deadline - System.nanoTime()))),
+                            Flux.defer(() -> Flux.error(timedOut(policy))));
+                });
+    }
+
+    /**
+     * races the resolver with its second invocation started once the first one is slow, the first
+     * value wins; if neither invocation has one, the error of the first invocation is propagated
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Mono<T> hedge(Duration hedgeAfter, Mono<T> primary, Callable<Object> invocation) {
+        return Mono.defer(
+                () -> {
+                    final var primaryError = new AtomicReference<Throwable>();
+                    final var secondaryError = new AtomicReference<Throwable>();
+                    final Mono<T> secondary =
+                            Mono.delay(hedgeAfter)
+                                    .flatMap(
+                                            tick -> {
+                                                hedged.increment();
+                                                try {
+                                                    return Mono.from(
+                                                            (Publisher<T>) invocation.call());
+                                                } catch (Exception e) {
+                                                    return Mono.error(e);
+                                                }
+                                            })
+                                    .doOnNext(value -> hedgesWon.increment())
+                                    .doOnError(secondaryError::set);
+                    return Mono.firstWithValue(primary.doOnError(primaryError::set), secondary)
+                            // raised once both invocations failed or completed empty
+                            .onErrorResume(
+                                    NoSuchElementException.class,
+                                    e -> {
+                                        final var error =
+                                                primaryError.get() != null
+                                                        ? primaryError.get()
+                                                        : secondaryError.get();
+                                        return error != null ? Mono.error(error) : Mono.empty();
+                                    });
+                });
+    }
+
+    private ResolverTimeoutException timedOut(TimeoutPolicy policy) {
+        timedOut.increment();
+        return new ResolverTimeoutException(policy.operation(), policy.timeout());
+    }
+
+    /**
+     * Time limit and hedging of an operation
+     *
+     * @param operation operation identified as {@code Type.field}
+     * @param timeout time limit of the operation, {@code null} if it is only hedged
+     * @param hedgeAfter time after which a slow query is invoked once more, {@code null} to never
+     *     hedge
+     */
+    public record TimeoutPolicy(
+            String operation, @Nullable Duration timeout, @Nullable Duration hedgeAfter) {
+
+        /** Policy of operations neither bounded nor hedged */
+        public static final TimeoutPolicy NONE = new TimeoutPolicy("", null, null);
+    }
+
+    /**
+     * Resolver timeout counters
+     *
+     * @param bounded number of publishers bounded by a time limit
+     * @param timedOut number of publishers which did not complete in time
+     * @param hedged number of second invocations of slow queries
+     * @param hedgesWon number of second invocations returning a value before the first one
+     */
+    public record TimeoutStatistics(long bounded, long timedOut, long hedged, long hedgesWon) {}
+}
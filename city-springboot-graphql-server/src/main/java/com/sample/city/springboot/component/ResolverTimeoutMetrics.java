@@ -0,0 +1,41 @@
+package com.sample.city.springboot.component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/** Micrometer binder publishing timeouts and hedges of {@link ResolverTimeoutInterceptor} */
+public class ResolverTimeoutMetrics implements MeterBinder {
+
+    private final ResolverTimeoutInterceptor resolverTimeouts;
+
+    public ResolverTimeoutMetrics(ResolverTimeoutInterceptor resolverTimeouts) {
+        this.resolverTimeouts = resolverTimeouts;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder(
+                        "graphql.resolver.timeout.bounded",
+                        resolverTimeouts,
+                        t -> t.statistics().bounded())
+                .description("Resolver publishers bounded by a time limit")
+                .register(registry);
+        FunctionCounter.builder(
+                        "graphql.resolver.timeout.expired",
+                        resolverTimeouts,
+                        t -> t.statistics().timedOut())
+                .description("Resolver publishers which did not complete in time")
+                .register(registry);
+        FunctionCounter.builder(
+                        "graphql.resolver.hedged", resolverTimeouts, t -> t.statistics().hedged())
+                .description("Second invocations of slow query resolvers")
+                .register(registry);
+        FunctionCounter.builder(
+                        "graphql.resolver.hedged.won",
+                        resolverTimeouts,
+                        t -> t.statistics().hedgesWon())
+                .description("Second invocations signalling before the first one")
+                .register(registry);
+    }
+}
@@ -0,0 +1,23 @@
+package com.sample.city.springboot.component;
+
+import io.leangen.graphql.execution.InvocationContext;
+import io.leangen.graphql.execution.ResolverInterceptor;
+
+import org.reactivestreams.Publisher;
+
+/**
+ * Applies {@code @stream} to publishers returned by SPQR resolvers, before their output is
+ * converted, see {@link IncrementalDelivery#stream}
+ */
+public class StreamDirectiveInterceptor implements ResolverInterceptor {
+
+    @Override
+    public Object aroundInvoke(InvocationContext context, Continuation continuation)
+            throws Exception {
+        final var result = continuation.proceed(context);
+        final var environment = context.getResolutionEnvironment().dataFetchingEnvironment;
+        return result instanceof Publisher<?> publisher && environment != null
+                ? IncrementalDelivery.stream(environment, publisher)
+                : result;
+    }
+}
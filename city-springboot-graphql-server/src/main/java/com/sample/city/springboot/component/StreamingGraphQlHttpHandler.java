@@ -0,0 +1,222 @@
+package com.sample.city.springboot.component;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sample.city.springboot.exception.CityException;
+
+import graphql.ExecutionResult;
+import graphql.GraphQLError;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.graphql.server.webmvc.GraphQlHttpHandler;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.function.ServerRequest;
+import org.springframework.web.servlet.function.ServerResponse;
+
+import javax.annotation.Nullable;
+
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Spring MVC handler of GraphQL requests writing the execution result directly to the response with
+ * a Jackson generator, instead of converting {@link WebGraphQlResponse#toMap()} through the message
+ * converters.
+ *
+ * <p>The response is written to a pooled buffer first. Responses fitting the buffer are sent at
+ * once with their {@code Content-Length}. Once a response outgrows the buffer, the buffer is
+ * flushed and the rest of the response is streamed to the client as it is generated, so a large
+ * result is never held in memory a second time as JSON. A response failing to serialize while it is
+ * still buffered is dropped, so the failure is answered instead of a partial response.
+ */
+public class StreamingGraphQlHttpHandler extends GraphQlHttpHandler {
+
+    private static final List<MediaType> SUPPORTED_MEDIA_TYPES =
+            List.of(MediaType.APPLICATION_GRAPHQL_RESPONSE, MediaType.APPLICATION_JSON);
+
+    private final ObjectMapper objectMapper;
+    private final int streamingThreshold;
+    @Nullable private final Queue<byte[]> buffers;
+    private final LongAdder buffered = new LongAdder();
+    private final LongAdder streamed = new LongAdder();
+
+    /**
+     * Creates the handler
+     *
+     * @param graphQlHandler handler of the operations
+     * @param objectMapper mapper of the results
+     * @param streamingThreshold size in bytes of the buffer, larger responses are streamed
+     * @param pooledBuffers maximum number of buffers kept for reuse, {@code 0} to allocate a buffer
+     *     per response
+     */
+    public StreamingGraphQlHttpHandler(
+            WebGraphQlHandler graphQlHandler,
+            ObjectMapper objectMapper,
+            int streamingThreshold,
+            int pooledBuffers) {
+        // requests are read by a converter, as by the handler of Spring Boot
+        super(graphQlHandler, new MappingJackson2HttpMessageConverter(objectMapper));
+        if (streamingThreshold < 1 || pooledBuffers < 0) {
+            throw new CityException(
+                    "Invalid streaming threshold {} or number of pooled buffers {}",
+                    streamingThreshold,
+                    pooledBuffers);
+        }
+        this.objectMapper = objectMapper;
+        this.streamingThreshold = streamingThreshold;
+        this.buffers = pooledBuffers == 0 ? null : new ArrayBlockingQueue<>(pooledBuffers);
+    }
+
+    /**
+     * @return numbers of responses sent at once and streamed
+     */
+    public ResponseStatistics statistics() {
+        return new ResponseStatistics(buffered.sum(), streamed.sum());
+    }
+
+    @Override
+    protected ServerResponse prepareResponse(
+            ServerRequest request, Mono<WebGraphQlResponse> responseMono) {
+        final var future =
+                responseMono
+                        .map(
+                                response ->
+                                        ServerResponse.ok()
+                                                .headers(
+                                                        headers ->
+                                                                headers.putAll(
+                                                                        response
+                                                                                .getResponseHeaders()))
+                                                .contentType(selectResponseMediaType(request))
+                                                .build(
+                                                        (servletRequest, servletResponse) -> {
+                                                            write(
+                                                                    response.getExecutionResult(),
+                                                                    servletResponse);
+                                                            return null;
+                                                        }))
+                        .toFuture();
+        if (future.isDone() && !future.isCancelled() && !future.isCompletedExceptionally()) {
+            return future.getNow(null);
+        }
+        return ServerResponse.async(future);
+    }
+
+    private void write(ExecutionResult result, HttpServletResponse servletResponse)
+            throws IOException {
+        var buffer = buffers == null ? null : buffers.poll();
+        if (buffer == null) {
+            buffer = new byte[streamingThreshold];
+        }
+        final var output = new ThresholdOutputStream(buffer, servletResponse);
+        try {
+            // not closed on failure, closing would write the partial result to the output
+            final var generator = objectMapper.createGenerator(output, JsonEncoding.UTF8);
+            // same members in the same order as ExecutionResult.toSpecification()
+            generator.writeStartObject();
+            if (!result.getErrors().isEmpty()) {
+                generator.writeArrayFieldStart("errors");
+                for (GraphQLError error : result.getErrors()) {
+                    generator.writeObject(error.toSpecification());
+                }
+                generator.writeEndArray();
+            }
+            if (result.isDataPresent()) {
+                generator.writeFieldName("data");
+                generator.writeObject(result.getData());
+            }
+            if (result.getExtensions() != null) {
+                generator.writeFieldName("extensions");
+                generator.writeObject(result.getExtensions());
+            }
+            generator.writeEndObject();
+            generator.close();
+            output.finish();
+        } finally {
+            if (buffers != null) {
+                buffers.offer(buffer);
+            }
+        }
+    }
+
+    private static MediaType selectResponseMediaType(ServerRequest request) {
+        for (var accepted : request.headers().accept()) {
+            if (SUPPORTED_MEDIA_TYPES.contains(accepted)) {
+                return accepted;
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    /** Numbers of responses sent at once and streamed since startup */
+    public record ResponseStatistics(long buffered, long streamed) {}
+
+    /**
+     * Buffers the response until it exceeds the buffer, then streams it to the servlet response.
+     * {@link #finish()} sends a buffered response, which is dropped otherwise. The servlet output
+     * stream is closed by the container.
+     */
+    private final class ThresholdOutputStream extends OutputStream {
+
+        private final byte[] buffer;
+        private final HttpServletResponse servletResponse;
+        private ServletOutputStream servletOutput;
+        private int count;
+        private boolean finished;
+
+        private ThresholdOutputStream(byte[] buffer, HttpServletResponse servletResponse) {
+            this.buffer = buffer;
+            this.servletResponse = servletResponse;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (servletOutput == null && count + length <= buffer.length) {
+                System.arraycopy(bytes, offset, buffer, count, length);
+                count += length;
+                return;
+            }
+            if (servletOutput == null) {
+                streamed.increment();
+                servletOutput = servletResponse.getOutputStream();
+                servletOutput.write(buffer, 0, count);
+            }
+            servletOutput.write(bytes, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (servletOutput != null) {
+                servletOutput.flush();
+            }
+        }
+
+        private void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (servletOutput == null) {
+                buffered.increment();
+                servletResponse.setContentLength(count);
+                servletResponse.getOutputStream().write(buffer, 0, count);
+            }
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.sample.city.springboot.component;
+
+import com.sample.city.springboot.exception.CityException;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.reactivestreams.Publisher;
+
+import javax.annotation.Nullable;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Sinks;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Multicasts a single upstream per topic to all its subscribers, so subscriptions share one timer,
+ * change stream or other source instead of creating their own.
+ *
+ * <p>The upstream of a topic is subscribed by its first subscriber and cancelled once its last
+ * subscriber leaves. Every subscriber has its own bounded buffer, so a slow subscriber neither
+ * holds back the upstream nor the others; events overflowing the buffer are handled by the {@link
+ * Overflow} strategy of the subscription. Subscribers are kept in a concurrent set, joining and
+ * leaving a topic is constant time regardless of the number of its subscribers.
+ */
+@Slf4j
+public class SubscriptionHub {
+
+    private final int bufferSize;
+    private final Overflow overflow;
+    private final Map<String, Topic<?>> topics = new ConcurrentHashMap<>();
+    private final LongAdder subscribers = new LongAdder();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder disconnected = new LongAdder();
+    private final LongAdder buffered = new LongAdder();
+
+    /**
+     * Creates subscription hub
+     *
+     * @param bufferSize maximum number of events buffered per subscriber
+     * @param overflow default strategy of handling events overflowing the buffer of a subscriber
+     */
+    public SubscriptionHub(int bufferSize, Overflow overflow) {
+        if (bufferSize < 1) {
+            throw new CityException("Invalid subscriber buffer size {}", bufferSize);
+        }
+        this.bufferSize = bufferSize;
+        this.overflow = overflow;
+    }
+
+    /**
+     * Subscribes to the topic with the default overflow strategy
+     *
+     * @param topic name of the topic
+     * @param upstream supplier of the upstream of the topic, used when the topic has no subscribers
+     * @param <T> type of events
+     * @return events of the topic published after subscribing
+     */
+    public <T> Flux<T> subscribe(String topic, Supplier<? extends Publisher<T>> upstream) {
+        return subscribe(topic, upstream, overflow);
+    }
+
+    /**
+     * Subscribes to the topic
+     *
+     * @param topic name of the topic
+     * @param upstream supplier of the upstream of the topic, used when the topic has no subscribers
+     * @param overflow strategy of handling events overflowing the buffer of the subscriber
+     * @param <T> type of events
+     * @return events of the topic published after subscribing
+     */
+    public <T> Flux<T> subscribe(
+            String topic, Supplier<? extends Publisher<T>> upstream, Overflow overflow) {
+        return Flux.defer(
+                () -> {
+                    final var subscriber =
+                            new Subscriber<T>(
+                                    topic, overflow == Overflow.DISCONNECT ? Sinks.empty() : null);
+                    final Flux<T> events =
+                            Flux.push(
+                                    sink -> {
+                                        subscriber.sink = sink;
+                                        join(topic, upstream, subscriber);
+                                        // disposes right away when cancelled while joining
+                                        sink.onDispose(subscriber::leave);
+                                    },
+                                    FluxSink.OverflowStrategy.IGNORE);
+                    return switch (overflow) {
+                        case DROP_OLDEST -> events.onBackpressureBuffer(
+                                        bufferSize,
+                                        event -> subscriber.drop(),
+                                        BufferOverflowStrategy.DROP_OLDEST)
+                                .doOnNext(event -> subscriber.deliver());
+                        case CONFLATE -> events.onBackpressureBuffer(
+                                        1,
+                                        event -> subscriber.drop(),
+                                        BufferOverflowStrategy.DROP_OLDEST)
+                                .doOnNext(event -> subscriber.deliver());
+                        case DISCONNECT -> events.onBackpressureBuffer(bufferSize)
+                                .doOnNext(event -> subscriber.deliver())
+                                // buffered events would hold back the error of the buffer
+                                .takeUntilOther(subscriber.disconnect.asMono());
+                    };
+                });
+    }
+
+    /**
+     * Snapshot of subscription counters
+     *
+     * @return current {@link HubStatistics}
+     */
+    public HubStatistics statistics() {
+        return new HubStatistics(
+                topics.size(),
+                subscribers.sum(),
+                published.sum(),
+                delivered.sum(),
+                dropped.sum(),
+                disconnected.sum(),
+                buffered.sum());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void join(
+            String name, Supplier<? extends Publisher<T>> upstream, Subscriber<T> subscriber) {
+        // a topic closed by its last subscriber leaving concurrently is replaced by a new one
+        while (true) {
+            final var topic =
+                    (Topic<T>) topics.computeIfAbsent(name, key -> new Topic<>(key, upstream));
+            if (topic.join(subscriber)) {
+                return;
+            }
+        }
+    }
+
+    /** Subscribers of a topic sharing its upstream subscription */
+    private final class Topic<T> {
+
+        private final String name;
+        private final Supplier<? extends Publisher<T>> upstream;
+        private final Set<Subscriber<T>> members = ConcurrentHashMap.newKeySet();
+        private Disposable subscription;
+        private boolean closed;
+
+        private Topic(String name, Supplier<? extends Publisher<T>> upstream) {
+            this.name = name;
+            this.upstream = upstream;
+        }
+
+        private synchronized boolean join(Subscriber<T> subscriber) {
+            if (closed) {
+                return false;
+            }
+            subscriber.topic = this;
+            members.add(subscriber);
+            subscribers.increment();
+            if (subscription == null) {
+                log.debug("Subscribing upstream of topic '{}'", name);
+                subscription =
+                        Flux.from(upstream.get())
+                                .subscribe(this::publish, this::fail, this::complete);
+            }
+            return true;
+        }
+
+        private synchronized boolean leave(Subscriber<T> subscriber) {
+            if (!members.remove(subscriber)) {
+                return false;
+            }
+            subscribers.decrement();
+            if (members.isEmpty() && !closed) {
+                log.debug("Cancelling upstream of topic '{}'", name);
+                close();
+                subscription.dispose();
+            }
+            return true;
+        }
+
+        private void publish(T event) {
+            published.increment();
+            for (var member : members) {
+                member.next(event);
+            }
+        }
+
+        private void fail(Throwable error) {
+            synchronized (this) {
+                close();
+            }
+            members.forEach(member -> member.sink.error(error));
+        }
+
+        private void complete() {
+            synchronized (this) {
+                close();
+            }
+            members.forEach(member -> member.sink.complete());
+        }
+
+        private void close() {
+            closed = true;
+            topics.remove(name, this);
+        }
+    }
+
+    /** Subscriber of a topic, counting events buffered for it */
+    private final class Subscriber<T> {
+
+        private final String name;
+        @Nullable private final Sinks.Empty<Void> disconnect;
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile FluxSink<T> sink;
+        private volatile Topic<T> topic;
+
+        private Subscriber(String name, @Nullable Sinks.Empty<Void> disconnect) {
+            this.name = name;
+            this.disconnect = disconnect;
+        }
+
+        private void next(T event) {
+            if (sink.isCancelled()) {
+                return;
+            }
+            if (disconnect != null && pending.get() >= bufferSize) {
+                disconnected.increment();
+                log.debug("Slow subscriber of topic '{}' disconnected", name);
+                leave();
+                disconnect.tryEmitError(
+                        CityException.expected(
+                                "Subscriber of topic '{}' did not keep up with {} buffered events",
+                                name,
+                                bufferSize));
+                return;
+            }
+            pending.incrementAndGet();
+            buffered.increment();
+            sink.next(event);
+        }
+
+        private void deliver() {
+            pending.decrementAndGet();
+            buffered.decrement();
+            delivered.increment();
+        }
+
+        private void drop() {
+            pending.decrementAndGet();
+            buffered.decrement();
+            dropped.increment();
+        }
+
+        private void leave() {
+            final var joined = topic;
+            if (joined != null && joined.leave(this)) {
+                buffered.add(-pending.getAndSet(0));
+            }
+        }
+    }
+
+    /** Handling of events overflowing the buffer of a subscriber */
+    public enum Overflow {
+        /** Oldest buffered event is dropped in favour of the new one */
+        DROP_OLDEST,
+        /** Only the latest event is kept, replacing events not yet delivered */
+        CONFLATE,
+        /** Subscription fails, disconnecting the slow subscriber */
+        DISCONNECT
+    }
+
+    /**
+     * Subscription counters
+     *
+     * @param topics number of topics with subscribers
+     * @param subscribers number of subscribers of all topics
+     * @param published number of events published by upstreams
+     * @param delivered number of events delivered to subscribers
+     * @param dropped number of events dropped due to overflow of subscriber buffers
+     * @param disconnected number of subscribers disconnected due to overflow of their buffer
+     * @param buffered number of events buffered for subscribers, i.e. their total lag
+     */
+    public record HubStatistics(
+            int topics,
+            long subscribers,
+            long published,
+            long delivered,
+            long dropped,
+            long disconnected,
+            long buffered) {}
+}
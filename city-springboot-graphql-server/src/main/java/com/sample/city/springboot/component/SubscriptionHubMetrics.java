@@ -0,0 +1,56 @@
+package com.sample.city.springboot.component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.function.ToDoubleFunction;
+
+/** Micrometer binder publishing subscribers, lag and drops of {@link SubscriptionHub} */
+public class SubscriptionHubMetrics implements MeterBinder {
+
+    private final SubscriptionHub subscriptionHub;
+
+    public SubscriptionHubMetrics(SubscriptionHub subscriptionHub) {
+        this.subscriptionHub = subscriptionHub;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("graphql.subscription.topics", subscriptionHub, h -> h.statistics().topics())
+                .description("Topics with subscribers")
+                .register(registry);
+        Gauge.builder(
+                        "graphql.subscription.subscribers",
+                        subscriptionHub,
+                        h -> h.statistics().subscribers())
+                .description("Subscribers of all topics")
+                .register(registry);
+        Gauge.builder("graphql.subscription.lag", subscriptionHub, h -> h.statistics().buffered())
+                .description("Events buffered for subscribers, not yet delivered")
+                .register(registry);
+        FunctionCounter.builder(
+                        "graphql.subscription.published",
+                        subscriptionHub,
+                        h -> h.statistics().published())
+                .description("Events published by upstreams of topics")
+                .register(registry);
+        events(registry, "delivered", h -> h.statistics().delivered());
+        events(registry, "dropped", h -> h.statistics().dropped());
+        FunctionCounter.builder(
+                        "graphql.subscription.disconnected",
+                        subscriptionHub,
+                        h -> h.statistics().disconnected())
+                .description("Subscribers disconnected for not keeping up with their topic")
+                .register(registry);
+    }
+
+    private void events(
+            MeterRegistry registry, String outcome, ToDoubleFunction<SubscriptionHub> count) {
+        FunctionCounter.builder("graphql.subscription.events", subscriptionHub, count)
+                .description("Events of topics by their outcome for subscribers")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+}
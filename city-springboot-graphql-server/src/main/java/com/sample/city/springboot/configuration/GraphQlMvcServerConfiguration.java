@@ -1,29 +1,46 @@
 package com.sample.city.springboot.configuration;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sample.city.springboot.component.AdaptiveConcurrencyLimiter;
+import com.sample.city.springboot.component.BatchedRequests;
+import com.sample.city.springboot.component.ConcurrencyLimitMvcFilter;
 import com.sample.city.springboot.component.GraphiQlMvcHandler;
+import com.sample.city.springboot.component.IncrementalDelivery;
+import com.sample.city.springboot.component.StreamingGraphQlHttpHandler;
+import com.sample.city.springboot.exception.CityException;
 
-import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.autoconfigure.graphql.GraphQlProperties;
-import org.springframework.boot.autoconfigure.graphql.servlet.GraphQlWebMvcAutoConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.Ordered;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.core.annotation.Order;
 import org.springframework.graphql.execution.GraphQlSource;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.graphql.server.WebGraphQlRequest;
 import org.springframework.graphql.server.webmvc.GraphQlHttpHandler;
 import org.springframework.graphql.server.webmvc.SchemaHandler;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 /** Configuration with beans used to produce GraphQl server */
-@AutoConfiguration(after = GraphQlWebMvcAutoConfiguration.class)
 @EnableAutoConfiguration
 @Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class GraphQlMvcServerConfiguration {
 
     /**
@@ -33,8 +50,12 @@ public class GraphQlMvcServerConfiguration {
      * <p>com.citi.jedi.springboot.component.GraphiQLMvcHandler) with custom implementation, which
      *
      * @param graphQlSource GraphQl source to be used in handler
-     * @param httpHandler handler for GraphQL requests
+     * @param httpHandler handler for GraphQL requests, unless responses are streamed
      * @param properties properties for GraphQl server
+     * @param graphQlHandler handler for streamed, incrementally delivered and batched requests
+     * @param objectMapper mapper of streamed, incrementally delivered and batched results
+     * @param serverProperties properties of the GraphQl server
+     * @param concurrencyLimiter limiter admitting operations, if concurrency limits are enabled
      * @return configured instance of {@link
      *     org.springframework.web.servlet.function.RouterFunction}
      */
@@ -46,8 +67,22 @@ public class GraphQlMvcServerConfiguration {
             graphQlServerRouterFunction(
                     GraphQlHttpHandler httpHandler,
                     GraphQlSource graphQlSource,
-                    GraphQlProperties properties) {
+                    GraphQlProperties properties,
+                    WebGraphQlHandler graphQlHandler,
+                    ObjectMapper objectMapper,
+                    GraphQlServerProperties serverProperties,
+                    ObjectProvider<AdaptiveConcurrencyLimiter> concurrencyLimiter) {
         final var path = properties.getPath();
+        final var limiter = concurrencyLimiter.getIfAvailable();
+        final var concurrencyLimit = serverProperties.getConcurrencyLimit();
+        final var limitFilter =
+                limiter == null
+                        ? null
+                        : new ConcurrencyLimitMvcFilter(
+                                limiter,
+                                objectMapper,
+                                concurrencyLimit.getRejectionStatus(),
+                                concurrencyLimit.getMaxBodySize());
         final var routeBuilder = org.springframework.web.servlet.function.RouterFunctions.route();
         routeBuilder.GET(
                 path,
@@ -60,6 +95,18 @@ public class GraphQlMvcServerConfiguration {
                                                         Collections.singleton(HttpMethod.POST)))
                                 .build());
 
+        final var incrementalDelivery = new IncrementalDelivery(graphQlHandler, objectMapper);
+        routeBuilder.POST(
+                path,
+                org.springframework.web.servlet.function.RequestPredicates.contentType(
+                                MediaType.APPLICATION_JSON)
+                        .and(
+                                org.springframework.web.servlet.function.RequestPredicates.headers(
+                                        headers ->
+                                                IncrementalDelivery.isAccepted(headers.accept()))),
+                limited(
+                        limitFilter,
+                        request -> handleIncrementalRequest(incrementalDelivery, request)));
         routeBuilder.POST(
                 path,
                 org.springframework.web.servlet.function.RequestPredicates.contentType(
@@ -68,7 +115,22 @@ public class GraphQlMvcServerConfiguration {
                                 org.springframework.web.servlet.function.RequestPredicates.accept(
                                         MediaType.APPLICATION_GRAPHQL_RESPONSE,
                                         MediaType.APPLICATION_JSON)),
-                httpHandler::handleRequest);
+                limited(
+                        limitFilter,
+                        responseHandler(
+                                httpHandler, graphQlHandler, objectMapper, serverProperties)));
+        final var batch = serverProperties.getBatch();
+        if (batch.isEnabled()) {
+            final var batchedRequests =
+                    new BatchedRequests(graphQlHandler, objectMapper, batch.getMaxOperations());
+            routeBuilder.POST(
+                    path + "/batch",
+                    org.springframework.web.servlet.function.RequestPredicates.contentType(
+                            MediaType.APPLICATION_JSON),
+                    limited(
+                            limitFilter,
+                            request -> handleBatchedRequest(batchedRequests, request)));
+        }
         if (properties.getGraphiql().isEnabled()) {
             final var graphiQLHandler =
                     new GraphiQlMvcHandler(path, properties.getWebsocket().getPath());
@@ -81,4 +143,127 @@ public class GraphQlMvcServerConfiguration {
         }
         return routeBuilder.build();
     }
+
+    /**
+     * Handler of GraphQL requests writing results directly to the response, or the given handler
+     * converting them if streaming is disabled
+     */
+    private static org.springframework.web.servlet.function.HandlerFunction<
+                    org.springframework.web.servlet.function.ServerResponse>
+            responseHandler(
+                    GraphQlHttpHandler httpHandler,
+                    WebGraphQlHandler graphQlHandler,
+                    ObjectMapper objectMapper,
+                    GraphQlServerProperties serverProperties) {
+        final var response = serverProperties.getResponse();
+        if (!response.isStreaming()) {
+            return httpHandler::handleRequest;
+        }
+        return new StreamingGraphQlHttpHandler(
+                        graphQlHandler,
+                        objectMapper,
+                        response.getStreamingThreshold(),
+                        response.getPooledBuffers())
+                ::handleRequest;
+    }
+
+    /** Handler admitting requests by the concurrency limits first, if they are enabled */
+    private static org.springframework.web.servlet.function.HandlerFunction<
+                    org.springframework.web.servlet.function.ServerResponse>
+            limited(
+                    @Nullable ConcurrencyLimitMvcFilter limitFilter,
+                    org.springframework.web.servlet.function.HandlerFunction<
+                                    org.springframework.web.servlet.function.ServerResponse>
+                            handler) {
+        return limitFilter == null ? handler : limitFilter.apply(handler);
+    }
+
+    /**
+     * Streams results of {@code @defer} and {@code @stream} as {@code multipart/mixed} parts, each
+     * flushed as soon as it is available
+     */
+    private static org.springframework.web.servlet.function.ServerResponse handleIncrementalRequest(
+            IncrementalDelivery incrementalDelivery,
+            org.springframework.web.servlet.function.ServerRequest request)
+            throws Exception {
+        final var graphQlRequest =
+                new WebGraphQlRequest(
+                        request.uri(),
+                        request.headers().asHttpHeaders(),
+                        null,
+                        request.remoteAddress().orElse(null),
+                        request.attributes(),
+                        request.body(new ParameterizedTypeReference<Map<String, Object>>() {}),
+                        request.servletRequest().getRequestId(),
+                        request.servletRequest().getLocale());
+        final var parts = incrementalDelivery.execute(graphQlRequest);
+        return org.springframework.web.servlet.function.ServerResponse.ok()
+                .contentType(IncrementalDelivery.MULTIPART_MIXED)
+                .stream(
+                        builder ->
+                                parts.subscribe(
+                                        part -> {
+                                            try {
+                                                builder.write(part.getBytes(StandardCharsets.UTF_8))
+                                                        .flush();
+                                            } catch (IOException e) {
+                                                throw new UncheckedIOException(e);
+                                            }
+                                        },
+                                        builder::error,
+                                        builder::complete));
+    }
+
+    /**
+     * Executes operations posted as a JSON array, streaming their responses as elements of a JSON
+     * array in the order of the operations
+     */
+    private static org.springframework.web.servlet.function.ServerResponse handleBatchedRequest(
+            BatchedRequests batchedRequests,
+            org.springframework.web.servlet.function.ServerRequest request)
+            throws Exception {
+        final var operations =
+                request.body(new ParameterizedTypeReference<List<Map<String, Object>>>() {});
+        try {
+            batchedRequests.validate(operations);
+        } catch (CityException e) {
+            return org.springframework.web.servlet.function.ServerResponse.badRequest()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(BatchedRequests.errorResponse(e));
+        }
+        final var headers = request.headers().asHttpHeaders();
+        final var remoteAddress = request.remoteAddress().orElse(null);
+        final var requestId = request.servletRequest().getRequestId();
+        final var locale = request.servletRequest().getLocale();
+        final var responses =
+                batchedRequests.execute(
+                        operations,
+                        (index, body) ->
+                                new WebGraphQlRequest(
+                                        request.uri(),
+                                        headers,
+                                        null,
+                                        remoteAddress,
+                                        request.attributes(),
+                                        body,
+                                        requestId + "-" + index,
+                                        locale));
+        return org.springframework.web.servlet.function.ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .stream(
+                        builder ->
+                                responses.subscribe(
+                                        response -> {
+                                            try {
+                                                builder.write(
+                                                                response.getBytes(
+                                                                        StandardCharsets.UTF_8))
+                                                        .flush();
+                                            } catch (IOException e) {
+                                                throw new UncheckedIOException(e);
+                                            }
+                                        },
+                                        builder::error,
+                                        builder::complete));
+    }
 }
@@ -1,52 +1,320 @@
 package com.sample.city.springboot.configuration;
 
+import com.sample.city.springboot.component.AdaptiveConcurrencyLimiter;
+import com.sample.city.springboot.component.BatchedResolverRegistrar;
+import com.sample.city.springboot.component.BlockingResolverExecutor;
+import com.sample.city.springboot.component.BlockingResolverMetrics;
+import com.sample.city.springboot.component.CachingDocumentProvider;
+import com.sample.city.springboot.component.ClientIdInterceptor;
+import com.sample.city.springboot.component.ConcurrencyLimitMetrics;
+import com.sample.city.springboot.component.DocumentCacheMetrics;
+import com.sample.city.springboot.component.GraphQlErrorMetrics;
+import com.sample.city.springboot.component.GraphQlExceptionResolver;
+import com.sample.city.springboot.component.GraphQlSchemaEndpoint;
+import com.sample.city.springboot.component.GraphQlSchemaMetrics;
+import com.sample.city.springboot.component.QueryCostInstrumentation;
+import com.sample.city.springboot.component.QueryCostMetrics;
+import com.sample.city.springboot.component.RequestHeaders;
+import com.sample.city.springboot.component.RequestHeadersInterceptor;
+import com.sample.city.springboot.component.ResolverLatencyEndpoint;
+import com.sample.city.springboot.component.ResolverLatencyInstrumentation;
+import com.sample.city.springboot.component.ResolverLatencyMetrics;
+import com.sample.city.springboot.component.ResolverTimeoutInterceptor;
+import com.sample.city.springboot.component.ResolverTimeoutMetrics;
+import com.sample.city.springboot.component.SubscriptionHub;
+import com.sample.city.springboot.component.SubscriptionHubMetrics;
 import com.sample.city.springboot.factory.GraphQlSchemaFactory;
 import com.sample.city.springboot.factory.GraphQlSourceFactory;
 
-import graphql.schema.GraphQLSchema;
+import graphql.execution.instrumentation.Instrumentation;
 
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.graphql.GraphQlProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.system.JavaVersion;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 import org.springframework.graphql.ExecutionGraphQlService;
 import org.springframework.graphql.execution.BatchLoaderRegistry;
 import org.springframework.graphql.execution.DefaultBatchLoaderRegistry;
 import org.springframework.graphql.execution.DefaultExecutionGraphQlService;
 import org.springframework.graphql.execution.GraphQlSource;
 
+import reactor.core.scheduler.Schedulers;
+
 /** Configuration with beans used to produce GraphQl server */
+@Slf4j
 @EnableAutoConfiguration
 @Configuration
 @ConditionalOnProperty(name = "graphql.server.enabled", havingValue = "true")
-@EnableConfigurationProperties(GraphQlProperties.class)
+@EnableConfigurationProperties({GraphQlProperties.class, GraphQlServerProperties.class})
 public class GraphQlServerConfiguration {
 
+    private static final String EXECUTOR_ENABLED =
+            "!'${graphql.server.execution.mode:direct}'.equalsIgnoreCase('direct')";
+
     /**
      * GraphQL schema factory bean based on injected application context
      *
      * @param context application context to be used for schema creation
+     * @param properties GraphQl server properties
+     * @param blockingResolverExecutor optional executor of blocking resolvers
+     * @param resolverTimeouts optional time limits of resolvers returning publishers
+     * @param requestHeaders headers injected into resolver arguments
      * @return configured instance of {@link GraphQlSchemaFactory}
      */
     @Bean
-    public GraphQlSchemaFactory graphQlSchema(ConfigurableApplicationContext context) {
-        return new GraphQlSchemaFactory(context);
+    public GraphQlSchemaFactory graphQlSchema(
+            ConfigurableApplicationContext context,
+            GraphQlServerProperties properties,
+            ObjectProvider<BlockingResolverExecutor> blockingResolverExecutor,
+            ObjectProvider<ResolverTimeoutInterceptor> resolverTimeouts,
+            RequestHeaders requestHeaders) {
+        final var schemaSnapshot = properties.getSchemaSnapshot();
+        return new GraphQlSchemaFactory(
+                context,
+                GraphQlSchemaFactory.Options.defaults()
+                        .withSnapshotLocation(
+                                schemaSnapshot.isEnabled()
+                                        ? context.getResource(schemaSnapshot.getLocation())
+                                        : null)
+                        .withBlockingResolverExecutor(blockingResolverExecutor.getIfAvailable())
+                        .withResolverTimeouts(resolverTimeouts.getIfAvailable())
+                        .withRequestHeaders(requestHeaders));
+    }
+
+    /**
+     * Executor of blocking resolvers, running them either on virtual threads, so slow resolvers do
+     * not hold platform threads, or on the Reactor bounded elastic scheduler, so they never block
+     * event loops of the WebFlux transport. Virtual threads require Java 21, bounded elastic
+     * scheduler is used instead on older runtimes.
+     *
+     * @param properties GraphQl server properties
+     * @return configured instance of {@link BlockingResolverExecutor}
+     */
+    @Bean
+    @ConditionalOnExpression(EXECUTOR_ENABLED)
+    public BlockingResolverExecutor blockingResolverExecutor(GraphQlServerProperties properties) {
+        final var execution = properties.getExecution();
+        final var virtualThreads =
+                execution.getMode() == GraphQlServerProperties.Mode.VIRTUAL_THREADS;
+        if (virtualThreads
+                && JavaVersion.getJavaVersion().isEqualOrNewerThan(JavaVersion.TWENTY_ONE)) {
+            return new BlockingResolverExecutor(
+                    new VirtualThreadTaskExecutor("graphql-resolver-"),
+                    execution.getMaxConcurrency(),
+                    execution.getLimits(),
+                    execution.getAcquireTimeout(),
+                    execution.getPinningThreshold());
+        }
+        if (virtualThreads) {
+            log.warn(
+                    "Virtual threads require Java 21, running blocking resolvers on bounded"
+                            + " elastic scheduler on Java {}",
+                    JavaVersion.getJavaVersion());
+        }
+        final var scheduler = Schedulers.boundedElastic();
+        return new BlockingResolverExecutor(
+                scheduler::schedule,
+                execution.getMaxConcurrency(),
+                execution.getLimits(),
+                execution.getAcquireTimeout(),
+                null);
+    }
+
+    /**
+     * Time limits of resolvers returning publishers, from {@code @GraphQLTimeout} and properties,
+     * and hedging of slow queries
+     *
+     * @param properties GraphQl server properties
+     * @return configured instance of {@link ResolverTimeoutInterceptor}
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(
+            name = "graphql.server.timeouts.enabled",
+            havingValue = "true",
+            matchIfMissing = true)
+    public ResolverTimeoutInterceptor resolverTimeoutInterceptor(
+            GraphQlServerProperties properties) {
+        final var timeouts = properties.getTimeouts();
+        return new ResolverTimeoutInterceptor(
+                timeouts.getDefaultTimeout(), timeouts.getOperations());
+    }
+
+    /**
+     * Cache of parsed and validated GraphQL documents, with Automatic Persisted Queries support
+     *
+     * @param properties GraphQl server properties
+     * @return configured instance of {@link CachingDocumentProvider}
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(
+            name = "graphql.server.document-cache.enabled",
+            havingValue = "true",
+            matchIfMissing = true)
+    public CachingDocumentProvider cachingDocumentProvider(GraphQlServerProperties properties) {
+        final var documentCache = properties.getDocumentCache();
+        return new CachingDocumentProvider(
+                documentCache.getMaximumWeight(), documentCache.isPersistedQueries());
+    }
+
+    /**
+     * Admission control of operations by their static depth and cost, and per-client rate limits
+     *
+     * @param properties GraphQl server properties
+     * @return configured instance of {@link QueryCostInstrumentation}
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(
+            name = "graphql.server.cost.enabled",
+            havingValue = "true",
+            matchIfMissing = true)
+    public QueryCostInstrumentation queryCostInstrumentation(GraphQlServerProperties properties) {
+        final var cost = properties.getCost();
+        return new QueryCostInstrumentation(
+                cost.getMaxDepth(),
+                cost.getMaxCost(),
+                cost.getDefaultFieldCost(),
+                cost.getClientCapacity(),
+                cost.getClientRefillPerSecond());
+    }
+
+    /**
+     * Identification of clients for per-client rate limits of {@link QueryCostInstrumentation}
+     *
+     * @param properties GraphQl server properties
+     * @return configured instance of {@link ClientIdInterceptor}
+     */
+    @Bean
+    @ConditionalOnProperty(
+            name = "graphql.server.cost.enabled",
+            havingValue = "true",
+            matchIfMissing = true)
+    public ClientIdInterceptor clientIdInterceptor(GraphQlServerProperties properties) {
+        return new ClientIdInterceptor(properties.getCost().getClientHeader());
+    }
+
+    /**
+     * Adaptive concurrency limits of operations, applied by the Spring MVC route
+     *
+     * @param properties GraphQl server properties
+     * @return configured instance of {@link AdaptiveConcurrencyLimiter}
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(name = "graphql.server.concurrency-limit.enabled", havingValue = "true")
+    public AdaptiveConcurrencyLimiter adaptiveConcurrencyLimiter(
+            GraphQlServerProperties properties) {
+        final var limit = properties.getConcurrencyLimit();
+        return new AdaptiveConcurrencyLimiter(
+                limit.getInitialLimit(),
+                limit.getMinLimit(),
+                limit.getMaxLimit(),
+                limit.getTolerance(),
+                limit.getSmoothing(),
+                limit.getPriority(),
+                limit.getReservedShare(),
+                limit.getMaxOperations());
+    }
+
+    /**
+     * Headers injected into resolver arguments, indexed by the schema and captured by requests
+     *
+     * @return configured instance of {@link RequestHeaders}
+     */
+    @Bean
+    public RequestHeaders requestHeaders() {
+        return new RequestHeaders();
+    }
+
+    /**
+     * Capture of headers injected into resolver arguments into the GraphQL context of requests
+     *
+     * @param requestHeaders headers injected into resolver arguments
+     * @return configured instance of {@link RequestHeadersInterceptor}
+     */
+    @Bean
+    public RequestHeadersInterceptor requestHeadersInterceptor(RequestHeaders requestHeaders) {
+        return new RequestHeadersInterceptor(requestHeaders);
+    }
+
+    /**
+     * Hub multicasting a single upstream per subscription topic to all its subscribers
+     *
+     * @param properties GraphQl server properties
+     * @return configured instance of {@link SubscriptionHub}
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public SubscriptionHub subscriptionHub(GraphQlServerProperties properties) {
+        final var subscriptions = properties.getSubscriptions();
+        return new SubscriptionHub(subscriptions.getBufferSize(), subscriptions.getOverflow());
+    }
+
+    /**
+     * Latency histograms of field fetches and operations
+     *
+     * @param properties GraphQl server properties
+     * @return configured instance of {@link ResolverLatencyInstrumentation}
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(
+            name = "graphql.server.latency.enabled",
+            havingValue = "true",
+            matchIfMissing = true)
+    public ResolverLatencyInstrumentation resolverLatencyInstrumentation(
+            GraphQlServerProperties properties) {
+        final var latency = properties.getLatency();
+        return new ResolverLatencyInstrumentation(
+                latency.getTrivialSampleRate(), latency.getMaxOperations());
     }
 
     /**
-     * GraphQL source factory bean based on GraphQL schema
+     * Resolver of data fetcher exceptions to GraphQL errors, logging stack traces of unexpected
+     * ones at a bounded rate
      *
-     * <p>Qparam schema GraphQl schema to derive source from
+     * @param properties GraphQl server properties
+     * @return configured instance of {@link GraphQlExceptionResolver}
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public GraphQlExceptionResolver graphQlExceptionResolver(GraphQlServerProperties properties) {
+        return new GraphQlExceptionResolver(properties.getErrors().getMaxStackTracesPerSecond());
+    }
+
+    /**
+     * GraphQL source factory bean following the schema generations of the GraphQL schema factory
      *
-     * @return configured instance of (@link GraphQlSourceFactory]
+     * @param schemaFactory GraphQl schema factory to derive source from
+     * @param documentProvider optional cache of parsed documents
+     * @param instrumentations instrumentations of executions, e.g. {@link QueryCostInstrumentation}
+     * @param exceptionResolver resolver of data fetcher exceptions
+     * @return configured instance of {@link GraphQlSourceFactory}
      */
     @Bean
-    public GraphQlSourceFactory graphQlSource(GraphQLSchema schema) {
-        return new GraphQlSourceFactory(schema);
+    public GraphQlSourceFactory graphQlSource(
+            GraphQlSchemaFactory schemaFactory,
+            ObjectProvider<CachingDocumentProvider> documentProvider,
+            ObjectProvider<Instrumentation> instrumentations,
+            GraphQlExceptionResolver exceptionResolver) {
+        return new GraphQlSourceFactory(
+                schemaFactory::getObject,
+                documentProvider.getIfAvailable(),
+                instrumentations.orderedStream().toList(),
+                exceptionResolver);
     }
 
     @Bean
@@ -55,12 +323,126 @@ public class GraphQlServerConfiguration {
         return new DefaultBatchLoaderRegistry();
     }
 
+    /**
+     * Data loaders of SPQR {@code @Batched} resolvers, registered with every request
+     *
+     * @param schemaFactory GraphQl schema factory providing batch loaders of the current schema
+     * @return configured instance of {@link BatchedResolverRegistrar}
+     */
+    @Bean
+    public BatchedResolverRegistrar batchedResolverRegistrar(GraphQlSchemaFactory schemaFactory) {
+        return new BatchedResolverRegistrar(schemaFactory);
+    }
+
     @Bean
     @ConditionalOnMissingBean
     public ExecutionGraphQlService executionGraphQlService(
-            GraphQlSource graphQlSource, BatchLoaderRegistry batchLoaderRegistry) {
+            GraphQlSource graphQlSource,
+            BatchLoaderRegistry batchLoaderRegistry,
+            BatchedResolverRegistrar batchedResolverRegistrar) {
         final var service = new DefaultExecutionGraphQlService(graphQlSource);
         service.addDataLoaderRegistrar(batchLoaderRegistry);
+        service.addDataLoaderRegistrar(batchedResolverRegistrar);
         return service;
     }
+
+    /** Actuator endpoints exposing GraphQL schema generation and resolver latency */
+    @Configuration
+    @ConditionalOnClass(name = "org.springframework.boot.actuate.endpoint.annotation.Endpoint")
+    static class GraphQlServerEndpointConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public GraphQlSchemaEndpoint graphQlSchemaEndpoint(GraphQlSchemaFactory schemaFactory) {
+            return new GraphQlSchemaEndpoint(schemaFactory);
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        @ConditionalOnProperty(
+                name = "graphql.server.latency.enabled",
+                havingValue = "true",
+                matchIfMissing = true)
+        public ResolverLatencyEndpoint resolverLatencyEndpoint(
+                ResolverLatencyInstrumentation instrumentation,
+                GraphQlServerProperties properties) {
+            return new ResolverLatencyEndpoint(
+                    instrumentation, properties.getLatency().getReportSize());
+        }
+    }
+
+    /** Micrometer meters of the GraphQL server, bound to the registry when actuator is present */
+    @Configuration
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.binder.MeterBinder")
+    static class GraphQlServerMetricsConfiguration {
+
+        @Bean
+        public GraphQlSchemaMetrics graphQlSchemaMetrics(GraphQlSchemaFactory schemaFactory) {
+            return new GraphQlSchemaMetrics(schemaFactory);
+        }
+
+        @Bean
+        public SubscriptionHubMetrics subscriptionHubMetrics(SubscriptionHub subscriptionHub) {
+            return new SubscriptionHubMetrics(subscriptionHub);
+        }
+
+        @Bean
+        public GraphQlErrorMetrics graphQlErrorMetrics(GraphQlExceptionResolver exceptionResolver) {
+            return new GraphQlErrorMetrics(exceptionResolver);
+        }
+
+        @Bean
+        @ConditionalOnProperty(
+                name = "graphql.server.document-cache.enabled",
+                havingValue = "true",
+                matchIfMissing = true)
+        public DocumentCacheMetrics documentCacheMetrics(CachingDocumentProvider documentProvider) {
+            return new DocumentCacheMetrics(documentProvider);
+        }
+
+        @Bean
+        @ConditionalOnExpression(EXECUTOR_ENABLED)
+        public BlockingResolverMetrics blockingResolverMetrics(
+                BlockingResolverExecutor blockingResolverExecutor) {
+            return new BlockingResolverMetrics(blockingResolverExecutor);
+        }
+
+        @Bean
+        @ConditionalOnProperty(
+                name = "graphql.server.timeouts.enabled",
+                havingValue = "true",
+                matchIfMissing = true)
+        public ResolverTimeoutMetrics resolverTimeoutMetrics(
+                ResolverTimeoutInterceptor resolverTimeouts) {
+            return new ResolverTimeoutMetrics(resolverTimeouts);
+        }
+
+        @Bean
+        @ConditionalOnProperty(
+                name = "graphql.server.cost.enabled",
+                havingValue = "true",
+                matchIfMissing = true)
+        public QueryCostMetrics queryCostMetrics(QueryCostInstrumentation instrumentation) {
+            return new QueryCostMetrics(instrumentation);
+        }
+
+        @Bean
+        @ConditionalOnProperty(
+                name = "graphql.server.concurrency-limit.enabled",
+                havingValue = "true")
+        public ConcurrencyLimitMetrics concurrencyLimitMetrics(
+                AdaptiveConcurrencyLimiter concurrencyLimiter) {
+            return new ConcurrencyLimitMetrics(concurrencyLimiter);
+        }
+
+        @Bean
+        @ConditionalOnProperty(
+                name = "graphql.server.latency.enabled",
+                havingValue = "true",
+                matchIfMissing = true)
+        public ResolverLatencyMetrics resolverLatencyMetrics(
+                ResolverLatencyInstrumentation instrumentation) {
+            return new ResolverLatencyMetrics(instrumentation);
+        }
+    }
 }
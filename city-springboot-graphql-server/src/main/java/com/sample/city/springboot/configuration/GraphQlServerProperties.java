@@ -0,0 +1,269 @@
+package com.sample.city.springboot.configuration;
+
+import com.sample.city.springboot.component.AdaptiveConcurrencyLimiter;
+import com.sample.city.springboot.component.SubscriptionHub;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Properties of the GraphQl server, bound from {@code graphql.server} */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "graphql.server")
+public class GraphQlServerProperties {
+
+    /** Whether GraphQl server is enabled */
+    private boolean enabled;
+
+    /** Cache of parsed and validated documents */
+    private DocumentCache documentCache = new DocumentCache();
+
+    /** Build-time schema snapshot */
+    private SchemaSnapshot schemaSnapshot = new SchemaSnapshot();
+
+    /** Execution of blocking resolvers */
+    private Execution execution = new Execution();
+
+    /** Static cost analysis and admission control of operations */
+    private Cost cost = new Cost();
+
+    /** Latency of resolvers and operations */
+    private Latency latency = new Latency();
+
+    /** Resolution and logging of resolver errors */
+    private Errors errors = new Errors();
+
+    /** Fan-out of subscription topics to their subscribers */
+    private Subscriptions subscriptions = new Subscriptions();
+
+    /** Batches of operations posted as a JSON array */
+    private Batch batch = new Batch();
+
+    /** Serialization of responses on the Spring MVC route */
+    private Response response = new Response();
+
+    /** Adaptive concurrency limits of operations on the Spring MVC route */
+    private ConcurrencyLimit concurrencyLimit = new ConcurrencyLimit();
+
+    /** Time limits and hedging of resolvers returning publishers */
+    private Timeouts timeouts = new Timeouts();
+
+    @Getter
+    @Setter
+    public static class DocumentCache {
+
+        /** Whether parsed and validated documents are cached */
+        private boolean enabled = true;
+
+        /** Maximum total weight of cached documents, measured in query characters */
+        private long maximumWeight = 10_000_000;
+
+        /** Whether Automatic Persisted Queries (hash-only requests) are supported */
+        private boolean persistedQueries = true;
+    }
+
+    @Getter
+    @Setter
+    public static class SchemaSnapshot {
+
+        /** Whether schema is loaded from build-time snapshot, when it is up to date */
+        private boolean enabled;
+
+        /** Location of the schema snapshot */
+        private String location =
+                "classpath:" + com.sample.city.springboot.factory.SchemaSnapshot.DEFAULT_LOCATION;
+    }
+
+    @Getter
+    @Setter
+    public static class Execution {
+
+        /** Strategy of invoking blocking resolvers, i.e. those not returning a publisher */
+        private Mode mode = Mode.DIRECT;
+
+        /** Default limit of concurrent invocations of blocking resolvers per operation */
+        private int maxConcurrency = 10_000;
+
+        /**
+         * Limits of concurrent invocations of particular operations, keyed by {@code Type.field},
+         * e.g. {@code [Query.saveUser]: 100}
+         */
+        private Map<String, Integer> limits = new HashMap<>();
+
+        /** Maximum time an invocation waits for a permit of its operation before it fails */
+        private Duration acquireTimeout = Duration.ofSeconds(1);
+
+        /** Minimum duration of virtual thread pinning recorded by JFR and counted in metrics */
+        private Duration pinningThreshold = Duration.ofMillis(20);
+    }
+
+    @Getter
+    @Setter
+    public static class Cost {
+
+        /** Whether operations are admitted by their static depth and cost */
+        private boolean enabled = true;
+
+        /** Maximum depth of field selections of an operation */
+        private int maxDepth = 15;
+
+        /** Maximum static cost of an operation */
+        private long maxCost = 10_000;
+
+        /** Weight of fields without {@code @GraphQLCost} */
+        private int defaultFieldCost = 1;
+
+        /**
+         * Header identifying clients, clients without it are identified by remote address. The
+         * header is declared by clients themselves, so per-client budgets are advisory.
+         */
+        private String clientHeader = "X-Client-Id";
+
+        /** Cost a client may spend in a burst, at least {@code max-cost} */
+        private long clientCapacity = 100_000;
+
+        /** Cost refilled to every client per second, {@code 0} disables per-client rate limits */
+        private double clientRefillPerSecond;
+    }
+
+    @Getter
+    @Setter
+    public static class Latency {
+
+        /** Whether latency of every field fetch and operation is recorded */
+        private boolean enabled = true;
+
+        /** One in how many fetches of trivial fields, i.e. properties, is recorded */
+        private int trivialSampleRate = 64;
+
+        /** Maximum number of operation names recorded separately, others are recorded together */
+        private int maxOperations = 1000;
+
+        /** Number of the slowest fields and operations listed by the actuator endpoint */
+        private int reportSize = 20;
+    }
+
+    public enum Mode {
+        /** Blocking resolvers are invoked on the thread fetching the field */
+        DIRECT,
+        /**
+         * Blocking resolvers are invoked on a new virtual thread each. Requires Java 21, bounded
+         * elastic scheduler is used on older runtimes.
+         */
+        VIRTUAL_THREADS,
+        /** Blocking resolvers are invoked on the Reactor bounded elastic scheduler */
+        BOUNDED_ELASTIC
+    }
+
+    @Getter
+    @Setter
+    public static class Errors {
+
+        /**
+         * Maximum number of stack traces of unexpected resolver errors logged per second, others
+         * are only counted
+         */
+        private int maxStackTracesPerSecond =
+                com.sample.city.springboot.component.GraphQlExceptionResolver
+                        .DEFAULT_MAX_STACK_TRACES_PER_SECOND;
+    }
+
+    @Getter
+    @Setter
+    public static class Subscriptions {
+
+        /** Maximum number of events buffered per subscriber */
+        private int bufferSize = 256;
+
+        /** Handling of events overflowing the buffer of a slow subscriber */
+        private SubscriptionHub.Overflow overflow = SubscriptionHub.Overflow.DROP_OLDEST;
+    }
+
+    @Getter
+    @Setter
+    public static class Batch {
+
+        /** Whether batches are served on {@code <spring.graphql.path>/batch} */
+        private boolean enabled = true;
+
+        /** Maximum number of operations of a batch, larger batches are rejected */
+        private int maxOperations = 20;
+    }
+
+    @Getter
+    @Setter
+    public static class Response {
+
+        /** Whether results are written directly to the response instead of the converters */
+        private boolean streaming;
+
+        /** Size in bytes of buffered responses sent with their length, larger ones are streamed */
+        private int streamingThreshold = 16 * 1024;
+
+        /** Maximum number of response buffers kept for reuse, 0 to allocate one per response */
+        private int pooledBuffers = 64;
+    }
+
+    @Getter
+    @Setter
+    public static class ConcurrencyLimit {
+
+        /** Whether operations exceeding the concurrency limits are rejected before execution */
+        private boolean enabled;
+
+        /** Limit of an operation before its latency is measured */
+        private int initialLimit = 20;
+
+        /** Minimum limit of an operation and of the node */
+        private int minLimit = 1;
+
+        /** Maximum limit of an operation and of the node */
+        private int maxLimit = 1000;
+
+        /** Ratio of recent to long-term latency tolerated before limits shrink */
+        private double tolerance = 1.5;
+
+        /** Weight of a latency sample in the limit */
+        private double smoothing = 0.2;
+
+        /** Type of operations admitted ahead of the others when the node limit is contended */
+        private AdaptiveConcurrencyLimiter.Priority priority =
+                AdaptiveConcurrencyLimiter.Priority.QUERIES;
+
+        /** Share of the node limit only the prioritized operations may use */
+        private double reservedShare = 0.2;
+
+        /** Maximum number of operation names limited separately, others share one limit */
+        private int maxOperations = 1000;
+
+        /** Status of rejected requests, e.g. 503 or 429 */
+        private HttpStatus rejectionStatus = HttpStatus.SERVICE_UNAVAILABLE;
+
+        /** Maximum size in bytes of request bodies, larger ones are rejected before being read */
+        private int maxBodySize = 1024 * 1024;
+    }
+
+    @Getter
+    @Setter
+    public static class Timeouts {
+
+        /** Whether resolvers returning publishers are bounded by their time limits */
+        private boolean enabled = true;
+
+        /** Time limit of resolvers without a limit of their own, none if not set */
+        private Duration defaultTimeout;
+
+        /**
+         * Time limits of particular operations, keyed by {@code Type.field}, overriding
+         * {@code @GraphQLTimeout} of their resolvers, e.g. {@code [Query.saveUserR]: 5s}
+         */
+        private Map<String, Duration> operations = new HashMap<>();
+    }
+}
@@ -0,0 +1,231 @@
+package com.sample.city.springboot.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sample.city.springboot.component.BatchedRequests;
+import com.sample.city.springboot.component.GraphiQlWebFluxHandler;
+import com.sample.city.springboot.component.IncrementalDelivery;
+import com.sample.city.springboot.exception.CityException;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.graphql.GraphQlProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.boot.web.embedded.netty.NettyServerCustomizer;
+import org.springframework.boot.web.reactive.server.ReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.annotation.Order;
+import org.springframework.graphql.execution.GraphQlSource;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.webflux.GraphQlHttpHandler;
+import org.springframework.graphql.server.webflux.SchemaHandler;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.reactive.socket.server.WebSocketService;
+import org.springframework.web.reactive.socket.server.support.HandshakeWebSocketService;
+import org.springframework.web.reactive.socket.server.upgrade.ReactorNettyRequestUpgradeStrategy;
+
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * Configuration of GraphQl server on Spring WebFlux, selected at startup by {@code
+ * spring.main.web-application-type: reactive}. Requests are handled on Netty event loops, so
+ * resolvers returning {@code Mono} or {@code Flux} run end-to-end without servlet thread hand-off.
+ * WebSocket subscriptions are served by the Spring Boot GraphQl WebFlux auto-configuration.
+ *
+ * <p>Blocking resolvers would block the event loop, so use {@code graphql.server.execution.mode}
+ * other than {@code direct} with this transport.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class GraphQlWebFluxServerConfiguration {
+
+    /**
+     * Custom graphQlRouterFunction bean, same as {@link GraphQlMvcServerConfiguration} one with
+     * GraphiQl page supporting forwarded requests
+     *
+     * @param httpHandler handler for GraphQL requests
+     * @param graphQlSource GraphQl source to be used in handler
+     * @param properties properties for GraphQl server
+     * @param graphQlHandler handler for incrementally delivered GraphQL requests
+     * @param objectMapper mapper of incrementally delivered and batched results
+     * @param serverProperties properties of the GraphQl server
+     * @return configured instance of {@link RouterFunction}
+     */
+    @Bean
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public RouterFunction<ServerResponse> graphQlWebFluxRouterFunction(
+            GraphQlHttpHandler httpHandler,
+            GraphQlSource graphQlSource,
+            GraphQlProperties properties,
+            WebGraphQlHandler graphQlHandler,
+            ObjectMapper objectMapper,
+            GraphQlServerProperties serverProperties) {
+        final var path = properties.getPath();
+        final var routeBuilder = RouterFunctions.route();
+        routeBuilder.GET(
+                path,
+                request ->
+                        ServerResponse.status(HttpStatus.METHOD_NOT_ALLOWED)
+                                .headers(
+                                        headers ->
+                                                headers.setAllow(
+                                                        Collections.singleton(HttpMethod.POST)))
+                                .build());
+
+        final var incrementalDelivery = new IncrementalDelivery(graphQlHandler, objectMapper);
+        routeBuilder.POST(
+                path,
+                RequestPredicates.contentType(MediaType.APPLICATION_JSON)
+                        .and(
+                                RequestPredicates.headers(
+                                        headers ->
+                                                IncrementalDelivery.isAccepted(headers.accept()))),
+                request -> handleIncrementalRequest(incrementalDelivery, request));
+        routeBuilder.POST(
+                path,
+                RequestPredicates.contentType(MediaType.APPLICATION_JSON)
+                        .and(
+                                RequestPredicates.accept(
+                                        MediaType.APPLICATION_GRAPHQL_RESPONSE,
+                                        MediaType.APPLICATION_JSON)),
+                httpHandler::handleRequest);
+        final var batch = serverProperties.getBatch();
+        if (batch.isEnabled()) {
+            final var batchedRequests =
+                    new BatchedRequests(graphQlHandler, objectMapper, batch.getMaxOperations());
+            routeBuilder.POST(
+                    path + "/batch",
+                    RequestPredicates.contentType(MediaType.APPLICATION_JSON),
+                    request -> handleBatchedRequest(batchedRequests, request));
+        }
+        if (properties.getGraphiql().isEnabled()) {
+            final var graphiQLHandler =
+                    new GraphiQlWebFluxHandler(path, properties.getWebsocket().getPath());
+            routeBuilder.GET(properties.getGraphiql().getPath(), graphiQLHandler::handleRequest);
+        }
+
+        if (properties.getSchema().getPrinter().isEnabled()) {
+            final var schemaHandler = new SchemaHandler(graphQlSource);
+            routeBuilder.GET(path + "/schema", schemaHandler::handleRequest);
+        }
+        return routeBuilder.build();
+    }
+
+    /**
+     * Streams results of {@code @defer} and {@code @stream} as {@code multipart/mixed} parts, each
+     * flushed as soon as it is available
+     */
+    private static Mono<ServerResponse> handleIncrementalRequest(
+            IncrementalDelivery incrementalDelivery, ServerRequest request) {
+        final var exchange = request.exchange();
+        return request.bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                .map(
+                        body ->
+                                new WebGraphQlRequest(
+                                        request.uri(),
+                                        request.headers().asHttpHeaders(),
+                                        request.cookies(),
+                                        request.remoteAddress().orElse(null),
+                                        request.attributes(),
+                                        body,
+                                        exchange.getRequest().getId(),
+                                        exchange.getLocaleContext().getLocale()))
+                .flatMap(
+                        graphQlRequest ->
+                                ServerResponse.ok()
+                                        .contentType(IncrementalDelivery.MULTIPART_MIXED)
+                                        .body(
+                                                incrementalDelivery.execute(graphQlRequest),
+                                                String.class));
+    }
+
+    /**
+     * Executes operations posted as a JSON array, streaming their responses as elements of a JSON
+     * array in the order of the operations
+     */
+    private static Mono<ServerResponse> handleBatchedRequest(
+            BatchedRequests batchedRequests, ServerRequest request) {
+        final var exchange = request.exchange();
+        final var headers = request.headers().asHttpHeaders();
+        final var remoteAddress = request.remoteAddress().orElse(null);
+        final var locale = exchange.getLocaleContext().getLocale();
+        final BiFunction<Integer, Map<String, Object>, WebGraphQlRequest> operationRequest =
+                (index, body) ->
+                        new WebGraphQlRequest(
+                                request.uri(),
+                                headers,
+                                request.cookies(),
+                                remoteAddress,
+                                request.attributes(),
+                                body,
+                                exchange.getRequest().getId() + "-" + index,
+                                locale);
+        return request.bodyToMono(new ParameterizedTypeReference<List<Map<String, Object>>>() {})
+                .flatMap(
+                        operations -> {
+                            batchedRequests.validate(operations);
+                            return ServerResponse.ok()
+                                    .contentType(MediaType.APPLICATION_JSON)
+                                    .body(
+                                            batchedRequests.execute(operations, operationRequest),
+                                            String.class);
+                        })
+                .onErrorResume(
+                        CityException.class,
+                        e ->
+                                ServerResponse.badRequest()
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .bodyValue(BatchedRequests.errorResponse(e)));
+    }
+
+    /**
+     * Netty server, preferred over Tomcat which Spring Boot would pick when both are present
+     *
+     * @param serverCustomizers customizers of the Netty server
+     * @return configured instance of {@link NettyReactiveWebServerFactory}
+     */
+    @Bean
+    @ConditionalOnClass(name = "reactor.netty.http.server.HttpServer")
+    @ConditionalOnMissingBean(ReactiveWebServerFactory.class)
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory(
+            ObjectProvider<NettyServerCustomizer> serverCustomizers) {
+        final var factory = new NettyReactiveWebServerFactory();
+        factory.getServerCustomizers().addAll(serverCustomizers.orderedStream().toList());
+        return factory;
+    }
+
+    /**
+     * WebSocket upgrade through Reactor Netty for the Netty server, instead of the servlet one
+     * Spring WebFlux would detect when Tomcat is present as well
+     *
+     * @return configured instance of {@link WebFluxConfigurer}
+     */
+    @Bean
+    @ConditionalOnClass(name = "reactor.netty.http.server.HttpServer")
+    public WebFluxConfigurer nettyWebSocketConfigurer() {
+        return new WebFluxConfigurer() {
+            @Override
+            public WebSocketService getWebSocketService() {
+                return new HandshakeWebSocketService(new ReactorNettyRequestUpgradeStrategy());
+            }
+        };
+    }
+}
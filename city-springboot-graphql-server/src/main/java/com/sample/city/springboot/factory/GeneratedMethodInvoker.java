@@ -0,0 +1,194 @@
+package com.sample.city.springboot.factory;
+
+import io.leangen.graphql.metadata.execution.MethodInvoker;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AnnotatedType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.Supplier;
+
+/**
+ * Resolver invoker bound at schema build time, replacing reflective {@link Method#invoke} of SPQR
+ * {@link MethodInvoker} on every field fetch.
+ *
+ * <p>Instance methods of up to {@link #MAX_GENERATED_ARITY} parameters are bound to an accessor
+ * generated by {@link LambdaMetafactory}, which calls the method directly, unboxing arguments and
+ * boxing the result. Any other method is invoked through a spreading {@link MethodHandle}. The
+ * method is invoked virtually on the target, so AOP proxies keep applying their advice.
+ *
+ * <p>Exceptions thrown by the resolver are wrapped in {@link InvocationTargetException}, same as
+ * with reflection, so SPQR and callers unwrap them as before. The wrapper captures no stack trace
+ * of its own, it is discarded once unwrapped.
+ */
+@Slf4j
+public class GeneratedMethodInvoker extends MethodInvoker {
+
+    /** Highest number of parameters bound to a generated accessor */
+    static final int MAX_GENERATED_ARITY = 4;
+
+    @Nullable private final Supplier<Object> targetSupplier;
+    private final Accessor accessor;
+
+    /**
+     * Creates invoker of the method
+     *
+     * @param targetSupplier supplier of the instance to invoke the method on, or {@code null} to
+     *     invoke it on the target passed to {@link #execute(Object, Object[])}
+     * @param resolverMethod method to invoke
+     * @param enclosingType type declaring the method
+     */
+    public GeneratedMethodInvoker(
+            @Nullable Supplier<Object> targetSupplier,
+            Method resolverMethod,
+            AnnotatedType enclosingType) {
+        super(resolverMethod, enclosingType);
+        this.targetSupplier = targetSupplier;
+        this.accessor = bind(resolverMethod);
+    }
+
+    @Override
+    public Object execute(Object target, Object[] args) throws InvocationTargetException {
+        try {
+            return accessor.invoke(targetSupplier == null ? target : targetSupplier.get(), args);
+        } catch (Throwable t) {
+            throw new ResolverException(t);
+        }
+    }
+
+    private static Accessor bind(Method method) {
+        final MethodHandles.Lookup lookup;
+        final MethodHandle handle;
+        try {
+            lookup =
+                    MethodHandles.privateLookupIn(
+                            method.getDeclaringClass(), MethodHandles.lookup());
+            handle = lookup.unreflect(method);
+        } catch (IllegalAccessException e) {
+            log.debug("Resolver {} is invoked reflectively: {}", method, e.getMessage());
+            return (target, args) -> {
+                try {
+                    return method.invoke(target, args);
+                } catch (InvocationTargetException failure) {
+                    throw failure.getCause();
+                }
+            };
+        }
+        if (!Modifier.isStatic(method.getModifiers())
+                && method.getReturnType() != void.class
+                && method.getParameterCount() <= MAX_GENERATED_ARITY) {
+            try {
+                return generate(lookup, handle, method.getParameterCount());
+            } catch (Throwable e) {
+                log.debug("Resolver {} is invoked through method handle: {}", method, e.toString());
+            }
+        }
+        return spread(handle, method);
+    }
+
+    private static Accessor generate(MethodHandles.Lookup lookup, MethodHandle handle, int arity)
+            throws Throwable {
+        final Class<?> invokerType =
+                switch (arity) {
+                    case 0 -> Invoker0.class;
+                    case 1 -> Invoker1.class;
+                    case 2 -> Invoker2.class;
+                    case 3 -> Invoker3.class;
+                    default -> Invoker4.class;
+                };
+        final var invoker =
+                LambdaMetafactory.metafactory(
+                                lookup,
+                                "invoke",
+                                MethodType.methodType(invokerType),
+                                MethodType.genericMethodType(arity + 1),
+                                handle,
+                                handle.type().wrap())
+                        .getTarget()
+                        .invoke();
+        return switch (arity) {
+            case 0 -> {
+                final var invoker0 = (Invoker0) invoker;
+                yield (target, args) -> invoker0.invoke(target);
+            }
+            case 1 -> {
+                final var invoker1 = (Invoker1) invoker;
+                yield (target, args) -> invoker1.invoke(target, args[0]);
+            }
+            case 2 -> {
+                final var invoker2 = (Invoker2) invoker;
+                yield (target, args) -> invoker2.invoke(target, args[0], args[1]);
+            }
+            case 3 -> {
+                final var invoker3 = (Invoker3) invoker;
+                yield (target, args) -> invoker3.invoke(target, args[0], args[1], args[2]);
+            }
+            default -> {
+                final var invoker4 = (Invoker4) invoker;
+                yield (target, args) -> invoker4.invoke(target, args[0], args[1], args[2], args[3]);
+            }
+        };
+    }
+
+    private static Accessor spread(MethodHandle handle, Method method) {
+        var spreader = handle;
+        if (Modifier.isStatic(method.getModifiers())) {
+            spreader = MethodHandles.dropArguments(spreader, 0, Object.class);
+        }
+        final var invoker =
+                spreader.asSpreader(Object[].class, method.getParameterCount())
+                        .asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+        return (target, args) -> invoker.invokeExact(target, args);
+    }
+
+    /** Wrapper of resolver exceptions, without stack trace of its own */
+    private static final class ResolverException extends InvocationTargetException {
+
+        private ResolverException(Throwable target) {
+            super(target);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Accessor {
+        Object invoke(Object target, Object[] args) throws Throwable;
+    }
+
+    @FunctionalInterface
+    public interface Invoker0 {
+        Object invoke(Object target);
+    }
+
+    @FunctionalInterface
+    public interface Invoker1 {
+        Object invoke(Object target, Object arg0);
+    }
+
+    @FunctionalInterface
+    public interface Invoker2 {
+        Object invoke(Object target, Object arg0, Object arg1);
+    }
+
+    @FunctionalInterface
+    public interface Invoker3 {
+        Object invoke(Object target, Object arg0, Object arg1, Object arg2);
+    }
+
+    @FunctionalInterface
+    public interface Invoker4 {
+        Object invoke(Object target, Object arg0, Object arg1, Object arg2, Object arg3);
+    }
+}
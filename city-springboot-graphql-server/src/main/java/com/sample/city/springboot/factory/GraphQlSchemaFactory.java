@@ -1,14 +1,18 @@
 package com.sample.city.springboot.factory;
 
+import com.sample.city.springboot.component.BlockingResolverExecutor;
+import com.sample.city.springboot.component.IncrementalDelivery;
 import com.sample.city.springboot.component.RequestHeaderMvcInjector;
+import com.sample.city.springboot.component.RequestHeaders;
+import com.sample.city.springboot.component.ResolverTimeoutInterceptor;
+import com.sample.city.springboot.component.StreamDirectiveInterceptor;
 
 import graphql.schema.GraphQLSchema;
 
 import io.leangen.geantyref.GenericTypeReflector;
+import io.leangen.graphql.ExecutableSchema;
 import io.leangen.graphql.GraphQLSchemaGenerator;
 import io.leangen.graphql.metadata.execution.Executable;
-import io.leangen.graphql.metadata.execution.FixedMethodInvoker;
-import io.leangen.graphql.metadata.execution.MethodInvoker;
 import io.leangen.graphql.metadata.strategy.query.AbstractResolverBuilder;
 import io.leangen.graphql.metadata.strategy.query.MethodInvokerFactory;
 import io.leangen.graphql.metadata.strategy.query.ResolverBuilder;
@@ -16,6 +20,9 @@ import io.leangen.graphql.spqr.spring.annotations.GraphQLApi;
 import io.leangen.graphql.spqr.spring.annotations.WithResolverBuilder;
 import io.leangen.graphql.util.Utils;
 
+import lombok.extern.slf4j.Slf4j;
+
+import org.dataloader.BatchLoaderWithContext;
 import org.springframework.aop.support.AopUtils;
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
@@ -24,15 +31,25 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.core.ResolvableType;
 import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.io.Resource;
 import org.springframework.core.type.StandardMethodMetadata;
 
+import javax.annotation.Nullable;
+
 import java.lang.annotation.Annotation;
 import java.lang.reflect.AnnotatedType;
 import java.lang.reflect.Method;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -41,57 +58,224 @@ import java.util.stream.Collectors;
  * graphql-spqr-spring-boot-starter library suggests. However, instead of using GraphQl server
  * capabilities of the <code>graphql-spqr-spring-boot-starter</code>, only dynamic schema resolution
  * and creation functionality is used and server is running using spring-graphql instead.
+ *
+ * <p>Generated schema is cached and versioned: it is built once and swapped atomically on {@link
+ * #refresh()}, which is triggered by context refresh or explicitly (e.g. via actuator).
  */
-public class GraphQlSchemaFactory implements FactoryBean<GraphQLSchema> {
+@Slf4j
+public class GraphQlSchemaFactory
+        implements FactoryBean<GraphQLSchema>, ApplicationListener<ContextRefreshedEvent> {
 
     private final ConfigurableApplicationContext context;
+    @Nullable private final Resource snapshotLocation;
+    @Nullable private final BlockingResolverExecutor blockingResolverExecutor;
+    @Nullable private final ResolverTimeoutInterceptor resolverTimeouts;
+    private final RequestHeaders requestHeaders;
     private final MethodInvokerFactory aopAwareFactory = new AopAwareMethodInvokerFactory();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong totalBuildNanos = new AtomicLong();
+    private final LongAdder lookups = new LongAdder();
+    private volatile ExecutableSchema schema;
+    private volatile long lastBuildNanos;
+    private volatile Instant lastBuiltAt;
+    private volatile boolean lastFromSnapshot;
 
     public GraphQlSchemaFactory(final ConfigurableApplicationContext context) {
+        this(context, Options.defaults());
+    }
+
+    /**
+     * Creates schema factory generating the schema from {@link GraphQLApi} beans of the context, or
+     * loading it from the build-time {@link SchemaSnapshot} of the options when it matches them
+     *
+     * @param context application context to be used for schema creation
+     * @param options snapshot, executors and interceptors of the schema
+     */
+    public GraphQlSchemaFactory(
+            final ConfigurableApplicationContext context, final Options options) {
         this.context = context;
+        this.snapshotLocation = options.snapshotLocation();
+        this.blockingResolverExecutor = options.blockingResolverExecutor();
+        this.resolverTimeouts = options.resolverTimeouts();
+        this.requestHeaders = options.requestHeaders();
     }
 
+    /**
+     * Returns the current schema generation. The schema is generated on first lookup only, any
+     * further lookup is served from the cached generation until {@link #refresh()} is called.
+     *
+     * @return current GraphQL schema
+     */
     @Override
-    public GraphQLSchema getObject() throws Exception {
-        var schemaGenerator = new GraphQLSchemaGenerator();
-        findGraphQLApiServices(context)
-                .forEach(
-                        spqrBean ->
-                                schemaGenerator.withOperationsFromBean(
-                                        spqrBean.beanSupplier,
-                                        spqrBean.type,
-                                        spqrBean.exposedType,
-                                        spqrBean.resolverBuilders.stream()
-                                                .map(
-                                                        criteria ->
-                                                                findQualifiedBeanByType(
-                                                                        criteria.resolverType(),
-                                                                        criteria.value(),
-                                                                        criteria.qualifierType()))
-                                                .peek(
-                                                        resolverBuilder -> {
-                                                            if (resolverBuilder
-                                                                    instanceof
-                                                                    AbstractResolverBuilder) {
-                                                                ((AbstractResolverBuilder)
-                                                                                resolverBuilder)
-                                                                        .withMethodInvokerFactory(
-                                                                                aopAwareFactory);
-                                                            }
-                                                        })
-                                                .toArray(ResolverBuilder[]::new)));
-
-        // add RequestHeaderMvcInjector to schema generator
-        schemaGenerator.withArgumentInjectors(new RequestHeaderMvcInjector());
+    public GraphQLSchema getObject() {
+        lookups.increment();
+        return getExecutableSchema().getSchema();
+    }
 
-        return schemaGenerator.generate();
+    /**
+     * Batch loaders of the current schema generation, keyed by data loader name. Fields of {@link
+     * io.leangen.graphql.annotations.Batched} resolvers are resolved through these loaders, so they
+     * have to be registered with every request.
+     *
+     * @return batch loaders of {@code @Batched} resolvers
+     */
+    public Map<String, BatchLoaderWithContext<?, ?>> getBatchLoaders() {
+        return getExecutableSchema().getBatchLoaders();
     }
 
+    /**
+     * Not a singleton on purpose: the generated schema is cached by this factory, so lookups are
+     * cheap, while each lookup still observes the latest generation after {@link #refresh()}.
+     */
     @Override
     public boolean isSingleton() {
         return false;
     }
 
+    /**
+     * Regenerates the schema from the {@link GraphQLApi} beans and atomically swaps it in as the
+     * new current generation. Requests already in flight keep executing against the previous one.
+     *
+     * @return newly generated schema
+     */
+    public synchronized GraphQLSchema refresh() {
+        final var generated = generateSchema();
+        schema = generated;
+        return generated.getSchema();
+    }
+
+    /**
+     * Rebuilds the schema on refresh of the owning application context. The first refresh only
+     * makes sure the initial generation is built, so startup generates the schema exactly once.
+     */
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        if (event.getApplicationContext() != context) {
+            return;
+        }
+        if (started.compareAndSet(false, true)) {
+            getObject();
+        } else {
+            refresh();
+        }
+    }
+
+    /**
+     * Snapshot of schema generation counters and timings
+     *
+     * @return current {@link SchemaStatistics}
+     */
+    public SchemaStatistics statistics() {
+        return new SchemaStatistics(
+                generation.get(),
+                lookups.sum(),
+                TimeUnit.NANOSECONDS.toMillis(lastBuildNanos),
+                TimeUnit.NANOSECONDS.toMillis(totalBuildNanos.get()),
+                lastBuiltAt,
+                lastFromSnapshot);
+    }
+
+    private ExecutableSchema getExecutableSchema() {
+        final var current = schema;
+        return current != null ? current : initialize();
+    }
+
+    private synchronized ExecutableSchema initialize() {
+        var current = schema;
+        if (current == null) {
+            current = generateSchema();
+            schema = current;
+        }
+        return current;
+    }
+
+    private ExecutableSchema generateSchema() {
+        final long start = System.nanoTime();
+        final var apiBeans = findGraphQLApiServices(context);
+        final var snapshot = loadSnapshot(apiBeans);
+        final var executable = snapshot.orElseGet(() -> generateSpqrSchema(apiBeans));
+        final var generated =
+                new ExecutableSchema(
+                        IncrementalDelivery.withDirectives(executable.getSchema()),
+                        executable.getTypeRegistry(),
+                        executable.getBatchLoaders(),
+                        executable.globalEnvironment);
+        final long elapsed = System.nanoTime() - start;
+        lastBuildNanos = elapsed;
+        lastBuiltAt = Instant.now();
+        lastFromSnapshot = snapshot.isPresent();
+        totalBuildNanos.addAndGet(elapsed);
+        log.info(
+                "{} GraphQL schema generation {} in {} ms",
+                lastFromSnapshot ? "Loaded snapshot as" : "Generated",
+                generation.incrementAndGet(),
+                TimeUnit.NANOSECONDS.toMillis(elapsed));
+        return generated;
+    }
+
+    private Optional<ExecutableSchema> loadSnapshot(List<SpqrBean> apiBeans) {
+        if (snapshotLocation == null) {
+            return Optional.empty();
+        }
+        return SnapshotSchemaLoader.load(
+                snapshotLocation,
+                apiBeans.stream()
+                        .map(
+                                bean ->
+                                        new SnapshotSchemaLoader.ApiBean(
+                                                GenericTypeReflector.erase(bean.type().getType()),
+                                                bean.exposedType(),
+                                                bean.beanSupplier()))
+                        .toList(),
+                blockingResolverExecutor,
+                resolverTimeouts,
+                requestHeaders);
+    }
+
+    private ExecutableSchema generateSpqrSchema(List<SpqrBean> apiBeans) {
+        var schemaGenerator = new GraphQLSchemaGenerator();
+        apiBeans.forEach(
+                spqrBean ->
+                        schemaGenerator.withOperationsFromBean(
+                                spqrBean.beanSupplier,
+                                spqrBean.type,
+                                spqrBean.exposedType,
+                                spqrBean.resolverBuilders.stream()
+                                        .map(
+                                                criteria ->
+                                                        findQualifiedBeanByType(
+                                                                criteria.resolverType(),
+                                                                criteria.value(),
+                                                                criteria.qualifierType()))
+                                        .peek(
+                                                resolverBuilder -> {
+                                                    if (resolverBuilder
+                                                            instanceof AbstractResolverBuilder) {
+                                                        ((AbstractResolverBuilder) resolverBuilder)
+                                                                .withMethodInvokerFactory(
+                                                                        aopAwareFactory);
+                                                    }
+                                                })
+                                        .toArray(ResolverBuilder[]::new)));
+
+        // add RequestHeaderMvcInjector to schema generator
+        schemaGenerator.withArgumentInjectors(new RequestHeaderMvcInjector(requestHeaders));
+        schemaGenerator.withResolverInterceptors(new StreamDirectiveInterceptor());
+        if (resolverTimeouts != null) {
+            // innermost, so the time limit applies to the publisher of the resolver itself
+            schemaGenerator.withResolverInterceptors(resolverTimeouts);
+        }
+        if (blockingResolverExecutor != null) {
+            schemaGenerator.withOuterResolverInterceptors(blockingResolverExecutor);
+        }
+        if (resolverTimeouts != null) {
+            schemaGenerator.withOuterResolverInterceptors(resolverTimeouts.outputInterceptor());
+        }
+
+        return schemaGenerator.generateExecutable();
+    }
+
     private List<SpqrBean> findGraphQLApiServices(ConfigurableApplicationContext context) {
         final String[] apiBeanNames = context.getBeanNamesForAnnotation(GraphQLApi.class);
         final ConfigurableListableBeanFactory beanFactory = context.getBeanFactory();
@@ -210,6 +394,71 @@ public class GraphQlSchemaFactory implements FactoryBean<GraphQLSchema> {
         return GraphQLSchema.class;
     }
 
+    /**
+     * Options of the generated schema, created by {@link #defaults()} and adjusted by the {@code
+     * with} methods
+     *
+     * @param snapshotLocation schema snapshot to load, or {@code null} to always generate schema
+     * @param blockingResolverExecutor executor of blocking resolvers, or {@code null} to invoke
+     *     them on the thread fetching the field
+     * @param resolverTimeouts time limits of resolvers, or {@code null} to not bound them
+     * @param requestHeaders headers injected into resolver arguments, indexed while the schema is
+     *     built
+     */
+    public record Options(
+            @Nullable Resource snapshotLocation,
+            @Nullable BlockingResolverExecutor blockingResolverExecutor,
+            @Nullable ResolverTimeoutInterceptor resolverTimeouts,
+            RequestHeaders requestHeaders) {
+
+        /**
+         * @return options generating the schema at runtime, invoking resolvers on the thread
+         *     fetching the field without time limits
+         */
+        public static Options defaults() {
+            return new Options(null, null, null, new RequestHeaders());
+        }
+
+        public Options withSnapshotLocation(@Nullable Resource snapshotLocation) {
+            return new Options(
+                    snapshotLocation, blockingResolverExecutor, resolverTimeouts, requestHeaders);
+        }
+
+        public Options withBlockingResolverExecutor(
+                @Nullable BlockingResolverExecutor blockingResolverExecutor) {
+            return new Options(
+                    snapshotLocation, blockingResolverExecutor, resolverTimeouts, requestHeaders);
+        }
+
+        public Options withResolverTimeouts(@Nullable ResolverTimeoutInterceptor resolverTimeouts) {
+            return new Options(
+                    snapshotLocation, blockingResolverExecutor, resolverTimeouts, requestHeaders);
+        }
+
+        public Options withRequestHeaders(RequestHeaders requestHeaders) {
+            return new Options(
+                    snapshotLocation, blockingResolverExecutor, resolverTimeouts, requestHeaders);
+        }
+    }
+
+    /**
+     * Schema generation counters
+     *
+     * @param generation number of generated schema versions
+     * @param lookups number of schema lookups served
+     * @param lastBuildTimeMs duration of the latest schema generation
+     * @param totalBuildTimeMs accumulated duration of all schema generations
+     * @param lastBuiltAt time the latest schema generation finished
+     * @param snapshot whether the latest schema generation was loaded from schema snapshot
+     */
+    public record SchemaStatistics(
+            long generation,
+            long lookups,
+            long lastBuildTimeMs,
+            long totalBuildTimeMs,
+            Instant lastBuiltAt,
+            boolean snapshot) {}
+
     private record SpqrBean(
             BeanScope scope,
             Supplier<Object> beanSupplier,
@@ -269,9 +518,7 @@ public class GraphQlSchemaFactory implements FactoryBean<GraphQLSchema> {
                 AnnotatedType enclosingType,
                 Class<?> exposedType) {
             resolverMethod = AopUtils.selectInvocableMethod(resolverMethod, exposedType);
-            return targetSupplier == null
-                    ? new MethodInvoker(resolverMethod, enclosingType)
-                    : new FixedMethodInvoker(targetSupplier, resolverMethod, enclosingType);
+            return new GeneratedMethodInvoker(targetSupplier, resolverMethod, enclosingType);
         }
     }
 }
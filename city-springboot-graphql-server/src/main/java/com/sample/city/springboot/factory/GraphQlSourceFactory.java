@@ -1,14 +1,20 @@
 package com.sample.city.springboot.factory;
 
-import graphql.GraphqlErrorBuilder;
+import com.sample.city.springboot.component.CachingDocumentProvider;
+import com.sample.city.springboot.component.GraphQlExceptionResolver;
+
+import graphql.GraphQL;
+import graphql.execution.instrumentation.Instrumentation;
 import graphql.schema.GraphQLSchema;
 
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.graphql.execution.DataFetcherExceptionResolver;
-import org.springframework.graphql.execution.ErrorType;
 import org.springframework.graphql.execution.GraphQlSource;
 
+import javax.annotation.Nullable;
+
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * Factory to construct instance of (@link GraphQlSource) with custom exception resolver for Grapl
@@ -16,19 +22,7 @@ import java.util.List;
  */
 public class GraphQlSourceFactory implements FactoryBean<GraphQlSource> {
 
-    private static final DataFetcherExceptionResolver GRAPHQL_EXCEPTION_RESOLVER =
-            DataFetcherExceptionResolver.forSingleError(
-                    (ex, env) ->
-                            GraphqlErrorBuilder.newError(env)
-                                    .errorType(ErrorType.BAD_REQUEST)
-                                    .message(
-                                            "[%s] %s"
-                                                    .formatted(
-                                                            ex.getClass().getSimpleName(),
-                                                            ex.getMessage()))
-                                    .build());
-
-    private final GraphQLSchema graphQLSchema;
+    private final RefreshableGraphQlSource graphQlSource;
 
     /**
      * Creates instance of (@link GraphQLSourceFactory) with provided GraphQL schema
@@ -38,14 +32,76 @@ public class GraphQlSourceFactory implements FactoryBean<GraphQlSource> {
      * @param graphQLSchema graphql schema to be used to build (@link GraphQlSource] instance
      */
     public GraphQlSourceFactory(GraphQLSchema graphQLSchema) {
-        this.graphQLSchema = graphQLSchema;
+        this(() -> graphQLSchema);
+    }
+
+    /**
+     * Creates instance of {@link GraphQlSourceFactory} following the schema generations provided by
+     * the supplier. The {@link GraphQlSource} is rebuilt only when the supplied schema changes.
+     *
+     * @param schemaSupplier supplier of the current GraphQL schema generation
+     */
+    public GraphQlSourceFactory(Supplier<GraphQLSchema> schemaSupplier) {
+        this(schemaSupplier, null);
+    }
+
+    /**
+     * Creates instance of {@link GraphQlSourceFactory} following the schema generations provided by
+     * the supplier, with parsed and validated documents served from the given cache. The cache is
+     * invalidated whenever a new schema generation is picked up.
+     *
+     * @param schemaSupplier supplier of the current GraphQL schema generation
+     * @param documentProvider cache of parsed documents, or {@code null} to parse every request
+     */
+    public GraphQlSourceFactory(
+            Supplier<GraphQLSchema> schemaSupplier,
+            @Nullable CachingDocumentProvider documentProvider) {
+        this(schemaSupplier, documentProvider, List.of());
+    }
+
+    /**
+     * Creates instance of {@link GraphQlSourceFactory} following the schema generations provided by
+     * the supplier, with parsed and validated documents served from the given cache and executions
+     * instrumented by the given instrumentations, e.g. cost analysis
+     *
+     * @param schemaSupplier supplier of the current GraphQL schema generation
+     * @param documentProvider cache of parsed documents, or {@code null} to parse every request
+     * @param instrumentations instrumentations of executions, in order
+     */
+    public GraphQlSourceFactory(
+            Supplier<GraphQLSchema> schemaSupplier,
+            @Nullable CachingDocumentProvider documentProvider,
+            List<Instrumentation> instrumentations) {
+        this(
+                schemaSupplier,
+                documentProvider,
+                instrumentations,
+                new GraphQlExceptionResolver(
+                        GraphQlExceptionResolver.DEFAULT_MAX_STACK_TRACES_PER_SECOND));
+    }
+
+    /**
+     * Creates instance of {@link GraphQlSourceFactory} following the schema generations provided by
+     * the supplier, with exceptions of data fetchers resolved by the given resolver
+     *
+     * @param schemaSupplier supplier of the current GraphQL schema generation
+     * @param documentProvider cache of parsed documents, or {@code null} to parse every request
+     * @param instrumentations instrumentations of executions, in order
+     * @param exceptionResolver resolver of data fetcher exceptions to GraphQL errors
+     */
+    public GraphQlSourceFactory(
+            Supplier<GraphQLSchema> schemaSupplier,
+            @Nullable CachingDocumentProvider documentProvider,
+            List<Instrumentation> instrumentations,
+            DataFetcherExceptionResolver exceptionResolver) {
+        this.graphQlSource =
+                new RefreshableGraphQlSource(
+                        schemaSupplier, documentProvider, instrumentations, exceptionResolver);
     }
 
     @Override
     public GraphQlSource getObject() {
-        return GraphQlSource.builder(graphQLSchema)
-                .exceptionResolvers(List.of(GRAPHQL_EXCEPTION_RESOLVER))
-                .build();
+        return graphQlSource;
     }
 
     @Override
@@ -55,6 +111,84 @@ public class GraphQlSourceFactory implements FactoryBean<GraphQlSource> {
 
     @Override
     public boolean isSingleton() {
-        return false;
+        return true;
+    }
+
+    private static GraphQlSource buildSource(
+            GraphQLSchema schema,
+            @Nullable CachingDocumentProvider documentProvider,
+            List<Instrumentation> instrumentations,
+            DataFetcherExceptionResolver exceptionResolver) {
+        return GraphQlSource.builder(schema)
+                .exceptionResolvers(List.of(exceptionResolver))
+                .instrumentation(instrumentations)
+                .configureGraphQl(
+                        builder -> {
+                            if (documentProvider != null) {
+                                builder.preparsedDocumentProvider(documentProvider);
+                            }
+                        })
+                .build();
+    }
+
+    /**
+     * {@link GraphQlSource} shared by all consumers, delegating to the source built for the current
+     * schema generation. Swapping generations is a single volatile write, so executions never
+     * observe a partially built source.
+     */
+    private static final class RefreshableGraphQlSource implements GraphQlSource {
+
+        private final Supplier<GraphQLSchema> schemaSupplier;
+        @Nullable private final CachingDocumentProvider documentProvider;
+        private final List<Instrumentation> instrumentations;
+        private final DataFetcherExceptionResolver exceptionResolver;
+        private volatile Generation current;
+
+        private RefreshableGraphQlSource(
+                Supplier<GraphQLSchema> schemaSupplier,
+                @Nullable CachingDocumentProvider documentProvider,
+                List<Instrumentation> instrumentations,
+                DataFetcherExceptionResolver exceptionResolver) {
+            this.schemaSupplier = schemaSupplier;
+            this.documentProvider = documentProvider;
+            this.instrumentations = instrumentations;
+            this.exceptionResolver = exceptionResolver;
+        }
+
+        @Override
+        public GraphQL graphQl() {
+            return resolve().graphQl();
+        }
+
+        @Override
+        public GraphQLSchema schema() {
+            return resolve().schema();
+        }
+
+        private GraphQlSource resolve() {
+            final var schema = schemaSupplier.get();
+            final var generation = current;
+            if (generation != null && generation.schema() == schema) {
+                return generation.source();
+            }
+            synchronized (this) {
+                if (current == null || current.schema() != schema) {
+                    if (current != null && documentProvider != null) {
+                        documentProvider.invalidateAll();
+                    }
+                    current =
+                            new Generation(
+                                    schema,
+                                    buildSource(
+                                            schema,
+                                            documentProvider,
+                                            instrumentations,
+                                            exceptionResolver));
+                }
+                return current.source();
+            }
+        }
     }
+
+    private record Generation(GraphQLSchema schema, GraphQlSource source) {}
 }
@@ -0,0 +1,170 @@
+package com.sample.city.springboot.factory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import io.leangen.graphql.annotations.GraphQLMutation;
+import io.leangen.graphql.annotations.GraphQLQuery;
+import io.leangen.graphql.annotations.GraphQLSubscription;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Build-time snapshot of the SPQR generated schema: schema SDL together with bindings of root
+ * operation fields to resolver methods of {@code @GraphQLApi} beans.
+ *
+ * <p>The fingerprint covers signatures and annotations of all resolver methods, so a snapshot
+ * generated from different sources than the running application is detected as stale.
+ *
+ * @param fingerprint fingerprint of the resolver methods the snapshot was generated from
+ * @param sdl schema definition
+ * @param bindings resolver method bindings of root operation fields
+ */
+public record SchemaSnapshot(String fingerprint, String sdl, List<ResolverBinding> bindings) {
+
+    /** Default classpath location of the snapshot */
+    public static final String DEFAULT_LOCATION = "META-INF/graphql/schema-snapshot.json";
+
+    private static final ObjectMapper OBJECT_MAPPER =
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    /**
+     * Reads snapshot from JSON
+     *
+     * @param inputStream stream with snapshot JSON
+     * @return read snapshot
+     * @throws IOException when stream can not be read or parsed
+     */
+    public static SchemaSnapshot read(InputStream inputStream) throws IOException {
+        return OBJECT_MAPPER.readValue(inputStream, SchemaSnapshot.class);
+    }
+
+    /**
+     * Writes snapshot as JSON
+     *
+     * @param outputStream stream to write snapshot to
+     * @throws IOException when snapshot can not be written
+     */
+    public void write(OutputStream outputStream) throws IOException {
+        OBJECT_MAPPER.writeValue(outputStream, this);
+    }
+
+    /**
+     * Computes fingerprint of resolver methods declared by provided {@code @GraphQLApi} types
+     *
+     * @param apiTypes user classes of {@code @GraphQLApi} beans
+     * @return hex encoded SHA-256 fingerprint
+     */
+    public static String fingerprint(Collection<Class<?>> apiTypes) {
+        try {
+            final var digest = MessageDigest.getInstance("SHA-256");
+            apiTypes.stream()
+                    .sorted(Comparator.comparing(Class::getName))
+                    .forEach(
+                            type -> {
+                                digest.update(type.getName().getBytes(StandardCharsets.UTF_8));
+                                Arrays.stream(type.getMethods())
+                                        .filter(SchemaSnapshot::isOperation)
+                                        .map(SchemaSnapshot::describe)
+                                        .sorted()
+                                        .forEach(
+                                                method ->
+                                                        digest.update(
+                                                                method.getBytes(
+                                                                        StandardCharsets.UTF_8)));
+                            });
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    static boolean isOperation(Method method) {
+        return method.isAnnotationPresent(GraphQLQuery.class)
+                || method.isAnnotationPresent(GraphQLMutation.class)
+                || method.isAnnotationPresent(GraphQLSubscription.class);
+    }
+
+    private static String describe(Method method) {
+        final var description = new StringBuilder(method.toGenericString());
+        Arrays.stream(method.getAnnotations())
+                .forEach(annotation -> describe(annotation, description));
+        Arrays.stream(method.getParameters())
+                .forEach(
+                        parameter -> {
+                            description.append(parameter.getName());
+                            Arrays.stream(parameter.getAnnotations())
+                                    .forEach(annotation -> describe(annotation, description));
+                        });
+        return description.toString();
+    }
+
+    /** unlike toString(), describes annotation members in stable order across JVM runs */
+    private static void describe(Annotation annotation, StringBuilder description) {
+        description.append('@').append(annotation.annotationType().getName());
+        Arrays.stream(annotation.annotationType().getDeclaredMethods())
+                .sorted(Comparator.comparing(Method::getName))
+                .forEach(
+                        member -> {
+                            try {
+                                description
+                                        .append(member.getName())
+                                        .append('=')
+                                        .append(
+                                                Arrays.deepToString(
+                                                        new Object[] {member.invoke(annotation)}));
+                            } catch (ReflectiveOperationException e) {
+                                throw new IllegalStateException(e);
+                            }
+                        });
+    }
+
+    /**
+     * Binding of a root operation field to resolver method
+     *
+     * @param operation root operation type name ({@code Query}, {@code Mutation} or {@code
+     *     Subscription}), or name of the type declaring a batched field
+     * @param field field name
+     * @param batched whether the field is resolved through a data loader by a {@code @Batched}
+     *     resolver
+     * @param beanType user class of the {@code @GraphQLApi} bean declaring the resolver
+     * @param method resolver method name
+     * @param parameterTypes resolver method parameter types
+     * @param parameters source of each resolver method parameter
+     */
+    public record ResolverBinding(
+            String operation,
+            String field,
+            boolean batched,
+            String beanType,
+            String method,
+            List<String> parameterTypes,
+            List<ParameterBinding> parameters) {}
+
+    /**
+     * Source of a resolver method parameter
+     *
+     * @param source where the value comes from
+     * @param name argument or header name, empty for context
+     */
+    public record ParameterBinding(ParameterSource source, String name) {}
+
+    /** Source of resolver method parameter values */
+    public enum ParameterSource {
+        ARGUMENT,
+        HEADER,
+        CONTEXT
+    }
+}
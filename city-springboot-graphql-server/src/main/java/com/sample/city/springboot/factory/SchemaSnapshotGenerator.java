@@ -0,0 +1,335 @@
+package com.sample.city.springboot.factory;
+
+import com.sample.city.springboot.component.RequestHeaderMvcInjector;
+import com.sample.city.springboot.component.RequestHeaders;
+import com.sample.city.springboot.exception.CityException;
+import com.sample.city.springboot.factory.SchemaSnapshot.ParameterBinding;
+import com.sample.city.springboot.factory.SchemaSnapshot.ParameterSource;
+import com.sample.city.springboot.factory.SchemaSnapshot.ResolverBinding;
+
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.SchemaPrinter;
+
+import io.leangen.geantyref.GenericTypeReflector;
+import io.leangen.graphql.GraphQLSchemaGenerator;
+import io.leangen.graphql.annotations.Batched;
+import io.leangen.graphql.annotations.GraphQLArgument;
+import io.leangen.graphql.annotations.GraphQLContext;
+import io.leangen.graphql.annotations.GraphQLEnvironment;
+import io.leangen.graphql.annotations.GraphQLMutation;
+import io.leangen.graphql.annotations.GraphQLQuery;
+import io.leangen.graphql.annotations.GraphQLRootContext;
+import io.leangen.graphql.annotations.GraphQLSubscription;
+import io.leangen.graphql.spqr.spring.annotations.GraphQLApi;
+import io.leangen.graphql.spqr.spring.annotations.WithResolverBuilder;
+import io.leangen.graphql.util.Utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.util.ClassUtils;
+import org.springframework.web.bind.annotation.RequestHeader;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Generates {@link SchemaSnapshot} at build time, so the application can load the schema instead of
+ * running SPQR schema generation on startup.
+ *
+ * <p>Intended to run after compilation of the application, e.g. from {@code exec-maven-plugin}:
+ *
+ * <pre>
+ * SchemaSnapshotGenerator &lt;output file&gt; &lt;base package&gt;...
+ * </pre>
+ *
+ * <p>Only root operations resolved by plain {@code @GraphQLQuery}, {@code @GraphQLMutation} and
+ * {@code @GraphQLSubscription} methods, and nested fields of {@code @Batched} resolvers taking just
+ * the {@code @GraphQLContext} list, are supported. Generation fails for APIs using custom resolver
+ * builders, other context injection or nested resolvers with arguments; such applications keep
+ * using runtime generation.
+ */
+@Slf4j
+public class SchemaSnapshotGenerator {
+
+    private static final List<String> OPERATIONS = List.of("Query", "Mutation", "Subscription");
+    private static final List<Class<? extends Annotation>> UNSUPPORTED_PARAMETER_ANNOTATIONS =
+            List.of(GraphQLContext.class, GraphQLRootContext.class, GraphQLEnvironment.class);
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            throw new CityException(
+                    "Usage: SchemaSnapshotGenerator <output file> <base package>...");
+        }
+        final var output = Path.of(args[0]);
+        final var apiTypes = findApiTypes(Arrays.asList(args).subList(1, args.length));
+        final var snapshot = new SchemaSnapshotGenerator().generate(apiTypes);
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        try (var outputStream = Files.newOutputStream(output)) {
+            snapshot.write(outputStream);
+        }
+        log.info(
+                "Schema snapshot of {} GraphQL API types with {} operations written to '{}'",
+                apiTypes.size(),
+                snapshot.bindings().size(),
+                output);
+    }
+
+    /**
+     * Generates snapshot of the schema produced by SPQR for provided {@code @GraphQLApi} types
+     *
+     * @param apiTypes user classes of {@code @GraphQLApi} beans
+     * @return generated snapshot
+     */
+    public SchemaSnapshot generate(Collection<Class<?>> apiTypes) {
+        final var schemaGenerator = new GraphQLSchemaGenerator();
+        final var resolvers = new ArrayList<ResolverMethod>();
+        for (Class<?> apiType : apiTypes) {
+            if (!AnnotatedElementUtils.findMergedRepeatableAnnotations(
+                            apiType, WithResolverBuilder.class)
+                    .isEmpty()) {
+                throw new CityException(
+                        "Custom resolver builders of '{}' are not supported by schema snapshot",
+                        apiType.getName());
+            }
+            schemaGenerator.withOperationsFromType(GenericTypeReflector.annotate(apiType));
+            Arrays.stream(apiType.getMethods())
+                    .filter(SchemaSnapshot::isOperation)
+                    .sorted(Comparator.comparing(Method::toGenericString))
+                    .map(method -> new ResolverMethod(apiType, method))
+                    .forEach(resolvers::add);
+        }
+        schemaGenerator.withArgumentInjectors(new RequestHeaderMvcInjector(new RequestHeaders()));
+
+        final var executableSchema = schemaGenerator.generateExecutable();
+        final var schema = executableSchema.getSchema();
+        final var batchedFields =
+                executableSchema.getBatchLoaders().keySet().stream()
+                        .map(loaderName -> loaderName.replace(':', '.'))
+                        .collect(Collectors.toSet());
+        final var bindings =
+                resolvers.stream()
+                        .map(resolver -> bind(resolver.apiType(), resolver.method(), batchedFields))
+                        .toList();
+        verify(schema, bindings, batchedFields);
+        return new SchemaSnapshot(
+                SchemaSnapshot.fingerprint(apiTypes), new SchemaPrinter().print(schema), bindings);
+    }
+
+    private static List<Class<?>> findApiTypes(List<String> basePackages) {
+        final var scanner = new ClassPathScanningCandidateComponentProvider(false);
+        scanner.addIncludeFilter(new AnnotationTypeFilter(GraphQLApi.class));
+        return basePackages.stream()
+                .flatMap(basePackage -> scanner.findCandidateComponents(basePackage).stream())
+                .map(
+                        definition ->
+                                ClassUtils.resolveClassName(
+                                        Objects.requireNonNull(definition.getBeanClassName()),
+                                        SchemaSnapshotGenerator.class.getClassLoader()))
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    private static ResolverBinding bind(
+            Class<?> apiType, Method method, Collection<String> batchedFields) {
+        final var batched = method.isAnnotationPresent(Batched.class);
+        final var parameters =
+                Arrays.stream(method.getParameters())
+                        .map(parameter -> bind(method, parameter, batched))
+                        .toList();
+        final var field = operationName(method);
+        return new ResolverBinding(
+                batched ? batchedType(method, field, batchedFields) : operation(method),
+                field,
+                batched,
+                apiType.getName(),
+                method.getName(),
+                Arrays.stream(method.getParameterTypes()).map(Class::getName).toList(),
+                parameters);
+    }
+
+    private static ParameterBinding bind(Method method, Parameter parameter, boolean batched) {
+        if (batched) {
+            if (method.getParameterCount() != 1
+                    || !parameter.isAnnotationPresent(GraphQLContext.class)) {
+                throw new CityException(
+                        "@Batched resolver '{}' has to take just the @GraphQLContext list to be"
+                                + " supported by schema snapshot",
+                        method.toGenericString());
+            }
+            return new ParameterBinding(ParameterSource.CONTEXT, "");
+        }
+        for (var annotation : UNSUPPORTED_PARAMETER_ANNOTATIONS) {
+            if (parameter.isAnnotationPresent(annotation)) {
+                throw new CityException(
+                        "@{} parameter '{}' of '{}' is not supported by schema snapshot",
+                        annotation.getSimpleName(),
+                        parameter.getName(),
+                        method.toGenericString());
+            }
+        }
+        final var header = parameter.getAnnotation(RequestHeader.class);
+        if (header != null) {
+            return new ParameterBinding(ParameterSource.HEADER, header.value());
+        }
+        final var argument = parameter.getAnnotation(GraphQLArgument.class);
+        return new ParameterBinding(
+                ParameterSource.ARGUMENT,
+                argument != null && Utils.isNotEmpty(argument.name())
+                        ? argument.name()
+                        : parameter.getName());
+    }
+
+    private static String operation(Method method) {
+        if (method.isAnnotationPresent(GraphQLMutation.class)) {
+            return "Mutation";
+        }
+        return method.isAnnotationPresent(GraphQLSubscription.class) ? "Subscription" : "Query";
+    }
+
+    /** finds type declaring the batched field, SPQR names its data loader {@code type:field} */
+    private static String batchedType(
+            Method method, String field, Collection<String> batchedFields) {
+        final var types =
+                batchedFields.stream()
+                        .filter(batchedField -> batchedField.endsWith("." + field))
+                        .map(
+                                batchedField ->
+                                        batchedField.substring(0, batchedField.lastIndexOf('.')))
+                        .toList();
+        if (types.size() != 1) {
+            throw new CityException(
+                    "Type of @Batched field '{}' of '{}' can not be determined by schema snapshot",
+                    field,
+                    method.toGenericString());
+        }
+        return types.get(0);
+    }
+
+    private static String operationName(Method method) {
+        final String name;
+        if (method.isAnnotationPresent(GraphQLMutation.class)) {
+            name = method.getAnnotation(GraphQLMutation.class).name();
+        } else if (method.isAnnotationPresent(GraphQLSubscription.class)) {
+            name = method.getAnnotation(GraphQLSubscription.class).name();
+        } else {
+            name = method.getAnnotation(GraphQLQuery.class).name();
+        }
+        return Utils.isNotEmpty(name) ? name : method.getName();
+    }
+
+    /** verifies bindings cover exactly the root operation fields of the generated schema */
+    private static void verify(
+            GraphQLSchema schema, List<ResolverBinding> bindings, Set<String> batchedFields) {
+        final var bound = new HashSet<String>();
+        for (ResolverBinding binding : bindings) {
+            final var field = field(schema, binding.operation(), binding.field());
+            final var arguments =
+                    binding.parameters().stream()
+                            .filter(parameter -> parameter.source() == ParameterSource.ARGUMENT)
+                            .map(ParameterBinding::name)
+                            .collect(Collectors.toSet());
+            final var schemaArguments =
+                    field.getArguments().stream()
+                            .map(graphql.schema.GraphQLArgument::getName)
+                            .collect(Collectors.toSet());
+            if (!arguments.equals(schemaArguments)
+                    || binding.batched() != batchedFields.contains(key(binding))
+                    || !bound.add(key(binding))) {
+                throw new CityException(
+                        "Operation '{}.{}' can not be bound to '{}#{}' by schema snapshot",
+                        binding.operation(),
+                        binding.field(),
+                        binding.beanType(),
+                        binding.method());
+            }
+        }
+
+        batchedFields.stream()
+                .filter(batchedField -> !bound.contains(batchedField))
+                .findFirst()
+                .ifPresent(
+                        batchedField -> {
+                            throw new CityException(
+                                    "@Batched field '{}' has no resolver binding", batchedField);
+                        });
+
+        final var rootTypes = new HashSet<GraphQLObjectType>();
+        for (String operation : OPERATIONS) {
+            final var type = rootType(schema, operation);
+            if (type == null) {
+                continue;
+            }
+            rootTypes.add(type);
+            for (GraphQLFieldDefinition field : type.getFieldDefinitions()) {
+                if (!bound.contains(operation + "." + field.getName())) {
+                    throw new CityException(
+                            "Operation '{}.{}' has no resolver binding",
+                            operation,
+                            field.getName());
+                }
+            }
+        }
+
+        schema.getAllTypesAsList().stream()
+                .filter(GraphQLObjectType.class::isInstance)
+                .map(GraphQLObjectType.class::cast)
+                .filter(type -> !rootTypes.contains(type) && !type.getName().startsWith("__"))
+                .forEach(
+                        type ->
+                                type.getFieldDefinitions().stream()
+                                        .filter(field -> !field.getArguments().isEmpty())
+                                        .findFirst()
+                                        .ifPresent(
+                                                field -> {
+                                                    throw new CityException(
+                                                            "Nested resolver '{}.{}' is not"
+                                                                    + " supported by schema"
+                                                                    + " snapshot",
+                                                            type.getName(),
+                                                            field.getName());
+                                                }));
+    }
+
+    private static GraphQLFieldDefinition field(
+            GraphQLSchema schema, String typeName, String fieldName) {
+        final var type = schema.getObjectType(typeName);
+        final var field = type != null ? type.getFieldDefinition(fieldName) : null;
+        if (field == null) {
+            throw new CityException(
+                    "Operation '{}.{}' is missing in generated schema", typeName, fieldName);
+        }
+        return field;
+    }
+
+    private static GraphQLObjectType rootType(GraphQLSchema schema, String operation) {
+        return switch (operation) {
+            case "Mutation" -> schema.getMutationType();
+            case "Subscription" -> schema.getSubscriptionType();
+            default -> schema.getQueryType();
+        };
+    }
+
+    private static String key(ResolverBinding binding) {
+        return binding.operation() + "." + binding.field();
+    }
+
+    private record ResolverMethod(Class<?> apiType, Method method) {}
+}
@@ -0,0 +1,402 @@
+package com.sample.city.springboot.factory;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sample.city.springboot.component.BlockingResolverExecutor;
+import com.sample.city.springboot.component.IncrementalDelivery;
+import com.sample.city.springboot.component.RequestHeaderMvcInjector;
+import com.sample.city.springboot.component.RequestHeaders;
+import com.sample.city.springboot.component.ResolverTimeoutInterceptor;
+import com.sample.city.springboot.component.ResolverTimeoutInterceptor.TimeoutPolicy;
+import com.sample.city.springboot.exception.CityException;
+import com.sample.city.springboot.factory.SchemaSnapshot.ParameterSource;
+import com.sample.city.springboot.factory.SchemaSnapshot.ResolverBinding;
+
+import graphql.language.ListType;
+import graphql.language.NonNullType;
+import graphql.language.ObjectTypeDefinition;
+import graphql.language.Type;
+import graphql.scalars.ExtendedScalars;
+import graphql.schema.DataFetcher;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.GraphQLScalarType;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.ScalarInfo;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+import graphql.schema.idl.TypeDefinitionRegistry;
+
+import io.leangen.geantyref.GenericTypeReflector;
+import io.leangen.graphql.ExecutableSchema;
+import io.leangen.graphql.util.Scalars;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.dataloader.BatchLoaderEnvironment;
+import org.dataloader.BatchLoaderWithContext;
+import org.reactivestreams.Publisher;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.io.Resource;
+import org.springframework.util.ClassUtils;
+
+import javax.annotation.Nullable;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Builds executable {@link GraphQLSchema} from a build-time {@link SchemaSnapshot}, binding root
+ * operation fields directly to resolver methods of the {@code @GraphQLApi} beans. Fields of
+ * {@code @Batched} resolvers are bound to data loaders named the same way SPQR does. Used instead
+ * of SPQR generation when the snapshot matches the running application.
+ */
+@Slf4j
+class SnapshotSchemaLoader {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().findAndRegisterModules();
+    private static final Map<String, GraphQLScalarType> SCALARS = findScalars();
+
+    private SnapshotSchemaLoader() {}
+
+    /**
+     * Loads schema from the snapshot, if it exists and matches provided API beans
+     *
+     * @param location snapshot resource
+     * @param apiBeans {@code @GraphQLApi} beans of the running application
+     * @param blockingResolverExecutor executor of blocking resolvers, or {@code null} to invoke
+     *     them on the thread fetching the field
+     * @param resolverTimeouts time limits of resolvers, or {@code null} to not bound them
+     * @param requestHeaders headers injected into resolver arguments, indexed while the schema is
+     *     loaded
+     * @return loaded schema with its batch loaders, or empty when schema has to be generated at
+     *     runtime
+     */
+    static Optional<ExecutableSchema> load(
+            Resource location,
+            List<ApiBean> apiBeans,
+            @Nullable BlockingResolverExecutor blockingResolverExecutor,
+            @Nullable ResolverTimeoutInterceptor resolverTimeouts,
+            RequestHeaders requestHeaders) {
+        if (!location.exists()) {
+            log.info("No GraphQL schema snapshot found at '{}'", location);
+            return Optional.empty();
+        }
+        try (var inputStream = location.getInputStream()) {
+            final var snapshot = SchemaSnapshot.read(inputStream);
+            final var fingerprint =
+                    SchemaSnapshot.fingerprint(apiBeans.stream().map(ApiBean::type).toList());
+            if (!fingerprint.equals(snapshot.fingerprint())) {
+                log.info("GraphQL schema snapshot at '{}' is stale", location);
+                return Optional.empty();
+            }
+            return Optional.of(
+                    build(
+                            snapshot,
+                            apiBeans,
+                            blockingResolverExecutor,
+                            resolverTimeouts,
+                            requestHeaders));
+        } catch (Exception e) {
+            log.warn("GraphQL schema snapshot at '{}' can not be loaded", location, e);
+            return Optional.empty();
+        }
+    }
+
+    private static ExecutableSchema build(
+            SchemaSnapshot snapshot,
+            List<ApiBean> apiBeans,
+            @Nullable BlockingResolverExecutor blockingResolverExecutor,
+            @Nullable ResolverTimeoutInterceptor resolverTimeouts,
+            RequestHeaders requestHeaders)
+            throws ReflectiveOperationException {
+        final var registry = new SchemaParser().parse(snapshot.sdl());
+        final var wiring = RuntimeWiring.newRuntimeWiring();
+        for (String scalarName : registry.scalars().keySet()) {
+            if (!ScalarInfo.isGraphqlSpecifiedScalar(scalarName)) {
+                final var scalar = SCALARS.get(scalarName);
+                if (scalar == null) {
+                    throw new CityException("Unknown scalar '{}' in schema snapshot", scalarName);
+                }
+                wiring.scalar(scalar);
+            }
+        }
+
+        final var beans =
+                apiBeans.stream().collect(Collectors.toMap(bean -> bean.type().getName(), b -> b));
+        final var batchLoaders = new HashMap<String, BatchLoaderWithContext<?, ?>>();
+        for (ResolverBinding binding : snapshot.bindings()) {
+            final var bean = beans.get(binding.beanType());
+            if (bean == null) {
+                throw new CityException("No @GraphQLApi bean of type '{}'", binding.beanType());
+            }
+            final DataFetcher<?> dataFetcher;
+            if (binding.batched()) {
+                final var loaderName = binding.operation() + ":" + binding.field();
+                batchLoaders.put(
+                        loaderName,
+                        new SnapshotBatchLoader(invoker(bean, resolveMethod(bean, binding))));
+                dataFetcher =
+                        environment ->
+                                environment
+                                        .getDataLoader(loaderName)
+                                        .load(environment.getSource(), environment);
+            } else {
+                dataFetcher =
+                        createDataFetcher(
+                                bean,
+                                binding,
+                                publisherAdapter(registry, binding),
+                                blockingResolverExecutor,
+                                resolverTimeouts,
+                                requestHeaders);
+            }
+            wiring.type(
+                    binding.operation(),
+                    builder -> builder.dataFetcher(binding.field(), dataFetcher));
+        }
+        return new ExecutableSchema(
+                new SchemaGenerator().makeExecutableSchema(registry, wiring.build()),
+                null,
+                Map.copyOf(batchLoaders),
+                null);
+    }
+
+    private static DataFetcher<Object> createDataFetcher(
+            ApiBean bean,
+            ResolverBinding binding,
+            Function<Object, Object> publisherAdapter,
+            @Nullable BlockingResolverExecutor blockingResolverExecutor,
+            @Nullable ResolverTimeoutInterceptor resolverTimeouts,
+            RequestHeaders requestHeaders)
+            throws ReflectiveOperationException {
+        final var method = resolveMethod(bean, binding);
+        final var parameters = method.getParameters();
+        final var resolvers = new ParameterResolver[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            final var parameterBinding = binding.parameters().get(i);
+            if (parameterBinding.source() == ParameterSource.HEADER) {
+                final var headerIndex = requestHeaders.index(parameterBinding.name());
+                resolvers[i] =
+                        environment ->
+                                RequestHeaderMvcInjector.header(
+                                        environment.getGraphQlContext(),
+                                        headerIndex,
+                                        parameterBinding.name());
+            } else {
+                final JavaType javaType =
+                        OBJECT_MAPPER
+                                .getTypeFactory()
+                                .constructType(parameters[i].getParameterizedType());
+                resolvers[i] =
+                        environment ->
+                                OBJECT_MAPPER.convertValue(
+                                        environment.getArgument(parameterBinding.name()), javaType);
+            }
+        }
+        final var returnType = method.getReturnType();
+        final var blocking =
+                !Publisher.class.isAssignableFrom(returnType)
+                        && !CompletionStage.class.isAssignableFrom(returnType);
+        final var operation = binding.operation() + "." + binding.field();
+        return new SnapshotDataFetcher(
+                invoker(bean, method),
+                resolvers,
+                publisherAdapter,
+                blocking ? blockingResolverExecutor : null,
+                resolverTimeouts,
+                resolverTimeouts == null
+                        ? TimeoutPolicy.NONE
+                        : resolverTimeouts.policy(operation, method),
+                operation);
+    }
+
+    private static GeneratedMethodInvoker invoker(ApiBean bean, Method method) {
+        return new GeneratedMethodInvoker(
+                bean.supplier(), method, GenericTypeReflector.annotate(bean.type()));
+    }
+
+    private static Method resolveMethod(ApiBean bean, ResolverBinding binding)
+            throws ReflectiveOperationException {
+        final var parameterTypes = new Class<?>[binding.parameterTypes().size()];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            parameterTypes[i] =
+                    ClassUtils.forName(
+                            binding.parameterTypes().get(i), bean.type().getClassLoader());
+        }
+        return AopUtils.selectInvocableMethod(
+                bean.type().getMethod(binding.method(), parameterTypes), bean.exposedType());
+    }
+
+    /**
+     * Same as SPQR, publishers returned for queries and mutations are resolved to a single value or
+     * to a list, depending on the field type, while subscriptions return the publisher as is
+     */
+    private static Function<Object, Object> publisherAdapter(
+            TypeDefinitionRegistry registry, ResolverBinding binding) {
+        if ("Subscription".equals(binding.operation())) {
+            return Function.identity();
+        }
+        final var fieldType =
+                registry.getType(binding.operation(), ObjectTypeDefinition.class)
+                        .flatMap(
+                                type ->
+                                        type.getFieldDefinitions().stream()
+                                                .filter(f -> f.getName().equals(binding.field()))
+                                                .findFirst())
+                        .orElseThrow(
+                                () ->
+                                        new CityException(
+                                                "Operation '{}.{}' is missing in schema snapshot",
+                                                binding.operation(),
+                                                binding.field()))
+                        .getType();
+        return isList(fieldType)
+                ? result ->
+                        result instanceof Publisher<?> publisher
+                                ? Flux.from(publisher).collectList()
+                                : result
+                : result ->
+                        result instanceof Publisher<?> publisher ? Mono.from(publisher) : result;
+    }
+
+    private static boolean isList(Type<?> type) {
+        return type instanceof ListType
+                || (type instanceof NonNullType nonNull && nonNull.getType() instanceof ListType);
+    }
+
+    /** scalars SPQR may emit, by name, preferring SPQR own implementations */
+    private static Map<String, GraphQLScalarType> findScalars() {
+        final var scalars = new HashMap<String, GraphQLScalarType>();
+        List.of(
+                        Long.class,
+                        Short.class,
+                        Byte.class,
+                        Character.class,
+                        BigInteger.class,
+                        BigDecimal.class)
+                .forEach(
+                        type -> {
+                            final var scalar = Scalars.toGraphQLScalarType(type);
+                            if (scalar != null) {
+                                scalars.put(scalar.getName(), scalar);
+                            }
+                        });
+        for (Class<?> holder : List.of(Scalars.class, ExtendedScalars.class)) {
+            for (Field field : holder.getFields()) {
+                if (Modifier.isStatic(field.getModifiers())
+                        && GraphQLScalarType.class.isAssignableFrom(field.getType())) {
+                    try {
+                        final var scalar = (GraphQLScalarType) field.get(null);
+                        scalars.putIfAbsent(scalar.getName(), scalar);
+                    } catch (IllegalAccessException e) {
+                        log.debug("Scalar '{}' is not accessible", field.getName());
+                    }
+                }
+            }
+        }
+        return Map.copyOf(scalars);
+    }
+
+    /**
+     * {@code @GraphQLApi} bean of the running application
+     *
+     * @param type user class of the bean
+     * @param exposedType type of the bean as exposed by the application context
+     * @param supplier supplier of the bean instance
+     */
+    record ApiBean(Class<?> type, Class<?> exposedType, Supplier<Object> supplier) {}
+
+    @FunctionalInterface
+    private interface ParameterResolver {
+        Object resolve(DataFetchingEnvironment environment);
+    }
+
+    /**
+     * Resolves arguments, with injected headers read from the GraphQL context, and invokes the
+     * resolver either right away or on the executor of blocking resolvers, bounding the time of its
+     * publisher like {@link ResolverTimeoutInterceptor} does for generated schemas
+     */
+    private record SnapshotDataFetcher(
+            GeneratedMethodInvoker invoker,
+            ParameterResolver[] resolvers,
+            Function<Object, Object> publisherAdapter,
+            @Nullable BlockingResolverExecutor blockingResolverExecutor,
+            @Nullable ResolverTimeoutInterceptor resolverTimeouts,
+            TimeoutPolicy timeoutPolicy,
+            String operation)
+            implements DataFetcher<Object> {
+
+        @Override
+        public Object get(DataFetchingEnvironment environment) throws Exception {
+            final var arguments = new Object[resolvers.length];
+            for (int i = 0; i < resolvers.length; i++) {
+                arguments[i] = resolvers[i].resolve(environment);
+            }
+            return blockingResolverExecutor == null
+                    ? invoke(environment, arguments)
+                    : blockingResolverExecutor.execute(
+                            operation, () -> invoke(environment, arguments));
+        }
+
+        private Object invoke(DataFetchingEnvironment environment, Object[] arguments)
+                throws Exception {
+            final var result =
+                    resolverTimeouts == null
+                            ? execute(arguments)
+                            : resolverTimeouts.invoke(
+                                    timeoutPolicy, environment, () -> execute(arguments));
+            return publisherAdapter.apply(
+                    result instanceof Publisher<?> publisher
+                            ? IncrementalDelivery.stream(environment, publisher)
+                            : result);
+        }
+
+        private Object execute(Object[] arguments) throws Exception {
+            try {
+                return invoker.execute(null, arguments);
+            } catch (InvocationTargetException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+    }
+
+    /** invokes {@code @Batched} resolver with all sources collected by the data loader */
+    private record SnapshotBatchLoader(GeneratedMethodInvoker invoker)
+            implements BatchLoaderWithContext<Object, Object> {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public CompletionStage<List<Object>> load(
+                List<Object> keys, BatchLoaderEnvironment environment) {
+            try {
+                final var result = invoker.execute(null, new Object[] {keys});
+                final CompletionStage<?> values =
+                        result instanceof Publisher<?> publisher
+                                ? Flux.from(publisher).collectList().toFuture()
+                                : result instanceof CompletionStage<?> stage
+                                        ? stage
+                                        : CompletableFuture.completedFuture(result);
+                return (CompletionStage<List<Object>>) values;
+            } catch (InvocationTargetException e) {
+                return CompletableFuture.failedFuture(e.getCause());
+            }
+        }
+    }
+}